@@ -0,0 +1,118 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Measures how many short-lived connections per second the blocking engine
+ * accepts and answers, with one listener and acceptor, several acceptors on
+ * one socket, and several SO_REUSEPORT listeners. Every client opens a
+ * connection, sends one request with "Connection: close" and reads the
+ * response. Built with the benchmarks profile, run it with:
+ *
+ * java -cp target/http-server.jar com.johnpapadatos.AcceptRateBenchmark <shards> <clients> <connectionsPerClient>
+ */
+public class AcceptRateBenchmark {
+    private static final int DEFAULT_SHARDS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_CLIENTS = 64;
+    private static final int DEFAULT_CONNECTIONS_PER_CLIENT = 500;
+    private static final byte[] REQUEST = "GET /file.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        int shards = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SHARDS;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+        int connectionsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CONNECTIONS_PER_CLIENT;
+
+        Path baseDir = Files.createTempDirectory("accept-benchmark");
+        Path file = baseDir.resolve("file.txt");
+        try {
+            Files.writeString(file, "a".repeat(128));
+
+            run(baseDir, 1, 1, clients, connectionsPerClient);
+            run(baseDir, 1, shards, clients, connectionsPerClient);
+            if (Main.supportsReusePort()) {
+                run(baseDir, shards, 1, clients, connectionsPerClient);
+            } else {
+                System.out.println("SO_REUSEPORT is not supported, skipping the listener runs.");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(baseDir);
+        }
+    }
+
+    private static void run(Path baseDir, int listeners, int acceptorThreads, int clients, int connectionsPerClient)
+            throws Exception {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString());
+        config.setPort(0);
+        config.setBacklog(clients * 4);
+        config.setAcceptorThreads(acceptorThreads);
+
+        HttpRequestHandler httpRequestHandler = new HttpRequestHandler(config);
+        ExecutorService threadPool = Main.createThreadPool(config);
+        List<ServerSocket> serverSockets = new ArrayList<>();
+        List<Thread> serverThreads = new ArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            ServerSocket serverSocket = Main.openServerSocket(config, listeners > 1);
+            config.setPort(serverSocket.getLocalPort());
+            serverSockets.add(serverSocket);
+            HttpServer httpServer = new HttpServer(serverSocket, threadPool, httpRequestHandler);
+            Thread serverThread = new Thread(() -> {
+                try {
+                    httpServer.start();
+                } catch (IOException e) {
+                    // Closed at the end of the run
+                }
+            }, "benchmark-listener-" + i);
+            serverThread.start();
+            serverThreads.add(serverThread);
+        }
+
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService clientThreads = Executors.newFixedThreadPool(clients)) {
+            for (int i = 0; i < clients; i++) {
+                clientThreads.submit(() -> {
+                    for (int c = 0; c < connectionsPerClient; c++) {
+                        try (Socket socket = new Socket("localhost", config.getPort())) {
+                            OutputStream out = socket.getOutputStream();
+                            InputStream in = socket.getInputStream();
+                            out.write(REQUEST);
+                            out.flush();
+                            in.readAllBytes();
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        // Closing the sockets also shuts the thread pool down
+        for (ServerSocket serverSocket : serverSockets) {
+            serverSocket.close();
+        }
+        for (Thread serverThread : serverThreads) {
+            serverThread.join();
+        }
+        httpRequestHandler.getHttpRequestProcessor().getPathResolver().close();
+        httpRequestHandler.getAccessLog().close();
+
+        int connections = clients * connectionsPerClient;
+        System.out.printf("listeners=%d acceptorThreads=%d connections=%d failed=%d rate=%.0f conn/s%n",
+                listeners, acceptorThreads, connections, failures.get(), connections / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,31 @@
+package com.johnpapadatos;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// A socket that is never full, so benchmarks measure the cost of producing
+// the response bytes rather than the network.
+class DiscardingChannel implements WritableByteChannel {
+    private long written;
+
+    @Override
+    public int write(ByteBuffer src) {
+        int remaining = src.remaining();
+        src.position(src.limit());
+        written += remaining;
+        return remaining;
+    }
+
+    long getWritten() {
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,146 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Compares the platform thread pool against virtual threads when many
+ * keep-alive connections are open at the same time. Built with the
+ * benchmarks profile, run it with:
+ *
+ * java -cp target/http-server.jar com.johnpapadatos.ExecutorModeBenchmark <connections> <requestsPerConnection>
+ */
+public class ExecutorModeBenchmark {
+    private static final int DEFAULT_CONNECTIONS = 2000;
+    private static final int DEFAULT_REQUESTS_PER_CONNECTION = 20;
+    private static final int FILE_SIZE = 16 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        int requestsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REQUESTS_PER_CONNECTION;
+
+        Path baseDir = Files.createTempDirectory("executor-benchmark");
+        Path file = baseDir.resolve("file.txt");
+        try {
+            byte[] fileContents = new byte[FILE_SIZE];
+            Arrays.fill(fileContents, (byte) 'a');
+            Files.write(file, fileContents);
+
+            for (String executor : new String[] { "platform", "virtual" }) {
+                run(executor, baseDir, connections, requestsPerConnection);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(baseDir);
+        }
+    }
+
+    private static void run(String executor, Path baseDir, int connections, int requestsPerConnection)
+            throws Exception {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString());
+        config.setExecutor(executor);
+        config.setBacklog(connections);
+        config.setMaxRequestsPerConnection(requestsPerConnection);
+
+        ServerSocket serverSocket = new ServerSocket(0, config.getBacklog());
+        HttpServer httpServer = new HttpServer(serverSocket, Main.createThreadPool(config), config);
+        Thread serverThread = new Thread(() -> {
+            try {
+                httpServer.start();
+            } catch (IOException e) {
+                // Closed at the end of the run
+            }
+        }, "benchmark-server-" + executor);
+        serverThread.start();
+
+        long[] latencies = new long[connections * requestsPerConnection];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(connections);
+
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                clients.submit(() -> {
+                    try (Socket socket = new Socket("localhost", serverSocket.getLocalPort())) {
+                        OutputStream out = socket.getOutputStream();
+                        InputStream in = socket.getInputStream();
+                        for (int r = 0; r < requestsPerConnection; r++) {
+                            long requestStart = System.nanoTime();
+                            out.write("GET /file.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                            out.flush();
+                            skipResponse(in);
+                            latencies[recorded.getAndIncrement()] = System.nanoTime() - requestStart;
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        long elapsed = System.nanoTime() - start;
+        stop(serverSocket, serverThread, httpServer.getHttpRequestHandler());
+
+        long[] sorted = Arrays.copyOf(latencies, recorded.get());
+        Arrays.sort(sorted);
+        System.out.printf("executor=%s connections=%d requests=%d failedConnections=%d "
+                + "throughput=%.0f req/s p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                executor, connections, sorted.length, failures.get(),
+                sorted.length / (elapsed / 1e9),
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    // Closing the socket also shuts the thread pool down.
+    private static void stop(ServerSocket serverSocket, Thread serverThread, HttpRequestHandler httpRequestHandler)
+            throws IOException, InterruptedException {
+        serverSocket.close();
+        serverThread.join();
+        httpRequestHandler.getHttpRequestProcessor().getPathResolver().close();
+        httpRequestHandler.getAccessLog().close();
+    }
+
+    private static void skipResponse(InputStream in) throws IOException {
+        int contentLength = 0;
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new IOException("Connection closed unexpectedly.");
+            } else if (b == '\n') {
+                if (line.length() == 0) {
+                    break;
+                }
+                String header = line.toString();
+                if (header.regionMatches(true, 0, "Content-Length: ", 0, 16)) {
+                    contentLength = Integer.parseInt(header.substring(16));
+                }
+                line.setLength(0);
+            } else if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        in.readNBytes(contentLength);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,76 @@
+package com.johnpapadatos;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Parsing a browser-like request with the reader-based HttpRequestParser
+ * against IncrementalHttpRequestParser reusing its buffer across requests.
+ * Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpRequestParserBenchmark {
+    private static final String[] BROWSER_HEADERS = {
+            "Host: localhost:8080",
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0",
+            "Accept: image/avif,image/webp,image/png,image/svg+xml,image/*;q=0.8,*/*;q=0.5",
+            "Accept-Language: en-US,en;q=0.5",
+            "Accept-Encoding: gzip, deflate, br",
+            "Connection: keep-alive",
+            "Referer: http://localhost:8080/index.html",
+            "Sec-Fetch-Dest: image",
+            "Sec-Fetch-Mode: no-cors",
+            "Sec-Fetch-Site: same-origin"
+    };
+
+    // Beyond the browser headers, custom ones whose names are not interned
+    @Param({ "2", "10", "30" })
+    public int headerCount;
+
+    private byte[] request;
+    private IncrementalHttpRequestParser incrementalParser;
+
+    @Setup
+    public void setUp() {
+        StringBuilder httpRequest = new StringBuilder("GET /images/logo.png HTTP/1.1\r\n");
+        for (int i = 0; i < headerCount; i++) {
+            httpRequest.append(i < BROWSER_HEADERS.length ? BROWSER_HEADERS[i] : "X-Trace-" + i + ": " + i)
+                    .append("\r\n");
+        }
+        request = httpRequest.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+        incrementalParser = new IncrementalHttpRequestParser();
+    }
+
+    @Benchmark
+    public HttpRequest bufferedReaderParser() throws IOException {
+        return HttpRequestParser.parseRequest(
+                new BufferedReader(new InputStreamReader(new ByteArrayInputStream(request))));
+    }
+
+    @Benchmark
+    public HttpRequest incrementalParser() {
+        incrementalParser.feed(request, 0, request.length);
+        return incrementalParser.parse();
+    }
+}
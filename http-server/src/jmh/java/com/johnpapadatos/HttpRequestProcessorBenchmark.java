@@ -0,0 +1,106 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Serving a file end to end, from processRequest until the last byte is
+ * written, with and without the response cache. Uncached gzip requests
+ * measure the compression itself: in memory up to gzipStreamingThreshold
+ * (1 MiB), streamed in chunks above it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpRequestProcessorBenchmark {
+    private static final String[] WORDS = { "http", "server", "request", "response", "header", "body", "cache",
+            "thread", "socket", "buffer", "gzip", "range", "<div>", "</div>", "\n" };
+
+    @Param({ "1024", "65536", "4194304" })
+    public int fileSize;
+
+    @Param({ "identity", "gzip" })
+    public String acceptEncoding;
+
+    private Path baseDir;
+    private HttpRequest httpRequest;
+    private HttpRequestProcessor cachingProcessor;
+    private HttpRequestProcessor uncachedProcessor;
+    private AccessLog accessLog;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("processor-benchmark");
+        Files.writeString(baseDir.resolve("index.html"), compressibleText(fileSize));
+
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString());
+        config.setCacheMaxEntrySize(fileSize);
+        accessLog = new AccessLog(config);
+        cachingProcessor = new HttpRequestProcessor(config, new Metrics(), new BufferPool(), accessLog);
+        config.setCacheMaxBytes(0);
+        uncachedProcessor = new HttpRequestProcessor(config, new Metrics(), new BufferPool(), accessLog);
+
+        httpRequest = new HttpRequest();
+        httpRequest.setMethod("GET");
+        httpRequest.setPath("/index.html");
+        httpRequest.setVersion("HTTP/1.1");
+        httpRequest.setHeader("Accept-Encoding", acceptEncoding);
+        httpRequest.setBody("");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        accessLog.close();
+        Files.deleteIfExists(baseDir.resolve("index.html"));
+        Files.deleteIfExists(baseDir);
+    }
+
+    @Benchmark
+    public long cachedResponse() throws IOException {
+        return serve(cachingProcessor);
+    }
+
+    @Benchmark
+    public long uncachedResponse() throws IOException {
+        return serve(uncachedProcessor);
+    }
+
+    private long serve(HttpRequestProcessor httpRequestProcessor) throws IOException {
+        DiscardingChannel channel = new DiscardingChannel();
+        try (HttpResponseWriter httpResponseWriter = new HttpResponseWriter(
+                httpRequestProcessor.processRequest(httpRequest))) {
+            httpResponseWriter.writeFully(channel);
+        }
+        return channel.getWritten();
+    }
+
+    // Markup-like text compresses about as well as real static files do.
+    private static String compressibleText(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.substring(0, length);
+    }
+}
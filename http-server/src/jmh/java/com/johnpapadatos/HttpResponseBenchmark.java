@@ -0,0 +1,69 @@
+package com.johnpapadatos;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Serializing the status line and headers of a typical 200 response, and
+ * building plus serializing an error response the way a 404 is sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpResponseBenchmark {
+    private HttpResponse successfulResponse;
+    private DiscardingChannel channel;
+    private ByteBuffer headBuffer;
+
+    @Setup
+    public void setUp() {
+        successfulResponse = new HttpResponse();
+        successfulResponse.setVersion("HTTP/1.1");
+        successfulResponse.setStatusCode("200");
+        successfulResponse.setReasonPhrase("OK");
+        successfulResponse.setHeader("Content-Type", "text/html");
+        successfulResponse.setHeader("Content-Disposition", "inline");
+        successfulResponse.setHeader("Content-Encoding", "gzip");
+        successfulResponse.setHeader("Accept-Ranges", "bytes");
+        successfulResponse.setHeader("Content-Length", "5120");
+        successfulResponse.setHeader("ETag", "W/\"1400-18f2c3a1b20-gzip\"");
+        successfulResponse.setHeader("Last-Modified", "Mon, 13 May 2024 09:12:44 GMT");
+        successfulResponse.setHeader("Connection", "keep-alive");
+        channel = new DiscardingChannel();
+        headBuffer = ByteBuffer.allocate(ResponseHeadEncoder.HEAD_BUFFER_SIZE);
+    }
+
+    @Benchmark
+    public byte[] successfulResponseHead() {
+        return successfulResponse.getHeadAsBytes();
+    }
+
+    // What connections do: encode into the buffer they reuse for every response
+    @Benchmark
+    public ByteBuffer successfulResponseHeadReusedBuffer() {
+        return ResponseHeadEncoder.encode(successfulResponse, headBuffer);
+    }
+
+    @Benchmark
+    public long errorResponse() throws Exception {
+        HttpResponse errorResponse = ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND);
+        try (HttpResponseWriter httpResponseWriter = new HttpResponseWriter(errorResponse, headBuffer)) {
+            httpResponseWriter.writeFully(channel);
+        }
+        return channel.getWritten();
+    }
+}
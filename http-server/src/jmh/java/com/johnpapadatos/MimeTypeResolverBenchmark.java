@@ -0,0 +1,58 @@
+package com.johnpapadatos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Per-request cost of resolving the Content-Type: the previous new Tika()
+ * per request against MimeTypeResolver, for a known extension and for a
+ * file that needs content sniffing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeTypeResolverBenchmark {
+    @Param({ "index.html", "no-extension" })
+    public String filename;
+
+    private File file;
+    private MimeTypeResolver mimeTypeResolver;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path baseDir = Files.createTempDirectory("mime-benchmark");
+        file = Files.writeString(baseDir.resolve(filename), "<!DOCTYPE html><html><body></body></html>").toFile();
+        file.deleteOnExit();
+        mimeTypeResolver = new MimeTypeResolver(Map.of());
+    }
+
+    @Benchmark
+    public String newTikaPerRequest() throws IOException {
+        return new Tika().detect(file);
+    }
+
+    @Benchmark
+    public String mimeTypeResolver() {
+        return mimeTypeResolver.resolve(file);
+    }
+}
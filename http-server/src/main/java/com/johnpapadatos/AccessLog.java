@@ -0,0 +1,388 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Access and error log that never does I/O on the thread that logs. Producers
+// claim a slot of a preallocated ring buffer with a single CAS and store
+// references to strings that already exist (request line, status code), so
+// logging a response allocates nothing. A single background thread formats
+// the records in batches and writes them to the log file, or to stderr when
+// accessLog is none, in which case only errors are logged.
+//
+// The ring is a bounded multi-producer, single-consumer queue: the sequence
+// of a slot tells whether it is free for the producer of a given position or
+// holds a record for the consumer.
+public class AccessLog implements AutoCloseable {
+    public static final String NONE = "none";
+
+    private static final int RING_SIZE = 8192; // Power of two
+    private static final int MASK = RING_SIZE - 1;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ROTATED_FILES = 5;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+            .ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ROOT)
+            .withZone(ZoneId.systemDefault());
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int ACCESS = 0;
+    private static final int ERROR = 1;
+    private static final int EXCEPTION = 2; // An error logged with its stack trace
+
+    private final Path file; // Null when logging to stderr
+    private final boolean accessEnabled;
+    private final long flushIntervalNanos;
+    private final long maxFileSize;
+    private final boolean blockWhenFull;
+    private final Record[] records = new Record[RING_SIZE];
+    private final AtomicLongArray sequences = new AtomicLongArray(RING_SIZE);
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    // Owned by the writer thread
+    private long head;
+    private final StringBuilder line = new StringBuilder(256);
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BUFFER_SIZE);
+    private WritableByteChannel out;
+    private long fileSize;
+    private long lastSecond = -1;
+    private String lastTimestamp;
+
+    public AccessLog(Config config) {
+        this.file = config.getAccessLog().equals(NONE) ? null : Paths.get(config.getAccessLog());
+        this.accessEnabled = file != null;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getAccessLogFlushInterval());
+        this.maxFileSize = config.getAccessLogMaxFileSize();
+        this.blockWhenFull = config.getAccessLogOverflow().equals("block");
+        for (int i = 0; i < RING_SIZE; i++) {
+            records[i] = new Record();
+            sequences.set(i, i);
+        }
+        this.writerThread = new Thread(this::runWriter, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public boolean isAccessEnabled() {
+        return accessEnabled;
+    }
+
+    // Records that found the ring full and were discarded.
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // The request is null when it could not be parsed.
+    public void logAccess(String remoteAddress, HttpRequest httpRequest, String statusCode, long bytes,
+            long durationNanos) {
+        if (!accessEnabled) {
+            return;
+        }
+
+        long position = claim();
+        if (position < 0) {
+            return;
+        }
+        Record record = records[(int) position & MASK];
+        record.kind = ACCESS;
+        record.timestamp = System.currentTimeMillis();
+        record.remoteAddress = remoteAddress;
+        if (httpRequest != null) {
+            record.method = httpRequest.getMethod();
+            record.path = httpRequest.getPath();
+            record.version = httpRequest.getVersion();
+        }
+        record.statusCode = statusCode;
+        record.bytes = bytes;
+        record.durationNanos = durationNanos;
+        publish(position);
+    }
+
+    // Logs the message and the error on one line, for failures that are
+    // expected, such as a malformed request or a client that went away.
+    public void logError(String message, Throwable error) {
+        log(ERROR, message, error);
+    }
+
+    // Logs the message followed by the stack trace of the error, for failures
+    // that point to a bug.
+    public void logException(String message, Throwable error) {
+        log(EXCEPTION, message, error);
+    }
+
+    private void log(int kind, String message, Throwable error) {
+        long position = claim();
+        if (position < 0) {
+            return;
+        }
+        Record record = records[(int) position & MASK];
+        record.kind = kind;
+        record.timestamp = System.currentTimeMillis();
+        record.message = message;
+        record.error = error;
+        publish(position);
+    }
+
+    // Returns the claimed position, or -1 if the record is dropped.
+    private long claim() {
+        while (true) {
+            long position = tail.get();
+            long sequence = sequences.getAcquire((int) position & MASK);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                // Full, the writer has not consumed the record of the previous lap
+                if (!blockWhenFull || !running) {
+                    dropped.increment();
+                    return -1;
+                }
+                LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+            }
+            // Otherwise another producer claimed the position first
+        }
+    }
+
+    private void publish(long position) {
+        sequences.setRelease((int) position & MASK, position + 1);
+    }
+
+    // Stops the writer once it has written every published record.
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        out = openOutput();
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (true) {
+            boolean stopping = !running;
+            int drained = drain();
+            if (System.nanoTime() - nextFlush >= 0 || stopping) {
+                flush();
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+            }
+            if (stopping) {
+                break;
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(Math.min(DRAIN_INTERVAL_NANOS, flushIntervalNanos));
+            }
+        }
+        if (out instanceof FileChannel) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // The log itself is failing, stderr is all that is left
+                System.err.println("Failed to close " + file + ": " + e);
+            }
+        }
+    }
+
+    private int drain() {
+        int drained = 0;
+        while (sequences.getAcquire((int) head & MASK) == head + 1) {
+            Record record = records[(int) head & MASK];
+            format(record);
+            record.clear(); // Lets the strings and the error be collected
+            sequences.setRelease((int) head & MASK, head + RING_SIZE);
+            head++;
+            drained++;
+            append();
+        }
+        return drained;
+    }
+
+    private void format(Record record) {
+        line.setLength(0);
+        if (record.kind == ACCESS) {
+            // Common Log Format followed by the duration in microseconds
+            line.append(record.remoteAddress).append(" - - [").append(timestamp(record.timestamp)).append("] \"");
+            if (record.method != null) {
+                appendEscaped(record.method);
+                line.append(' ');
+                appendEscaped(record.path);
+                line.append(' ');
+                appendEscaped(record.version);
+            } else {
+                line.append('-');
+            }
+            line.append("\" ").append(record.statusCode).append(' ').append(record.bytes).append(' ')
+                    .append(record.durationNanos / 1000).append('\n');
+            return;
+        }
+
+        // Messages and exceptions may quote the request path as well
+        line.append('[').append(timestamp(record.timestamp)).append("] [error] ");
+        appendEscaped(record.message);
+        if (record.error != null) {
+            line.append(": ");
+            appendEscaped(record.error.toString());
+        }
+        line.append('\n');
+        if (record.kind == EXCEPTION && record.error != null) {
+            StringWriter stackTrace = new StringWriter();
+            record.error.printStackTrace(new PrintWriter(stackTrace));
+            String trace = stackTrace.toString();
+            line.append(trace, trace.indexOf('\n') + 1, trace.length()); // The first line is already there
+        }
+    }
+
+    // The request line comes from the client, escaping '"', '\\' and control
+    // characters keeps it from ending the quoted field or forging a line.
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f) {
+                line.append("\\x").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    private String timestamp(long millis) {
+        long second = millis / 1000;
+        if (second != lastSecond) {
+            lastTimestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochSecond(second));
+            lastSecond = second;
+        }
+        return lastTimestamp;
+    }
+
+    // Copies the formatted line into the batch, writing the batch out first
+    // if the line does not fit.
+    private void append() {
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > batch.remaining()) {
+            flush();
+        }
+        if (bytes.length > batch.capacity()) {
+            write(ByteBuffer.wrap(bytes));
+            return;
+        }
+        batch.put(bytes);
+    }
+
+    private void flush() {
+        batch.flip();
+        if (batch.hasRemaining()) {
+            write(batch);
+        }
+        batch.clear();
+    }
+
+    private void write(ByteBuffer bytes) {
+        try {
+            if (out instanceof FileChannel && maxFileSize > 0 && fileSize > 0
+                    && fileSize + bytes.remaining() > maxFileSize) {
+                rotate();
+            }
+            fileSize += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // The log itself is failing, stderr is all that is left
+            System.err.println("Failed to write " + (file != null ? file : "the access log")
+                    + ", the batch is lost: " + e);
+            bytes.position(bytes.limit());
+        }
+    }
+
+    // access.log becomes access.log.1, access.log.1 becomes access.log.2, and
+    // so on, the oldest file is deleted.
+    private void rotate() throws IOException {
+        out.close();
+        Files.deleteIfExists(rotatedFile(MAX_ROTATED_FILES));
+        for (int i = MAX_ROTATED_FILES - 1; i >= 1; i--) {
+            Path rotated = rotatedFile(i);
+            if (Files.exists(rotated)) {
+                Files.move(rotated, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+        out = openOutput();
+    }
+
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    // Falls back to stderr if the log file cannot be opened.
+    private WritableByteChannel openOutput() {
+        if (file != null) {
+            try {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                fileSize = fileChannel.size();
+                return fileChannel;
+            } catch (IOException e) {
+                System.err.println("Failed to open " + file + ", logging to stderr: " + e);
+            }
+        }
+        return Channels.newChannel(System.err);
+    }
+
+    // A slot of the ring, reused for every lap.
+    private static class Record {
+        private int kind;
+        private long timestamp;
+        private String remoteAddress;
+        private String method;
+        private String path;
+        private String version;
+        private String statusCode;
+        private long bytes;
+        private long durationNanos;
+        private String message;
+        private Throwable error;
+
+        void clear() {
+            remoteAddress = null;
+            method = null;
+            path = null;
+            version = null;
+            statusCode = null;
+            message = null;
+            error = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.johnpapadatos;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pool of direct ByteBuffers in power-of-two size classes. Each platform
+// thread keeps a couple of released buffers per class for itself, the rest
+// go to a shared lock-free queue per class. Buffers come back cleared, with
+// at least the requested capacity, and must be released exactly once.
+// Requests above the largest class are allocated directly and never pooled.
+//
+// Leak tracking records where every outstanding buffer was acquired and
+// rejects double releases. It costs a lock per call and is meant for tests.
+public class BufferPool {
+    private static final int MIN_SIZE_SHIFT = 11; // 2 KiB
+    private static final int MAX_SIZE_SHIFT = 16; // 64 KiB
+    private static final int SIZE_CLASSES = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+    private static final int THREAD_CACHE_SIZE = 2; // Buffers per class and thread
+    private static final long MAX_SHARED_BYTES_PER_CLASS = 4 * 1024 * 1024;
+
+    private final List<Queue<ByteBuffer>> shared = new ArrayList<>(SIZE_CLASSES);
+    private final AtomicInteger[] sharedCounts = new AtomicInteger[SIZE_CLASSES];
+    private final ThreadLocal<List<ArrayDeque<ByteBuffer>>> threadCaches;
+    private final Map<ByteBuffer, Throwable> outstandingBuffers; // Only when tracking leaks
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+
+    public BufferPool() {
+        this(false);
+    }
+
+    public BufferPool(boolean trackLeaks) {
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            shared.add(new ConcurrentLinkedQueue<>());
+            sharedCounts[i] = new AtomicInteger();
+        }
+        this.threadCaches = ThreadLocal.withInitial(() -> {
+            List<ArrayDeque<ByteBuffer>> caches = new ArrayList<>(SIZE_CLASSES);
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                caches.add(new ArrayDeque<>(THREAD_CACHE_SIZE));
+            }
+            return caches;
+        });
+        this.outstandingBuffers = trackLeaks ? Collections.synchronizedMap(new IdentityHashMap<>()) : null;
+    }
+
+    public ByteBuffer acquire(int size) {
+        acquired.increment();
+        int sizeClass = sizeClassOf(size);
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            List<ArrayDeque<ByteBuffer>> threadCache = getThreadCache();
+            buffer = threadCache == null ? null : threadCache.get(sizeClass).pollFirst();
+            if (buffer == null) {
+                buffer = shared.get(sizeClass).poll();
+                if (buffer != null) {
+                    sharedCounts[sizeClass].decrementAndGet();
+                }
+            }
+        }
+        if (buffer == null) {
+            allocated.increment();
+            buffer = ByteBuffer.allocateDirect(sizeClass >= 0 ? 1 << (sizeClass + MIN_SIZE_SHIFT) : size);
+        }
+
+        if (outstandingBuffers != null) {
+            outstandingBuffers.put(buffer, new Throwable("Buffer of " + size + " bytes acquired here"));
+        }
+        return buffer.clear();
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (outstandingBuffers != null && outstandingBuffers.remove(buffer) == null) {
+            throw new IllegalStateException("Buffer released twice or not acquired from this pool.");
+        }
+        released.increment();
+
+        int sizeClass = sizeClassOf(buffer.capacity());
+        if (sizeClass < 0 || buffer.capacity() != 1 << (sizeClass + MIN_SIZE_SHIFT)) {
+            return; // Oversized, left to the garbage collector
+        }
+
+        List<ArrayDeque<ByteBuffer>> threadCache = getThreadCache();
+        if (threadCache != null && threadCache.get(sizeClass).size() < THREAD_CACHE_SIZE) {
+            threadCache.get(sizeClass).addFirst(buffer);
+            return;
+        }
+        if (sharedCounts[sizeClass].incrementAndGet() * (long) buffer.capacity() <= MAX_SHARED_BYTES_PER_CLASS) {
+            shared.get(sizeClass).offer(buffer);
+        } else {
+            sharedCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    // Buffers created because none was free, a steady state keeps it flat.
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    public long getOutstanding() {
+        return acquired.sum() - released.sum();
+    }
+
+    public long getSharedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            bytes += (long) sharedCounts[i].get() << (i + MIN_SIZE_SHIFT);
+        }
+        return bytes;
+    }
+
+    // Where the buffers that were never released were acquired, empty unless
+    // leaks are tracked.
+    public List<Throwable> getLeaks() {
+        if (outstandingBuffers == null) {
+            return List.of();
+        }
+        synchronized (outstandingBuffers) {
+            return new ArrayList<>(outstandingBuffers.values());
+        }
+    }
+
+    // Virtual threads are short-lived and numerous, their caches would only
+    // strand buffers, so they share the pool directly.
+    private List<ArrayDeque<ByteBuffer>> getThreadCache() {
+        return Thread.currentThread().isVirtual() ? null : threadCaches.get();
+    }
+
+    // Returns -1 for sizes above the largest class.
+    private static int sizeClassOf(int size) {
+        int shift = Math.max(MIN_SIZE_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+        return shift > MAX_SIZE_SHIFT ? -1 : shift - MIN_SIZE_SHIFT;
+    }
+}
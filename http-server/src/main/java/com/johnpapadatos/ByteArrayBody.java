@@ -0,0 +1,58 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+public class ByteArrayBody implements ResponseBody {
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+
+    public ByteArrayBody(byte[] bytes) {
+        this.bytes = bytes;
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    // Remaining part of the body, shared with gathering writes of the response head.
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public long getLength() {
+        return bytes.length;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        channel.write(buffer);
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ByteArrayBody other = (ByteArrayBody) obj;
+        return Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "ByteArrayBody [length=" + bytes.length + "]";
+    }
+}
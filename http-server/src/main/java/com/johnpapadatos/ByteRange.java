@@ -0,0 +1,59 @@
+package com.johnpapadatos;
+
+// Inclusive byte positions of a satisfiable range, already clipped to the
+// file size.
+public class ByteRange {
+    private final long first;
+    private final long last;
+
+    public ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    public String toContentRange(long fileSize) {
+        return "bytes " + first + "-" + last + "/" + fileSize;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (int) (first ^ (first >>> 32));
+        result = prime * result + (int) (last ^ (last >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ByteRange other = (ByteRange) obj;
+        if (first != other.first)
+            return false;
+        if (last != other.last)
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRange [first=" + first + ", last=" + last + "]";
+    }
+}
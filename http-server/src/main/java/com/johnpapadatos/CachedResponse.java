@@ -0,0 +1,43 @@
+package com.johnpapadatos;
+
+// Ready-to-send representation of a file, valid as long as the file keeps
+// the same modification time and size.
+public class CachedResponse {
+    private final byte[] body;
+    private final String contentType;
+    private final String contentEncoding;
+    private final long lastModified; // Milliseconds since the epoch
+    private final long fileSize;
+
+    public CachedResponse(byte[] body, String contentType, String contentEncoding, long lastModified, long fileSize) {
+        this.body = body;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.lastModified = lastModified;
+        this.fileSize = fileSize;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public boolean isValidFor(long lastModified, long fileSize) {
+        return this.lastModified == lastModified && this.fileSize == fileSize;
+    }
+}
@@ -0,0 +1,54 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+// Writes several bodies back to back, e.g. the parts of a
+// multipart/byteranges response with their file regions in between.
+public class CompositeBody implements ResponseBody {
+    private final List<ResponseBody> parts;
+    private final long length;
+    private int currentPart;
+
+    public CompositeBody(List<ResponseBody> parts) {
+        this.parts = parts;
+        this.length = parts.stream().mapToLong(ResponseBody::getLength).sum();
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (currentPart < parts.size()) {
+            if (!parts.get(currentPart).writeTo(channel)) {
+                return false;
+            }
+            currentPart++;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ResponseBody part : parts) {
+            try {
+                part.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeBody [parts=" + parts.size() + ", currentPart=" + currentPart + "]";
+    }
+}
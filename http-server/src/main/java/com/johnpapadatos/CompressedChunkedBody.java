@@ -0,0 +1,189 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Compresses a file while it is being sent, one fixed-size piece at a time,
+// and frames the compressed output with the chunked transfer coding. Memory
+// use stays bounded by the chunk size whatever the size of the file, and the
+// first bytes go out before the file has been read to the end.
+//
+// Over HTTP/2, which frames the body itself, the chunk framing is left out.
+//
+// The file is read into a pooled direct buffer and deflated straight into
+// another one, behind room left for the chunk-size line, so a chunk is
+// framed in place and written without any copy. For gzip, the header and
+// trailer (RFC 1952) are added around the raw deflate stream, deflate is the
+// zlib stream as it comes out of the deflater. The deflater is borrowed from
+// the pool of Compression and given back once the body is closed.
+public class CompressedChunkedBody implements ResponseBody {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int SIZE_LINE_SPACE = 8; // Hex chunk size and CRLF
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int TAIL_SPACE = GZIP_TRAILER_SIZE + CRLF.length + LAST_CHUNK.length;
+
+    private final FileChannel fileChannel;
+    private final boolean chunked;
+    private final boolean gzip;
+    private final DeflaterPool deflaters;
+    private final Metrics metrics;
+    private final BufferPool bufferPool;
+    private final ByteBuffer input;
+    private final ByteBuffer chunk;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private long position;
+    private long compressedBytes;
+    private boolean headerWritten;
+    private boolean inputDone;
+    private boolean finished;
+    private boolean closed;
+
+    public CompressedChunkedBody(FileChannel fileChannel, String coding, Compression compression,
+            BufferPool bufferPool) {
+        this(fileChannel, true, coding, compression, bufferPool);
+    }
+
+    public CompressedChunkedBody(FileChannel fileChannel, boolean chunked, String coding, Compression compression,
+            BufferPool bufferPool) {
+        this.fileChannel = fileChannel;
+        this.chunked = chunked;
+        this.gzip = coding.equals(Compression.GZIP);
+        this.deflaters = compression.getDeflaters(coding);
+        this.metrics = compression.getMetrics();
+        this.bufferPool = bufferPool;
+        this.deflater = deflaters.acquire();
+        ByteBuffer input = null;
+        try {
+            input = bufferPool.acquire(CHUNK_SIZE).flip();
+            this.chunk = bufferPool.acquire(CHUNK_SIZE).flip();
+        } catch (RuntimeException e) {
+            deflaters.release(deflater); // close() is never called on a body that failed to build
+            if (input != null) {
+                bufferPool.release(input);
+            }
+            throw e;
+        }
+        this.input = input;
+    }
+
+    // Unknown until the whole file has been compressed.
+    @Override
+    public long getLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (true) {
+            if (chunk.hasRemaining()) {
+                channel.write(chunk);
+                if (chunk.hasRemaining()) {
+                    return false; // Socket send buffer is full
+                }
+            }
+
+            if (finished) {
+                return true;
+            }
+            compressNextChunk();
+        }
+    }
+
+    // Feeds the deflater until it produces output, which it may hold back
+    // for a while for well-compressible input, or until the chunk is full.
+    private void compressNextChunk() throws IOException {
+        chunk.clear().position(SIZE_LINE_SPACE).limit(chunk.capacity() - TAIL_SPACE);
+        int dataStart = chunk.position();
+        if (gzip && !headerWritten) {
+            chunk.put(Compression.GZIP_HEADER);
+            headerWritten = true;
+        }
+
+        int deflated = 0;
+        while (chunk.hasRemaining() && !deflater.finished()) {
+            if (deflater.needsInput() && !inputDone) {
+                if (deflated > 0) {
+                    break; // Send what is there before reading more of the file
+                }
+                readInput();
+            }
+            deflated += deflater.deflate(chunk);
+        }
+
+        chunk.limit(chunk.capacity());
+        if (deflater.finished() && gzip) {
+            chunk.order(ByteOrder.LITTLE_ENDIAN).putInt((int) crc.getValue()).putInt((int) position)
+                    .order(ByteOrder.BIG_ENDIAN);
+        }
+        finished = deflater.finished();
+
+        int dataLength = chunk.position() - dataStart;
+        compressedBytes += dataLength;
+        if (finished) {
+            metrics.recordCompression(position, compressedBytes);
+        }
+        if (!chunked) {
+            chunk.limit(chunk.position()).position(dataStart);
+            return;
+        }
+
+        chunk.put(CRLF);
+        if (finished) {
+            chunk.put(LAST_CHUNK);
+        }
+
+        // The size line goes right in front of the data
+        String sizeLine = Integer.toHexString(dataLength);
+        int start = dataStart - sizeLine.length() - CRLF.length;
+        for (int i = 0; i < sizeLine.length(); i++) {
+            chunk.put(start + i, (byte) sizeLine.charAt(i));
+        }
+        chunk.put(dataStart - 2, CRLF[0]).put(dataStart - 1, CRLF[1]);
+        chunk.limit(chunk.position()).position(start);
+    }
+
+    private void readInput() throws IOException {
+        input.clear();
+        int read = fileChannel.read(input, position);
+        input.flip();
+        if (read == -1) {
+            inputDone = true;
+            deflater.finish();
+            return;
+        }
+        position += read;
+        if (gzip) {
+            crc.update(input.duplicate());
+        }
+        deflater.setInput(input);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            deflaters.release(deflater);
+            bufferPool.release(input);
+            bufferPool.release(chunk);
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedChunkedBody [position=" + position + ", finished=" + finished + "]";
+    }
+}
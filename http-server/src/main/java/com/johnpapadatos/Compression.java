@@ -0,0 +1,196 @@
+package com.johnpapadatos;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Decides whether and how a response body is compressed, and compresses it
+// with pooled deflaters.
+//
+// The content coding is negotiated from the quality values of Accept-Encoding
+// (RFC 9110, section 12.5.3). Of gzip and deflate, the one with the higher
+// quality wins, gzip on a tie. Files that are too small to gain anything or
+// whose type is not in compressibleTypes, such as images and archives that
+// are compressed already, are sent unencoded, unless the client refuses the
+// unencoded file with identity;q=0.
+//
+// deflate is the zlib format (RFC 1950), gzip wraps a raw deflate stream in
+// the gzip header and trailer (RFC 1952).
+public class Compression {
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    // No file name or modification time, OS unknown, as written by GZIPOutputStream
+    static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int MAX_IDLE_DEFLATERS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+    private static final double NOT_LISTED = -1;
+
+    private final long minSize;
+    private final Set<String> compressibleTypes = new HashSet<>();
+    private final List<String> compressibleTypePrefixes = new ArrayList<>(); // From "text/*" and the like
+    private final DeflaterPool gzipDeflaters;
+    private final DeflaterPool deflateDeflaters;
+    private final Metrics metrics;
+
+    public Compression(Config config, Metrics metrics) {
+        this.minSize = config.getCompressionMinSize();
+        for (String compressibleType : config.getCompressibleTypes().split(",")) {
+            compressibleType = compressibleType.strip().toLowerCase(Locale.ROOT);
+            if (compressibleType.endsWith("/*")) {
+                compressibleTypePrefixes.add(compressibleType.substring(0, compressibleType.length() - 1));
+            } else {
+                compressibleTypes.add(compressibleType);
+            }
+        }
+        this.gzipDeflaters = new DeflaterPool(config.getCompressionLevel(), true, MAX_IDLE_DEFLATERS);
+        this.deflateDeflaters = new DeflaterPool(config.getCompressionLevel(), false, MAX_IDLE_DEFLATERS);
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public DeflaterPool getDeflaters(String coding) {
+        return coding.equals(GZIP) ? gzipDeflaters : deflateDeflaters;
+    }
+
+    // Whether a file of this type and size is worth compressing, in which
+    // case its response varies with Accept-Encoding.
+    public boolean isCompressible(String mimeType, long size) {
+        if (size < minSize) {
+            return false;
+        }
+
+        int semicolon = mimeType.indexOf(';');
+        String type = (semicolon == -1 ? mimeType : mimeType.substring(0, semicolon)).strip()
+                .toLowerCase(Locale.ROOT);
+        if (compressibleTypes.contains(type)) {
+            return true;
+        }
+        for (String prefix : compressibleTypePrefixes) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the content coding of the response, or null to send the file
+    // unencoded.
+    public String selectCoding(String acceptEncoding, String mimeType, long size) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        double gzipQuality = NOT_LISTED;
+        double deflateQuality = NOT_LISTED;
+        double identityQuality = NOT_LISTED;
+        double anyQuality = NOT_LISTED;
+        for (String element : acceptEncoding.split(",")) {
+            int semicolon = element.indexOf(';');
+            String coding = (semicolon == -1 ? element : element.substring(0, semicolon)).strip()
+                    .toLowerCase(Locale.ROOT);
+            double quality = semicolon == -1 ? 1 : parseQuality(element.substring(semicolon + 1));
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzipQuality = Math.max(gzipQuality, quality);
+                case "deflate" -> deflateQuality = Math.max(deflateQuality, quality);
+                case "identity" -> identityQuality = quality;
+                case "*" -> anyQuality = quality;
+                default -> {
+                    // Not supported, e.g. br or zstd
+                }
+            }
+        }
+        if (gzipQuality == NOT_LISTED) {
+            gzipQuality = anyQuality;
+        }
+        if (deflateQuality == NOT_LISTED) {
+            deflateQuality = anyQuality;
+        }
+
+        String coding;
+        double codingQuality;
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            coding = GZIP;
+            codingQuality = gzipQuality;
+        } else if (deflateQuality > 0) {
+            coding = DEFLATE;
+            codingQuality = deflateQuality;
+        } else {
+            return null; // Nothing better to send than the file itself
+        }
+
+        // Identity is acceptable unless excluded by identity;q=0, or by *;q=0
+        // without an entry for identity
+        boolean identityAcceptable = identityQuality == NOT_LISTED ? anyQuality != 0 : identityQuality > 0;
+        if (!identityAcceptable) {
+            return coding;
+        }
+        if (!isCompressible(mimeType, size) || identityQuality > codingQuality) {
+            return null;
+        }
+        return coding;
+    }
+
+    // Anything but a valid q parameter between 0 and 1 makes the coding
+    // unacceptable.
+    private static double parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            parameter = parameter.strip();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    double quality = Double.parseDouble(parameter.substring(2));
+                    return quality >= 0 && quality <= 1 ? quality : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // Compresses a whole body in memory, with the same output as
+    // GZIPOutputStream or DeflaterOutputStream at the same level.
+    public byte[] compress(byte[] body, String coding) {
+        DeflaterPool deflaters = getDeflaters(coding);
+        Deflater deflater = deflaters.acquire();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 2));
+        try {
+            if (coding.equals(GZIP)) {
+                out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            }
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflaters.release(deflater);
+        }
+
+        if (coding.equals(GZIP)) {
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            writeIntLittleEndian(out, (int) crc.getValue());
+            writeIntLittleEndian(out, body.length);
+        }
+        byte[] compressed = out.toByteArray();
+        metrics.recordCompression(body.length, compressed.length);
+        return compressed;
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -1,5 +1,7 @@
 package com.johnpapadatos;
 
+import java.util.Map;
+
 public class Config {
     private int port;
     private int backlog;
@@ -7,6 +9,34 @@ public class Config {
     private int corePoolSize;
     private int maximumPoolSize;
     private int keepAliveTime; // Milliseconds
+    private int queueCapacity;
+    private int queueTimeout; // Milliseconds, 0 disables the deadline
+    private int connectionIdleTimeout; // Milliseconds
+    private int maxRequestsPerConnection;
+    private int maxPipelinedRequests;
+    private String engine;
+    private int eventLoopThreads;
+    private String executor;
+    private long cacheMaxBytes;
+    private long cacheMaxEntrySize;
+    private long gzipStreamingThreshold;
+    private String etag;
+    private long mmapMaxBytes;
+    private long mmapMinFileSize;
+    private String http2;
+    private int listeners;
+    private int acceptorThreads;
+    private String accessLog;
+    private long accessLogFlushInterval;
+    private long accessLogMaxFileSize;
+    private String accessLogOverflow;
+    private int compressionLevel;
+    private long compressionMinSize;
+    private String compressibleTypes;
+    private String precompressed;
+    private int statCacheMaxEntries;
+    private long statCacheNegativeTtl;
+    private Map<String, String> mimeTypeOverrides; // Extension -> MIME type
 
     public Config() {
     }
@@ -51,6 +81,230 @@ public class Config {
         this.keepAliveTime = keepAliveTime;
     }
 
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(int queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    public int getConnectionIdleTimeout() {
+        return connectionIdleTimeout;
+    }
+
+    public void setConnectionIdleTimeout(int connectionIdleTimeout) {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    public int getMaxPipelinedRequests() {
+        return maxPipelinedRequests;
+    }
+
+    public void setMaxPipelinedRequests(int maxPipelinedRequests) {
+        this.maxPipelinedRequests = maxPipelinedRequests;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(String executor) {
+        this.executor = executor;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public long getCacheMaxEntrySize() {
+        return cacheMaxEntrySize;
+    }
+
+    public void setCacheMaxEntrySize(long cacheMaxEntrySize) {
+        this.cacheMaxEntrySize = cacheMaxEntrySize;
+    }
+
+    public long getGzipStreamingThreshold() {
+        return gzipStreamingThreshold;
+    }
+
+    public void setGzipStreamingThreshold(long gzipStreamingThreshold) {
+        this.gzipStreamingThreshold = gzipStreamingThreshold;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public long getMmapMaxBytes() {
+        return mmapMaxBytes;
+    }
+
+    public void setMmapMaxBytes(long mmapMaxBytes) {
+        this.mmapMaxBytes = mmapMaxBytes;
+    }
+
+    public long getMmapMinFileSize() {
+        return mmapMinFileSize;
+    }
+
+    public void setMmapMinFileSize(long mmapMinFileSize) {
+        this.mmapMinFileSize = mmapMinFileSize;
+    }
+
+    public String getHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(String http2) {
+        this.http2 = http2;
+    }
+
+    public int getListeners() {
+        return listeners;
+    }
+
+    public void setListeners(int listeners) {
+        this.listeners = listeners;
+    }
+
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    public void setAcceptorThreads(int acceptorThreads) {
+        this.acceptorThreads = acceptorThreads;
+    }
+
+    public String getAccessLog() {
+        return accessLog;
+    }
+
+    public void setAccessLog(String accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public long getAccessLogFlushInterval() {
+        return accessLogFlushInterval;
+    }
+
+    public void setAccessLogFlushInterval(long accessLogFlushInterval) {
+        this.accessLogFlushInterval = accessLogFlushInterval;
+    }
+
+    public long getAccessLogMaxFileSize() {
+        return accessLogMaxFileSize;
+    }
+
+    public void setAccessLogMaxFileSize(long accessLogMaxFileSize) {
+        this.accessLogMaxFileSize = accessLogMaxFileSize;
+    }
+
+    public String getAccessLogOverflow() {
+        return accessLogOverflow;
+    }
+
+    public void setAccessLogOverflow(String accessLogOverflow) {
+        this.accessLogOverflow = accessLogOverflow;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public long getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public void setCompressionMinSize(long compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public String getCompressibleTypes() {
+        return compressibleTypes;
+    }
+
+    public void setCompressibleTypes(String compressibleTypes) {
+        this.compressibleTypes = compressibleTypes;
+    }
+
+    public String getPrecompressed() {
+        return precompressed;
+    }
+
+    public void setPrecompressed(String precompressed) {
+        this.precompressed = precompressed;
+    }
+
+    public int getStatCacheMaxEntries() {
+        return statCacheMaxEntries;
+    }
+
+    public void setStatCacheMaxEntries(int statCacheMaxEntries) {
+        this.statCacheMaxEntries = statCacheMaxEntries;
+    }
+
+    public long getStatCacheNegativeTtl() {
+        return statCacheNegativeTtl;
+    }
+
+    public void setStatCacheNegativeTtl(long statCacheNegativeTtl) {
+        this.statCacheNegativeTtl = statCacheNegativeTtl;
+    }
+
+    public Map<String, String> getMimeTypeOverrides() {
+        return mimeTypeOverrides;
+    }
+
+    public void setMimeTypeOverrides(Map<String, String> mimeTypeOverrides) {
+        this.mimeTypeOverrides = mimeTypeOverrides;
+    }
+
     public int getBacklog() {
         return backlog;
     }
@@ -69,6 +323,34 @@ public class Config {
         result = prime * result + corePoolSize;
         result = prime * result + maximumPoolSize;
         result = prime * result + keepAliveTime;
+        result = prime * result + queueCapacity;
+        result = prime * result + queueTimeout;
+        result = prime * result + connectionIdleTimeout;
+        result = prime * result + maxRequestsPerConnection;
+        result = prime * result + maxPipelinedRequests;
+        result = prime * result + ((engine == null) ? 0 : engine.hashCode());
+        result = prime * result + eventLoopThreads;
+        result = prime * result + ((executor == null) ? 0 : executor.hashCode());
+        result = prime * result + (int) (cacheMaxBytes ^ (cacheMaxBytes >>> 32));
+        result = prime * result + (int) (cacheMaxEntrySize ^ (cacheMaxEntrySize >>> 32));
+        result = prime * result + (int) (gzipStreamingThreshold ^ (gzipStreamingThreshold >>> 32));
+        result = prime * result + ((etag == null) ? 0 : etag.hashCode());
+        result = prime * result + (int) (mmapMaxBytes ^ (mmapMaxBytes >>> 32));
+        result = prime * result + (int) (mmapMinFileSize ^ (mmapMinFileSize >>> 32));
+        result = prime * result + ((http2 == null) ? 0 : http2.hashCode());
+        result = prime * result + listeners;
+        result = prime * result + acceptorThreads;
+        result = prime * result + ((accessLog == null) ? 0 : accessLog.hashCode());
+        result = prime * result + (int) (accessLogFlushInterval ^ (accessLogFlushInterval >>> 32));
+        result = prime * result + (int) (accessLogMaxFileSize ^ (accessLogMaxFileSize >>> 32));
+        result = prime * result + ((accessLogOverflow == null) ? 0 : accessLogOverflow.hashCode());
+        result = prime * result + compressionLevel;
+        result = prime * result + (int) (compressionMinSize ^ (compressionMinSize >>> 32));
+        result = prime * result + ((compressibleTypes == null) ? 0 : compressibleTypes.hashCode());
+        result = prime * result + ((precompressed == null) ? 0 : precompressed.hashCode());
+        result = prime * result + statCacheMaxEntries;
+        result = prime * result + (int) (statCacheNegativeTtl ^ (statCacheNegativeTtl >>> 32));
+        result = prime * result + ((mimeTypeOverrides == null) ? 0 : mimeTypeOverrides.hashCode());
         return result;
     }
 
@@ -96,6 +378,89 @@ public class Config {
             return false;
         if (keepAliveTime != other.keepAliveTime)
             return false;
+        if (queueCapacity != other.queueCapacity)
+            return false;
+        if (queueTimeout != other.queueTimeout)
+            return false;
+        if (connectionIdleTimeout != other.connectionIdleTimeout)
+            return false;
+        if (maxRequestsPerConnection != other.maxRequestsPerConnection)
+            return false;
+        if (maxPipelinedRequests != other.maxPipelinedRequests)
+            return false;
+        if (engine == null) {
+            if (other.engine != null)
+                return false;
+        } else if (!engine.equals(other.engine))
+            return false;
+        if (eventLoopThreads != other.eventLoopThreads)
+            return false;
+        if (executor == null) {
+            if (other.executor != null)
+                return false;
+        } else if (!executor.equals(other.executor))
+            return false;
+        if (cacheMaxBytes != other.cacheMaxBytes)
+            return false;
+        if (cacheMaxEntrySize != other.cacheMaxEntrySize)
+            return false;
+        if (gzipStreamingThreshold != other.gzipStreamingThreshold)
+            return false;
+        if (etag == null) {
+            if (other.etag != null)
+                return false;
+        } else if (!etag.equals(other.etag))
+            return false;
+        if (mmapMaxBytes != other.mmapMaxBytes)
+            return false;
+        if (mmapMinFileSize != other.mmapMinFileSize)
+            return false;
+        if (http2 == null) {
+            if (other.http2 != null)
+                return false;
+        } else if (!http2.equals(other.http2))
+            return false;
+        if (mimeTypeOverrides == null) {
+            if (other.mimeTypeOverrides != null)
+                return false;
+        if (listeners != other.listeners)
+            return false;
+        if (acceptorThreads != other.acceptorThreads)
+            return false;
+        if (accessLog == null) {
+            if (other.accessLog != null)
+                return false;
+        } else if (!accessLog.equals(other.accessLog))
+            return false;
+        } else if (!mimeTypeOverrides.equals(other.mimeTypeOverrides))
+            return false;
+        if (accessLogFlushInterval != other.accessLogFlushInterval)
+            return false;
+        if (accessLogMaxFileSize != other.accessLogMaxFileSize)
+            return false;
+        if (accessLogOverflow == null) {
+            if (other.accessLogOverflow != null)
+                return false;
+        } else if (!accessLogOverflow.equals(other.accessLogOverflow))
+            return false;
+        if (compressionLevel != other.compressionLevel)
+            return false;
+        if (compressionMinSize != other.compressionMinSize)
+            return false;
+        if (compressibleTypes == null) {
+            if (other.compressibleTypes != null)
+                return false;
+        } else if (!compressibleTypes.equals(other.compressibleTypes))
+            return false;
+        if (precompressed == null) {
+            if (other.precompressed != null)
+                return false;
+        } else if (!precompressed.equals(other.precompressed))
+            return false;
+        if (statCacheMaxEntries != other.statCacheMaxEntries)
+            return false;
+        if (statCacheNegativeTtl != other.statCacheNegativeTtl)
+            return false;
         return true;
     }
 
@@ -107,6 +472,34 @@ public class Config {
                 + ", corePoolSize=" + corePoolSize
                 + ", maximumPoolSize=" + maximumPoolSize
                 + ", keepAliveTime=" + keepAliveTime
+                + ", queueCapacity=" + queueCapacity
+                + ", queueTimeout=" + queueTimeout
+                + ", connectionIdleTimeout=" + connectionIdleTimeout
+                + ", maxRequestsPerConnection=" + maxRequestsPerConnection
+                + ", maxPipelinedRequests=" + maxPipelinedRequests
+                + ", engine=" + engine
+                + ", eventLoopThreads=" + eventLoopThreads
+                + ", executor=" + executor
+                + ", cacheMaxBytes=" + cacheMaxBytes
+                + ", cacheMaxEntrySize=" + cacheMaxEntrySize
+                + ", gzipStreamingThreshold=" + gzipStreamingThreshold
+                + ", etag=" + etag
+                + ", mmapMaxBytes=" + mmapMaxBytes
+                + ", mmapMinFileSize=" + mmapMinFileSize
+                + ", http2=" + http2
+                + ", listeners=" + listeners
+                + ", acceptorThreads=" + acceptorThreads
+                + ", accessLog=" + accessLog
+                + ", accessLogFlushInterval=" + accessLogFlushInterval
+                + ", accessLogMaxFileSize=" + accessLogMaxFileSize
+                + ", accessLogOverflow=" + accessLogOverflow
+                + ", compressionLevel=" + compressionLevel
+                + ", compressionMinSize=" + compressionMinSize
+                + ", compressibleTypes=" + compressibleTypes
+                + ", precompressed=" + precompressed
+                + ", statCacheMaxEntries=" + statCacheMaxEntries
+                + ", statCacheNegativeTtl=" + statCacheNegativeTtl
+                + ", mimeTypeOverrides=" + mimeTypeOverrides
                 + "]";
     }
 }
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class ConfigProcessor {
     private static final int DEFAULT_PORT = 7290;
@@ -15,8 +16,43 @@ public class ConfigProcessor {
     private static final int DEFAULT_CORE_POOL_SIZE = Runtime.getRuntime().availableProcessors() / 2;
     private static final int DEFAULT_MAX_POOL_SIZE = Runtime.getRuntime().availableProcessors();
     private static final int DEFAULT_KEEP_ALIVE = 3000; // Milliseconds
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_QUEUE_TIMEOUT = 0; // Milliseconds, no deadline
+    private static final int DEFAULT_CONNECTION_IDLE_TIMEOUT = 5000; // Milliseconds
+    private static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 100;
+    private static final int DEFAULT_MAX_PIPELINED_REQUESTS = 1;
+    private static final String DEFAULT_ENGINE = "blocking";
+    private static final int DEFAULT_EVENT_LOOP_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final String DEFAULT_EXECUTOR = "platform";
+    private static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_CACHE_MAX_ENTRY_SIZE = 1024L * 1024;
+    private static final long DEFAULT_GZIP_STREAMING_THRESHOLD = 1024L * 1024;
+    private static final String DEFAULT_ETAG = "weak";
+    private static final long DEFAULT_MMAP_MAX_BYTES = 0;
+    private static final long DEFAULT_MMAP_MIN_FILE_SIZE = 1024L * 1024;
+    private static final String DEFAULT_HTTP2 = "none";
+    private static final int DEFAULT_LISTENERS = 1;
+    private static final int DEFAULT_ACCEPTOR_THREADS = 1;
+    private static final String DEFAULT_ACCESS_LOG = "none";
+    private static final long DEFAULT_ACCESS_LOG_FLUSH_INTERVAL = 1000;
+    private static final long DEFAULT_ACCESS_LOG_MAX_FILE_SIZE = 100L * 1024 * 1024;
+    private static final String DEFAULT_ACCESS_LOG_OVERFLOW = "drop";
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final long DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    private static final String DEFAULT_COMPRESSIBLE_TYPES = "text/*,application/json,application/javascript,"
+            + "application/xml,image/svg+xml,application/wasm";
+    private static final String DEFAULT_PRECOMPRESSED = "gzip";
+    private static final int DEFAULT_STAT_CACHE_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_STAT_CACHE_NEGATIVE_TTL = 1000;
     private static final int REGISTER_PORT_RANGE_LOWER_BOUND = 1024;
     private static final int REGISTER_PORT_RANGE_UPPER_BOUND = 49151;
+    private static final Set<String> SUPPORTED_ENGINES = Set.of("blocking", "nio");
+    private static final Set<String> SUPPORTED_EXECUTORS = Set.of("platform", "virtual");
+    private static final Set<String> SUPPORTED_ETAGS = Set.of("weak", "strong", "none");
+    private static final Set<String> SUPPORTED_HTTP2_MODES = Set.of("h2c", "none");
+    private static final Set<String> SUPPORTED_ACCESS_LOG_OVERFLOW_POLICIES = Set.of("drop", "block");
+    private static final Set<String> SUPPORTED_PRECOMPRESSED_CODINGS = Set.of("gzip", "none");
+    private static final String MIME_TYPE_OVERRIDE_PREFIX = "mime.";
 
     private ConfigProcessor() {
     }
@@ -64,6 +100,34 @@ public class ConfigProcessor {
         config.setCorePoolSize(DEFAULT_CORE_POOL_SIZE);
         config.setMaximumPoolSize(DEFAULT_MAX_POOL_SIZE);
         config.setKeepAliveTime(DEFAULT_KEEP_ALIVE);
+        config.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+        config.setQueueTimeout(DEFAULT_QUEUE_TIMEOUT);
+        config.setConnectionIdleTimeout(DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        config.setMaxRequestsPerConnection(DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+        config.setMaxPipelinedRequests(DEFAULT_MAX_PIPELINED_REQUESTS);
+        config.setEngine(DEFAULT_ENGINE);
+        config.setEventLoopThreads(DEFAULT_EVENT_LOOP_THREADS);
+        config.setExecutor(DEFAULT_EXECUTOR);
+        config.setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES);
+        config.setCacheMaxEntrySize(DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        config.setGzipStreamingThreshold(DEFAULT_GZIP_STREAMING_THRESHOLD);
+        config.setEtag(DEFAULT_ETAG);
+        config.setMmapMaxBytes(DEFAULT_MMAP_MAX_BYTES);
+        config.setMmapMinFileSize(DEFAULT_MMAP_MIN_FILE_SIZE);
+        config.setHttp2(DEFAULT_HTTP2);
+        config.setListeners(DEFAULT_LISTENERS);
+        config.setAcceptorThreads(DEFAULT_ACCEPTOR_THREADS);
+        config.setAccessLog(DEFAULT_ACCESS_LOG);
+        config.setAccessLogFlushInterval(DEFAULT_ACCESS_LOG_FLUSH_INTERVAL);
+        config.setAccessLogMaxFileSize(DEFAULT_ACCESS_LOG_MAX_FILE_SIZE);
+        config.setAccessLogOverflow(DEFAULT_ACCESS_LOG_OVERFLOW);
+        config.setCompressionLevel(DEFAULT_COMPRESSION_LEVEL);
+        config.setCompressionMinSize(DEFAULT_COMPRESSION_MIN_SIZE);
+        config.setCompressibleTypes(DEFAULT_COMPRESSIBLE_TYPES);
+        config.setPrecompressed(DEFAULT_PRECOMPRESSED);
+        config.setStatCacheMaxEntries(DEFAULT_STAT_CACHE_MAX_ENTRIES);
+        config.setStatCacheNegativeTtl(DEFAULT_STAT_CACHE_NEGATIVE_TTL);
+        config.setMimeTypeOverrides(new HashMap<>());
         return config;
     }
 
@@ -100,6 +164,150 @@ public class ConfigProcessor {
                 : DEFAULT_KEEP_ALIVE;
         config.setKeepAliveTime(keepAliveTime);
 
+        int queueCapacity = isValidQueueCapacity(configOptions.get("queueCapacity"))
+                ? Integer.parseInt(configOptions.get("queueCapacity"))
+                : DEFAULT_QUEUE_CAPACITY;
+        config.setQueueCapacity(queueCapacity);
+
+        int queueTimeout = isValidQueueTimeout(configOptions.get("queueTimeout"))
+                ? Integer.parseInt(configOptions.get("queueTimeout"))
+                : DEFAULT_QUEUE_TIMEOUT;
+        config.setQueueTimeout(queueTimeout);
+
+        int connectionIdleTimeout = isValidConnectionIdleTimeout(configOptions.get("connectionIdleTimeout"))
+                ? Integer.parseInt(configOptions.get("connectionIdleTimeout"))
+                : DEFAULT_CONNECTION_IDLE_TIMEOUT;
+        config.setConnectionIdleTimeout(connectionIdleTimeout);
+
+        int maxRequestsPerConnection = isValidMaxRequestsPerConnection(configOptions.get("maxRequestsPerConnection"))
+                ? Integer.parseInt(configOptions.get("maxRequestsPerConnection"))
+                : DEFAULT_MAX_REQUESTS_PER_CONNECTION;
+        config.setMaxRequestsPerConnection(maxRequestsPerConnection);
+
+        int maxPipelinedRequests = isValidMaxPipelinedRequests(configOptions.get("maxPipelinedRequests"))
+                ? Integer.parseInt(configOptions.get("maxPipelinedRequests"))
+                : DEFAULT_MAX_PIPELINED_REQUESTS;
+        config.setMaxPipelinedRequests(maxPipelinedRequests);
+
+        String engine = isValidEngine(configOptions.get("engine"))
+                ? configOptions.get("engine")
+                : DEFAULT_ENGINE;
+        config.setEngine(engine);
+
+        int eventLoopThreads = isValidEventLoopThreads(configOptions.get("eventLoopThreads"))
+                ? Integer.parseInt(configOptions.get("eventLoopThreads"))
+                : DEFAULT_EVENT_LOOP_THREADS;
+        config.setEventLoopThreads(eventLoopThreads);
+
+        String executor = isValidExecutor(configOptions.get("executor"))
+                ? configOptions.get("executor")
+                : DEFAULT_EXECUTOR;
+        config.setExecutor(executor);
+
+        long cacheMaxBytes = isValidCacheSize(configOptions.get("cacheMaxBytes"))
+                ? Long.parseLong(configOptions.get("cacheMaxBytes"))
+                : DEFAULT_CACHE_MAX_BYTES;
+        config.setCacheMaxBytes(cacheMaxBytes);
+
+        long cacheMaxEntrySize = isValidCacheSize(configOptions.get("cacheMaxEntrySize"))
+                ? Long.parseLong(configOptions.get("cacheMaxEntrySize"))
+                : DEFAULT_CACHE_MAX_ENTRY_SIZE;
+        config.setCacheMaxEntrySize(cacheMaxEntrySize);
+
+        long gzipStreamingThreshold = isValidGzipStreamingThreshold(configOptions.get("gzipStreamingThreshold"))
+                ? Long.parseLong(configOptions.get("gzipStreamingThreshold"))
+                : DEFAULT_GZIP_STREAMING_THRESHOLD;
+        config.setGzipStreamingThreshold(gzipStreamingThreshold);
+
+        String etag = isValidEtag(configOptions.get("etag"))
+                ? configOptions.get("etag")
+                : DEFAULT_ETAG;
+        config.setEtag(etag);
+
+        long mmapMaxBytes = isValidMmapMaxBytes(configOptions.get("mmapMaxBytes"))
+                ? Long.parseLong(configOptions.get("mmapMaxBytes"))
+                : DEFAULT_MMAP_MAX_BYTES;
+        config.setMmapMaxBytes(mmapMaxBytes);
+
+        long mmapMinFileSize = isValidMmapMinFileSize(configOptions.get("mmapMinFileSize"))
+                ? Long.parseLong(configOptions.get("mmapMinFileSize"))
+                : DEFAULT_MMAP_MIN_FILE_SIZE;
+        config.setMmapMinFileSize(mmapMinFileSize);
+
+        String http2 = isValidHttp2(configOptions.get("http2"))
+                ? configOptions.get("http2")
+                : DEFAULT_HTTP2;
+        config.setHttp2(http2);
+
+        int listeners = isValidListeners(configOptions.get("listeners"))
+                ? Integer.parseInt(configOptions.get("listeners"))
+                : DEFAULT_LISTENERS;
+        config.setListeners(listeners);
+
+        int acceptorThreads = isValidAcceptorThreads(configOptions.get("acceptorThreads"))
+                ? Integer.parseInt(configOptions.get("acceptorThreads"))
+                : DEFAULT_ACCEPTOR_THREADS;
+        config.setAcceptorThreads(acceptorThreads);
+
+        String accessLog = isValidAccessLog(configOptions.get("accessLog"))
+                ? configOptions.get("accessLog")
+                : DEFAULT_ACCESS_LOG;
+        config.setAccessLog(accessLog);
+
+        long accessLogFlushInterval = isValidAccessLogFlushInterval(configOptions.get("accessLogFlushInterval"))
+                ? Long.parseLong(configOptions.get("accessLogFlushInterval"))
+                : DEFAULT_ACCESS_LOG_FLUSH_INTERVAL;
+        config.setAccessLogFlushInterval(accessLogFlushInterval);
+
+        long accessLogMaxFileSize = isValidAccessLogMaxFileSize(configOptions.get("accessLogMaxFileSize"))
+                ? Long.parseLong(configOptions.get("accessLogMaxFileSize"))
+                : DEFAULT_ACCESS_LOG_MAX_FILE_SIZE;
+        config.setAccessLogMaxFileSize(accessLogMaxFileSize);
+
+        String accessLogOverflow = isValidAccessLogOverflow(configOptions.get("accessLogOverflow"))
+                ? configOptions.get("accessLogOverflow")
+                : DEFAULT_ACCESS_LOG_OVERFLOW;
+        config.setAccessLogOverflow(accessLogOverflow);
+
+        int compressionLevel = isValidCompressionLevel(configOptions.get("compressionLevel"))
+                ? Integer.parseInt(configOptions.get("compressionLevel"))
+                : DEFAULT_COMPRESSION_LEVEL;
+        config.setCompressionLevel(compressionLevel);
+
+        long compressionMinSize = isValidCompressionMinSize(configOptions.get("compressionMinSize"))
+                ? Long.parseLong(configOptions.get("compressionMinSize"))
+                : DEFAULT_COMPRESSION_MIN_SIZE;
+        config.setCompressionMinSize(compressionMinSize);
+
+        String compressibleTypes = isValidCompressibleTypes(configOptions.get("compressibleTypes"))
+                ? configOptions.get("compressibleTypes")
+                : DEFAULT_COMPRESSIBLE_TYPES;
+        config.setCompressibleTypes(compressibleTypes);
+
+        String precompressed = isValidPrecompressed(configOptions.get("precompressed"))
+                ? configOptions.get("precompressed")
+                : DEFAULT_PRECOMPRESSED;
+        config.setPrecompressed(precompressed);
+
+        int statCacheMaxEntries = isValidStatCacheMaxEntries(configOptions.get("statCacheMaxEntries"))
+                ? Integer.parseInt(configOptions.get("statCacheMaxEntries"))
+                : DEFAULT_STAT_CACHE_MAX_ENTRIES;
+        config.setStatCacheMaxEntries(statCacheMaxEntries);
+
+        long statCacheNegativeTtl = isValidStatCacheNegativeTtl(configOptions.get("statCacheNegativeTtl"))
+                ? Long.parseLong(configOptions.get("statCacheNegativeTtl"))
+                : DEFAULT_STAT_CACHE_NEGATIVE_TTL;
+        config.setStatCacheNegativeTtl(statCacheNegativeTtl);
+
+        Map<String, String> mimeTypeOverrides = new HashMap<>();
+        for (Map.Entry<String, String> configOption : configOptions.entrySet()) {
+            String extension = configOption.getKey();
+            if (extension.startsWith(MIME_TYPE_OVERRIDE_PREFIX) && isValidMimeType(configOption.getValue())) {
+                mimeTypeOverrides.put(extension.substring(MIME_TYPE_OVERRIDE_PREFIX.length()), configOption.getValue());
+            }
+        }
+        config.setMimeTypeOverrides(mimeTypeOverrides);
+
         return config;
     }
 
@@ -168,4 +376,238 @@ public class ConfigProcessor {
 
         return keepAliveTime.matches("\\d+");
     }
+
+    private static boolean isValidQueueCapacity(String queueCapacity) {
+        if (queueCapacity == null) {
+            return false;
+        }
+
+        if (!queueCapacity.matches("\\d{1,9}")) {
+            return false;
+        }
+
+        return Integer.parseInt(queueCapacity) > 0;
+    }
+
+    // 0 disables the deadline
+    private static boolean isValidQueueTimeout(String queueTimeout) {
+        if (queueTimeout == null) {
+            return false;
+        }
+
+        return queueTimeout.matches("\\d{1,9}");
+    }
+
+    private static boolean isValidConnectionIdleTimeout(String connectionIdleTimeout) {
+        if (connectionIdleTimeout == null) {
+            return false;
+        }
+
+        if (!connectionIdleTimeout.matches("\\d+")) {
+            return false;
+        }
+
+        return Integer.parseInt(connectionIdleTimeout) > 0;
+    }
+
+    private static boolean isValidMaxRequestsPerConnection(String maxRequestsPerConnection) {
+        if (maxRequestsPerConnection == null) {
+            return false;
+        }
+
+        if (!maxRequestsPerConnection.matches("\\d+")) {
+            return false;
+        }
+
+        return Integer.parseInt(maxRequestsPerConnection) > 0;
+    }
+
+    private static boolean isValidMaxPipelinedRequests(String maxPipelinedRequests) {
+        if (maxPipelinedRequests == null) {
+            return false;
+        }
+
+        if (!maxPipelinedRequests.matches("\\d{1,4}")) {
+            return false;
+        }
+
+        return Integer.parseInt(maxPipelinedRequests) > 0;
+    }
+
+    private static boolean isValidEngine(String engine) {
+        if (engine == null) {
+            return false;
+        }
+
+        return SUPPORTED_ENGINES.contains(engine);
+    }
+
+    private static boolean isValidEventLoopThreads(String eventLoopThreads) {
+        if (eventLoopThreads == null) {
+            return false;
+        }
+
+        if (!eventLoopThreads.matches("\\d+")) {
+            return false;
+        }
+
+        return Integer.parseInt(eventLoopThreads) > 0;
+    }
+
+    private static boolean isValidExecutor(String executor) {
+        if (executor == null) {
+            return false;
+        }
+
+        return SUPPORTED_EXECUTORS.contains(executor);
+    }
+
+    // 0 disables the cache
+    private static boolean isValidCacheSize(String cacheSize) {
+        if (cacheSize == null) {
+            return false;
+        }
+
+        return cacheSize.matches("\\d{1,18}");
+    }
+
+    private static boolean isValidMimeType(String mimeType) {
+        return mimeType.matches("[\\w.+-]+/[\\w.+-]+");
+    }
+
+    private static boolean isValidGzipStreamingThreshold(String gzipStreamingThreshold) {
+        if (gzipStreamingThreshold == null) {
+            return false;
+        }
+
+        return gzipStreamingThreshold.matches("\\d{1,18}");
+    }
+
+    private static boolean isValidEtag(String etag) {
+        if (etag == null) {
+            return false;
+        }
+
+        return SUPPORTED_ETAGS.contains(etag);
+    }
+
+    private static boolean isValidMmapMaxBytes(String mmapMaxBytes) {
+        if (mmapMaxBytes == null) {
+            return false;
+        }
+
+        return mmapMaxBytes.matches("\\d{1,18}");
+    }
+
+    private static boolean isValidMmapMinFileSize(String mmapMinFileSize) {
+        if (mmapMinFileSize == null) {
+            return false;
+        }
+
+        return mmapMinFileSize.matches("\\d{1,18}") && Long.parseLong(mmapMinFileSize) > 0;
+    }
+
+    private static boolean isValidHttp2(String http2) {
+        if (http2 == null) {
+            return false;
+        }
+
+        return SUPPORTED_HTTP2_MODES.contains(http2);
+    }
+
+    private static boolean isValidListeners(String listeners) {
+        if (listeners == null) {
+            return false;
+        }
+
+        return listeners.matches("\\d{1,3}") && Integer.parseInt(listeners) > 0;
+    }
+
+    private static boolean isValidAcceptorThreads(String acceptorThreads) {
+        if (acceptorThreads == null) {
+            return false;
+        }
+
+        return acceptorThreads.matches("\\d{1,3}") && Integer.parseInt(acceptorThreads) > 0;
+    }
+
+    private static boolean isValidAccessLog(String accessLog) {
+        if (accessLog == null) {
+            return false;
+        }
+
+        return !accessLog.isBlank();
+    }
+
+    private static boolean isValidAccessLogFlushInterval(String accessLogFlushInterval) {
+        if (accessLogFlushInterval == null) {
+            return false;
+        }
+
+        return accessLogFlushInterval.matches("\\d{1,9}") && Long.parseLong(accessLogFlushInterval) > 0;
+    }
+
+    private static boolean isValidAccessLogMaxFileSize(String accessLogMaxFileSize) {
+        if (accessLogMaxFileSize == null) {
+            return false;
+        }
+
+        return accessLogMaxFileSize.matches("\\d{1,18}");
+    }
+
+    private static boolean isValidAccessLogOverflow(String accessLogOverflow) {
+        if (accessLogOverflow == null) {
+            return false;
+        }
+
+        return SUPPORTED_ACCESS_LOG_OVERFLOW_POLICIES.contains(accessLogOverflow);
+    }
+
+    private static boolean isValidCompressionLevel(String compressionLevel) {
+        if (compressionLevel == null) {
+            return false;
+        }
+
+        return compressionLevel.matches("[1-9]");
+    }
+
+    private static boolean isValidCompressionMinSize(String compressionMinSize) {
+        if (compressionMinSize == null) {
+            return false;
+        }
+
+        return compressionMinSize.matches("\\d{1,18}");
+    }
+
+    private static boolean isValidCompressibleTypes(String compressibleTypes) {
+        if (compressibleTypes == null) {
+            return false;
+        }
+
+        return compressibleTypes.matches("[\\w.+-]+/[\\w.+*-]+(,[\\w.+-]+/[\\w.+*-]+)*");
+    }
+
+    private static boolean isValidPrecompressed(String precompressed) {
+        if (precompressed == null) {
+            return false;
+        }
+
+        return SUPPORTED_PRECOMPRESSED_CODINGS.contains(precompressed);
+    }
+
+    private static boolean isValidStatCacheMaxEntries(String statCacheMaxEntries) {
+        if (statCacheMaxEntries == null) {
+            return false;
+        }
+
+        return statCacheMaxEntries.matches("\\d{1,9}");
+    }
+
+    private static boolean isValidStatCacheNegativeTtl(String statCacheNegativeTtl) {
+        if (statCacheNegativeTtl == null) {
+            return false;
+        }
+
+        return statCacheNegativeTtl.matches("\\d{1,18}");
+    }
 }
@@ -0,0 +1,56 @@
+package com.johnpapadatos;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+// Pool of Deflaters sharing a level and a format. A Deflater holds a few
+// hundred KiB of native zlib state that is only freed by end(), so instead of
+// one per response, released deflaters are reset and handed out again. At
+// most maxIdle of them are kept, the extra ones are ended right away.
+public class DeflaterPool {
+    private final int level;
+    private final boolean nowrap; // Raw deflate stream, without the zlib header and checksum
+    private final int maxIdle;
+    private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+
+    public DeflaterPool(int level, boolean nowrap, int maxIdle) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.maxIdle = maxIdle;
+    }
+
+    public Deflater acquire() {
+        Deflater deflater = idle.poll();
+        if (deflater != null) {
+            idleCount.decrementAndGet();
+            return deflater;
+        }
+        created.increment();
+        return new Deflater(level, nowrap);
+    }
+
+    // The deflater must not be used after it has been released.
+    public void release(Deflater deflater) {
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        idle.offer(deflater);
+    }
+
+    // Deflaters allocated because none was idle.
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public int getIdle() {
+        return idleCount.get();
+    }
+}
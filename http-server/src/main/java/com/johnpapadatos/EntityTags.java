@@ -0,0 +1,134 @@
+package com.johnpapadatos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Generates the ETag of a file and compares it against conditional request
+// headers. Weak tags are derived from the file size and modification time
+// alone. Strong tags hash the contents, once per version of the file: the
+// hash is cached and recomputed only when the size or modification time
+// changes. Hashing runs on the request thread, so only files up to
+// MAX_HASHED_FILE_SIZE are hashed, larger ones such as the media files
+// that range requests are made for get a strong tag from their size and
+// modification time.
+public class EntityTags {
+    private static final int MAX_CACHED_HASHES = 10_000;
+    private static final long MAX_HASHED_FILE_SIZE = 1024 * 1024;
+    private static final int HASH_BYTES = 16;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final String mode;
+    private final BufferPool bufferPool;
+    private final WeightedTinyLfuMap<String, ContentHash> contentHashes = new WeightedTinyLfuMap<>(
+            MAX_CACHED_HASHES, 1, contentHash -> 1);
+
+    public EntityTags(String mode, BufferPool bufferPool) {
+        this.mode = mode;
+        this.bufferPool = bufferPool;
+    }
+
+    // Returns the ETag of the unencoded file, or null when ETags are disabled.
+    public String getEntityTag(File file, long lastModified, long fileSize) throws IOException {
+        return switch (mode) {
+            case "weak" -> "W/" + getFileVersion(lastModified, fileSize);
+            case "strong" -> fileSize <= MAX_HASHED_FILE_SIZE
+                    ? "\"" + getContentHash(file, lastModified, fileSize) + "\""
+                    : getFileVersion(lastModified, fileSize);
+            default -> null;
+        };
+    }
+
+    // Each content coding is a different representation and needs its own tag.
+    public static String forContentCoding(String entityTag, String contentCoding) {
+        if (entityTag == null || contentCoding == null) {
+            return entityTag;
+        }
+        return entityTag.substring(0, entityTag.length() - 1) + "-" + contentCoding + "\"";
+    }
+
+    // Weak comparison against an If-None-Match list (RFC 9110, section 8.8.3.2).
+    public static boolean matchesAny(String entityTags, String entityTag) {
+        if (entityTags.strip().equals("*")) {
+            return true;
+        }
+        if (entityTag == null) {
+            return false;
+        }
+
+        String opaqueTag = stripWeakPrefix(entityTag);
+        for (String candidate : entityTags.split(",")) {
+            if (stripWeakPrefix(candidate.strip()).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Strong comparison as required by If-Range: weak tags never match.
+    public static boolean matchesStrongly(String candidate, String entityTag) {
+        return entityTag != null && !entityTag.startsWith("W/") && candidate.strip().equals(entityTag);
+    }
+
+    private static String stripWeakPrefix(String entityTag) {
+        return entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+    }
+
+    private static String getFileVersion(long lastModified, long fileSize) {
+        return "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private String getContentHash(File file, long lastModified, long fileSize) throws IOException {
+        String path = file.getPath();
+        contentHashes.recordAccess(path);
+        ContentHash contentHash = contentHashes.get(path);
+        if (contentHash != null && contentHash.lastModified == lastModified && contentHash.fileSize == fileSize) {
+            return contentHash.hash;
+        }
+
+        contentHash = new ContentHash(hashContents(file), lastModified, fileSize);
+        contentHashes.put(path, contentHash);
+        return contentHash.hash;
+    }
+
+    private String hashContents(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = bufferPool.acquire(READ_BUFFER_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(file.toPath())) {
+            while (fileChannel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        byte[] hash = Arrays.copyOf(digest.digest(), HASH_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform.", e);
+        }
+    }
+
+    private static class ContentHash {
+        private final String hash;
+        private final long lastModified;
+        private final long fileSize;
+
+        ContentHash(String hash, long lastModified, long fileSize) {
+            this.hash = hash;
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+        }
+    }
+}
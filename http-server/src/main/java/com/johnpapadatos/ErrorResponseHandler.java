@@ -2,45 +2,100 @@ package com.johnpapadatos;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class ErrorResponseHandler {
-    private static final String CRLF = "\r\n";
+    private static final int RETRY_AFTER = 1; // Seconds
+
+    // Serialized once, so shedding a connection under overload costs a single
+    // write instead of building a response.
+    private static final byte[] SERVICE_UNAVAILABLE = serialize(build503ErrorResponse());
+
+    // The response to every RequestError, with its head encoded once for a
+    // connection that closes and once for one that stays open. The responses
+    // built from them share their headers, head and body bytes.
+    private static final Map<RequestError, HttpResponse> CLOSE_RESPONSES = new EnumMap<>(RequestError.class);
+    private static final Map<RequestError, HttpResponse> KEEP_ALIVE_RESPONSES = new EnumMap<>(RequestError.class);
+
+    static {
+        for (RequestError error : RequestError.values()) {
+            CLOSE_RESPONSES.put(error, buildEncodedResponse(error, "close"));
+            KEEP_ALIVE_RESPONSES.put(error, buildEncodedResponse(error, "keep-alive"));
+        }
+    }
 
     private ErrorResponseHandler() {
     }
 
-    public static void send400ErrorResponse(OutputStream out, String message) throws IOException {
-        String response = buildErrorResponse("400", "Bad Request", message);
-        out.write(response.getBytes());
-        out.flush();
+    // The response closes the connection.
+    public static HttpResponse buildErrorResponse(RequestError error) {
+        return buildErrorResponse(error, false);
     }
 
-    public static void send404ErrorResponse(OutputStream out, String message) throws IOException {
-        String response = buildErrorResponse("404", "Not Found", message);
-        out.write(response.getBytes());
-        out.flush();
+    // Costs a response and a body around the shared encoded bytes, the head
+    // is written as it is. The response must not be modified.
+    public static HttpResponse buildErrorResponse(RequestError error, boolean keepAlive) {
+        HttpResponse encodedResponse = (keepAlive ? KEEP_ALIVE_RESPONSES : CLOSE_RESPONSES).get(error);
+        byte[] body = ((ByteArrayBody) encodedResponse.getBody()).getBytes();
+        return new HttpResponse(encodedResponse, new ByteArrayBody(body));
     }
 
-    public static void send405ErrorResponse(OutputStream out, String message) throws IOException {
-        String response = buildErrorResponse("405", "Method Not Allowed", message);
-        out.write(response.getBytes());
-        out.flush();
+    // Sent through the normal response path, so the connection stays open.
+    public static HttpResponse build416ErrorResponse(String message, long fileSize) {
+        HttpResponse httpResponse = buildErrorResponse("416", "Range Not Satisfiable", message);
+        httpResponse.setHeader("Content-Range", "bytes */" + fileSize);
+        return httpResponse;
+    }
+
+    public static HttpResponse build500ErrorResponse(String message) {
+        return buildErrorResponse("500", "Internal Server Error", message);
+    }
+
+    public static HttpResponse build503ErrorResponse() {
+        HttpResponse httpResponse = buildErrorResponse("503", "Service Unavailable",
+                "The server is overloaded, retry later.");
+        httpResponse.setHeader("Retry-After", Integer.toString(RETRY_AFTER));
+        return httpResponse;
     }
 
-    public static void send500ErrorResponse(OutputStream out, String message) throws IOException {
-        String response = buildErrorResponse("500", "Internal Server Error", message);
-        out.write(response.getBytes());
+    public static void write503ErrorResponse(OutputStream out) throws IOException {
+        out.write(SERVICE_UNAVAILABLE);
         out.flush();
     }
 
-    private static String buildErrorResponse(String statusCode, String reasonPhrase, String message) {
-        StringBuilder response = new StringBuilder();
-        response.append("HTTP/1.1").append(" ").append(statusCode).append(" ").append(reasonPhrase).append(CRLF);
-        response.append("Content-Type: text/plain").append(CRLF);
-        response.append("Content-Length: ").append(message.length()).append(CRLF);
-        response.append("Connection: close").append(CRLF);
-        response.append(CRLF);
-        response.append(message);
-        return response.toString();
+    private static byte[] serialize(HttpResponse httpResponse) {
+        byte[] head = httpResponse.getHeadAsBytes();
+        byte[] body = ((ByteArrayBody) httpResponse.getBody()).getBytes();
+        byte[] bytes = new byte[head.length + body.length];
+        System.arraycopy(head, 0, bytes, 0, head.length);
+        System.arraycopy(body, 0, bytes, head.length, body.length);
+        return bytes;
+    }
+
+    private static HttpResponse buildEncodedResponse(RequestError error, String connection) {
+        HttpResponse httpResponse = buildErrorResponse(error.getStatusCode(), error.getReasonPhrase(),
+                error.getMessage());
+        httpResponse.setHeader("Connection", connection);
+        if (error == RequestError.METHOD_NOT_ALLOWED) {
+            httpResponse.setHeader("Allow", "GET");
+        }
+        httpResponse.setEncodedHead(httpResponse.getHeadAsBytes());
+        return httpResponse;
+    }
+
+    private static HttpResponse buildErrorResponse(String statusCode, String reasonPhrase, String message) {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode(statusCode);
+        httpResponse.setReasonPhrase(reasonPhrase);
+        httpResponse.setHeader("Content-Type", "text/plain");
+        httpResponse.setContentLength(body.length);
+        httpResponse.setHeader("Connection", "close");
+        httpResponse.setBody(new ByteArrayBody(body));
+        return httpResponse;
     }
 }
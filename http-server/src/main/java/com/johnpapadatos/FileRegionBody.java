@@ -0,0 +1,54 @@
+package com.johnpapadatos;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+// Sends a region of a file with FileChannel.transferTo, which the JDK maps to
+// sendfile(2) when the target is a socket channel, so the file contents never
+// enter the Java heap.
+public class FileRegionBody implements ResponseBody {
+    private final FileChannel fileChannel;
+    private final long count;
+    private long position;
+    private long remaining;
+
+    public FileRegionBody(FileChannel fileChannel, long position, long count) {
+        this.fileChannel = fileChannel;
+        this.count = count;
+        this.position = position;
+        this.remaining = count;
+    }
+
+    @Override
+    public long getLength() {
+        return count;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (remaining > 0) {
+            long transferred = fileChannel.transferTo(position, remaining, channel);
+            if (transferred == 0) {
+                if (position >= fileChannel.size()) {
+                    throw new EOFException("File truncated while being sent.");
+                }
+                return false; // Socket send buffer is full
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "FileRegionBody [position=" + position + ", remaining=" + remaining + "]";
+    }
+}
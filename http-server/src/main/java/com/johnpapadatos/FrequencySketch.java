@@ -0,0 +1,81 @@
+package com.johnpapadatos;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Count-min sketch estimating how often each key was requested recently
+// (TinyLFU). Counters saturate at 15 and are halved once enough increments
+// have been recorded, so old popularity fades away.
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0xc2b2ae35, 0x5bd1e995, 0x27d4eb2f };
+
+    private final AtomicIntegerArray counters;
+    private final int widthMask;
+    private final int sampleSize;
+    private final LongAdder additions = new LongAdder();
+
+    public FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) * 2);
+        this.counters = new AtomicIntegerArray(DEPTH * width);
+        this.widthMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            added |= incrementAt(indexOf(hash, i));
+        }
+
+        if (added) {
+            additions.increment();
+            if (additions.sum() >= sampleSize) {
+                reset();
+            }
+        }
+    }
+
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters.get(indexOf(hash, i)));
+        }
+        return frequency;
+    }
+
+    private boolean incrementAt(int index) {
+        int count;
+        do {
+            count = counters.get(index);
+            if (count == MAX_COUNT) {
+                return false;
+            }
+        } while (!counters.compareAndSet(index, count, count + 1));
+        return true;
+    }
+
+    // Halves every counter; concurrent increments may be lost, which only
+    // makes the estimate slightly less accurate.
+    private void reset() {
+        additions.reset();
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+    }
+
+    private int indexOf(int hash, int depth) {
+        int h = (hash ^ SEEDS[depth]) * SEEDS[depth];
+        h ^= h >>> 17;
+        return depth * (widthMask + 1) + (h & widthMask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        return hash ^ (hash >>> 16);
+    }
+}
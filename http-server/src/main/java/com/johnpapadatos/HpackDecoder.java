@@ -0,0 +1,115 @@
+package com.johnpapadatos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.johnpapadatos.exceptions.Http2Exception;
+
+// Decodes the header blocks of a connection (RFC 7541, section 6). The
+// dynamic table carries over from one block to the next, so blocks must be
+// decoded in the order they arrive, and a failure leaves the table out of
+// sync with the peer, which makes it a connection error.
+public class HpackDecoder {
+    private final HpackTable table = new HpackTable();
+    private final int maxTableSize; // Advertised with SETTINGS_HEADER_TABLE_SIZE
+    private final int maxHeaderListSize;
+    private byte[] block;
+    private int position;
+    private int limit;
+
+    public HpackDecoder(int maxTableSize, int maxHeaderListSize) {
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+        table.setMaxSize(maxTableSize);
+    }
+
+    // Returns the name and value of every field, in order.
+    public List<String[]> decode(byte[] block, int offset, int length) throws Http2Exception {
+        this.block = block;
+        this.position = offset;
+        this.limit = offset + length;
+
+        List<String[]> fields = new ArrayList<>();
+        int headerListSize = 0;
+        while (position < limit) {
+            int b = block[position] & 0xff;
+            String[] field;
+            if ((b & 0x80) != 0) { // Indexed field
+                field = table.get(readInteger(7));
+            } else if ((b & 0x40) != 0) { // Literal with incremental indexing
+                field = readLiteral(6);
+                table.add(field[0], field[1]);
+            } else if ((b & 0x20) != 0) { // Dynamic table size update
+                if (!fields.isEmpty()) {
+                    throw new Http2Exception(Http2Frame.COMPRESSION_ERROR, "Table size update after a header field.");
+                }
+                int newSize = readInteger(5);
+                if (newSize > maxTableSize) {
+                    throw new Http2Exception(Http2Frame.COMPRESSION_ERROR, "Table size " + newSize + " too large.");
+                }
+                table.setMaxSize(newSize);
+                continue;
+            } else { // Literal without indexing, or never indexed
+                field = readLiteral(4);
+            }
+
+            headerListSize += field[0].length() + field[1].length() + 32;
+            if (headerListSize > maxHeaderListSize) {
+                throw new Http2Exception(Http2Frame.ENHANCE_YOUR_CALM, "Header list too large.");
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    // The name is either indexed or a literal string following the prefix.
+    private String[] readLiteral(int prefixBits) throws Http2Exception {
+        int nameIndex = readInteger(prefixBits);
+        String name = nameIndex == 0 ? readString() : table.get(nameIndex)[0];
+        return new String[] { name, readString() };
+    }
+
+    // Integers with an N-bit prefix (RFC 7541, section 5.1).
+    private int readInteger(int prefixBits) throws Http2Exception {
+        int mask = (1 << prefixBits) - 1;
+        int value = readByte() & mask;
+        if (value < mask) {
+            return value;
+        }
+
+        for (int shift = 0; shift <= 21; shift += 7) {
+            int b = readByte();
+            value += (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new Http2Exception(Http2Frame.COMPRESSION_ERROR, "Integer too large.");
+    }
+
+    private String readString() throws Http2Exception {
+        boolean huffman = position < limit && (block[position] & 0x80) != 0;
+        int length = readInteger(7);
+        if (length > limit - position) {
+            throw new Http2Exception(Http2Frame.COMPRESSION_ERROR, "String longer than the header block.");
+        }
+
+        String string = huffman
+                ? HpackHuffman.decode(block, position, length)
+                : new String(block, position, length, StandardCharsets.ISO_8859_1);
+        position += length;
+        return string;
+    }
+
+    private int readByte() throws Http2Exception {
+        if (position >= limit) {
+            throw new Http2Exception(Http2Frame.COMPRESSION_ERROR, "Truncated header block.");
+        }
+        return block[position++] & 0xff;
+    }
+
+    public int getTableSize() {
+        return table.getSize();
+    }
+}
@@ -0,0 +1,155 @@
+package com.johnpapadatos;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Encodes response heads into HPACK header blocks (RFC 7541). Headers that
+// repeat across responses, such as Content-Type or Accept-Ranges, are added
+// to the dynamic table and shrink to a single byte once the client has seen
+// them, the values that change on every response are sent as literals that
+// do not churn the table. Strings are Huffman-coded when that is shorter.
+//
+// The dynamic table must evolve in the same order on both sides, so blocks
+// have to be written to the connection in the order they were encoded.
+public class HpackEncoder {
+    private static final int INITIAL_BLOCK_SIZE = 512;
+
+    // Meaningless in HTTP/2, where the framing layer replaces them
+    private static final Set<String> CONNECTION_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+    private static final Set<String> UNINDEXED_HEADERS = Set.of(
+            "content-length", "content-range", "date", "etag", "last-modified");
+    private static final Map<String, String> LOWER_CASE_NAMES = new HashMap<>();
+
+    static {
+        String[] headerNames = {
+                "Accept-Ranges", "Connection", "Content-Disposition", "Content-Encoding", "Content-Length",
+                "Content-Range", "Content-Type", "ETag", "Last-Modified", "Retry-After", "Transfer-Encoding",
+                "Vary" };
+        for (String headerName : headerNames) {
+            LOWER_CASE_NAMES.put(headerName, headerName.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private final HpackTable table = new HpackTable();
+    private int minTableSizeUpdate = -1; // Smallest size set since the last block, -1 if unchanged
+    private byte[] block = new byte[INITIAL_BLOCK_SIZE];
+    private int length;
+
+    // Follows SETTINGS_HEADER_TABLE_SIZE of the peer, but never uses more than
+    // the default size.
+    public void setMaxTableSize(int peerMaxTableSize) {
+        int maxTableSize = Math.min(peerMaxTableSize, HpackTable.DEFAULT_MAX_SIZE);
+        if (maxTableSize != table.getMaxSize()) {
+            table.setMaxSize(maxTableSize);
+            minTableSizeUpdate = minTableSizeUpdate == -1 ? maxTableSize : Math.min(minTableSizeUpdate, maxTableSize);
+        }
+    }
+
+    // The returned buffer is only valid until the next call.
+    public ByteBuffer encode(HttpResponse httpResponse) {
+        length = 0;
+        if (minTableSizeUpdate != -1) {
+            // A decrease followed by an increase must announce both
+            if (minTableSizeUpdate < table.getMaxSize()) {
+                writeInteger(minTableSizeUpdate, 5, 0x20);
+            }
+            writeInteger(table.getMaxSize(), 5, 0x20);
+            minTableSizeUpdate = -1;
+        }
+
+        writeField(":status", httpResponse.getStatusCode());
+        for (Map.Entry<String, String> header : httpResponse.headerEntries()) {
+            String name = LOWER_CASE_NAMES.get(header.getKey());
+            if (name == null) {
+                name = header.getKey().toLowerCase(Locale.ROOT);
+            }
+            if (!CONNECTION_HEADERS.contains(name)) {
+                writeField(name, toOctets(header.getValue()));
+            }
+        }
+        if (httpResponse.getContentLength() >= 0) {
+            writeField("content-length", Long.toString(httpResponse.getContentLength()));
+        }
+        return ByteBuffer.wrap(block, 0, length);
+    }
+
+    private void writeField(String name, String value) {
+        int index = table.indexOf(name, value);
+        if (index > 0) {
+            writeInteger(index, 7, 0x80);
+            return;
+        }
+
+        int nameIndex = -index;
+        boolean indexing = !UNINDEXED_HEADERS.contains(name);
+        if (indexing) {
+            writeInteger(nameIndex, 6, 0x40);
+        } else {
+            writeInteger(nameIndex, 4, 0x00);
+        }
+        if (nameIndex == 0) {
+            writeString(name);
+        }
+        writeString(value);
+        if (indexing) {
+            table.add(name, value);
+        }
+    }
+
+    private void writeString(String string) {
+        byte[] octets = string.getBytes(StandardCharsets.ISO_8859_1);
+        int huffmanLength = HpackHuffman.encodedLength(octets);
+        if (huffmanLength < octets.length) {
+            writeInteger(huffmanLength, 7, 0x80);
+            ensureCapacity(huffmanLength);
+            length = HpackHuffman.encode(octets, block, length);
+        } else {
+            writeInteger(octets.length, 7, 0x00);
+            ensureCapacity(octets.length);
+            System.arraycopy(octets, 0, block, length, octets.length);
+            length += octets.length;
+        }
+    }
+
+    // Integers with an N-bit prefix (RFC 7541, section 5.1), the bits above
+    // the prefix of the first byte hold the representation type.
+    private void writeInteger(int value, int prefixBits, int firstByteFlags) {
+        ensureCapacity(6);
+        int mask = (1 << prefixBits) - 1;
+        if (value < mask) {
+            block[length++] = (byte) (firstByteFlags | value);
+            return;
+        }
+
+        block[length++] = (byte) (firstByteFlags | mask);
+        value -= mask;
+        while (value >= 0x80) {
+            block[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        block[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (block.length - length < needed) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, length + needed));
+        }
+    }
+
+    // Header values are ASCII in practice. Anything else, e.g. a non-ASCII
+    // filename, is sent as UTF-8, one char per octet from here on.
+    private static String toOctets(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,125 @@
+package com.johnpapadatos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.johnpapadatos.exceptions.Http2Exception;
+
+// The header table of HPACK (RFC 7541, section 2.3): the 61 static entries
+// followed by the dynamic entries, newest first. Each side of a connection
+// keeps one per direction, the decoder mirrors the peer's encoder and the
+// encoder mirrors the peer's decoder.
+public class HpackTable {
+    public static final int DEFAULT_MAX_SIZE = 4096;
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private static final String[][] STATIC_TABLE = {
+            { ":authority", "" }, { ":method", "GET" }, { ":method", "POST" }, { ":path", "/" },
+            { ":path", "/index.html" }, { ":scheme", "http" }, { ":scheme", "https" }, { ":status", "200" },
+            { ":status", "204" }, { ":status", "206" }, { ":status", "304" }, { ":status", "400" },
+            { ":status", "404" }, { ":status", "500" }, { "accept-charset", "" }, { "accept-encoding", "gzip, deflate" },
+            { "accept-language", "" }, { "accept-ranges", "" }, { "accept", "" },
+            { "access-control-allow-origin", "" }, { "age", "" }, { "allow", "" }, { "authorization", "" },
+            { "cache-control", "" }, { "content-disposition", "" }, { "content-encoding", "" },
+            { "content-language", "" }, { "content-length", "" }, { "content-location", "" },
+            { "content-range", "" }, { "content-type", "" }, { "cookie", "" }, { "date", "" }, { "etag", "" },
+            { "expect", "" }, { "expires", "" }, { "from", "" }, { "host", "" }, { "if-match", "" },
+            { "if-modified-since", "" }, { "if-none-match", "" }, { "if-range", "" }, { "if-unmodified-since", "" },
+            { "last-modified", "" }, { "link", "" }, { "location", "" }, { "max-forwards", "" },
+            { "proxy-authenticate", "" }, { "proxy-authorization", "" }, { "range", "" }, { "referer", "" },
+            { "refresh", "" }, { "retry-after", "" }, { "server", "" }, { "set-cookie", "" },
+            { "strict-transport-security", "" }, { "transfer-encoding", "" }, { "user-agent", "" }, { "vary", "" },
+            { "via", "" }, { "www-authenticate", "" }
+    };
+    private static final Map<String, Integer> STATIC_NAME_INDEXES = new HashMap<>();
+    private static final Map<String, Integer> STATIC_FIELD_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) { // The lowest index wins
+            STATIC_NAME_INDEXES.put(STATIC_TABLE[i][0], i + 1);
+            STATIC_FIELD_INDEXES.put(STATIC_TABLE[i][0] + '\0' + STATIC_TABLE[i][1], i + 1);
+        }
+    }
+
+    private final List<String[]> dynamicEntries = new ArrayList<>(); // Oldest first
+    private int size;
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    // The name and value at a 1-based index.
+    public String[] get(int index) throws Http2Exception {
+        if (index >= 1 && index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1];
+        }
+
+        int dynamicIndex = index - STATIC_TABLE.length;
+        if (index < 1 || dynamicIndex > dynamicEntries.size()) {
+            throw new Http2Exception(Http2Frame.COMPRESSION_ERROR, "Invalid header table index " + index + ".");
+        }
+        return dynamicEntries.get(dynamicEntries.size() - dynamicIndex);
+    }
+
+    // Returns the index of an entry with the same name and value, or the
+    // negated index of one with the same name only, or 0.
+    public int indexOf(String name, String value) {
+        Integer staticIndex = STATIC_FIELD_INDEXES.get(name + '\0' + value);
+        if (staticIndex != null) {
+            return staticIndex;
+        }
+
+        int nameIndex = -STATIC_NAME_INDEXES.getOrDefault(name, 0);
+        for (int i = dynamicEntries.size() - 1; i >= 0; i--) {
+            String[] entry = dynamicEntries.get(i);
+            if (entry[0].equals(name)) {
+                int index = STATIC_TABLE.length + dynamicEntries.size() - i;
+                if (entry[1].equals(value)) {
+                    return index;
+                } else if (nameIndex == 0) {
+                    nameIndex = -index;
+                }
+            }
+        }
+        return nameIndex;
+    }
+
+    // An entry larger than the whole table empties it and is not added.
+    public void add(String name, String value) {
+        int entrySize = sizeOf(name, value);
+        evict(maxSize - entrySize);
+        if (entrySize <= maxSize) {
+            dynamicEntries.add(new String[] { name, value });
+            size += entrySize;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getLength() {
+        return dynamicEntries.size();
+    }
+
+    private void evict(int targetSize) {
+        while (size > targetSize && !dynamicEntries.isEmpty()) {
+            String[] oldest = dynamicEntries.remove(0);
+            size -= sizeOf(oldest[0], oldest[1]);
+        }
+    }
+
+    // Octets of the name and value plus the fixed overhead of an entry. Names
+    // and values are ISO-8859-1, one char per octet.
+    private static int sizeOf(String name, String value) {
+        return name.length() + value.length() + ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,946 @@
+package com.johnpapadatos;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import com.johnpapadatos.exceptions.Http2Exception;
+
+// Serves a cleartext HTTP/2 connection (RFC 9113) of the blocking engine,
+// started with prior knowledge or upgraded from HTTP/1.1 with "Upgrade: h2c".
+//
+// The connection's own thread reads and dispatches frames. Every request
+// stream is answered by a task of the server's executor through the shared
+// HttpRequestHandler, so streams of the same connection are processed in
+// parallel, and are queued, shed and measured like connections are. A stream
+// that is shed is refused with RST_STREAM, which the client may retry. Frames are written
+// one at a time under a write lock, which interleaves the responses of all
+// streams on the wire. The state of the connection and its streams has a
+// lock of its own that is never held during a write, so a client that is
+// slow to read cannot keep the reading thread from applying its
+// WINDOW_UPDATE and SETTINGS frames.
+public class Http2Connection {
+    public static final String VERSION = "HTTP/2";
+    public static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SWITCHING_PROTOCOLS = ("HTTP/1.1 101 Switching Protocols\r\n"
+            + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_CONCURRENT_STREAMS = 100;
+    private static final int MAX_HEADER_LIST_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final Set<String> CONNECTION_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    // Request headers are looked up under the names HTTP/1.1 clients send
+    private static final Map<String, String> CANONICAL_HEADER_NAMES = Arrays
+            .stream(IncrementalHttpRequestParser.KNOWN_HEADER_NAMES)
+            .collect(Collectors.toMap(name -> name.toLowerCase(Locale.ROOT), name -> name));
+
+    private final Socket socket;
+    private final InputStream in;
+    private final WritableByteChannel out;
+    private final ExecutorService threadPool;
+    private final HttpRequestHandler httpRequestHandler;
+    private final Metrics metrics;
+    private final AccessLog accessLog;
+    private final String remoteAddress;
+    private final HpackDecoder decoder = new HpackDecoder(HpackTable.DEFAULT_MAX_SIZE, MAX_HEADER_LIST_SIZE);
+
+    // Only used by the reading thread
+    private int lastStreamId;
+    private Stream continuedStream; // Its header block goes on in CONTINUATION frames
+    private byte[] headerBlock;
+    private boolean headerBlockEndsStream;
+
+    // Header table sizes set by the client, applied to the encoder before the
+    // next header block
+    private final Queue<Integer> headerTableSizes = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    // Guards the fields below and every write to the connection. Taken
+    // before the lock when both are needed
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final HpackEncoder encoder = new HpackEncoder();
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(Http2Frame.HEADER_SIZE);
+    private final ByteBuffer[] frame = new ByteBuffer[2];
+
+    // Guards the fields below
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition windowUpdated = lock.newCondition();
+    private final Map<Integer, Stream> streams = new HashMap<>();
+    private int sendWindow = Http2Frame.DEFAULT_WINDOW_SIZE;
+    private int initialStreamWindow = Http2Frame.DEFAULT_WINDOW_SIZE;
+    private int peerMaxFrameSize = Http2Frame.DEFAULT_MAX_FRAME_SIZE;
+    private boolean goAwayReceived;
+
+    // The input may start with bytes the HTTP/1.1 parser had already read.
+    public Http2Connection(Socket socket, InputStream in, WritableByteChannel out, ExecutorService threadPool,
+            HttpRequestHandler httpRequestHandler) {
+        this.socket = socket;
+        this.in = new BufferedInputStream(in, READ_BUFFER_SIZE);
+        this.out = out;
+        this.threadPool = threadPool;
+        this.httpRequestHandler = httpRequestHandler;
+        this.metrics = httpRequestHandler.getMetrics();
+        this.accessLog = httpRequestHandler.getAccessLog();
+        this.remoteAddress = accessLog.isAccessEnabled() ? socket.getInetAddress().getHostAddress() : "-";
+    }
+
+    // An HTTP/1.1 request asking to continue over HTTP/2 (RFC 7540, section 3.2).
+    public static boolean isUpgradeRequest(HttpRequest httpRequest) {
+        return hasToken(httpRequest.getHeader("Upgrade"), "h2c")
+                && hasToken(httpRequest.getHeader("Connection"), "Upgrade")
+                && decodeUpgradeSettings(httpRequest.getHeader("HTTP2-Settings")) != null;
+    }
+
+    private static boolean hasToken(String headerValue, String token) {
+        if (headerValue == null) {
+            return false;
+        }
+
+        for (String option : headerValue.split(",")) {
+            if (option.strip().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The payload of a SETTINGS frame, base64url-encoded. Returns null if invalid.
+    private static byte[] decodeUpgradeSettings(String http2Settings) {
+        if (http2Settings == null) {
+            return null;
+        }
+
+        try {
+            byte[] settings = Base64.getUrlDecoder().decode(http2Settings.strip());
+            return settings.length % 6 == 0 ? settings : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Runs until the connection is closed. An upgrade request, if any, is
+    // answered on stream 1 once the switch to HTTP/2 has been confirmed.
+    public void serve(HttpRequest upgradeRequest) throws IOException {
+        try {
+            if (upgradeRequest != null) {
+                writeFully(ByteBuffer.wrap(SWITCHING_PROTOCOLS));
+            }
+            writeSettings();
+            if (upgradeRequest != null) {
+                applySettings(decodeUpgradeSettings(upgradeRequest.getHeader("HTTP2-Settings")));
+                upgradeRequest.setVersion(VERSION);
+                Stream stream = openStream(1);
+                stream.httpRequest = upgradeRequest;
+                dispatch(stream);
+            }
+            readPreface();
+            readFrames();
+        } catch (Http2Exception e) {
+            writeGoAway(e.getErrorCode(), e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    private void readPreface() throws IOException {
+        byte[] preface = in.readNBytes(PREFACE.length);
+        if (!Arrays.equals(preface, PREFACE)) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Invalid connection preface.");
+        }
+    }
+
+    private void readFrames() throws IOException {
+        while (true) {
+            Http2Frame frame;
+            try {
+                frame = Http2Frame.read(in, Http2Frame.DEFAULT_MAX_FRAME_SIZE);
+            } catch (SocketTimeoutException e) {
+                if (hasActiveStreams()) {
+                    continue; // Only the responses are moving
+                }
+                writeGoAway(Http2Frame.NO_ERROR, "Idle timeout.");
+                return;
+            }
+            if (frame == null) {
+                return;
+            }
+
+            try {
+                handleFrame(frame);
+            } catch (Http2Exception e) {
+                if (e.isConnectionError()) {
+                    throw e;
+                }
+                resetStream(e.getStreamId(), e.getErrorCode());
+            }
+        }
+    }
+
+    private void handleFrame(Http2Frame frame) throws IOException {
+        if (continuedStream != null
+                && (frame.getType() != Http2Frame.CONTINUATION || frame.getStreamId() != continuedStream.id)) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Header block interrupted by another frame.");
+        }
+
+        switch (frame.getType()) {
+            case Http2Frame.DATA -> handleData(frame);
+            case Http2Frame.HEADERS -> handleHeaders(frame);
+            case Http2Frame.PRIORITY -> handlePriority(frame);
+            case Http2Frame.RST_STREAM -> handleRstStream(frame);
+            case Http2Frame.SETTINGS -> handleSettings(frame);
+            case Http2Frame.PUSH_PROMISE -> throw new Http2Exception(Http2Frame.PROTOCOL_ERROR,
+                    "Clients cannot push.");
+            case Http2Frame.PING -> handlePing(frame);
+            case Http2Frame.GOAWAY -> handleGoAway(frame);
+            case Http2Frame.WINDOW_UPDATE -> handleWindowUpdate(frame);
+            case Http2Frame.CONTINUATION -> handleContinuation(frame);
+            default -> {
+                // Unknown frame types are ignored
+            }
+        }
+    }
+
+    // Request bodies are not used, every GET is answered from its headers. The
+    // received bytes are credited back right away, so uploads never stall.
+    private void handleData(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        if (streamId == 0 || streamId > lastStreamId) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "DATA frame on idle stream " + streamId + ".");
+        }
+        byte[] payload = frame.getPayload();
+        removePadding(frame, 0);
+        if (payload.length > 0) {
+            writeWindowUpdate(0, payload.length);
+        }
+
+        Stream stream = getStream(streamId);
+        if (stream == null || !stream.receiving) {
+            throw new Http2Exception(Http2Frame.STREAM_CLOSED, streamId, "DATA frame on a closed stream.");
+        }
+        if (frame.hasFlag(Http2Frame.FLAG_END_STREAM)) {
+            stream.receiving = false;
+            dispatch(stream);
+        } else if (payload.length > 0) {
+            writeWindowUpdate(streamId, payload.length);
+        }
+    }
+
+    private void handleHeaders(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        if (streamId == 0 || streamId % 2 == 0) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Invalid stream identifier " + streamId + ".");
+        }
+
+        byte[] payload = frame.getPayload();
+        int priorityLength = frame.hasFlag(Http2Frame.FLAG_PRIORITY) ? 5 : 0;
+        int end = removePadding(frame, priorityLength);
+        if (end > MAX_HEADER_LIST_SIZE) {
+            throw new Http2Exception(Http2Frame.ENHANCE_YOUR_CALM, "Header block too large.");
+        }
+        byte[] fragment = Arrays.copyOfRange(payload, priorityLength + (frame.hasFlag(Http2Frame.FLAG_PADDED) ? 1 : 0),
+                end);
+        boolean endStream = frame.hasFlag(Http2Frame.FLAG_END_STREAM);
+
+        Stream stream = getStream(streamId);
+        if (stream == null) {
+            if (streamId <= lastStreamId) {
+                throw new Http2Exception(Http2Frame.STREAM_CLOSED, "HEADERS frame on closed stream " + streamId + ".");
+            }
+            lastStreamId = streamId;
+            stream = new Stream(streamId); // Opened once the header block is complete
+        }
+
+        if (frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            handleHeaderBlock(stream, fragment, endStream);
+        } else {
+            continuedStream = stream;
+            headerBlock = fragment;
+            headerBlockEndsStream = endStream;
+        }
+    }
+
+    private void handleContinuation(Http2Frame frame) throws IOException {
+        if (continuedStream == null) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "CONTINUATION frame without HEADERS.");
+        }
+
+        byte[] payload = frame.getPayload();
+        if (headerBlock.length + payload.length > MAX_HEADER_LIST_SIZE) {
+            throw new Http2Exception(Http2Frame.ENHANCE_YOUR_CALM, "Header block too large.");
+        }
+        int offset = headerBlock.length;
+        headerBlock = Arrays.copyOf(headerBlock, offset + payload.length);
+        System.arraycopy(payload, 0, headerBlock, offset, payload.length);
+
+        if (frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            Stream stream = continuedStream;
+            continuedStream = null;
+            handleHeaderBlock(stream, headerBlock, headerBlockEndsStream);
+            headerBlock = null;
+        }
+    }
+
+    // The block is decoded even for a stream that is about to be refused, as
+    // every block updates the decoder's table.
+    private void handleHeaderBlock(Stream stream, byte[] block, boolean endStream) throws IOException {
+        List<String[]> fields = decoder.decode(block, 0, block.length);
+        if (stream.httpRequest != null || stream.failureResponse != null) {
+            // Trailers, which end the request body
+            if (!stream.receiving || !endStream) {
+                throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, stream.id, "Unexpected HEADERS frame.");
+            }
+            stream.receiving = false;
+            dispatch(stream);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (streams.size() >= MAX_CONCURRENT_STREAMS) {
+                throw new Http2Exception(Http2Frame.REFUSED_STREAM, stream.id, "Too many concurrent streams.");
+            }
+            stream.sendWindow = initialStreamWindow;
+            streams.put(stream.id, stream);
+        } finally {
+            lock.unlock();
+        }
+
+        stream.httpRequest = buildRequest(stream.id, fields);
+        if (stream.httpRequest.getError() != null) {
+            // Connection headers are not sent over HTTP/2
+            stream.failureResponse = httpRequestHandler.handleInvalidRequest(stream.httpRequest, false);
+        }
+        stream.receiving = !endStream;
+        if (endStream) {
+            dispatch(stream);
+        }
+    }
+
+    // A malformed request is a stream error, a request the server does not
+    // serve is returned with its error set.
+    private static HttpRequest buildRequest(int streamId, List<String[]> fields) throws Http2Exception {
+        String method = null;
+        String scheme = null;
+        String path = null;
+        String authority = null;
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String[] field : fields) {
+            String name = field[0];
+            String value = field[1];
+            if (name.startsWith(":")) {
+                if (!headers.isEmpty()) {
+                    throw malformedRequest(streamId, "Pseudo-header " + name + " after a regular header.");
+                }
+                switch (name) {
+                    case ":method" -> method = setOnce(streamId, name, method, value);
+                    case ":scheme" -> scheme = setOnce(streamId, name, scheme, value);
+                    case ":path" -> path = setOnce(streamId, name, path, value);
+                    case ":authority" -> authority = setOnce(streamId, name, authority, value);
+                    default -> throw malformedRequest(streamId, "Unknown pseudo-header " + name + ".");
+                }
+            } else if (!name.equals(name.toLowerCase(Locale.ROOT)) || CONNECTION_HEADERS.contains(name)
+                    || (name.equals("te") && !value.equals("trailers"))) {
+                throw malformedRequest(streamId, "Invalid header " + name + ".");
+            } else {
+                // Cookies may be split into several fields (RFC 9113, section 8.2.3)
+                headers.merge(name, value, (first, next) -> first + (name.equals("cookie") ? "; " : ", ") + next);
+            }
+        }
+        if (method == null || scheme == null || path == null) {
+            throw malformedRequest(streamId, "Missing pseudo-header.");
+        }
+
+        HttpRequest httpRequest = new HttpRequest();
+        if (!method.equals("GET")) {
+            httpRequest.setError(RequestError.METHOD_NOT_ALLOWED);
+            httpRequest.setErrorDetail(method + " method not allowed.");
+            return httpRequest;
+        }
+        if (!path.startsWith("/")) {
+            httpRequest.setError(RequestError.BAD_REQUEST);
+            httpRequest.setErrorDetail("Invalid request-target.");
+            return httpRequest;
+        }
+        httpRequest.setMethod(method);
+        httpRequest.setPath(path.equals("/") ? "/index.html" : path);
+        httpRequest.setVersion(VERSION);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            httpRequest.setHeader(CANONICAL_HEADER_NAMES.getOrDefault(header.getKey(), header.getKey()),
+                    header.getValue());
+        }
+        if (authority != null && !headers.containsKey("host")) {
+            httpRequest.setHeader("Host", authority);
+        }
+        httpRequest.setBody("");
+        return httpRequest;
+    }
+
+    private static String setOnce(int streamId, String name, String current, String value) throws Http2Exception {
+        if (current != null) {
+            throw malformedRequest(streamId, "Repeated pseudo-header " + name + ".");
+        }
+        return value;
+    }
+
+    private static Http2Exception malformedRequest(int streamId, String message) {
+        return new Http2Exception(Http2Frame.PROTOCOL_ERROR, streamId, message);
+    }
+
+    // Stream priorities are advisory and not used.
+    private void handlePriority(Http2Frame frame) throws Http2Exception {
+        if (frame.getStreamId() == 0) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "PRIORITY frame on stream 0.");
+        } else if (frame.getPayload().length != 5) {
+            throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, frame.getStreamId(), "Invalid PRIORITY frame.");
+        }
+    }
+
+    private void handleRstStream(Http2Frame frame) throws Http2Exception {
+        int streamId = frame.getStreamId();
+        if (streamId == 0 || streamId > lastStreamId) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "RST_STREAM frame on idle stream " + streamId + ".");
+        } else if (frame.getPayload().length != 4) {
+            throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, "Invalid RST_STREAM frame.");
+        }
+
+        lock.lock();
+        try {
+            Stream stream = streams.remove(streamId);
+            if (stream != null) {
+                stream.reset = true;
+                windowUpdated.signalAll(); // Wakes the stream up if it waits for a window
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (continuedStream != null && continuedStream.id == streamId) {
+            continuedStream = null;
+        }
+    }
+
+    private void handleSettings(Http2Frame frame) throws IOException {
+        if (frame.getStreamId() != 0) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "SETTINGS frame on a stream.");
+        }
+        if (frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            if (frame.getPayload().length != 0) {
+                throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, "SETTINGS acknowledgement with a payload.");
+            }
+            return;
+        }
+        if (frame.getPayload().length % 6 != 0) {
+            throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, "Invalid SETTINGS frame.");
+        }
+
+        applySettings(frame.getPayload());
+        writeFrame(Http2Frame.SETTINGS, Http2Frame.FLAG_ACK, 0, ByteBuffer.allocate(0));
+    }
+
+    private void applySettings(byte[] settings) throws Http2Exception {
+        lock.lock();
+        try {
+            for (int i = 0; i < settings.length; i += 6) {
+                int identifier = ((settings[i] & 0xff) << 8) | (settings[i + 1] & 0xff);
+                int value = Http2Frame.readInt(settings, i + 2);
+                switch (identifier) {
+                    case Http2Frame.SETTINGS_HEADER_TABLE_SIZE -> headerTableSizes
+                            .add(value < 0 ? Integer.MAX_VALUE : value);
+                    case Http2Frame.SETTINGS_ENABLE_PUSH -> {
+                        if (value != 0 && value != 1) {
+                            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Invalid SETTINGS_ENABLE_PUSH.");
+                        }
+                    }
+                    case Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE -> setInitialStreamWindow(value);
+                    case Http2Frame.SETTINGS_MAX_FRAME_SIZE -> {
+                        if (value < Http2Frame.DEFAULT_MAX_FRAME_SIZE || value > Http2Frame.MAX_FRAME_SIZE_LIMIT) {
+                            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Invalid SETTINGS_MAX_FRAME_SIZE.");
+                        }
+                        peerMaxFrameSize = value;
+                    }
+                    default -> {
+                        // No server push, and the other settings need no action
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applies the difference to the window of every open stream.
+    private void setInitialStreamWindow(int value) throws Http2Exception {
+        if (value < 0) {
+            throw new Http2Exception(Http2Frame.FLOW_CONTROL_ERROR, "Invalid SETTINGS_INITIAL_WINDOW_SIZE.");
+        }
+
+        int delta = value - initialStreamWindow;
+        for (Stream stream : streams.values()) {
+            if ((long) stream.sendWindow + delta > Http2Frame.MAX_WINDOW_SIZE) {
+                throw new Http2Exception(Http2Frame.FLOW_CONTROL_ERROR, "Stream window overflow.");
+            }
+            stream.sendWindow += delta;
+        }
+        initialStreamWindow = value;
+        windowUpdated.signalAll();
+    }
+
+    private void handlePing(Http2Frame frame) throws IOException {
+        if (frame.getStreamId() != 0) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "PING frame on a stream.");
+        } else if (frame.getPayload().length != 8) {
+            throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, "Invalid PING frame.");
+        }
+
+        if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            writeFrame(Http2Frame.PING, Http2Frame.FLAG_ACK, 0, ByteBuffer.wrap(frame.getPayload()));
+        }
+    }
+
+    // Streams in progress are still answered. The connection is closed once
+    // the last of them is done, see streamDone.
+    private void handleGoAway(Http2Frame frame) throws Http2Exception {
+        if (frame.getStreamId() != 0) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "GOAWAY frame on a stream.");
+        }
+
+        lock.lock();
+        try {
+            goAwayReceived = true;
+            if (streams.isEmpty()) {
+                shutdownInput();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void handleWindowUpdate(Http2Frame frame) throws Http2Exception {
+        int streamId = frame.getStreamId();
+        if (frame.getPayload().length != 4) {
+            throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE frame.");
+        }
+        int increment = Http2Frame.readInt(frame.getPayload(), 0) & 0x7fffffff;
+        if (increment == 0) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, streamId, "Window increment of 0.");
+        }
+
+        lock.lock();
+        try {
+            if (streamId == 0) {
+                if ((long) sendWindow + increment > Http2Frame.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2Frame.FLOW_CONTROL_ERROR, "Connection window overflow.");
+                }
+                sendWindow += increment;
+            } else {
+                Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    return; // Already answered completely
+                } else if ((long) stream.sendWindow + increment > Http2Frame.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2Frame.FLOW_CONTROL_ERROR, streamId, "Stream window overflow.");
+                }
+                stream.sendWindow += increment;
+            }
+            windowUpdated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the end of the data within the payload, after checking that
+    // the padding fits. The pad length byte, if any, comes first.
+    private static int removePadding(Http2Frame frame, int fieldsLength) throws Http2Exception {
+        byte[] payload = frame.getPayload();
+        if (!frame.hasFlag(Http2Frame.FLAG_PADDED)) {
+            if (payload.length < fieldsLength) {
+                throw new Http2Exception(Http2Frame.FRAME_SIZE_ERROR, "Frame too short.");
+            }
+            return payload.length;
+        }
+
+        int padLength = payload.length > 0 ? payload[0] & 0xff : Integer.MAX_VALUE;
+        if (padLength > payload.length - 1 - fieldsLength) {
+            throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Padding longer than the frame.");
+        }
+        return payload.length - padLength;
+    }
+
+    private Stream openStream(int streamId) {
+        lastStreamId = streamId;
+        Stream stream = new Stream(streamId);
+        lock.lock();
+        try {
+            stream.sendWindow = initialStreamWindow;
+            streams.put(streamId, stream);
+        } finally {
+            lock.unlock();
+        }
+        return stream;
+    }
+
+    private Stream getStream(int streamId) {
+        lock.lock();
+        try {
+            return streams.get(streamId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasActiveStreams() {
+        lock.lock();
+        try {
+            return !streams.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch(Stream stream) {
+        stream.startedAt = System.nanoTime();
+        try {
+            threadPool.execute(new SheddableTask(() -> respond(stream), () -> refuse(stream),
+                    httpRequestHandler.getConfig().getQueueTimeout(), metrics));
+        } catch (RejectedExecutionException e) {
+            refuse(stream); // The executor is shut down
+        }
+    }
+
+    // A refused stream was not processed, the client may send it again.
+    private void refuse(Stream stream) {
+        try {
+            resetStream(stream.id, Http2Frame.REFUSED_STREAM);
+        } catch (IOException e) {
+            // The connection is broken, the reading thread ends it
+        } finally {
+            streamDone(stream);
+        }
+    }
+
+    // Runs on a thread of the executor.
+    private void respond(Stream stream) {
+        HttpResponse httpResponse;
+        try {
+            httpResponse = stream.failureResponse != null
+                    ? stream.failureResponse
+                    : httpRequestHandler.handleRequest(stream.httpRequest, false);
+        } catch (RuntimeException e) {
+            accessLog.logException("Failed to process " + stream.httpRequest.getPath(), e);
+            httpResponse = ErrorResponseHandler.build500ErrorResponse("Internal Server Error.");
+        }
+        ResponseBody body = httpResponse.getBody();
+        try {
+            long length = body.getLength();
+            long bytesWritten = writeHeaders(stream, httpResponse, length == 0);
+            if (length != 0) {
+                DataChannel dataChannel = new DataChannel(stream, length);
+                while (!body.writeTo(dataChannel)) {
+                    // The channel blocks, every call makes progress
+                }
+                if (length < 0) {
+                    dataChannel.endStream();
+                }
+                bytesWritten += dataChannel.bytesWritten;
+            }
+            long durationNanos = System.nanoTime() - stream.startedAt;
+            metrics.recordResponse(httpResponse.getStatusCode(), bytesWritten, durationNanos);
+            accessLog.logAccess(remoteAddress, stream.httpRequest, httpResponse.getStatusCode(), bytesWritten,
+                    durationNanos);
+        } catch (IOException e) {
+            if (!isClosed(stream)) {
+                accessLog.logError("Failed to send stream " + stream.id, e);
+                try {
+                    resetStream(stream.id, Http2Frame.INTERNAL_ERROR);
+                } catch (IOException resetFailure) {
+                    // The connection is broken, the reading thread ends it
+                }
+            }
+        } finally {
+            try {
+                body.close();
+            } catch (IOException e) {
+                accessLog.logError("Failed to release a response", e);
+            }
+            streamDone(stream);
+        }
+    }
+
+    // Returns the number of bytes written. A header block larger than a
+    // frame goes on in CONTINUATION frames, which nothing may interrupt. The
+    // blocks are encoded in the order they are written, as each updates the
+    // client's decoder table.
+    private long writeHeaders(Stream stream, HttpResponse httpResponse, boolean endStream) throws IOException {
+        writeLock.lock();
+        try {
+            int maxFrameSize;
+            lock.lock();
+            try {
+                checkOpen(stream);
+                maxFrameSize = peerMaxFrameSize;
+            } finally {
+                lock.unlock();
+            }
+
+            Integer headerTableSize;
+            while ((headerTableSize = headerTableSizes.poll()) != null) {
+                encoder.setMaxTableSize(headerTableSize);
+            }
+            ByteBuffer block = encoder.encode(httpResponse);
+            long bytesWritten = block.remaining();
+            int type = Http2Frame.HEADERS;
+            int flags = endStream ? Http2Frame.FLAG_END_STREAM : 0;
+            do {
+                int length = Math.min(block.remaining(), maxFrameSize);
+                ByteBuffer fragment = block.slice(block.position(), length);
+                block.position(block.position() + length);
+                writeFrame(type, flags | (block.hasRemaining() ? 0 : Http2Frame.FLAG_END_HEADERS), stream.id, fragment);
+                bytesWritten += Http2Frame.HEADER_SIZE;
+                type = Http2Frame.CONTINUATION;
+                flags = 0;
+            } while (block.hasRemaining());
+            return bytesWritten;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeSettings() throws IOException {
+        ByteBuffer settings = ByteBuffer.allocate(12);
+        settings.putShort((short) Http2Frame.SETTINGS_MAX_CONCURRENT_STREAMS).putInt(MAX_CONCURRENT_STREAMS);
+        settings.putShort((short) Http2Frame.SETTINGS_MAX_HEADER_LIST_SIZE).putInt(MAX_HEADER_LIST_SIZE);
+        writeFrame(Http2Frame.SETTINGS, 0, 0, settings.flip());
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) throws IOException {
+        writeFrame(Http2Frame.WINDOW_UPDATE, 0, streamId, ByteBuffer.allocate(4).putInt(0, increment));
+    }
+
+    private void resetStream(int streamId, int errorCode) throws IOException {
+        lock.lock();
+        try {
+            Stream stream = streams.remove(streamId);
+            if (stream != null) {
+                stream.reset = true;
+                windowUpdated.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        writeFrame(Http2Frame.RST_STREAM, 0, streamId, ByteBuffer.allocate(4).putInt(0, errorCode));
+    }
+
+    private void writeGoAway(int errorCode, String message) throws IOException {
+        byte[] debugData = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(8 + debugData.length);
+        payload.putInt(lastStreamId).putInt(errorCode).put(debugData);
+        writeFrame(Http2Frame.GOAWAY, 0, 0, payload.flip());
+    }
+
+    private void writeFrame(int type, int flags, int streamId, ByteBuffer payload) throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Connection closed.");
+            }
+            frameHeader.clear();
+            Http2Frame.writeHeader(frameHeader, payload.remaining(), type, flags, streamId);
+            frame[0] = frameHeader.flip();
+            frame[1] = payload;
+            writeFully(frame);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeFully(ByteBuffer... buffers) throws IOException {
+        for (int i = 0; i < buffers.length; i++) {
+            while (buffers[i].hasRemaining()) {
+                if (out instanceof GatheringByteChannel gathering) {
+                    gathering.write(buffers, i, buffers.length - i);
+                } else {
+                    out.write(buffers[i]);
+                }
+            }
+        }
+    }
+
+    private void checkOpen(Stream stream) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed.");
+        } else if (stream.reset) {
+            throw new IOException("Stream " + stream.id + " reset.");
+        }
+    }
+
+    private boolean isClosed(Stream stream) {
+        lock.lock();
+        try {
+            return closed || stream.reset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void streamDone(Stream stream) {
+        lock.lock();
+        try {
+            streams.remove(stream.id, stream);
+            if (goAwayReceived && streams.isEmpty()) {
+                shutdownInput();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ends the reading thread, which blocks on the next frame.
+    private void shutdownInput() {
+        try {
+            socket.shutdownInput();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    // Fails the streams still in progress, a stream blocked on a write
+    // included. Streams still queued in the executor fail as soon as they
+    // start.
+    private void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            windowUpdated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        socket.close();
+    }
+
+    // Writes the body of a response as DATA frames, each within the
+    // flow-control windows of the connection and the stream, blocking until
+    // the client opens them. The frame carrying the last byte of a body of
+    // known length also ends the stream.
+    private class DataChannel implements WritableByteChannel {
+        private final Stream stream;
+        private long remaining;
+        private long bytesWritten;
+
+        DataChannel(Stream stream, long length) {
+            this.stream = stream;
+            this.remaining = length;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = 0;
+            while (src.hasRemaining()) {
+                awaitWindow();
+                writeLock.lock();
+                try {
+                    // The window is taken once the frame is next on the wire,
+                    // another stream may have used it up meanwhile. Taken
+                    // together with peerMaxFrameSize, so a frame never goes
+                    // out after the SETTINGS acknowledgement of a smaller one
+                    int length;
+                    lock.lock();
+                    try {
+                        checkOpen(stream);
+                        int window = Math.min(sendWindow, stream.sendWindow);
+                        length = Math.max(0, Math.min(Math.min(src.remaining(), window), peerMaxFrameSize));
+                        sendWindow -= length;
+                        stream.sendWindow -= length;
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (length == 0) {
+                        continue;
+                    }
+
+                    remaining -= length;
+                    writeFrame(Http2Frame.DATA, remaining == 0 ? Http2Frame.FLAG_END_STREAM : 0, stream.id,
+                            src.slice(src.position(), length));
+                    src.position(src.position() + length);
+                    written += length;
+                    bytesWritten += Http2Frame.HEADER_SIZE + length;
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            return written;
+        }
+
+        // Blocks until both windows are open.
+        private void awaitWindow() throws IOException {
+            lock.lock();
+            try {
+                while (Math.min(sendWindow, stream.sendWindow) <= 0) {
+                    checkOpen(stream);
+                    windowUpdated.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a flow-control window.");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // For bodies of unknown length, once they have been written.
+        void endStream() throws IOException {
+            lock.lock();
+            try {
+                checkOpen(stream);
+            } finally {
+                lock.unlock();
+            }
+            writeFrame(Http2Frame.DATA, Http2Frame.FLAG_END_STREAM, stream.id, ByteBuffer.allocate(0));
+            bytesWritten += Http2Frame.HEADER_SIZE;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !isClosed(stream);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Stream {
+        private final int id;
+        private HttpRequest httpRequest;
+        private HttpResponse failureResponse; // Sent instead of processing an invalid request
+        private boolean receiving; // The request body has not ended yet
+        private long startedAt;
+        private int sendWindow; // Guarded by the lock
+        private boolean reset; // Guarded by the lock
+
+        Stream(int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.johnpapadatos;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import com.johnpapadatos.exceptions.Http2Exception;
+
+// A frame of an HTTP/2 connection (RFC 9113, section 4): a 9-byte header
+// with the payload length, type, flags and stream identifier, followed by
+// the payload. Also holds the protocol constants shared by the HTTP/2 classes.
+public class Http2Frame {
+    public static final int HEADER_SIZE = 9;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    public static final int MAX_FRAME_SIZE_LIMIT = 16777215;
+    public static final int DEFAULT_WINDOW_SIZE = 65535;
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    public static final int DATA = 0x0;
+    public static final int HEADERS = 0x1;
+    public static final int PRIORITY = 0x2;
+    public static final int RST_STREAM = 0x3;
+    public static final int SETTINGS = 0x4;
+    public static final int PUSH_PROMISE = 0x5;
+    public static final int PING = 0x6;
+    public static final int GOAWAY = 0x7;
+    public static final int WINDOW_UPDATE = 0x8;
+    public static final int CONTINUATION = 0x9;
+
+    public static final int FLAG_END_STREAM = 0x1;
+    public static final int FLAG_ACK = 0x1;
+    public static final int FLAG_END_HEADERS = 0x4;
+    public static final int FLAG_PADDED = 0x8;
+    public static final int FLAG_PRIORITY = 0x20;
+
+    public static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    public static final int SETTINGS_ENABLE_PUSH = 0x2;
+    public static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    public static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    public static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    public static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    public static final int NO_ERROR = 0x0;
+    public static final int PROTOCOL_ERROR = 0x1;
+    public static final int INTERNAL_ERROR = 0x2;
+    public static final int FLOW_CONTROL_ERROR = 0x3;
+    public static final int STREAM_CLOSED = 0x5;
+    public static final int FRAME_SIZE_ERROR = 0x6;
+    public static final int REFUSED_STREAM = 0x7;
+    public static final int CANCEL = 0x8;
+    public static final int COMPRESSION_ERROR = 0x9;
+    public static final int ENHANCE_YOUR_CALM = 0xb;
+
+    private final int type;
+    private final int flags;
+    private final int streamId;
+    private final byte[] payload;
+
+    public Http2Frame(int type, int flags, int streamId, byte[] payload) {
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    // Returns null if the stream ends cleanly before the next frame.
+    public static Http2Frame read(InputStream in, int maxFrameSize) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+
+        byte[] header = new byte[HEADER_SIZE];
+        header[0] = (byte) first;
+        readFully(in, header, 1, HEADER_SIZE - 1);
+        int length = (first << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+        int type = header[3] & 0xff;
+        int flags = header[4] & 0xff;
+        int streamId = readInt(header, 5) & 0x7fffffff; // The reserved bit is ignored
+        if (length > maxFrameSize) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Frame of " + length + " bytes exceeds the maximum size.");
+        }
+
+        byte[] payload = new byte[length];
+        readFully(in, payload, 0, length);
+        return new Http2Frame(type, flags, streamId, payload);
+    }
+
+    public static void writeHeader(ByteBuffer dst, int length, int type, int flags, int streamId) {
+        dst.put((byte) (length >>> 16)).put((byte) (length >>> 8)).put((byte) length)
+                .put((byte) type).put((byte) flags).putInt(streamId);
+    }
+
+    static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    // A timeout past the first byte of a frame is not an idle connection, and
+    // reading cannot resume where it stopped.
+    private static void readFully(InputStream in, byte[] bytes, int offset, int length) throws IOException {
+        try {
+            if (in.readNBytes(bytes, offset, length) < length) {
+                throw new EOFException("Connection closed in the middle of a frame.");
+            }
+        } catch (SocketTimeoutException e) {
+            throw new IOException("Timed out in the middle of a frame.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Http2Frame [type=" + type
+                + ", flags=" + flags
+                + ", streamId=" + streamId
+                + ", length=" + payload.length
+                + "]";
+    }
+}
@@ -9,6 +9,8 @@ public class HttpRequest {
     private String version;
     private final Map<String, String> headers;
     private String body;
+    private RequestError error; // Null unless the request could not be parsed
+    private String errorDetail; // What was wrong with it, for the log
 
     public HttpRequest() {
         headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
@@ -42,6 +44,11 @@ public class HttpRequest {
         return new TreeMap<>(headers);
     }
 
+    // Unlike getHeaders, does not copy the headers.
+    public String getHeader(String key) {
+        return headers.get(key);
+    }
+
     public void setHeader(String key, String value) {
         headers.put(key, value);
     }
@@ -54,6 +61,22 @@ public class HttpRequest {
         this.body = body;
     }
 
+    public RequestError getError() {
+        return error;
+    }
+
+    public void setError(RequestError error) {
+        this.error = error;
+    }
+
+    public String getErrorDetail() {
+        return errorDetail;
+    }
+
+    public void setErrorDetail(String errorDetail) {
+        this.errorDetail = errorDetail;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -63,6 +86,8 @@ public class HttpRequest {
         result = prime * result + ((version == null) ? 0 : version.hashCode());
         result = prime * result + ((headers == null) ? 0 : headers.hashCode());
         result = prime * result + ((body == null) ? 0 : body.hashCode());
+        result = prime * result + ((error == null) ? 0 : error.hashCode());
+        result = prime * result + ((errorDetail == null) ? 0 : errorDetail.hashCode());
         return result;
     }
 
@@ -100,6 +125,13 @@ public class HttpRequest {
                 return false;
         } else if (!body.equals(other.body))
             return false;
+        if (error != other.error)
+            return false;
+        if (errorDetail == null) {
+            if (other.errorDetail != null)
+                return false;
+        } else if (!errorDetail.equals(other.errorDetail))
+            return false;
         return true;
     }
 
@@ -110,6 +142,8 @@ public class HttpRequest {
                 + ", version=" + version
                 + ", headers=" + headers
                 + ", body=" + body
+                + ", error=" + error
+                + ", errorDetail=" + errorDetail
                 + "]";
     }
 }
@@ -0,0 +1,118 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+
+// Shared by both server engines: turns a parsed request (or a parsing
+// failure) into the response to send back, including connection management.
+public class HttpRequestHandler {
+    private final Config config;
+    private final Metrics metrics;
+    private final BufferPool bufferPool;
+    private final AccessLog accessLog;
+    private final HttpRequestProcessor httpRequestProcessor;
+
+    public HttpRequestHandler(Config config) {
+        this.config = config;
+        this.metrics = new Metrics();
+        this.bufferPool = new BufferPool();
+        this.accessLog = new AccessLog(config);
+        this.httpRequestProcessor = new HttpRequestProcessor(config, metrics, bufferPool, accessLog);
+        metrics.monitorResponseCache(httpRequestProcessor.getResponseCache());
+        metrics.monitorMappedFiles(httpRequestProcessor.getMappedFiles());
+        metrics.monitorPathResolver(httpRequestProcessor.getPathResolver());
+        metrics.monitorBufferPool(bufferPool);
+        metrics.monitorAccessLog(accessLog);
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public HttpRequestProcessor getHttpRequestProcessor() {
+        return httpRequestProcessor;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public HttpResponse handleRequest(HttpRequest httpRequest, boolean lastAllowedRequest) {
+        boolean keepAlive = !lastAllowedRequest && isKeepAliveRequested(httpRequest);
+        try {
+            // Reserved path, answered without looking into baseDir
+            HttpResponse httpResponse = httpRequest.getPath().equals(Metrics.METRICS_PATH)
+                    ? buildMetricsResponse()
+                    : httpRequestProcessor.processRequest(httpRequest);
+            if (httpResponse.getEncodedHead() != null) {
+                // The processor's only pre-encoded response, built for a connection that closes
+                return keepAlive ? ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND, true)
+                        : httpResponse;
+            }
+            httpResponse.setHeader("Connection", keepAlive ? "keep-alive" : "close");
+            return httpResponse;
+        } catch (NoSuchFileException e) {
+            // Deleted after it was found, shows up in the access log like any 404
+            return ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND, keepAlive);
+        } catch (IOException e) {
+            accessLog.logException("Failed to process " + httpRequest.getPath(), e);
+            return ErrorResponseHandler.build500ErrorResponse(e.getMessage());
+        }
+    }
+
+    private HttpResponse buildMetricsResponse() {
+        byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode("200");
+        httpResponse.setReasonPhrase("OK");
+        httpResponse.setHeader("Content-Type", Metrics.CONTENT_TYPE);
+        httpResponse.setContentLength(body.length);
+        httpResponse.setBody(new ByteArrayBody(body));
+        return httpResponse;
+    }
+
+    // For a request returned by a parser with its error set. Only a request
+    // refused for its method has been read to its end, so that the next one
+    // can follow it on the connection, unless its body was chunked.
+    public HttpResponse handleInvalidRequest(HttpRequest httpRequest, boolean lastAllowedRequest) {
+        accessLog.logError("Invalid request: " + httpRequest.getErrorDetail(), null);
+        boolean keepAlive = httpRequest.getError() == RequestError.METHOD_NOT_ALLOWED && !lastAllowedRequest
+                && httpRequest.getHeader("Transfer-Encoding") == null && isKeepAliveRequested(httpRequest);
+        return ErrorResponseHandler.buildErrorResponse(httpRequest.getError(), keepAlive);
+    }
+
+    // For a connection that failed while a request was being read.
+    public HttpResponse handleParsingFailure(IOException e) {
+        accessLog.logError("Invalid request", e);
+        return ErrorResponseHandler.build500ErrorResponse(e.getMessage());
+    }
+
+    public static boolean isKeepAlive(HttpResponse httpResponse) {
+        return "keep-alive".equals(httpResponse.getHeader("Connection"));
+    }
+
+    private static boolean isKeepAliveRequested(HttpRequest httpRequest) {
+        String connection = httpRequest.getHeader("Connection");
+        if (connection == null) {
+            return true; // Persistent connections are the default in HTTP/1.1
+        }
+
+        for (String option : connection.split(",")) {
+            if (option.strip().equalsIgnoreCase("close")) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,39 +1,45 @@
 package com.johnpapadatos;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 
-import com.johnpapadatos.exceptions.MethodNotSupportedException;
-
 public class HttpRequestParser {
 
     private HttpRequestParser() {
     }
 
-    public static HttpRequest parseRequest(BufferedReader br) throws IOException, MethodNotSupportedException {
+    // Returns null when the stream ends before a new request-line arrives,
+    // i.e. the client closed a persistent connection. A request that cannot
+    // be parsed is returned with its error set, the rest of it is not read.
+    public static HttpRequest parseRequest(BufferedReader br) throws IOException {
+        String requestLine = br.readLine();
+        if (requestLine == null) {
+            return null;
+        }
+
         HttpRequest httpRequest = new HttpRequest();
-        parseRequestLine(br, httpRequest);
-        parseRequestHeaders(br, httpRequest);
-        parseRequestBody(br, httpRequest);
+        if (parseRequestLine(requestLine, httpRequest) && parseRequestHeaders(br, httpRequest)) {
+            parseRequestBody(br, httpRequest);
+        }
         return httpRequest;
     }
 
-    private static void parseRequestLine(
-            BufferedReader br, HttpRequest httpRequest) throws IOException, MethodNotSupportedException {
-        String[] requestLineParts = br.readLine().split(" ");
+    private static boolean parseRequestLine(String requestLine, HttpRequest httpRequest) {
+        String[] requestLineParts = requestLine.split(" ");
         if (requestLineParts.length != 3) {
-            throw new IllegalArgumentException("Invalid request-line.");
+            return fail(httpRequest, RequestError.BAD_REQUEST, "Invalid request-line.");
         }
 
         String method = requestLineParts[0];
         if (!method.equals("GET")) {
-            throw new MethodNotSupportedException(method + " method not allowed.");
+            return fail(httpRequest, RequestError.METHOD_NOT_ALLOWED, method + " method not allowed.");
         }
         httpRequest.setMethod(method);
 
         String path = requestLineParts[1];
         if (!path.startsWith("/")) {
-            throw new IllegalArgumentException("Invalid request-target.");
+            return fail(httpRequest, RequestError.BAD_REQUEST, "Invalid request-target.");
         } else if (path.equals("/")) {
             path = "/index.html";
         }
@@ -41,21 +47,37 @@ public class HttpRequestParser {
 
         String version = requestLineParts[2];
         if (!version.equals("HTTP/1.1")) {
-            throw new IllegalArgumentException("Currently only HTTP 1.1 is supported.");
+            return fail(httpRequest, RequestError.BAD_REQUEST, "Currently only HTTP 1.1 is supported.");
         }
         httpRequest.setVersion(version);
+        return true;
     }
 
-    private static void parseRequestHeaders(
+    private static boolean parseRequestHeaders(
             BufferedReader br, HttpRequest httpRequest) throws IOException {
         String line;
-        while (!(line = br.readLine()).isEmpty()) {
+        while (!(line = readLine(br)).isEmpty()) {
             String[] headerParts = line.split(": ");
             if (headerParts.length != 2) {
-                throw new IllegalArgumentException("Invalid header: " + line);
+                return fail(httpRequest, RequestError.BAD_REQUEST, "Invalid header: " + line);
             }
             httpRequest.setHeader(headerParts[0], headerParts[1]);
         }
+        return true;
+    }
+
+    private static boolean fail(HttpRequest httpRequest, RequestError error, String detail) {
+        httpRequest.setError(error);
+        httpRequest.setErrorDetail(detail);
+        return false;
+    }
+
+    private static String readLine(BufferedReader br) throws IOException {
+        String line = br.readLine();
+        if (line == null) {
+            throw new EOFException("Connection closed before the end of the request headers.");
+        }
+        return line;
     }
 
     private static void parseRequestBody(
@@ -65,7 +87,12 @@ public class HttpRequestParser {
             return;
         }
 
-        int contentLength = Integer.parseInt(httpRequest.getHeaders().get("Content-Length"));
+        String contentLengthValue = httpRequest.getHeaders().get("Content-Length");
+        if (!contentLengthValue.matches("\\d{1,9}")) {
+            fail(httpRequest, RequestError.BAD_REQUEST, "Invalid Content-Length: " + contentLengthValue);
+            return;
+        }
+        int contentLength = Integer.parseInt(contentLengthValue);
         char[] buffer = new char[contentLength];
         br.read(buffer, 0, buffer.length);
         httpRequest.setBody(new String(buffer));
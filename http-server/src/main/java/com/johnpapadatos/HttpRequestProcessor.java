@@ -1,40 +1,158 @@
 package com.johnpapadatos;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
-import java.util.Map;
-import java.util.zip.GZIPOutputStream;
-
-import org.apache.tika.Tika;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class HttpRequestProcessor {
+    public static final String PRECOMPRESSED_GZIP_EXTENSION = ".gz";
+    private static final String PRECOMPRESSED_CACHE_KEY = "precompressed";
+    private static final String CRLF = "\r\n";
+
+    private final PathResolver pathResolver;
+    private final long gzipStreamingThreshold;
+    private final boolean precompressedGzip;
+    private final StaticResponseCache responseCache;
+    private final MappedFileCache mappedFiles;
+    private final MimeTypeResolver mimeTypeResolver;
+    private final EntityTags entityTags;
+    private final Compression compression;
+    private final BufferPool bufferPool;
+
+    public HttpRequestProcessor(Config config, Metrics metrics, BufferPool bufferPool, AccessLog accessLog) {
+        this.pathResolver = new PathResolver(config, accessLog);
+        this.gzipStreamingThreshold = config.getGzipStreamingThreshold();
+        this.precompressedGzip = config.getPrecompressed().equals(Compression.GZIP);
+        this.responseCache = new StaticResponseCache(config.getCacheMaxBytes(), config.getCacheMaxEntrySize());
+        this.mappedFiles = new MappedFileCache(config.getMmapMaxBytes(), config.getMmapMinFileSize());
+        this.mimeTypeResolver = new MimeTypeResolver(config.getMimeTypeOverrides());
+        this.entityTags = new EntityTags(config.getEtag(), bufferPool);
+        this.compression = new Compression(config, metrics);
+        this.bufferPool = bufferPool;
+    }
+
+    public PathResolver getPathResolver() {
+        return pathResolver;
+    }
+
+    public StaticResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public MappedFileCache getMappedFiles() {
+        return mappedFiles;
+    }
 
-    private HttpRequestProcessor() {
+    public Compression getCompression() {
+        return compression;
     }
 
-    // No DI - will be tested through integration tests
-    public static HttpResponse processRequest(HttpRequest httpRequest, String baseDir) throws IOException {
-        if (baseDir.endsWith("/")) {
-            baseDir = baseDir.substring(0, baseDir.length() - 1); // Strip trailing "/"
+    // A missing file is an expected outcome, answered with a pre-encoded 404
+    // instead of an exception. Directories are not listed, they are not found
+    // either.
+    public HttpResponse processRequest(HttpRequest httpRequest) throws IOException {
+        String normalizedPath = PathResolver.normalize(httpRequest.getPath());
+        PathResolver.FileStat fileStat = normalizedPath != null ? pathResolver.stat(normalizedPath) : null;
+        if (fileStat == null || fileStat.isDirectory()) {
+            return ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND);
         }
+        File requestedResource = fileStat.getFile();
+        long lastModified = fileStat.getLastModified();
+        long fileSize = fileStat.getSize();
+
+        String entityTag = entityTags.getEntityTag(requestedResource, lastModified, fileSize);
+        List<ByteRange> byteRanges = getRequestedRanges(httpRequest, entityTag, lastModified, fileSize);
+        // The content coding decides the entity tag, so the type of the file
+        // is needed even for a 304
+        String mimeType = byteRanges == null ? mimeTypeResolver.resolve(requestedResource) : null;
+        String contentCoding = byteRanges == null
+                ? compression.selectCoding(httpRequest.getHeader("Accept-Encoding"), mimeType, fileSize)
+                : null;
+        PathResolver.FileStat precompressedStat = precompressedGzip && Compression.GZIP.equals(contentCoding)
+                ? statPrecompressed(normalizedPath, lastModified)
+                : null;
+        String compressedEntityTag = EntityTags.forContentCoding(entityTag, contentCoding);
+        // Its bytes differ from those compressed on the fly, so file.gz is
+        // told apart by an entity tag of its own
+        entityTag = precompressedStat != null
+                ? EntityTags.forContentCoding(entityTags.getEntityTag(precompressedStat.getFile(),
+                        precompressedStat.getLastModified(), precompressedStat.getSize()), contentCoding)
+                : compressedEntityTag;
+        boolean varies = mimeType != null && (contentCoding != null || compression.isCompressible(mimeType, fileSize));
 
-        File requestedResource = new File(baseDir + httpRequest.getPath());
-        byte[] fileContents = readFileContents(requestedResource);
-        String mimeType = new Tika().detect(requestedResource);
-        String contentDisposition = getContentDisposition(httpRequest.getHeaders(),
-                getFilename(requestedResource.getName()));
-        boolean gzipCompression = clientSupportsGzipCompression(httpRequest.getHeaders());
-        return buildSuccessfulResponse(fileContents, mimeType, contentDisposition, gzipCompression);
+        // Answered from the file attributes alone, the file is never opened
+        // unless its type has to be detected from its contents
+        if (isNotModified(httpRequest, entityTag, lastModified)) {
+            return buildNotModifiedResponse(entityTag, lastModified, varies);
+        }
+
+        String contentDisposition = getContentDisposition(httpRequest,
+                normalizedPath.substring(normalizedPath.lastIndexOf('/') + 1));
+        if (byteRanges != null) {
+            HttpResponse httpResponse = buildPartialResponse(requestedResource, byteRanges, lastModified, fileSize,
+                    contentDisposition);
+            return byteRanges.isEmpty() ? httpResponse : setValidators(httpResponse, entityTag, lastModified);
+        }
+
+        if (precompressedStat != null) {
+            HttpResponse httpResponse = buildPrecompressedResponse(precompressedStat, mimeType, contentDisposition);
+            if (httpResponse != null) {
+                return setValidators(httpResponse, entityTag, lastModified);
+            }
+            entityTag = compressedEntityTag; // Removed meanwhile, compressed on the fly instead
+        }
+
+        String cacheKey = requestedResource.getPath() + "|" + (contentCoding != null ? contentCoding : "identity");
+
+        CachedResponse cachedResponse = responseCache.get(cacheKey, lastModified, fileSize);
+        if (cachedResponse != null) {
+            return setValidators(buildSuccessfulResponse(cachedResponse, contentDisposition, varies), entityTag,
+                    lastModified);
+        }
+
+        if (contentCoding == null && !responseCache.isCacheable(fileSize)) {
+            ByteBuffer mappedFile = mappedFiles.get(requestedResource, lastModified, fileSize);
+            if (mappedFile != null) {
+                return setValidators(buildSuccessfulResponse(mappedFile, mimeType, contentDisposition, varies),
+                        entityTag, lastModified);
+            }
+        }
+
+        FileChannel fileChannel = openFile(requestedResource);
+        try {
+            if (responseCache.isCacheable(fileSize)) {
+                byte[] fileContents = readFileContents(fileChannel);
+                fileChannel.close();
+                byte[] body = contentCoding != null ? compression.compress(fileContents, contentCoding) : fileContents;
+                cachedResponse = new CachedResponse(body, mimeType, contentCoding, lastModified, fileSize);
+                responseCache.put(cacheKey, cachedResponse);
+                return setValidators(buildSuccessfulResponse(cachedResponse, contentDisposition, varies), entityTag,
+                        lastModified);
+            }
+            return setValidators(buildSuccessfulResponse(fileChannel, mimeType, contentDisposition, contentCoding,
+                    varies, !Http2Connection.VERSION.equals(httpRequest.getVersion())), entityTag, lastModified);
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
     }
 
-    private static byte[] readFileContents(File file) throws IOException {
+    private static FileChannel openFile(File file) throws IOException {
         try {
-            return Files.readAllBytes(file.toPath());
+            return FileChannel.open(file.toPath());
         } catch (NoSuchFileException e) {
-            e.printStackTrace();
             String message = "File " + getFilename(e.getMessage()) + " not found.";
             throw new NoSuchFileException(message);
         }
@@ -44,50 +162,293 @@ public class HttpRequestProcessor {
         return path.substring(path.lastIndexOf(File.separator) + 1);
     }
 
-    private static String getContentDisposition(Map<String, String> requestHeaders, String filename) {
-        String contentDisposition = "inline";
-        if (requestHeaders.containsKey("X-Content-Disposition")) {
-            contentDisposition = requestHeaders.get("X-Content-Disposition");
-            if (contentDisposition.equals("attachment")) {
-                contentDisposition += "; filename=\"" + filename + "\"";
-            }
+    private static String getContentDisposition(HttpRequest httpRequest, String filename) {
+        String contentDisposition = httpRequest.getHeader("X-Content-Disposition");
+        if (contentDisposition == null) {
+            return "inline";
+        } else if (contentDisposition.equals("attachment")) {
+            contentDisposition += "; filename=\"" + filename + "\"";
         }
         return contentDisposition;
     }
 
-    private static boolean clientSupportsGzipCompression(Map<String, String> requestHeaders) {
-        return requestHeaders.containsKey("Accept-Encoding") && requestHeaders.get("Accept-Encoding").contains("gzip");
+    // Ranges always select bytes of the unencoded file. Returns null when the
+    // whole file should be sent instead.
+    private static List<ByteRange> getRequestedRanges(
+            HttpRequest httpRequest, String entityTag, long lastModified, long fileSize) {
+        String range = httpRequest.getHeader("Range");
+        if (range == null) {
+            return null;
+        }
+
+        String ifRange = httpRequest.getHeader("If-Range");
+        if (ifRange != null && !isIfRangeMatching(ifRange, entityTag, lastModified)) {
+            return null;
+        }
+        return RangeHeaderParser.parseRangeHeader(range, fileSize);
     }
 
-    private static HttpResponse buildSuccessfulResponse(
-            byte[] fileContents, String mimeType, String contentDisposition, boolean gzipCompression)
-            throws IOException {
+    // If-Range holds either an entity tag, compared strongly, or a date that
+    // only matches a Last-Modified value exactly.
+    private static boolean isIfRangeMatching(String ifRange, String entityTag, long lastModified) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return EntityTags.matchesStrongly(ifRange, entityTag);
+        }
+        return lastModified / 1000 == parseHttpDate(ifRange);
+    }
+
+    // If-None-Match takes precedence, If-Modified-Since is then ignored
+    // (RFC 9110, section 13.2.2).
+    private static boolean isNotModified(HttpRequest httpRequest, String entityTag, long lastModified) {
+        String ifNoneMatch = httpRequest.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return EntityTags.matchesAny(ifNoneMatch, entityTag);
+        }
+
+        String ifModifiedSince = httpRequest.getHeader("If-Modified-Since");
+        return ifModifiedSince != null && lastModified / 1000 <= parseHttpDate(ifModifiedSince);
+    }
+
+    // HTTP dates have a resolution of one second. Returns Long.MIN_VALUE for
+    // an invalid date, which never matches.
+    private static long parseHttpDate(String httpDate) {
+        try {
+            return ZonedDateTime.parse(httpDate, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String formatHttpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static HttpResponse setValidators(HttpResponse httpResponse, String entityTag, long lastModified) {
+        if (entityTag != null) {
+            httpResponse.setHeader("ETag", entityTag);
+        }
+        httpResponse.setHeader("Last-Modified", formatHttpDate(lastModified));
+        return httpResponse;
+    }
+
+    // No body and no Content-Length, the client reuses its stored response.
+    private static HttpResponse buildNotModifiedResponse(String entityTag, long lastModified, boolean varies) {
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode("304");
+        httpResponse.setReasonPhrase("Not Modified");
+        httpResponse.setBody(new ByteArrayBody(new byte[0]));
+        setVary(httpResponse, varies);
+        return setValidators(httpResponse, entityTag, lastModified);
+    }
+
+    // Caches must not hand a representation negotiated for one client to a
+    // client with a different Accept-Encoding.
+    private static void setVary(HttpResponse httpResponse, boolean varies) {
+        if (varies) {
+            httpResponse.setHeader("Vary", "Accept-Encoding");
+        }
+    }
+
+    private static HttpResponse buildSuccessfulResponse(CachedResponse cachedResponse, String contentDisposition,
+            boolean varies) {
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode("200");
+        httpResponse.setReasonPhrase("OK");
+        httpResponse.setHeader("Content-Type", cachedResponse.getContentType());
+        httpResponse.setHeader("Content-Disposition", contentDisposition);
+        if (cachedResponse.getContentEncoding() != null) {
+            httpResponse.setHeader("Content-Encoding", cachedResponse.getContentEncoding());
+        }
+        httpResponse.setHeader("Accept-Ranges", "bytes");
+        setVary(httpResponse, varies);
+        httpResponse.setBody(new ByteArrayBody(cachedResponse.getBody()));
+        httpResponse.setContentLength(cachedResponse.getBody().length);
+        return httpResponse;
+    }
+
+    // HTTP/2 has no chunked transfer coding, a streamed body simply has no
+    // Content-Length there.
+    private HttpResponse buildSuccessfulResponse(FileChannel fileChannel, String mimeType, String contentDisposition,
+            String contentCoding, boolean varies, boolean chunked) throws IOException {
         HttpResponse httpResponse = new HttpResponse();
         httpResponse.setVersion("HTTP/1.1");
         httpResponse.setStatusCode("200");
         httpResponse.setReasonPhrase("OK");
         httpResponse.setHeader("Content-Type", mimeType);
         httpResponse.setHeader("Content-Disposition", contentDisposition);
-        httpResponse.setHeader("Connection", "close");
+        httpResponse.setHeader("Accept-Ranges", "bytes");
+        setVary(httpResponse, varies);
 
-        if (gzipCompression) {
-            httpResponse.setHeader("Content-Encoding", "gzip");
-            byte[] bodyAsBytesGzipCompressed = getBodyAsBytesGzipCompressed(fileContents);
-            httpResponse.setBody(bodyAsBytesGzipCompressed);
-            httpResponse.setHeader("Content-Length", Integer.toString(bodyAsBytesGzipCompressed.length));
+        long fileSize = fileChannel.size();
+        if (contentCoding != null && fileSize > gzipStreamingThreshold) {
+            httpResponse.setHeader("Content-Encoding", contentCoding);
+            if (chunked) {
+                httpResponse.setHeader("Transfer-Encoding", "chunked");
+            }
+            httpResponse.setBody(new CompressedChunkedBody(fileChannel, chunked, contentCoding, compression,
+                    bufferPool));
+        } else if (contentCoding != null) {
+            httpResponse.setHeader("Content-Encoding", contentCoding);
+            byte[] compressedBody = compression.compress(readFileContents(fileChannel), contentCoding);
+            fileChannel.close();
+            httpResponse.setBody(new ByteArrayBody(compressedBody));
+            httpResponse.setContentLength(compressedBody.length);
         } else {
-            httpResponse.setBody(fileContents);
-            httpResponse.setHeader("Content-Length", Integer.toString(fileContents.length));
+            // Sent straight from the file to the socket, see FileRegionBody
+            httpResponse.setBody(new FileRegionBody(fileChannel, 0, fileSize));
+            httpResponse.setContentLength(fileSize);
         }
 
         return httpResponse;
     }
 
-    private static byte[] getBodyAsBytesGzipCompressed(byte[] body) throws IOException {
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(os);
-        gzipOutputStream.write(body, 0, body.length);
-        gzipOutputStream.close();
-        return os.toByteArray();
+    // The file.gz generated ahead of time (see Precompressor) is sent instead
+    // of compressing the file, as long as it is not older than the file.
+    // Returns null if there is none to use.
+    private PathResolver.FileStat statPrecompressed(String normalizedPath, long lastModified) {
+        try {
+            PathResolver.FileStat fileStat = pathResolver.stat(normalizedPath + PRECOMPRESSED_GZIP_EXTENSION);
+            if (fileStat == null || fileStat.isDirectory() || fileStat.getLastModified() < lastModified) {
+                return null;
+            }
+            return fileStat;
+        } catch (IOException e) {
+            return null; // Not readable
+        }
+    }
+
+    // A small file.gz goes into the response cache under a key of its own,
+    // checked against its own modification time and size, a large one is
+    // sent straight from its file. Returns null if it is gone meanwhile.
+    private HttpResponse buildPrecompressedResponse(PathResolver.FileStat precompressedStat, String mimeType,
+            String contentDisposition) throws IOException {
+        String cacheKey = precompressedStat.getFile().getPath() + "|" + PRECOMPRESSED_CACHE_KEY;
+        CachedResponse cachedResponse = responseCache.get(cacheKey, precompressedStat.getLastModified(),
+                precompressedStat.getSize());
+        if (cachedResponse != null) {
+            compression.getMetrics().recordPrecompressedHit();
+            return buildSuccessfulResponse(cachedResponse, contentDisposition, true);
+        }
+
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(precompressedStat.getFile().toPath());
+        } catch (IOException e) {
+            return null; // Removed meanwhile, or not readable
+        }
+        compression.getMetrics().recordPrecompressedHit();
+
+        try {
+            long precompressedSize = fileChannel.size();
+            if (responseCache.isCacheable(precompressedSize)) {
+                byte[] body = readFileContents(fileChannel);
+                fileChannel.close();
+                cachedResponse = new CachedResponse(body, mimeType, Compression.GZIP,
+                        precompressedStat.getLastModified(), precompressedStat.getSize());
+                responseCache.put(cacheKey, cachedResponse);
+                return buildSuccessfulResponse(cachedResponse, contentDisposition, true);
+            }
+
+            HttpResponse httpResponse = new HttpResponse();
+            httpResponse.setVersion("HTTP/1.1");
+            httpResponse.setStatusCode("200");
+            httpResponse.setReasonPhrase("OK");
+            httpResponse.setHeader("Content-Type", mimeType);
+            httpResponse.setHeader("Content-Disposition", contentDisposition);
+            httpResponse.setHeader("Content-Encoding", Compression.GZIP);
+            httpResponse.setHeader("Accept-Ranges", "bytes");
+            setVary(httpResponse, true);
+            httpResponse.setBody(new FileRegionBody(fileChannel, 0, precompressedSize));
+            httpResponse.setContentLength(precompressedSize);
+            return httpResponse;
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    private static HttpResponse buildSuccessfulResponse(
+            ByteBuffer mappedFile, String mimeType, String contentDisposition, boolean varies) {
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode("200");
+        httpResponse.setReasonPhrase("OK");
+        httpResponse.setHeader("Content-Type", mimeType);
+        httpResponse.setHeader("Content-Disposition", contentDisposition);
+        httpResponse.setHeader("Accept-Ranges", "bytes");
+        setVary(httpResponse, varies);
+        httpResponse.setBody(new MappedFileBody(mappedFile, 0, mappedFile.capacity()));
+        httpResponse.setContentLength(mappedFile.capacity());
+        return httpResponse;
+    }
+
+    // Every range is sent from the file channel with transferTo, or sliced
+    // from the mapping of a hot file, several ranges as a multipart/byteranges
+    // body sharing the same channel or mapping.
+    private HttpResponse buildPartialResponse(File requestedResource, List<ByteRange> byteRanges,
+            long lastModified, long fileSize, String contentDisposition) throws IOException {
+        if (byteRanges.isEmpty()) {
+            return ErrorResponseHandler.build416ErrorResponse("Requested range not satisfiable.", fileSize);
+        }
+
+        ByteBuffer mappedFile = mappedFiles.get(requestedResource, lastModified, fileSize);
+        FileChannel fileChannel = mappedFile == null ? openFile(requestedResource) : null;
+        try {
+            String mimeType = mimeTypeResolver.resolve(requestedResource);
+
+            HttpResponse httpResponse = new HttpResponse();
+            httpResponse.setVersion("HTTP/1.1");
+            httpResponse.setStatusCode("206");
+            httpResponse.setReasonPhrase("Partial Content");
+            httpResponse.setHeader("Content-Disposition", contentDisposition);
+            httpResponse.setHeader("Accept-Ranges", "bytes");
+
+            if (byteRanges.size() == 1) {
+                ByteRange byteRange = byteRanges.get(0);
+                httpResponse.setHeader("Content-Type", mimeType);
+                httpResponse.setHeader("Content-Range", byteRange.toContentRange(fileSize));
+                httpResponse.setBody(getRegionBody(fileChannel, mappedFile, byteRange));
+            } else {
+                String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+                List<ResponseBody> parts = new ArrayList<>();
+                for (ByteRange byteRange : byteRanges) {
+                    String partHead = (parts.isEmpty() ? "" : CRLF) + "--" + boundary + CRLF
+                            + "Content-Type: " + mimeType + CRLF
+                            + "Content-Range: " + byteRange.toContentRange(fileSize) + CRLF + CRLF;
+                    parts.add(new ByteArrayBody(partHead.getBytes(StandardCharsets.US_ASCII)));
+                    parts.add(getRegionBody(fileChannel, mappedFile, byteRange));
+                }
+                parts.add(new ByteArrayBody(
+                        (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII)));
+                httpResponse.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                httpResponse.setBody(new CompositeBody(parts));
+            }
+            httpResponse.setContentLength(httpResponse.getBody().getLength());
+            return httpResponse;
+        } catch (RuntimeException e) {
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+            throw e;
+        }
+    }
+
+    private static ResponseBody getRegionBody(FileChannel fileChannel, ByteBuffer mappedFile, ByteRange byteRange) {
+        if (mappedFile != null) {
+            return new MappedFileBody(mappedFile, byteRange.getFirst(), byteRange.getLength());
+        }
+        return new FileRegionBody(fileChannel, byteRange.getFirst(), byteRange.getLength());
+    }
+
+    private static byte[] readFileContents(FileChannel fileChannel) throws IOException {
+        ByteBuffer fileContents = ByteBuffer.allocate(Math.toIntExact(fileChannel.size()));
+        while (fileContents.hasRemaining() && fileChannel.read(fileContents) != -1) {
+            // Keep reading until the whole file is in memory
+        }
+        return fileContents.hasRemaining()
+                ? Arrays.copyOf(fileContents.array(), fileContents.position())
+                : fileContents.array();
     }
 }
@@ -1,22 +1,39 @@
 package com.johnpapadatos;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 public class HttpResponse {
-    private static final String CRLF = "\r\n";
+    private static final String CONTENT_LENGTH = "Content-Length";
 
     private String version;
     private String statusCode;
     private String reasonPhrase;
     private final Map<String, String> headers;
-    private byte[] body;
+    private long contentLength = -1; // Kept as a number, -1 when not sent
+    private ResponseBody body;
+    private byte[] encodedHead; // Encoded ahead of time, see ErrorResponseHandler
 
     public HttpResponse() {
         headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     }
 
+    // Shares the headers and the encoded head of a response that is sent
+    // again and again, see ErrorResponseHandler. Neither can be changed
+    // through the new response anymore.
+    HttpResponse(HttpResponse encodedResponse, ResponseBody body) {
+        version = encodedResponse.version;
+        statusCode = encodedResponse.statusCode;
+        reasonPhrase = encodedResponse.reasonPhrase;
+        headers = Collections.unmodifiableMap(encodedResponse.headers); // Wrapped only once
+        contentLength = encodedResponse.contentLength;
+        encodedHead = encodedResponse.encodedHead;
+        this.body = body;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -42,18 +59,59 @@ public class HttpResponse {
     }
 
     public Map<String, String> getHeaders() {
-        return new TreeMap<>(headers);
+        Map<String, String> allHeaders = new TreeMap<>(headers);
+        if (contentLength >= 0) {
+            allHeaders.put(CONTENT_LENGTH, Long.toString(contentLength));
+        }
+        return allHeaders;
+    }
+
+    // Unlike getHeaders, does not copy the headers.
+    public String getHeader(String key) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(key)) {
+            return contentLength >= 0 ? Long.toString(contentLength) : null;
+        }
+        return headers.get(key);
     }
 
     public void setHeader(String key, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(key)) {
+            setContentLength(Long.parseLong(value));
+            return;
+        }
         headers.put(key, value);
+        encodedHead = null;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(long contentLength) {
+        encodedHead = null;
+        this.contentLength = contentLength;
     }
 
-    public byte[] getBody() {
+    // Status-line and headers as sent, or null if they are encoded for each
+    // response. Changing a header discards them.
+    byte[] getEncodedHead() {
+        return encodedHead;
+    }
+
+    void setEncodedHead(byte[] encodedHead) {
+        this.encodedHead = encodedHead;
+    }
+
+    // Headers other than Content-Length, in case-insensitive order.
+    Set<Map.Entry<String, String>> headerEntries() {
+        return headers.entrySet();
+    }
+
+    public ResponseBody getBody() {
         return body;
     }
 
-    public void setBody(byte[] body) {
+    public void setBody(ResponseBody body) {
         this.body = body;
     }
 
@@ -65,7 +123,8 @@ public class HttpResponse {
         result = prime * result + ((statusCode == null) ? 0 : statusCode.hashCode());
         result = prime * result + ((reasonPhrase == null) ? 0 : reasonPhrase.hashCode());
         result = prime * result + ((headers == null) ? 0 : headers.hashCode());
-        result = prime * result + ((body == null) ? 0 : Arrays.hashCode(body));
+        result = prime * result + (int) (contentLength ^ (contentLength >>> 32));
+        result = prime * result + ((body == null) ? 0 : body.hashCode());
         return result;
     }
 
@@ -98,28 +157,23 @@ public class HttpResponse {
                 return false;
         } else if (!headers.equals(other.headers))
             return false;
+        if (contentLength != other.contentLength)
+            return false;
         if (body == null) {
             if (other.body != null)
                 return false;
-        } else if (!Arrays.equals(body, other.body))
+        } else if (!body.equals(other.body))
             return false;
         return true;
     }
 
-    public byte[] asBytes() {
-        StringBuilder response = new StringBuilder();
-        response.append(version).append(" ").append(statusCode).append(" ").append(reasonPhrase).append(CRLF);
-        response.append(
-                String.join(CRLF, headers.entrySet().stream().map(h -> h.getKey() + ": " + h.getValue()).toList()));
-        response.append(CRLF).append(CRLF);
-        byte[] responseWithoutBodyAsBytes = response.toString().getBytes();
-
-        byte[] responseAsBytes = new byte[responseWithoutBodyAsBytes.length + body.length];
-        System.arraycopy(
-                responseWithoutBodyAsBytes, 0, responseAsBytes, 0, responseWithoutBodyAsBytes.length);
-        System.arraycopy(
-                body, 0, responseAsBytes, responseWithoutBodyAsBytes.length, body.length);
-        return responseAsBytes;
+    // Status-line and headers, the body is written separately by
+    // HttpResponseWriter, which encodes them into a reused buffer instead.
+    public byte[] getHeadAsBytes() {
+        ByteBuffer head = ResponseHeadEncoder.encode(this, ByteBuffer.allocate(ResponseHeadEncoder.HEAD_BUFFER_SIZE));
+        byte[] bytes = new byte[head.remaining()];
+        head.get(bytes);
+        return bytes;
     }
 
     @Override
@@ -128,6 +182,7 @@ public class HttpResponse {
                 + ", statusCode=" + statusCode
                 + ", reasonPhrase=" + reasonPhrase
                 + ", headers=" + headers
+                + ", contentLength=" + contentLength
                 + ", body=" + body
                 + "]";
     }
@@ -0,0 +1,104 @@
+package com.johnpapadatos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+// Writes the head and the body of a response without copying them into a
+// combined array. The head and an in-memory body go out in a single
+// gathering write, file bodies are transferred separately. The head is
+// encoded into a buffer that the connection reuses for all its responses.
+public class HttpResponseWriter implements Closeable {
+    private final ByteBuffer head;
+    private final ResponseBody body;
+    private long unknownLengthBodyBytes;
+
+    public HttpResponseWriter(HttpResponse httpResponse) {
+        this(httpResponse, ByteBuffer.allocate(ResponseHeadEncoder.HEAD_BUFFER_SIZE));
+    }
+
+    // The buffer must not be reused before the response has been written.
+    public HttpResponseWriter(HttpResponse httpResponse, ByteBuffer headBuffer) {
+        byte[] encodedHead = httpResponse.getEncodedHead();
+        this.head = encodedHead != null ? ByteBuffer.wrap(encodedHead)
+                : ResponseHeadEncoder.encode(httpResponse, headBuffer);
+        this.body = httpResponse.getBody();
+    }
+
+    // Size of the whole response once writeTo has returned true.
+    public long getBytesWritten() {
+        return head.limit() + (body.getLength() >= 0 ? body.getLength() : unknownLengthBodyBytes);
+    }
+
+    // Returns true once the whole response has been written. On non-blocking
+    // channels it must be called again when the channel becomes writable.
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        if (head.hasRemaining()) {
+            ByteBuffer bodyBuffer = getBodyBuffer();
+            if (bodyBuffer != null && channel instanceof GatheringByteChannel gathering) {
+                gathering.write(new ByteBuffer[] { head, bodyBuffer });
+                return !head.hasRemaining() && !bodyBuffer.hasRemaining();
+            }
+
+            channel.write(head);
+            if (head.hasRemaining()) {
+                return false;
+            }
+        }
+        if (body.getLength() < 0) {
+            return body.writeTo(new CountingChannel(channel));
+        }
+        return body.writeTo(channel);
+    }
+
+    // In-memory bodies, which can go out together with the head.
+    private ByteBuffer getBodyBuffer() {
+        if (body instanceof ByteArrayBody byteArrayBody) {
+            return byteArrayBody.getBuffer();
+        }
+        if (body instanceof MappedFileBody mappedFileBody) {
+            return mappedFileBody.getBuffer();
+        }
+        return null;
+    }
+
+    public void writeFully(WritableByteChannel channel) throws IOException {
+        while (!writeTo(channel)) {
+            // Blocking channels only return once they made progress
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+
+    // Only wraps bodies of unknown length, which never use transferTo, so
+    // file bodies keep going straight to the socket channel.
+    private class CountingChannel implements WritableByteChannel {
+        private final WritableByteChannel channel;
+
+        CountingChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = channel.write(src);
+            unknownLengthBodyBytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
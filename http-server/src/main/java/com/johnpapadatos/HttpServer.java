@@ -8,23 +8,60 @@ import java.util.concurrent.ExecutorService;
 public class HttpServer {
     private final ServerSocket serverSocket;
     private final ExecutorService threadPool;
+    private final HttpRequestHandler httpRequestHandler;
 
-    public HttpServer(ServerSocket serverSocket, ExecutorService threadPool) {
+    public HttpServer(ServerSocket serverSocket, ExecutorService threadPool, Config config) {
+        this(serverSocket, threadPool, new HttpRequestHandler(config));
+    }
+
+    // Listeners sharing a port also share the handler, so the response cache
+    // and the metrics stay server-wide.
+    public HttpServer(ServerSocket serverSocket, ExecutorService threadPool, HttpRequestHandler httpRequestHandler) {
         this.serverSocket = serverSocket;
         this.threadPool = threadPool;
+        this.httpRequestHandler = httpRequestHandler;
+        httpRequestHandler.getMetrics().monitorThreadPool(threadPool);
+    }
+
+    public HttpRequestHandler getHttpRequestHandler() {
+        return httpRequestHandler;
+    }
+
+    // The calling thread is one of the acceptors, the others are started here
+    // and stop once the socket is closed.
+    public void start() throws IOException {
+        int acceptorThreads = httpRequestHandler.getConfig().getAcceptorThreads();
+        for (int i = 1; i < acceptorThreads; i++) {
+            new Thread(() -> {
+                try {
+                    accept();
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        httpRequestHandler.getAccessLog().logException("Acceptor stopped", e);
+                    }
+                }
+            }, "acceptor-" + serverSocket.getLocalPort() + "-" + i).start();
+        }
+        accept();
     }
 
-    public void start(String baseDir) throws IOException {
+    private void accept() throws IOException {
         try {
             while (!serverSocket.isClosed()) {
                 Socket socket = serverSocket.accept();
-                threadPool.submit(new WorkerRunnable(socket, baseDir));
+                Metrics metrics = httpRequestHandler.getMetrics();
+                metrics.connectionOpened();
+                WorkerRunnable workerRunnable = new WorkerRunnable(socket, threadPool, httpRequestHandler);
+                threadPool.execute(new SheddableTask(workerRunnable, workerRunnable::shed,
+                        httpRequestHandler.getConfig().getQueueTimeout(), metrics));
             }
         } finally {
             if (!serverSocket.isClosed()) {
                 serverSocket.close();
             }
             if (!threadPool.isShutdown()) {
+                // Shared by every listener, their new connections are shed
+                // from now on
                 threadPool.shutdown();
             }
         }
@@ -0,0 +1,369 @@
+package com.johnpapadatos;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Byte-oriented counterpart of HttpRequestParser with the same validation
+// rules. It keeps one reusable buffer per connection, scans it for CR/LF and
+// delimiters by hand and resumes where it stopped when a request arrives in
+// several reads. Bytes following a complete request stay buffered for the
+// next one. A request that cannot be parsed ends the parsing: it is returned
+// with its error set and the buffered bytes are dropped. A request with a
+// method other than GET is returned with its error set too, but only once it
+// has been parsed to its end, and the parsing goes on after it.
+public class IncrementalHttpRequestParser {
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_HEADER_SECTION_SIZE = 64 * 1024;
+    private static final int MAX_BODY_SIZE = 1024 * 1024;
+
+    private static final byte[] GET = "GET".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HTTP_1_1 = "HTTP/1.1".getBytes(StandardCharsets.US_ASCII);
+    static final String[] KNOWN_HEADER_NAMES = {
+            "Host", "Connection", "Accept", "Accept-Encoding", "Accept-Language", "Accept-Charset",
+            "User-Agent", "Content-Length", "Content-Type", "Cache-Control", "Pragma", "Cookie",
+            "Referer", "Origin", "Range", "If-Range", "If-None-Match", "If-Modified-Since", "Upgrade",
+            "HTTP2-Settings", "X-Content-Disposition", "X-Forwarded-For", "Sec-Fetch-Mode", "Sec-Fetch-Site",
+            "Sec-Fetch-Dest", "Upgrade-Insecure-Requests", "DNT", "TE"
+    };
+    private static final byte[][] KNOWN_HEADER_NAME_BYTES = Arrays.stream(KNOWN_HEADER_NAMES)
+            .map(name -> name.getBytes(StandardCharsets.US_ASCII))
+            .toArray(byte[][]::new);
+
+    private enum State {
+        REQUEST_LINE, HEADERS, BODY
+    }
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int start; // First byte not consumed yet
+    private int limit; // End of the buffered bytes
+    private int scanPosition; // Where the search for the next line feed resumes
+    private int headerSectionStart;
+
+    private State state = State.REQUEST_LINE;
+    private HttpRequest httpRequest;
+    private int contentLength;
+
+    public void feed(byte[] src, int offset, int length) {
+        ensureWritable(length);
+        System.arraycopy(src, offset, buffer, limit, length);
+        limit += length;
+    }
+
+    public void feed(ByteBuffer src) {
+        int length = src.remaining();
+        ensureWritable(length);
+        src.get(buffer, limit, length);
+        limit += length;
+    }
+
+    // Reads whatever the stream has available straight into the parser's
+    // buffer. Returns the number of bytes read, or -1 at the end of the stream.
+    public int readFrom(InputStream in) throws IOException {
+        ensureWritable(1);
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read > 0) {
+            limit += read;
+        }
+        return read;
+    }
+
+    public boolean hasBufferedBytes() {
+        return limit > start;
+    }
+
+    public int getBufferedLength() {
+        return limit - start;
+    }
+
+    // Whether the buffered bytes match the beginning of the prefix, or all of
+    // it. Nothing buffered matches any prefix.
+    public boolean startsWith(byte[] prefix) {
+        int length = Math.min(limit - start, prefix.length);
+        return Arrays.equals(buffer, start, start + length, prefix, 0, length);
+    }
+
+    // Hands the connection over to another protocol: the returned stream
+    // yields the bytes buffered but not parsed yet, then the rest of the input.
+    public InputStream takeBufferedInput(InputStream in) {
+        byte[] buffered = Arrays.copyOfRange(buffer, start, limit);
+        start = 0;
+        limit = 0;
+        scanPosition = 0;
+        return new SequenceInputStream(new ByteArrayInputStream(buffered), in);
+    }
+
+    // Returns the next complete request, or null when more bytes are needed.
+    public HttpRequest parse() {
+        while (true) {
+            switch (state) {
+                case REQUEST_LINE -> {
+                    int lineEnd = findLineEnd();
+                    if (lineEnd == -1) {
+                        return isHeaderSectionTooLarge() ? fail(new HttpRequest(), RequestError.BAD_REQUEST,
+                                "Request header section too large.") : null;
+                    }
+                    httpRequest = new HttpRequest();
+                    headerSectionStart = start;
+                    if (!parseRequestLine(start, trimCarriageReturn(start, lineEnd))) {
+                        return fail(httpRequest, null, null);
+                    }
+                    consumeLine(lineEnd);
+                    state = State.HEADERS;
+                }
+                case HEADERS -> {
+                    int lineEnd = findLineEnd();
+                    if (lineEnd == -1) {
+                        return isHeaderSectionTooLarge() ? fail(httpRequest, RequestError.BAD_REQUEST,
+                                "Request header section too large.") : null;
+                    }
+                    int lineLimit = trimCarriageReturn(start, lineEnd);
+                    if (lineLimit == start) {
+                        consumeLine(lineEnd);
+                        contentLength = getContentLength();
+                        if (contentLength == -1) {
+                            return fail(httpRequest, null, null);
+                        }
+                        state = State.BODY;
+                    } else {
+                        if (!parseHeader(start, lineLimit)) {
+                            return fail(httpRequest, null, null);
+                        }
+                        consumeLine(lineEnd);
+                    }
+                }
+                case BODY -> {
+                    if (limit - start < contentLength) {
+                        return null;
+                    }
+                    httpRequest.setBody(new String(buffer, start, contentLength, StandardCharsets.UTF_8));
+                    start += contentLength;
+                    scanPosition = start;
+                    return completeRequest();
+                }
+            }
+        }
+    }
+
+    private HttpRequest completeRequest() {
+        HttpRequest completedRequest = httpRequest;
+        httpRequest = null;
+        state = State.REQUEST_LINE;
+        if (start == limit) {
+            start = 0;
+            limit = 0;
+            scanPosition = 0;
+        }
+        return completedRequest;
+    }
+
+    // Ends parsing with a request that carries its error. The connection is
+    // closed once the error is answered, nothing buffered is parsed anymore.
+    // A null error keeps the one already set on the request.
+    private HttpRequest fail(HttpRequest failedRequest, RequestError error, String detail) {
+        if (error != null) {
+            setError(failedRequest, error, detail);
+        }
+        httpRequest = null;
+        state = State.REQUEST_LINE;
+        start = 0;
+        limit = 0;
+        scanPosition = 0;
+        return failedRequest;
+    }
+
+    private static boolean setError(HttpRequest httpRequest, RequestError error, String detail) {
+        httpRequest.setError(error);
+        httpRequest.setErrorDetail(detail);
+        return false;
+    }
+
+    // Returns false once the error of the request is set.
+    private boolean parseRequestLine(int from, int to) {
+        if (indexOfControl(from, to, false) != -1) {
+            return setError(httpRequest, RequestError.BAD_REQUEST, "Invalid request-line.");
+        }
+        int firstSpace = indexOf(' ', from, to);
+        int secondSpace = firstSpace == -1 ? -1 : indexOf(' ', firstSpace + 1, to);
+        if (secondSpace == -1 || indexOf(' ', secondSpace + 1, to) != -1
+                || firstSpace == from || secondSpace == firstSpace + 1 || secondSpace == to - 1) {
+            return setError(httpRequest, RequestError.BAD_REQUEST, "Invalid request-line.");
+        }
+
+        boolean allowedMethod = regionEquals(from, firstSpace, GET);
+        String method = allowedMethod ? "GET" : new String(buffer, from, firstSpace - from, StandardCharsets.UTF_8);
+        httpRequest.setMethod(method);
+
+        if (buffer[firstSpace + 1] != '/') {
+            return setError(httpRequest, RequestError.BAD_REQUEST, "Invalid request-target.");
+        } else if (secondSpace - firstSpace == 2) {
+            httpRequest.setPath("/index.html");
+        } else {
+            httpRequest.setPath(new String(buffer, firstSpace + 1, secondSpace - firstSpace - 1,
+                    StandardCharsets.UTF_8));
+        }
+
+        if (!regionEquals(secondSpace + 1, to, HTTP_1_1)) {
+            return setError(httpRequest, RequestError.BAD_REQUEST, "Currently only HTTP 1.1 is supported.");
+        }
+        httpRequest.setVersion("HTTP/1.1");
+        if (!allowedMethod) {
+            // Parsed to its end like any request, so that the connection can go on
+            setError(httpRequest, RequestError.METHOD_NOT_ALLOWED, method + " method not allowed.");
+        }
+        return true;
+    }
+
+    private boolean parseHeader(int from, int to) {
+        int colon = indexOf(':', from, to);
+        if (colon <= from || colon + 1 >= to || buffer[colon + 1] != ' ' || indexOf(' ', from, colon) != -1
+                || indexOfControl(from, colon, false) != -1 || indexOfControl(colon + 2, to, true) != -1) {
+            return setError(httpRequest, RequestError.BAD_REQUEST,
+                    "Invalid header: " + new String(buffer, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+
+        int valueStart = colon + 2;
+        int valueEnd = to;
+        while (valueEnd > valueStart && (buffer[valueEnd - 1] == ' ' || buffer[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        String value = new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1);
+        httpRequest.setHeader(getHeaderName(from, colon), value);
+        return true;
+    }
+
+    // Well-known header names resolve to a shared constant instead of a new String.
+    private String getHeaderName(int from, int to) {
+        int length = to - from;
+        for (int i = 0; i < KNOWN_HEADER_NAME_BYTES.length; i++) {
+            byte[] knownName = KNOWN_HEADER_NAME_BYTES[i];
+            if (knownName.length == length && regionEqualsIgnoreCase(from, knownName)) {
+                return KNOWN_HEADER_NAMES[i];
+            }
+        }
+        return new String(buffer, from, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // Returns -1 once the error of the request is set.
+    private int getContentLength() {
+        String contentLength = httpRequest.getHeader("Content-Length");
+        if (contentLength == null) {
+            return 0;
+        }
+
+        int value = parseDigits(contentLength);
+        if (value == -1 || value > MAX_BODY_SIZE) {
+            setError(httpRequest, RequestError.BAD_REQUEST, "Invalid Content-Length: " + contentLength);
+            return -1;
+        }
+        return value;
+    }
+
+    // Returns the value of 1 to 9 decimal digits, or -1 for anything else.
+    private static int parseDigits(String digits) {
+        if (digits.isEmpty() || digits.length() > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Returns the index of the next '\n', or -1 if the line is still incomplete.
+    private int findLineEnd() {
+        for (int i = Math.max(scanPosition, start); i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+
+        scanPosition = limit;
+        return -1;
+    }
+
+    // Whether the incomplete line makes the request-line or the header
+    // section longer than allowed.
+    private boolean isHeaderSectionTooLarge() {
+        int sectionStart = state == State.REQUEST_LINE ? start : headerSectionStart;
+        return limit - sectionStart > MAX_HEADER_SECTION_SIZE;
+    }
+
+    private int trimCarriageReturn(int from, int lineEnd) {
+        return lineEnd > from && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private void consumeLine(int lineEnd) {
+        start = lineEnd + 1;
+        scanPosition = start;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // A bare CR among them would let the server and a proxy in front of it
+    // disagree on where a header ends.
+    private int indexOfControl(int from, int to, boolean allowTab) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if ((b >= 0 && b < ' ' && !(allowTab && b == '\t')) || b == 0x7f) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int from, int to, byte[] expected) {
+        return Arrays.equals(buffer, from, to, expected, 0, expected.length);
+    }
+
+    // Only ASCII letters are folded, so e.g. '\r' never matches '-'.
+    private boolean regionEqualsIgnoreCase(int from, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (toLowerCase(buffer[from + i]) != toLowerCase(expected[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? b | 0x20 : b;
+    }
+
+    // Makes room for at least the given number of bytes after limit,
+    // discarding consumed bytes before growing the buffer.
+    private void ensureWritable(int length) {
+        if (buffer.length - limit >= length) {
+            return;
+        }
+
+        int offset = state == State.REQUEST_LINE ? start : Math.min(start, headerSectionStart);
+        if (offset > 0) {
+            System.arraycopy(buffer, offset, buffer, 0, limit - offset);
+            start -= offset;
+            limit -= offset;
+            scanPosition -= offset;
+            headerSectionStart -= offset;
+        }
+
+        if (buffer.length - limit < length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + length));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.johnpapadatos;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+// Prometheus-style histogram with fixed buckets. Every bucket is a LongAdder,
+// so concurrent recordings from many threads update separate cells instead
+// of contending on one counter.
+public class LatencyHistogram {
+    private static final double[] BUCKET_BOUNDS = { // Seconds
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS.length];
+    private static final String[] BUCKET_LABELS = new String[BUCKET_BOUNDS.length + 1];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS[i] * 1_000_000_000L);
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKET_BOUNDS[i]).stripTrailingZeros().toPlainString();
+        }
+        BUCKET_LABELS[BUCKET_BOUNDS.length] = "+Inf";
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1]; // Last one is +Inf
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    // Buckets are cumulative in the exposition format.
+    public void writeTo(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulativeCount = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulativeCount += buckets[i].sum();
+            out.append(name).append("_bucket{le=\"").append(BUCKET_LABELS[i]).append("\"} ").append(cumulativeCount)
+                    .append('\n');
+        }
+        out.append(name).append("_sum ").append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count ").append(cumulativeCount).append('\n');
+    }
+}
@@ -1,46 +1,156 @@
 package com.johnpapadatos;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class Main {
     private static final String CONFIG_PROPERTIES_FILE_PATH = "./config/config.properties";
+    private static final String PRECOMPRESS_OPTION = "--precompress";
 
     public static void main(String[] args) {
         try {
             Config config = ConfigProcessor.processConfigFile(CONFIG_PROPERTIES_FILE_PATH);
+            if (args.length > 0 && args[0].equals(PRECOMPRESS_OPTION)) {
+                if (args.length > 1) {
+                    config.setBaseDir(args[1]);
+                }
+                precompress(config);
+                return;
+            }
             displayAppliedConfigOptions(config);
 
-            ServerSocket serverSocket = new ServerSocket(config.getPort(), config.getBacklog());
+            List<Thread> serverThreads = config.getEngine().equals("nio")
+                    ? List.of(createNioServerThread(config, createThreadPool(config)))
+                    : createBlockingServerThreads(config);
             System.out.println("Listening on port: " + config.getPort());
+            for (Thread serverThread : serverThreads) {
+                serverThread.start();
+            }
+        } catch (IOException e) {
+            // The servers could not be started, so there is no access log to
+            // report it to yet
+            e.printStackTrace();
+        }
+    }
 
-            // Ensures that the server will be able to restart without
-            // waiting for old connections to time out.
-            serverSocket.setReuseAddress(true);
+    // Writes the .gz sidecars of baseDir and exits, without starting the
+    // server.
+    private static void precompress(Config config) {
+        System.out.println("Precompressing " + config.getBaseDir());
+        long start = System.nanoTime();
+        Precompressor precompressor = new Precompressor(config);
+        precompressor.run(ForkJoinPool.commonPool());
+        System.out.println("Written: " + precompressor.getWritten());
+        System.out.println("Up to date: " + precompressor.getUpToDate());
+        System.out.println("Not smaller: " + precompressor.getNotSmaller());
+        System.out.println("Failed: " + precompressor.getFailed());
+        System.out.println("Took: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        if (precompressor.getFailed() > 0) {
+            System.exit(1);
+        }
+    }
 
-            ExecutorService threadPool = new ThreadPoolExecutor(
-                    config.getCorePoolSize(),
-                    config.getMaximumPoolSize(),
-                    config.getKeepAliveTime(),
-                    TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<>());
+    public static ExecutorService createThreadPool(Config config) {
+        if (config.getExecutor().equals("virtual")) {
+            // One virtual thread per task: blocking socket and file I/O unmounts
+            // the virtual thread instead of parking a platform thread.
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+
+        // A bounded queue lets the pool grow to maximumPoolSize once it fills
+        // up, and past that point new work is shed with a 503 instead of piling up.
+        return new ThreadPoolExecutor(
+                config.getCorePoolSize(),
+                config.getMaximumPoolSize(),
+                config.getKeepAliveTime(),
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new SheddableTask.RejectionPolicy());
+    }
 
-            HttpServer httpServer = new HttpServer(serverSocket, threadPool);
-            Thread serverThread = new Thread(() -> {
+    // One thread per listener. With several listeners, each socket is bound
+    // to the same port with SO_REUSEPORT and the kernel spreads incoming
+    // connections across them, so accepts no longer contend on one socket.
+    // The listeners share one thread pool: the kernel picks the listener of a
+    // connection by its hash, and a pool per listener would leave it waiting
+    // behind the busy connections of its own listener while other threads
+    // sit idle.
+    private static List<Thread> createBlockingServerThreads(Config config) throws IOException {
+        int listeners = config.getListeners();
+        if (listeners > 1 && !supportsReusePort()) {
+            System.out.println("SO_REUSEPORT is not supported, falling back to a single listener.");
+            listeners = 1;
+        }
+
+        HttpRequestHandler httpRequestHandler = new HttpRequestHandler(config);
+        flushAccessLogOnShutdown(httpRequestHandler);
+        ExecutorService threadPool = createThreadPool(config);
+        List<Thread> serverThreads = new ArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            ServerSocket serverSocket = openServerSocket(config, listeners > 1);
+            HttpServer httpServer = new HttpServer(serverSocket, threadPool, httpRequestHandler);
+            serverThreads.add(new Thread(() -> {
                 try {
-                    httpServer.start(config.getBaseDir());
+                    httpServer.start();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    httpRequestHandler.getAccessLog().logException("Listener stopped", e);
                 }
-            });
-            serverThread.start();
-        } catch (IOException e) {
-            e.printStackTrace();
+            }, "listener-" + i));
+        }
+        return serverThreads;
+    }
+
+    // The access log writes in batches, the last one would be lost on exit.
+    private static void flushAccessLogOnShutdown(HttpRequestHandler httpRequestHandler) {
+        Runtime.getRuntime().addShutdownHook(new Thread(httpRequestHandler.getAccessLog()::close));
+    }
+
+    static ServerSocket openServerSocket(Config config, boolean reusePort) throws IOException {
+        // Opened through a channel so that accepted sockets expose a
+        // SocketChannel, which file bodies are transferred to with sendfile(2).
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+
+        // Ensures that the server will be able to restart without
+        // waiting for old connections to time out.
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        if (reusePort) {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
         }
+        serverChannel.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+        return serverChannel.socket();
+    }
+
+    static boolean supportsReusePort() throws IOException {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            return serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        }
+    }
+
+    private static Thread createNioServerThread(Config config, ExecutorService threadPool) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+
+        NioHttpServer nioHttpServer = new NioHttpServer(serverChannel, threadPool, config);
+        flushAccessLogOnShutdown(nioHttpServer.getHttpRequestHandler());
+        return new Thread(() -> {
+            try {
+                nioHttpServer.start();
+            } catch (IOException e) {
+                nioHttpServer.getHttpRequestHandler().getAccessLog().logException("Server stopped", e);
+            }
+        });
     }
 
     public static void displayAppliedConfigOptions(Config config) {
@@ -51,6 +161,33 @@ public class Main {
         System.out.println("Core pool size: " + config.getCorePoolSize());
         System.out.println("Maximum pool size: " + config.getMaximumPoolSize());
         System.out.println("Keep alive time: " + config.getKeepAliveTime());
+        System.out.println("Queue capacity: " + config.getQueueCapacity());
+        System.out.println("Queue timeout: " + config.getQueueTimeout());
+        System.out.println("Connection idle timeout: " + config.getConnectionIdleTimeout());
+        System.out.println("Max requests per connection: " + config.getMaxRequestsPerConnection());
+        System.out.println("Max pipelined requests: " + config.getMaxPipelinedRequests());
+        System.out.println("Engine: " + config.getEngine());
+        System.out.println("Event loop threads: " + config.getEventLoopThreads());
+        System.out.println("Executor: " + config.getExecutor());
+        System.out.println("Cache max bytes: " + config.getCacheMaxBytes());
+        System.out.println("Cache max entry size: " + config.getCacheMaxEntrySize());
+        System.out.println("Gzip streaming threshold: " + config.getGzipStreamingThreshold());
+        System.out.println("ETag: " + config.getEtag());
+        System.out.println("Mmap max bytes: " + config.getMmapMaxBytes());
+        System.out.println("Mmap min file size: " + config.getMmapMinFileSize());
+        System.out.println("HTTP/2: " + config.getHttp2());
+        System.out.println("Listeners: " + config.getListeners());
+        System.out.println("Acceptor threads: " + config.getAcceptorThreads());
+        System.out.println("Access log: " + config.getAccessLog());
+        System.out.println("Access log flush interval: " + config.getAccessLogFlushInterval());
+        System.out.println("Access log max file size: " + config.getAccessLogMaxFileSize());
+        System.out.println("Access log overflow: " + config.getAccessLogOverflow());
+        System.out.println("Compression level: " + config.getCompressionLevel());
+        System.out.println("Compression min size: " + config.getCompressionMinSize());
+        System.out.println("Compressible types: " + config.getCompressibleTypes());
+        System.out.println("Precompressed: " + config.getPrecompressed());
+        System.out.println("Stat cache max entries: " + config.getStatCacheMaxEntries());
+        System.out.println("Stat cache negative ttl: " + config.getStatCacheNegativeTtl());
         System.out.println("=====================================");
     }
-}
\ No newline at end of file
+}
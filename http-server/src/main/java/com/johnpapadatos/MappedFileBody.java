@@ -0,0 +1,40 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Sends a slice of a memory-mapped file. The slice has its own position, so
+// any number of responses can share one mapping without copying it.
+public class MappedFileBody implements ResponseBody {
+    private final ByteBuffer buffer;
+
+    public MappedFileBody(ByteBuffer mappedFile, long position, long count) {
+        this.buffer = mappedFile.slice(Math.toIntExact(position), Math.toIntExact(count));
+    }
+
+    // Remaining part of the body, shared with gathering writes of the response head.
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public long getLength() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                return false; // Socket send buffer is full
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFileBody [position=" + buffer.position() + ", remaining=" + buffer.remaining() + "]";
+    }
+}
@@ -0,0 +1,98 @@
+package com.johnpapadatos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read-only memory mappings of large files that are requested repeatedly,
+// shared by every worker. Responses are slices of a mapping, so serving a
+// hot file opens nothing and allocates no heap for its contents. A file is
+// mapped on its second recent request, mappings are replaced once the file
+// changes, and the total mapped size is bounded by a WeightedTinyLfuMap,
+// like the response cache.
+//
+// A MappedByteBuffer cannot be unmapped while responses may still be
+// sending from it, so a dropped mapping is released by the garbage collector.
+public class MappedFileCache {
+    private static final int HOT_FREQUENCY = 2;
+    private static final int ESTIMATED_ENTRY_SIZE = 1024 * 1024;
+
+    private final long maxBytes;
+    private final long minFileSize;
+    private final WeightedTinyLfuMap<String, MappedFile> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    public MappedFileCache(long maxBytes, long minFileSize) {
+        this.maxBytes = maxBytes;
+        this.minFileSize = minFileSize;
+        this.entries = new WeightedTinyLfuMap<>(maxBytes, ESTIMATED_ENTRY_SIZE, mappedFile -> mappedFile.fileSize);
+    }
+
+    public boolean isMappable(long fileSize) {
+        return maxBytes > 0 && fileSize >= minFileSize && fileSize <= Math.min(maxBytes, Integer.MAX_VALUE);
+    }
+
+    // Returns the mapping of the file's current version, mapping the file if
+    // it has become hot, or null if it should be read from disk instead.
+    public ByteBuffer get(File file, long lastModified, long fileSize) throws IOException {
+        if (!isMappable(fileSize)) {
+            return null;
+        }
+
+        String key = file.getPath();
+        entries.recordAccess(key);
+
+        MappedFile mappedFile = entries.get(key);
+        if (mappedFile != null && mappedFile.isValidFor(lastModified, fileSize)) {
+            hits.increment();
+            return mappedFile.buffer;
+        }
+
+        if (entries.frequency(key) < HOT_FREQUENCY) {
+            return null;
+        }
+        return map(key, file, lastModified, fileSize);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    public long getSize() {
+        return entries.getWeight();
+    }
+
+    // A mapping that is not admitted is left to the garbage collector.
+    private ByteBuffer map(String key, File file, long lastModified, long fileSize) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel fileChannel = FileChannel.open(file.toPath())) {
+            // The mapping stays valid once the channel is closed
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        return entries.put(key, new MappedFile(buffer, lastModified, fileSize)) ? buffer : null;
+    }
+
+    private static class MappedFile {
+        private final ByteBuffer buffer;
+        private final long lastModified; // Milliseconds since the epoch
+        private final long fileSize;
+
+        MappedFile(ByteBuffer buffer, long lastModified, long fileSize) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+        }
+
+        boolean isValidFor(long lastModified, long fileSize) {
+            return this.lastModified == lastModified && this.fileSize == fileSize;
+        }
+    }
+}
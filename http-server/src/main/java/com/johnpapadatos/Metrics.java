@@ -0,0 +1,217 @@
+package com.johnpapadatos;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-wide counters and histograms, updated without locks from every
+// connection and worker thread, and rendered in the Prometheus text format
+// for the reserved /metrics path.
+public class Metrics {
+    public static final String METRICS_PATH = "/metrics";
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Map<String, LongAdder> responsesByStatusCode = new ConcurrentHashMap<>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder gzipInputBytes = new LongAdder();
+    private final LongAdder gzipOutputBytes = new LongAdder();
+    private final LongAdder precompressedHits = new LongAdder();
+    private final LongAdder openConnections = new LongAdder();
+    private final Map<String, LongAdder> shedByReason = new ConcurrentHashMap<>();
+    private final LatencyHistogram requestDuration = new LatencyHistogram();
+    private final LatencyHistogram queueDuration = new LatencyHistogram();
+    private final CopyOnWriteArrayList<ExecutorService> threadPools = new CopyOnWriteArrayList<>();
+    private volatile StaticResponseCache responseCache;
+    private volatile MappedFileCache mappedFiles;
+    private volatile PathResolver pathResolver;
+    private volatile BufferPool bufferPool;
+    private volatile AccessLog accessLog;
+
+    public void monitorThreadPool(ExecutorService threadPool) {
+        threadPools.addIfAbsent(threadPool); // Listeners share one pool
+    }
+
+    public void monitorResponseCache(StaticResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public void monitorMappedFiles(MappedFileCache mappedFiles) {
+        this.mappedFiles = mappedFiles;
+    }
+
+    public void monitorPathResolver(PathResolver pathResolver) {
+        this.pathResolver = pathResolver;
+    }
+
+    public void monitorBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    public void monitorAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public void connectionOpened() {
+        openConnections.increment();
+    }
+
+    public void connectionClosed() {
+        openConnections.decrement();
+    }
+
+    // Called once the last byte of a response has been written. The duration
+    // runs from the request being parsed.
+    public void recordResponse(String statusCode, long bytes, long durationNanos) {
+        responsesByStatusCode.computeIfAbsent(statusCode, k -> new LongAdder()).increment();
+        bytesSent.add(bytes);
+        requestDuration.record(durationNanos);
+    }
+
+    public void recordCompression(long inputBytes, long outputBytes) {
+        gzipInputBytes.add(inputBytes);
+        gzipOutputBytes.add(outputBytes);
+    }
+
+    public void recordPrecompressedHit() {
+        precompressedHits.increment();
+    }
+
+    // Wraps a task about to be handed to the thread pool, to record how long
+    // it waits in the queue before a thread picks it up.
+    public Runnable timeQueued(Runnable task) {
+        long queuedAt = System.nanoTime();
+        return () -> {
+            recordQueueDuration(System.nanoTime() - queuedAt);
+            task.run();
+        };
+    }
+
+    public void recordQueueDuration(long durationNanos) {
+        queueDuration.record(durationNanos);
+    }
+
+    public void recordShed(String reason) {
+        shedByReason.computeIfAbsent(reason, k -> new LongAdder()).increment();
+    }
+
+    public long getResponses(String statusCode) {
+        LongAdder responses = responsesByStatusCode.get(statusCode);
+        return responses == null ? 0 : responses.sum();
+    }
+
+    public long getShed(String reason) {
+        LongAdder shed = shedByReason.get(reason);
+        return shed == null ? 0 : shed.sum();
+    }
+
+    public long getOpenConnections() {
+        return openConnections.sum();
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        writeHeader(out, "http_responses_total", "Responses sent, by status code.", "counter");
+        for (Map.Entry<String, LongAdder> responses : new TreeMap<>(responsesByStatusCode).entrySet()) {
+            out.append("http_responses_total{code=\"").append(responses.getKey()).append("\"} ")
+                    .append(responses.getValue().sum()).append('\n');
+        }
+        writeSample(out, "http_response_bytes_total", "Bytes sent, response heads included.", "counter",
+                bytesSent.sum());
+        writeSample(out, "http_gzip_input_bytes_total", "Bytes of file content compressed with gzip or deflate.",
+                "counter", gzipInputBytes.sum());
+        writeSample(out, "http_gzip_output_bytes_total", "Bytes produced by gzip or deflate compression.",
+                "counter", gzipOutputBytes.sum());
+        writeSample(out, "http_precompressed_hits_total", "Responses sent from a precompressed .gz file.",
+                "counter", precompressedHits.sum());
+        requestDuration.writeTo(out, "http_request_duration_seconds",
+                "Time from a request being parsed until its response is written.");
+        queueDuration.writeTo(out, "http_thread_pool_queue_duration_seconds",
+                "Time tasks waited in the thread pool queue.");
+        writeHeader(out, "http_shed_total", "Requests answered with 503 by load shedding, by reason.", "counter");
+        for (Map.Entry<String, LongAdder> shed : new TreeMap<>(shedByReason).entrySet()) {
+            out.append("http_shed_total{reason=\"").append(shed.getKey()).append("\"} ")
+                    .append(shed.getValue().sum()).append('\n');
+        }
+        writeSample(out, "http_open_connections", "Open client connections.", "gauge", openConnections.sum());
+
+        boolean platformThreadPool = false;
+        long activeThreads = 0;
+        long poolThreads = 0;
+        long queueSize = 0;
+        for (ExecutorService threadPool : threadPools) {
+            if (threadPool instanceof ThreadPoolExecutor threadPoolExecutor) {
+                platformThreadPool = true;
+                activeThreads += threadPoolExecutor.getActiveCount();
+                poolThreads += threadPoolExecutor.getPoolSize();
+                queueSize += threadPoolExecutor.getQueue().size();
+            }
+        }
+        if (platformThreadPool) {
+            writeSample(out, "http_thread_pool_active_threads", "Threads running a task.", "gauge", activeThreads);
+            writeSample(out, "http_thread_pool_threads", "Threads in the pool.", "gauge", poolThreads);
+            writeSample(out, "http_thread_pool_queue_size", "Tasks waiting for a thread.", "gauge", queueSize);
+        }
+
+        StaticResponseCache cache = responseCache;
+        if (cache != null) {
+            writeSample(out, "http_cache_hits_total", "Response cache hits.", "counter", cache.getHits());
+            writeSample(out, "http_cache_misses_total", "Response cache misses.", "counter", cache.getMisses());
+            writeSample(out, "http_cache_evictions_total", "Responses evicted from the cache.", "counter",
+                    cache.getEvictions());
+            writeSample(out, "http_cache_bytes", "Bytes held by the response cache.", "gauge", cache.getSize());
+        }
+
+        MappedFileCache mapped = mappedFiles;
+        if (mapped != null) {
+            writeSample(out, "http_mmap_hits_total", "Responses sent from a memory-mapped file.", "counter",
+                    mapped.getHits());
+            writeSample(out, "http_mmap_evictions_total", "Memory mappings dropped to stay within mmapMaxBytes.",
+                    "counter", mapped.getEvictions());
+            writeSample(out, "http_mmap_bytes", "Bytes of files currently memory-mapped.", "gauge",
+                    mapped.getSize());
+        }
+
+        PathResolver resolver = pathResolver;
+        if (resolver != null) {
+            writeSample(out, "http_stat_cache_hits_total", "File lookups answered by the stat cache.", "counter",
+                    resolver.getHits());
+            writeSample(out, "http_stat_cache_misses_total", "File lookups that asked the file system.", "counter",
+                    resolver.getMisses());
+            writeSample(out, "http_stat_cache_entries", "Files and missing files held by the stat cache.", "gauge",
+                    resolver.getSize());
+        }
+
+        BufferPool pool = bufferPool;
+        if (pool != null) {
+            writeSample(out, "http_buffer_pool_acquired_total", "Buffers taken from the buffer pool.", "counter",
+                    pool.getAcquired());
+            writeSample(out, "http_buffer_pool_allocated_total", "Buffers allocated because the pool had none free.",
+                    "counter", pool.getAllocated());
+            writeSample(out, "http_buffer_pool_outstanding", "Pooled buffers currently in use.", "gauge",
+                    pool.getOutstanding());
+            writeSample(out, "http_buffer_pool_shared_bytes", "Bytes of free buffers in the shared pool.", "gauge",
+                    pool.getSharedBytes());
+        }
+
+        AccessLog log = accessLog;
+        if (log != null) {
+            writeSample(out, "http_access_log_dropped_total", "Log records dropped because the ring buffer was full.",
+                    "counter", log.getDropped());
+        }
+        return out.toString();
+    }
+
+    private static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(StringBuilder out, String name, String help, String type, long value) {
+        writeHeader(out, name, help, type);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
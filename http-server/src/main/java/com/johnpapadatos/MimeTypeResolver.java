@@ -0,0 +1,103 @@
+package com.johnpapadatos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tika.Tika;
+
+// Resolves the Content-Type of a file from its extension. Only files with an
+// unknown extension fall back to Tika, whose content sniffing opens and reads
+// the file, and its result is remembered per path, for the paths requested
+// most often.
+public class MimeTypeResolver {
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+    private static final int MAX_CACHED_PATHS = 10_000;
+    private static final Map<String, String> EXTENSION_MIME_TYPES = createExtensionMimeTypes();
+
+    private final Map<String, String> mimeTypes;
+    private final WeightedTinyLfuMap<String, String> detectedMimeTypes = new WeightedTinyLfuMap<>(
+            MAX_CACHED_PATHS, 1, mimeType -> 1);
+
+    public MimeTypeResolver(Map<String, String> mimeTypeOverrides) {
+        mimeTypes = new HashMap<>(EXTENSION_MIME_TYPES);
+        mimeTypeOverrides.forEach((extension, mimeType) -> mimeTypes.put(extension.toLowerCase(Locale.ROOT), mimeType));
+    }
+
+    public String resolve(File file) {
+        String mimeType = mimeTypes.get(getExtension(file.getName()));
+        if (mimeType != null) {
+            return mimeType;
+        }
+
+        String path = file.getPath();
+        detectedMimeTypes.recordAccess(path);
+        mimeType = detectedMimeTypes.get(path);
+        if (mimeType == null) {
+            mimeType = detect(file);
+            detectedMimeTypes.put(path, mimeType);
+        }
+        return mimeType;
+    }
+
+    private static String detect(File file) {
+        try {
+            return TikaHolder.TIKA.detect(file);
+        } catch (IOException e) {
+            return DEFAULT_MIME_TYPE;
+        }
+    }
+
+    private static String getExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot == -1 ? "" : filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, String> createExtensionMimeTypes() {
+        Map<String, String> mimeTypes = new HashMap<>();
+        mimeTypes.put("html", "text/html");
+        mimeTypes.put("htm", "text/html");
+        mimeTypes.put("css", "text/css");
+        mimeTypes.put("js", "application/javascript");
+        mimeTypes.put("mjs", "application/javascript");
+        mimeTypes.put("json", "application/json");
+        mimeTypes.put("map", "application/json");
+        mimeTypes.put("xml", "application/xml");
+        mimeTypes.put("txt", "text/plain");
+        mimeTypes.put("csv", "text/csv");
+        mimeTypes.put("md", "text/x-web-markdown");
+        mimeTypes.put("png", "image/png");
+        mimeTypes.put("jpg", "image/jpeg");
+        mimeTypes.put("jpeg", "image/jpeg");
+        mimeTypes.put("gif", "image/gif");
+        mimeTypes.put("webp", "image/webp");
+        mimeTypes.put("avif", "image/avif");
+        mimeTypes.put("svg", "image/svg+xml");
+        mimeTypes.put("ico", "image/vnd.microsoft.icon");
+        mimeTypes.put("bmp", "image/bmp");
+        mimeTypes.put("woff", "font/woff");
+        mimeTypes.put("woff2", "font/woff2");
+        mimeTypes.put("ttf", "font/ttf");
+        mimeTypes.put("otf", "font/otf");
+        mimeTypes.put("mp3", "audio/mpeg");
+        mimeTypes.put("ogg", "audio/ogg");
+        mimeTypes.put("wav", "audio/wav");
+        mimeTypes.put("mp4", "video/mp4");
+        mimeTypes.put("webm", "video/webm");
+        mimeTypes.put("pdf", "application/pdf");
+        mimeTypes.put("zip", "application/zip");
+        mimeTypes.put("gz", "application/gzip");
+        mimeTypes.put("tar", "application/x-tar");
+        mimeTypes.put("wasm", "application/wasm");
+        mimeTypes.put("bin", DEFAULT_MIME_TYPE);
+        return mimeTypes;
+    }
+
+    // Creating a Tika instance loads its whole MIME registry, so it only
+    // happens the first time a file with an unknown extension is served.
+    private static class TikaHolder {
+        private static final Tika TIKA = new Tika();
+    }
+}
@@ -0,0 +1,407 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+// Alternative server engine: a small number of event-loop threads multiplex
+// all connections with non-blocking reads and writes, and only the file work
+// of HttpRequestProcessor is dispatched to the thread pool.
+public class NioHttpServer {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final long IDLE_CHECK_INTERVAL = 1000; // Milliseconds
+
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService threadPool;
+    private final Config config;
+    private final HttpRequestHandler httpRequestHandler;
+    private final Metrics metrics;
+    private final AccessLog accessLog;
+    private final EventLoop[] eventLoops;
+
+    public NioHttpServer(ServerSocketChannel serverChannel, ExecutorService threadPool, Config config)
+            throws IOException {
+        this.serverChannel = serverChannel;
+        this.threadPool = threadPool;
+        this.config = config;
+        this.httpRequestHandler = new HttpRequestHandler(config);
+        this.metrics = httpRequestHandler.getMetrics();
+        this.accessLog = httpRequestHandler.getAccessLog();
+        metrics.monitorThreadPool(threadPool);
+        this.eventLoops = new EventLoop[config.getEventLoopThreads()];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(Selector.open());
+        }
+    }
+
+    public HttpRequestHandler getHttpRequestHandler() {
+        return httpRequestHandler;
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            new Thread(eventLoops[i], "nio-event-loop-" + i).start();
+        }
+
+        try {
+            int nextEventLoop = 0;
+            while (serverChannel.isOpen()) {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                eventLoops[nextEventLoop].register(channel);
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+            }
+        } finally {
+            if (serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.shutdown();
+            }
+            if (!threadPool.isShutdown()) {
+                threadPool.shutdown();
+            }
+        }
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            accessLog.logError("Failed to close a connection", e);
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private volatile boolean running = true;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(this, channel, key));
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            });
+        }
+
+        // Runs the task on the event-loop thread, which owns all connection state.
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastIdleCheck = System.currentTimeMillis();
+            try {
+                while (running) {
+                    selector.select(IDLE_CHECK_INTERVAL);
+                    runPendingTasks();
+                    processSelectedKeys();
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastIdleCheck >= IDLE_CHECK_INTERVAL) {
+                        closeIdleConnections(now);
+                        lastIdleCheck = now;
+                    }
+                }
+            } catch (IOException e) {
+                accessLog.logException("Event loop stopped", e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    accessLog.logError("Failed to close the selector", e);
+                }
+            }
+        }
+
+        private void runPendingTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void processSelectedKeys() {
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                } catch (IOException | CancelledKeyException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void closeIdleConnections(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection != null && connection.isIdle(now)) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    // Pipelined requests are dispatched to the thread pool as they are parsed,
+    // up to maxPipelinedRequests at a time, and their responses are written
+    // strictly in request order.
+    private class Connection {
+        private final EventLoop eventLoop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final String remoteAddress;
+        private final IncrementalHttpRequestParser parser = new IncrementalHttpRequestParser();
+        private final Queue<PendingResponse> pendingResponses = new ArrayDeque<>();
+        private HttpResponseWriter pendingWrite;
+        private ByteBuffer headBuffer; // Pooled, reused by every response and taken with the first one
+        private PendingResponse writingResponse;
+        private boolean acceptingRequests = true;
+        private boolean closeAfterWrite;
+        private boolean closed;
+        private int servedRequests;
+        private long lastActivity;
+        private long lastReadAt; // System.nanoTime() of the last read that returned bytes
+
+        Connection(EventLoop eventLoop, SocketChannel channel, SelectionKey key) {
+            this.eventLoop = eventLoop;
+            this.channel = channel;
+            this.key = key;
+            this.remoteAddress = accessLog.isAccessEnabled()
+                    ? channel.socket().getInetAddress().getHostAddress()
+                    : "-";
+            this.lastActivity = System.currentTimeMillis();
+            metrics.connectionOpened();
+        }
+
+        void onReadable() throws IOException {
+            ByteBuffer readBuffer = eventLoop.readBuffer;
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read == -1) {
+                close();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+            lastReadAt = System.nanoTime();
+
+            readBuffer.flip();
+            parser.feed(readBuffer);
+            flush();
+        }
+
+        void onWritable() throws IOException {
+            flush();
+        }
+
+        boolean isIdle(long now) {
+            boolean waitingForWorker = pendingWrite == null && !pendingResponses.isEmpty();
+            return !waitingForWorker && now - lastActivity > config.getConnectionIdleTimeout();
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            metrics.connectionClosed();
+            closed = true;
+            key.cancel();
+            closeQuietly(channel);
+            closePendingWrite();
+            if (headBuffer != null) {
+                httpRequestHandler.getBufferPool().release(headBuffer);
+            }
+            PendingResponse pendingResponse;
+            while ((pendingResponse = pendingResponses.poll()) != null) {
+                pendingResponse.discard();
+            }
+        }
+
+        private void closePendingWrite() {
+            if (pendingWrite == null) {
+                return;
+            }
+
+            try {
+                pendingWrite.close();
+            } catch (IOException e) {
+                accessLog.logError("Failed to release a response", e);
+            }
+            pendingWrite = null;
+            writingResponse = null;
+        }
+
+        private void dispatchRequests() {
+            while (acceptingRequests && pendingResponses.size() < config.getMaxPipelinedRequests()) {
+                HttpRequest httpRequest = parser.parse();
+                if (httpRequest == null) {
+                    break;
+                } else if (httpRequest.getError() != null) {
+                    servedRequests++;
+                    boolean lastAllowedRequest = servedRequests >= config.getMaxRequestsPerConnection();
+                    PendingResponse pendingResponse = new PendingResponse(null, lastReadAt);
+                    pendingResponse.httpResponse = httpRequestHandler.handleInvalidRequest(httpRequest,
+                            lastAllowedRequest);
+                    pendingResponses.add(pendingResponse);
+                    acceptingRequests = HttpRequestHandler.isKeepAlive(pendingResponse.httpResponse);
+                    continue;
+                }
+
+                servedRequests++;
+                boolean lastAllowedRequest = servedRequests >= config.getMaxRequestsPerConnection();
+                acceptingRequests = !lastAllowedRequest;
+
+                PendingResponse pendingResponse = new PendingResponse(httpRequest, lastReadAt);
+                pendingResponses.add(pendingResponse);
+                threadPool.execute(new SheddableTask(() -> {
+                    HttpResponse httpResponse = httpRequestHandler.handleRequest(httpRequest, lastAllowedRequest);
+                    eventLoop.execute(() -> onResponseReady(pendingResponse, httpResponse));
+                }, () -> eventLoop.execute(
+                        () -> onResponseReady(pendingResponse, ErrorResponseHandler.build503ErrorResponse())),
+                        config.getQueueTimeout(), metrics));
+            }
+        }
+
+        private void onResponseReady(PendingResponse pendingResponse, HttpResponse httpResponse) {
+            pendingResponse.httpResponse = httpResponse;
+            if (closed) {
+                pendingResponse.discard();
+                return;
+            }
+
+            try {
+                flush();
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        // Dispatches the buffered requests the pipeline has room for and
+        // writes ready responses until the socket buffer is full.
+        private void flush() throws IOException {
+            dispatchRequests();
+            startNextWrite();
+            while (pendingWrite != null) {
+                boolean written = pendingWrite.writeTo(channel);
+                lastActivity = System.currentTimeMillis();
+                if (!written) {
+                    break;
+                }
+
+                long durationNanos = System.nanoTime() - writingResponse.receivedAt;
+                metrics.recordResponse(writingResponse.httpResponse.getStatusCode(), pendingWrite.getBytesWritten(),
+                        durationNanos);
+                accessLog.logAccess(remoteAddress, writingResponse.httpRequest,
+                        writingResponse.httpResponse.getStatusCode(), pendingWrite.getBytesWritten(), durationNanos);
+                closePendingWrite();
+                if (closeAfterWrite) {
+                    close();
+                    return;
+                }
+                dispatchRequests();
+                startNextWrite();
+            }
+            updateInterestOps();
+        }
+
+        // Takes the response at the head of the queue once it is ready; later
+        // responses wait for it even if they completed first.
+        private void startNextWrite() {
+            if (pendingWrite != null || closeAfterWrite) {
+                return;
+            }
+
+            PendingResponse head = pendingResponses.peek();
+            if (head == null || head.httpResponse == null) {
+                return;
+            }
+
+            pendingResponses.poll();
+            writingResponse = head;
+            if (headBuffer == null) {
+                headBuffer = httpRequestHandler.getBufferPool().acquire(ResponseHeadEncoder.HEAD_BUFFER_SIZE);
+            }
+            pendingWrite = new HttpResponseWriter(head.httpResponse, headBuffer);
+            closeAfterWrite = !HttpRequestHandler.isKeepAlive(head.httpResponse);
+            if (closeAfterWrite) {
+                acceptingRequests = false;
+            }
+        }
+
+        // Stops reading while the pipeline is full so that a client cannot
+        // make the server buffer an unbounded number of requests.
+        private void updateInterestOps() {
+            if (closed) {
+                return;
+            }
+
+            boolean canRead = acceptingRequests && pendingResponses.size() < config.getMaxPipelinedRequests();
+            int interestOps = (canRead ? SelectionKey.OP_READ : 0) | (pendingWrite != null ? SelectionKey.OP_WRITE : 0);
+            key.interestOps(interestOps);
+        }
+    }
+
+    // Slot in a connection's response queue, filled in on the event loop when
+    // the thread pool has produced the response. The request is null if it
+    // could not be parsed.
+    private class PendingResponse {
+        private final HttpRequest httpRequest;
+        private final long receivedAt;
+        private HttpResponse httpResponse;
+
+        PendingResponse(HttpRequest httpRequest, long receivedAt) {
+            this.httpRequest = httpRequest;
+            this.receivedAt = receivedAt;
+        }
+
+        void discard() {
+            if (httpResponse == null) {
+                return;
+            }
+
+            try {
+                httpResponse.getBody().close();
+            } catch (IOException e) {
+                accessLog.logError("Failed to release a response", e);
+            }
+        }
+    }
+}
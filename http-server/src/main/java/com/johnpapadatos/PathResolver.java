@@ -0,0 +1,350 @@
+package com.johnpapadatos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Maps request paths to files below baseDir and remembers what the file
+// system said about them, so a hot file or a path that bots keep probing
+// costs no system call.
+//
+// Request paths are normalized without touching the file system: empty and
+// "." segments are dropped and ".." removes the previous segment, a path
+// that would climb above baseDir does not exist. The normalized path is the
+// key of the cache, so "/a/../b.txt" and "/b.txt" share an entry. Symbolic
+// links are followed when the file is looked up, a file they lead to outside
+// of baseDir is treated as missing. The file is then opened through the path
+// that was checked, see FileStat.getFile. A file reached through a link is
+// not cached, as the WatchService only reports changes under the path of
+// its target.
+//
+// Missing files are remembered for statCacheNegativeTtl only, in a map of
+// their own, so a scanner probing for unique paths can only fill that map
+// and never drops the entries of existing files. Existing files
+// are remembered until a WatchService on baseDir and its subdirectories
+// reports a change below them. If the tree cannot be watched (too many
+// directories, or a file system without change notifications), existing
+// files are not cached at all.
+public final class PathResolver implements AutoCloseable {
+    private static final int MAX_WATCHED_DIRECTORIES = 10_000;
+    private static final int MISSING_ENTRIES_SHARE = 4; // Missing files get a quarter of statCacheMaxEntries
+
+    private final String baseDir;
+    private final Path basePath;
+    private final Path realBasePath; // What symbolic links must resolve below
+    private final int maxEntries;
+    private final int maxMissingEntries;
+    private final long negativeTtlNanos;
+    private final AccessLog accessLog;
+    private final Map<String, FileStat> entries = new ConcurrentHashMap<>(); // Existing files
+    private final Map<String, Long> missingEntries = new ConcurrentHashMap<>(); // Expiry, System.nanoTime()
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final WatchService watchService; // Null when existing files are not cached
+    private final AtomicLong changes = new AtomicLong(); // Bumped before every invalidation
+    private volatile boolean watching;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PathResolver(Config config, AccessLog accessLog) {
+        String baseDir = config.getBaseDir();
+        if (baseDir.endsWith("/")) {
+            baseDir = baseDir.substring(0, baseDir.length() - 1); // Strip trailing "/"
+        }
+        this.baseDir = baseDir;
+        this.basePath = Paths.get(baseDir.isEmpty() ? "/" : baseDir);
+        this.realBasePath = toRealBasePath(basePath);
+        this.maxEntries = config.getStatCacheMaxEntries();
+        this.maxMissingEntries = Math.max(1, maxEntries / MISSING_ENTRIES_SHARE);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(config.getStatCacheNegativeTtl());
+        this.accessLog = accessLog;
+        this.watchService = maxEntries > 0 ? openWatchService() : null;
+        this.watching = watchService != null;
+        if (watching) {
+            Thread watcherThread = new Thread(() -> processEvents(watchService), "path-resolver-watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start(); // Last, the thread may close the resolver right away
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        return entries.size() + missingEntries.size();
+    }
+
+    public boolean isWatching() {
+        return watching;
+    }
+
+    // Returns the normalized form of a request path, always starting with
+    // "/", or null if it points outside of baseDir or cannot name a file.
+    public static String normalize(String requestPath) {
+        if (requestPath.indexOf('\0') != -1) {
+            return null;
+        }
+        if (!requestPath.contains("//") && !requestPath.contains("/.")) {
+            return requestPath; // Already normalized, the common case
+        }
+
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : requestPath.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.pollLast() == null) {
+                    return null;
+                }
+            } else {
+                segments.addLast(segment);
+            }
+        }
+
+        StringBuilder normalized = new StringBuilder(requestPath.length());
+        for (String segment : segments) {
+            normalized.append('/').append(segment);
+        }
+        return normalized.isEmpty() ? "/" : normalized.toString();
+    }
+
+    // The file a normalized path names.
+    private File resolve(String normalizedPath) {
+        return new File(baseDir + normalizedPath);
+    }
+
+    // Returns the attributes of the file a normalized path names, from the
+    // cache when possible, or null if there is no such file.
+    public FileStat stat(String normalizedPath) throws IOException {
+        FileStat cached = entries.get(normalizedPath);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        Long expiresAt = missingEntries.get(normalizedPath);
+        if (expiresAt != null && System.nanoTime() - expiresAt < 0) {
+            hits.increment();
+            return null;
+        }
+        misses.increment();
+
+        long changesBefore = changes.get();
+        FileStat stat = readStat(normalizedPath);
+        if (stat != null) {
+            if (maxEntries > 0 && watching && !stat.linked) {
+                if (entries.size() >= maxEntries) {
+                    // Only files that exist get here, so this is rare. Simpler
+                    // than tracking recency on every hit
+                    entries.clear();
+                }
+                cache(entries, normalizedPath, stat, changesBefore);
+            }
+        } else if (maxEntries > 0 && negativeTtlNanos > 0) {
+            if (missingEntries.size() >= maxMissingEntries) {
+                long now = System.nanoTime();
+                missingEntries.values().removeIf(expiry -> now - expiry >= 0);
+                if (missingEntries.size() >= maxMissingEntries) {
+                    missingEntries.clear();
+                }
+            }
+            cache(missingEntries, normalizedPath, System.nanoTime() + negativeTtlNanos, changesBefore);
+        }
+        return stat;
+    }
+
+    // The attributes of the file, or null if it is missing or a symbolic
+    // link leads outside of baseDir.
+    private FileStat readStat(String normalizedPath) throws IOException {
+        try {
+            Path realPath = resolve(normalizedPath).toPath().toRealPath();
+            if (!realPath.startsWith(realBasePath)) {
+                return null;
+            }
+            BasicFileAttributes fileAttributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+            boolean linked = !realPath.equals(realBasePath.resolve(normalizedPath.substring(1)));
+            return new FileStat(realPath.toFile(), linked, fileAttributes.isDirectory(), fileAttributes.size(),
+                    fileAttributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private <V> void cache(Map<String, V> map, String normalizedPath, V value, long changesBefore) {
+        map.put(normalizedPath, value);
+        if (changes.get() != changesBefore) {
+            // A change was reported while the attributes were read, they may
+            // already be stale
+            map.remove(normalizedPath, value);
+        }
+    }
+
+    // Drops the entry of a path and of everything below it.
+    void invalidate(String normalizedPath) {
+        changes.incrementAndGet();
+        entries.remove(normalizedPath);
+        missingEntries.remove(normalizedPath);
+        String prefix = normalizedPath + "/";
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+        missingEntries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private WatchService openWatchService() {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            register(watchService, basePath);
+            return watchService;
+        } catch (IOException e) {
+            accessLog.logError("Not watching " + basePath + ", existing files are not cached", e);
+            return null;
+        }
+    }
+
+    // Watches a directory and every directory below it.
+    private void register(WatchService watchService, Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                if (watchedDirectories.size() >= MAX_WATCHED_DIRECTORIES) {
+                    throw new IOException("More than " + MAX_WATCHED_DIRECTORIES + " directories.");
+                }
+                WatchKey watchKey = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(watchKey, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // Removed meanwhile, or not readable
+            }
+        });
+    }
+
+    private void processEvents(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                Path directory = watchedDirectories.get(watchKey);
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                        changes.incrementAndGet();
+                        entries.clear(); // Events were lost
+                        missingEntries.clear();
+                        continue;
+                    }
+
+                    Path changed = directory.resolve((Path) event.context());
+                    invalidate(toNormalizedPath(changed));
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        try {
+                            register(watchService, changed);
+                        } catch (IOException e) {
+                            accessLog.logError("Not watching " + changed + ", existing files are not cached", e);
+                            close();
+                            return;
+                        }
+                    }
+                }
+                if (!watchKey.reset()) {
+                    watchedDirectories.remove(watchKey); // The directory is gone
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    // baseDir may itself be, or sit below, a symbolic link. If it does not
+    // exist yet, nothing can be found below it anyway.
+    private static Path toRealBasePath(Path basePath) {
+        try {
+            return basePath.toRealPath();
+        } catch (IOException e) {
+            return basePath.toAbsolutePath().normalize();
+        }
+    }
+
+    private String toNormalizedPath(Path file) {
+        StringBuilder normalizedPath = new StringBuilder();
+        for (Path segment : basePath.relativize(file)) {
+            normalizedPath.append('/').append(segment);
+        }
+        return normalizedPath.toString();
+    }
+
+    // Stops watching, and caching existing files, for good.
+    @Override
+    public void close() {
+        if (watchService == null) {
+            return;
+        }
+        watching = false;
+        changes.incrementAndGet();
+        entries.clear();
+        missingEntries.clear();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            accessLog.logError("Failed to stop watching " + basePath, e);
+        }
+    }
+
+    // What the request path needs to know about a file.
+    public static class FileStat {
+        private final File file; // Symbolic links resolved
+        private final boolean linked; // Reached through a symbolic link below baseDir
+        private final boolean directory;
+        private final long size;
+        private final long lastModified; // Milliseconds since the epoch
+
+        FileStat(File file, boolean linked, boolean directory, long size, long lastModified) {
+            this.file = file;
+            this.linked = linked;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        // The file that was checked to be below baseDir, to be opened
+        // instead of the one the request path names.
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
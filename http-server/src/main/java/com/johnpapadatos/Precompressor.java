@@ -0,0 +1,180 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Offline mode that writes file.gz next to every file of baseDir that the
+// server would compress, for HttpRequestProcessor to send instead of
+// compressing the file on the request path. Meant to run once per deploy:
+//
+// java -jar http-server.jar --precompress [directory]
+//
+// Every directory and every file is a fork/join task, so large trees are
+// compressed on all cores. Files are compressed at the highest level, the
+// time is spent once instead of on every cache miss. A sidecar is written to
+// a temporary file and moved into place, so the server never sends a partial
+// one, and is only kept if it is smaller than the file.
+public class Precompressor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path baseDir;
+    private final MimeTypeResolver mimeTypeResolver;
+    private final Compression compression;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder upToDate = new LongAdder();
+    private final LongAdder notSmaller = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public Precompressor(Config config) {
+        this.baseDir = Paths.get(config.getBaseDir());
+        this.mimeTypeResolver = new MimeTypeResolver(config.getMimeTypeOverrides());
+        this.compression = new Compression(config, new Metrics());
+    }
+
+    public void run(ForkJoinPool forkJoinPool) {
+        forkJoinPool.invoke(new DirectoryTask(baseDir));
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    // Files whose sidecar is already newer than the file.
+    public long getUpToDate() {
+        return upToDate.sum();
+    }
+
+    // Files that do not shrink, such as random data with a text extension.
+    public long getNotSmaller() {
+        return notSmaller.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    private boolean isCandidate(Path file, BasicFileAttributes fileAttributes) {
+        String filename = file.getFileName().toString();
+        if (filename.endsWith(HttpRequestProcessor.PRECOMPRESSED_GZIP_EXTENSION)
+                || filename.endsWith(TEMPORARY_FILE_SUFFIX)) {
+            return false;
+        }
+        return compression.isCompressible(mimeTypeResolver.resolve(file.toFile()), fileAttributes.size());
+    }
+
+    private void precompress(Path file, BasicFileAttributes fileAttributes) throws IOException {
+        Path sidecar = file.resolveSibling(file.getFileName() + HttpRequestProcessor.PRECOMPRESSED_GZIP_EXTENSION);
+        if (Files.exists(sidecar)
+                && Files.getLastModifiedTime(sidecar).compareTo(fileAttributes.lastModifiedTime()) >= 0) {
+            upToDate.increment();
+            return;
+        }
+
+        Path temporaryFile = file.resolveSibling(sidecar.getFileName() + TEMPORARY_FILE_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(file);
+                    OutputStream out = new BestCompressionGzipOutputStream(Files.newOutputStream(temporaryFile))) {
+                in.transferTo(out);
+            }
+
+            if (Files.size(temporaryFile) >= fileAttributes.size()) {
+                Files.delete(temporaryFile);
+                Files.deleteIfExists(sidecar); // Stale, it would not be sent anyway
+                notSmaller.increment();
+                return;
+            }
+            Files.move(temporaryFile, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written.increment();
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    // Lists a directory and runs a task for each of its subdirectories and
+    // candidate files. Symbolic links to directories are not followed. Like
+    // every fork/join task, it is never serialized.
+    @SuppressWarnings("serial")
+    private class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+
+        DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        tasks.add(new DirectoryTask(entry));
+                        continue;
+                    }
+                    BasicFileAttributes fileAttributes = readAttributes(entry);
+                    if (fileAttributes != null && fileAttributes.isRegularFile()
+                            && isCandidate(entry, fileAttributes)) {
+                        tasks.add(new FileTask(entry, fileAttributes));
+                    }
+                }
+            } catch (IOException e) {
+                failed.increment();
+                System.err.println("Failed to list " + directory + ": " + e);
+            }
+            invokeAll(tasks);
+        }
+
+        // Returns null for an entry that vanished or a dangling link.
+        private BasicFileAttributes readAttributes(Path entry) {
+            try {
+                return Files.readAttributes(entry, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class FileTask extends RecursiveAction {
+        private final Path file;
+        private final BasicFileAttributes fileAttributes;
+
+        FileTask(Path file, BasicFileAttributes fileAttributes) {
+            this.file = file;
+            this.fileAttributes = fileAttributes;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                precompress(file, fileAttributes);
+            } catch (IOException e) {
+                failed.increment();
+                System.err.println("Failed to precompress " + file + ": " + e);
+            }
+        }
+    }
+
+    private static class BestCompressionGzipOutputStream extends GZIPOutputStream {
+        BestCompressionGzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
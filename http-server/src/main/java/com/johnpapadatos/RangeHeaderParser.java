@@ -0,0 +1,67 @@
+package com.johnpapadatos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Parses the Range request header (RFC 9110, section 14.2) against the size
+// of the selected file.
+public class RangeHeaderParser {
+    private static final String BYTES_UNIT = "bytes=";
+    private static final int MAX_RANGES = 16;
+
+    private RangeHeaderParser() {
+    }
+
+    // Returns null when the header must be ignored and the whole file sent:
+    // unknown unit, invalid syntax or too many ranges. Returns an empty list
+    // when the syntax is valid but no range is satisfiable (416).
+    public static List<ByteRange> parseRangeHeader(String range, long fileSize) {
+        if (range == null || !range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        String[] rangeSpecs = range.substring(BYTES_UNIT.length()).split(",");
+        if (rangeSpecs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> byteRanges = new ArrayList<>();
+        for (String rangeSpec : rangeSpecs) {
+            String[] positions = rangeSpec.strip().split("-", -1);
+            if (!isValidRangeSpec(positions)) {
+                return null;
+            }
+
+            if (positions[0].isEmpty()) {
+                // Suffix range: the last N bytes of the file
+                long suffixLength = Long.parseLong(positions[1]);
+                if (suffixLength > 0 && fileSize > 0) {
+                    byteRanges.add(new ByteRange(Math.max(0, fileSize - suffixLength), fileSize - 1));
+                }
+                continue;
+            }
+
+            long first = Long.parseLong(positions[0]);
+            long last = positions[1].isEmpty() ? Long.MAX_VALUE : Long.parseLong(positions[1]);
+            if (last < first) {
+                return null;
+            }
+            if (first < fileSize) {
+                byteRanges.add(new ByteRange(first, Math.min(last, fileSize - 1)));
+            }
+        }
+        return byteRanges;
+    }
+
+    private static boolean isValidRangeSpec(String[] positions) {
+        if (positions.length != 2 || (positions[0].isEmpty() && positions[1].isEmpty())) {
+            return false;
+        }
+
+        return isValidPosition(positions[0]) && isValidPosition(positions[1]);
+    }
+
+    private static boolean isValidPosition(String position) {
+        return position.isEmpty() || position.matches("\\d{1,18}");
+    }
+}
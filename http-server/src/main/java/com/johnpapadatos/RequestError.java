@@ -0,0 +1,34 @@
+package com.johnpapadatos;
+
+// Expected ways for a request to fail. The parsers and the processor return
+// them as values instead of throwing, so a scanner probing for files costs
+// no exception, and each is answered with a response that is encoded once,
+// see ErrorResponseHandler. The body is the same for every request, it never
+// echoes the method or the path.
+public enum RequestError {
+    BAD_REQUEST("400", "Bad Request", "Bad request."),
+    NOT_FOUND("404", "Not Found", "File not found."),
+    METHOD_NOT_ALLOWED("405", "Method Not Allowed", "Method not allowed.");
+
+    private final String statusCode;
+    private final String reasonPhrase;
+    private final String message;
+
+    RequestError(String statusCode, String reasonPhrase, String message) {
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.message = message;
+    }
+
+    public String getStatusCode() {
+        return statusCode;
+    }
+
+    public String getReasonPhrase() {
+        return reasonPhrase;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
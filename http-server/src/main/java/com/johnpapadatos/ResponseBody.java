@@ -0,0 +1,21 @@
+package com.johnpapadatos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+public interface ResponseBody extends Closeable {
+
+    // Number of bytes written, or -1 when it is only known once the body has
+    // been written (chunked transfer coding).
+    long getLength();
+
+    // Writes as much of the remaining body as the channel accepts and returns
+    // true once the body has been written completely. Non-blocking channels
+    // may accept only part of it, so callers retry when the channel is writable.
+    boolean writeTo(WritableByteChannel channel) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
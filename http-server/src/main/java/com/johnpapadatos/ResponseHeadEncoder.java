@@ -0,0 +1,150 @@
+package com.johnpapadatos;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes the status line and headers of a response straight into a reusable
+// buffer. Standard status lines and common header names are encoded once,
+// values are copied char by char and the content length is written as
+// digits, so encoding a head creates no strings or intermediate arrays.
+public class ResponseHeadEncoder {
+    public static final int HEAD_BUFFER_SIZE = 2048;
+
+    private static final String VERSION = "HTTP/1.1";
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] SEPARATOR = { ':', ' ' };
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final Map<String, StatusLine> STATUS_LINES = new HashMap<>();
+    private static final Map<String, byte[]> HEADER_NAMES = new HashMap<>();
+
+    static {
+        String[][] statuses = {
+                { "200", "OK" }, { "206", "Partial Content" }, { "304", "Not Modified" },
+                { "400", "Bad Request" }, { "404", "Not Found" }, { "405", "Method Not Allowed" },
+                { "416", "Range Not Satisfiable" }, { "500", "Internal Server Error" },
+                { "503", "Service Unavailable" } };
+        for (String[] status : statuses) {
+            STATUS_LINES.put(status[0], new StatusLine(status[1],
+                    (VERSION + " " + status[0] + " " + status[1] + "\r\n").getBytes(StandardCharsets.US_ASCII)));
+        }
+
+        String[] headerNames = {
+                "Accept-Ranges", "Connection", "Content-Disposition", "Content-Encoding", CONTENT_LENGTH,
+                "Content-Range", "Content-Type", "ETag", "Last-Modified", "Retry-After", "Transfer-Encoding",
+                "Vary" };
+        for (String headerName : headerNames) {
+            HEADER_NAMES.put(headerName, (headerName + ": ").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private ResponseHeadEncoder() {
+    }
+
+    // Returns the encoded head, ready to be written. It is the given buffer
+    // unless the head does not fit, then a larger one is allocated for it.
+    public static ByteBuffer encode(HttpResponse httpResponse, ByteBuffer buffer) {
+        while (true) {
+            buffer.clear();
+            try {
+                writeHead(httpResponse, buffer);
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    private static void writeHead(HttpResponse httpResponse, ByteBuffer out) {
+        StatusLine statusLine = STATUS_LINES.get(httpResponse.getStatusCode());
+        if (statusLine != null && VERSION.equals(httpResponse.getVersion())
+                && statusLine.reasonPhrase.equals(httpResponse.getReasonPhrase())) {
+            out.put(statusLine.bytes);
+        } else {
+            writeValue(httpResponse.getVersion(), out);
+            out.put((byte) ' ');
+            writeValue(httpResponse.getStatusCode(), out);
+            out.put((byte) ' ');
+            writeValue(httpResponse.getReasonPhrase(), out);
+            out.put(CRLF);
+        }
+
+        // Headers keep the case-insensitive order of HttpResponse, with the
+        // content length in its place among them
+        long contentLength = httpResponse.getContentLength();
+        boolean contentLengthWritten = contentLength < 0;
+        for (Map.Entry<String, String> header : httpResponse.headerEntries()) {
+            if (!contentLengthWritten && String.CASE_INSENSITIVE_ORDER.compare(header.getKey(), CONTENT_LENGTH) > 0) {
+                writeContentLength(contentLength, out);
+                contentLengthWritten = true;
+            }
+            writeName(header.getKey(), out);
+            writeValue(header.getValue(), out);
+            out.put(CRLF);
+        }
+        if (!contentLengthWritten) {
+            writeContentLength(contentLength, out);
+        }
+        out.put(CRLF);
+    }
+
+    private static void writeContentLength(long contentLength, ByteBuffer out) {
+        out.put(HEADER_NAMES.get(CONTENT_LENGTH));
+        writeDigits(contentLength, out);
+        out.put(CRLF);
+    }
+
+    private static void writeName(String name, ByteBuffer out) {
+        byte[] encodedName = HEADER_NAMES.get(name);
+        if (encodedName != null) {
+            out.put(encodedName);
+        } else {
+            writeValue(name, out);
+            out.put(SEPARATOR);
+        }
+    }
+
+    // Header values are ASCII in practice. Anything else, e.g. a non-ASCII
+    // filename, is sent as UTF-8.
+    private static void writeValue(String value, ByteBuffer out) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                out.put(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            out.put((byte) value.charAt(i));
+        }
+    }
+
+    static void writeDigits(long value, ByteBuffer out) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        if (out.remaining() < digits) {
+            throw new BufferOverflowException();
+        }
+
+        int end = out.position() + digits;
+        for (int i = end - 1; i >= out.position(); i--) {
+            out.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        out.position(end);
+    }
+
+    private static class StatusLine {
+        private final String reasonPhrase;
+        private final byte[] bytes;
+
+        StatusLine(String reasonPhrase, byte[] bytes) {
+            this.reasonPhrase = reasonPhrase;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.johnpapadatos;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// A task handed to the thread pool that is shed instead of run, either
+// because the bounded queue is full or because it waited in the queue past
+// the deadline. Shedding answers the client with a 503 and does no file I/O.
+public class SheddableTask implements Runnable {
+    private final Runnable task;
+    private final Runnable shed;
+    private final long queueTimeoutNanos; // 0 disables the deadline
+    private final Metrics metrics;
+    private final long queuedAt = System.nanoTime();
+
+    public SheddableTask(Runnable task, Runnable shed, int queueTimeout, Metrics metrics) {
+        this.task = task;
+        this.shed = shed;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+        long queued = System.nanoTime() - queuedAt;
+        metrics.recordQueueDuration(queued);
+        if (queueTimeoutNanos > 0 && queued > queueTimeoutNanos) {
+            metrics.recordShed("queue_timeout");
+            shed.run();
+            return;
+        }
+        task.run();
+    }
+
+    private void reject() {
+        metrics.recordShed("queue_full");
+        shed.run();
+    }
+
+    // Rejection policy of the bounded thread pool. Runs on the submitting
+    // thread, so shedding has to stay cheap. Other tasks are rejected as
+    // usual, and their submitters fall back on their own.
+    public static class RejectionPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (r instanceof SheddableTask sheddableTask) {
+                sheddableTask.reject();
+                return;
+            }
+            throw new RejectedExecutionException("Task " + r + " rejected from " + executor);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.johnpapadatos;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Size-bounded cache of ready-to-send file responses keyed by resolved path
+// and content encoding. Entries are admitted and evicted by a
+// WeightedTinyLfuMap weighing them by their body size, so one-off large
+// downloads cannot flush the hot set.
+public class StaticResponseCache {
+    private static final int ESTIMATED_ENTRY_SIZE = 4 * 1024;
+
+    private final long maxBytes;
+    private final long maxEntrySize;
+    private final WeightedTinyLfuMap<String, CachedResponse> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StaticResponseCache(long maxBytes, long maxEntrySize) {
+        this.maxBytes = maxBytes;
+        this.maxEntrySize = Math.min(maxEntrySize, maxBytes);
+        this.entries = new WeightedTinyLfuMap<>(maxBytes, ESTIMATED_ENTRY_SIZE,
+                cachedResponse -> cachedResponse.getBody().length);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0 && maxEntrySize > 0;
+    }
+
+    public boolean isCacheable(long size) {
+        return isEnabled() && size <= maxEntrySize;
+    }
+
+    // Returns the cached response if it still matches the file's current
+    // modification time and size, stale entries are dropped.
+    public CachedResponse get(String key, long lastModified, long fileSize) {
+        entries.recordAccess(key);
+
+        CachedResponse cachedResponse = entries.get(key);
+        if (cachedResponse == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (!cachedResponse.isValidFor(lastModified, fileSize)) {
+            entries.remove(key, cachedResponse);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return cachedResponse;
+    }
+
+    public void put(String key, CachedResponse cachedResponse) {
+        if (isCacheable(cachedResponse.getBody().length)) {
+            entries.put(key, cachedResponse);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    public long getRejections() {
+        return entries.getRejections();
+    }
+
+    public long getSize() {
+        return entries.getWeight();
+    }
+}
@@ -0,0 +1,144 @@
+package com.johnpapadatos;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+// Map bounded by the total weight of its values, shared by the caches of the
+// server. Lookups only touch a ConcurrentHashMap; the LRU order used to pick
+// eviction victims is updated on a best-effort basis under a lock that
+// readers never wait for. A new entry evicting others is only admitted when
+// the sketch estimates its key is requested more often than the keys of all
+// of its victims (TinyLFU), so one-off large entries cannot flush the hot set.
+// Requests are counted with recordAccess, whether the key is present or not.
+public class WeightedTinyLfuMap<K, V> {
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final Map<K, V> entries = new ConcurrentHashMap<>();
+    private final LinkedHashMap<K, V> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch frequencySketch;
+    private long currentWeight; // Guarded by evictionLock
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    // The estimated weight of an entry sizes the frequency sketch.
+    public WeightedTinyLfuMap(long maxWeight, long estimatedEntryWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.frequencySketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 2,
+                Math.max(1, maxWeight / estimatedEntryWeight)));
+    }
+
+    public void recordAccess(K key) {
+        frequencySketch.increment(key);
+    }
+
+    public int frequency(K key) {
+        return frequencySketch.frequency(key);
+    }
+
+    public V get(K key) {
+        V value = entries.get(key);
+        if (value != null && evictionLock.tryLock()) {
+            try {
+                accessOrder.get(key); // Moves the entry to the most recently used end
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return value;
+    }
+
+    // Replaces the key's previous value, if any. Returns false if the value
+    // was not admitted, in which case the key is left without a value.
+    public boolean put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        evictionLock.lock();
+        try {
+            V previous = accessOrder.remove(key);
+            if (previous != null) {
+                currentWeight -= weigher.applyAsLong(previous);
+                entries.remove(key, previous);
+            }
+
+            if (weight > maxWeight || !makeRoomFor(key, weight)) {
+                rejections.increment();
+                return false;
+            }
+
+            accessOrder.put(key, value);
+            entries.put(key, value);
+            currentWeight += weight;
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // Removes the key only while it still maps to the value.
+    public void remove(K key, V value) {
+        evictionLock.lock();
+        try {
+            if (entries.remove(key, value)) {
+                accessOrder.remove(key);
+                currentWeight -= weigher.applyAsLong(value);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getWeight() {
+        evictionLock.lock();
+        try {
+            return currentWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    // Evicts least recently used entries until the candidate fits, unless the
+    // candidate is not more popular than every entry it would replace.
+    private boolean makeRoomFor(K candidateKey, long weight) {
+        long weightToFree = currentWeight + weight - maxWeight;
+        if (weightToFree <= 0) {
+            return true;
+        }
+
+        int candidateFrequency = frequencySketch.frequency(candidateKey);
+        List<K> victims = new ArrayList<>();
+        Iterator<Map.Entry<K, V>> leastRecentlyUsed = accessOrder.entrySet().iterator();
+        while (weightToFree > 0 && leastRecentlyUsed.hasNext()) {
+            Map.Entry<K, V> victim = leastRecentlyUsed.next();
+            if (frequencySketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return false;
+            }
+            victims.add(victim.getKey());
+            weightToFree -= weigher.applyAsLong(victim.getValue());
+        }
+
+        for (K victimKey : victims) {
+            V victim = accessOrder.remove(victimKey);
+            entries.remove(victimKey, victim);
+            currentWeight -= weigher.applyAsLong(victim);
+            evictions.increment();
+        }
+        return true;
+    }
+}
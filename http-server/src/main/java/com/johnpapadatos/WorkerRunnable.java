@@ -1,60 +1,307 @@
 package com.johnpapadatos;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.Socket;
-import java.nio.file.NoSuchFileException;
-
-import com.johnpapadatos.exceptions.MethodNotSupportedException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class WorkerRunnable implements Runnable {
+    private static final int IDLE_POLL_INTERVAL = 50; // Milliseconds
+
     private final Socket socket;
-    private final String baseDir;
+    private final ExecutorService threadPool;
+    private final Config config;
+    private final HttpRequestHandler httpRequestHandler;
+    private final Metrics metrics;
+    private final AccessLog accessLog;
+    private final String remoteAddress;
+    private final IncrementalHttpRequestParser parser = new IncrementalHttpRequestParser();
+    private ByteBuffer headBuffer; // Pooled, taken with the first response
+    private HttpRequest http2UpgradeRequest;
+    private int servedRequests;
+    private long lastReadAt; // System.nanoTime() of the last read that returned bytes
 
-    public WorkerRunnable(Socket socket, String baseDir) {
+    public WorkerRunnable(Socket socket, ExecutorService threadPool, HttpRequestHandler httpRequestHandler) {
         this.socket = socket;
-        this.baseDir = baseDir;
+        this.threadPool = threadPool;
+        this.config = httpRequestHandler.getConfig();
+        this.httpRequestHandler = httpRequestHandler;
+        this.metrics = httpRequestHandler.getMetrics();
+        this.accessLog = httpRequestHandler.getAccessLog();
+        this.remoteAddress = accessLog.isAccessEnabled() ? socket.getInetAddress().getHostAddress() : "-";
     }
 
     @Override
     public void run() {
         try {
+            socket.setSoTimeout(config.getConnectionIdleTimeout());
             InputStream in = socket.getInputStream();
-            OutputStream out = socket.getOutputStream();
-            handleNetworkRequest(in, out, baseDir);
+            WritableByteChannel out = getOutputChannel(socket);
+
+            if (isHttp2Enabled() && readConnectionPreface(in)) {
+                new Http2Connection(socket, parser.takeBufferedInput(in), out, threadPool, httpRequestHandler)
+                        .serve(null);
+                return;
+            }
+
+            boolean keepAlive = true;
+            while (keepAlive) {
+                List<ResponseTask> pipeline = readPipelinedRequests(in);
+                keepAlive = !pipeline.isEmpty() && writeResponses(pipeline, out);
+            }
+            if (http2UpgradeRequest != null) {
+                new Http2Connection(socket, parser.takeBufferedInput(in), out, threadPool, httpRequestHandler)
+                        .serve(http2UpgradeRequest);
+            }
+        } catch (SocketTimeoutException e) {
+            // Idle persistent connection, nothing left to answer.
         } catch (IOException e) {
-            e.printStackTrace();
+            accessLog.logError("Connection failed", e);
         } finally {
             try {
                 socket.close();
             } catch (IOException e) {
-                e.printStackTrace();
+                accessLog.logError("Failed to close the connection", e);
             }
+            if (headBuffer != null) {
+                httpRequestHandler.getBufferPool().release(headBuffer);
+            }
+            metrics.connectionClosed();
         }
     }
 
-    private static void handleNetworkRequest(InputStream in, OutputStream out, String baseDir) throws IOException {
+    // Answers the connection with a 503 and closes it without reading a
+    // request, when it was rejected by the thread pool or waited too long in
+    // its queue. Unread request bytes are skipped first, as closing a socket
+    // with unread input resets the connection and may discard the response.
+    public void shed() {
         try {
-            BufferedReader br = new BufferedReader(new InputStreamReader(in));
-            HttpRequest httpRequest = HttpRequestParser.parseRequest(br);
-            HttpResponse httpResponse = HttpRequestProcessor.processRequest(httpRequest, baseDir);
-            out.write(httpResponse.asBytes());
-            out.flush();
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            ErrorResponseHandler.send400ErrorResponse(out, e.getMessage());
-        } catch (NoSuchFileException e) {
-            e.printStackTrace();
-            ErrorResponseHandler.send404ErrorResponse(out, e.getMessage());
-        } catch (MethodNotSupportedException e) {
-            e.printStackTrace();
-            ErrorResponseHandler.send405ErrorResponse(out, e.getMessage());
+            ErrorResponseHandler.write503ErrorResponse(socket.getOutputStream());
+            socket.shutdownOutput();
+            InputStream in = socket.getInputStream();
+            in.skip(in.available());
         } catch (IOException e) {
-            e.printStackTrace();
-            ErrorResponseHandler.send500ErrorResponse(out, e.getMessage());
+            // The client is gone already.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                accessLog.logError("Failed to close the connection", e);
+            }
+            metrics.connectionClosed();
+        }
+    }
+
+    private boolean isHttp2Enabled() {
+        return config.getHttp2().equals("h2c");
+    }
+
+    // Clients with prior knowledge of HTTP/2 start the connection with its
+    // preface instead of a request. Reads until the buffered bytes either
+    // hold the whole preface or can no longer be its beginning.
+    private boolean readConnectionPreface(InputStream in) throws IOException {
+        while (parser.startsWith(Http2Connection.PREFACE)) {
+            if (parser.getBufferedLength() >= Http2Connection.PREFACE.length) {
+                return true;
+            }
+            if (read(in) == -1) {
+                return false;
+            }
+            lastReadAt = System.nanoTime();
+        }
+        return false;
+    }
+
+    // Blocks until one request arrives, then also takes the pipelined requests
+    // that are already buffered, up to maxPipelinedRequests. Returns an empty
+    // list if the client closed the connection between requests, or asked to
+    // upgrade it to HTTP/2, see http2UpgradeRequest.
+    private List<ResponseTask> readPipelinedRequests(InputStream in) throws IOException {
+        List<ResponseTask> pipeline = new ArrayList<>();
+        while (pipeline.size() < config.getMaxPipelinedRequests()) {
+            HttpRequest httpRequest;
+            try {
+                httpRequest = pipeline.isEmpty() ? readRequest(in) : parser.parse();
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                HttpResponse httpResponse = httpRequestHandler.handleParsingFailure(e);
+                pipeline.add(new ResponseTask(null, () -> httpResponse));
+                break;
+            }
+            if (httpRequest == null) {
+                break;
+            } else if (httpRequest.getError() != null) {
+                servedRequests++;
+                boolean lastAllowedRequest = servedRequests >= config.getMaxRequestsPerConnection();
+                HttpResponse httpResponse = httpRequestHandler.handleInvalidRequest(httpRequest, lastAllowedRequest);
+                pipeline.add(new ResponseTask(null, () -> httpResponse));
+                if (HttpRequestHandler.isKeepAlive(httpResponse)) {
+                    continue;
+                }
+                break;
+            } else if (pipeline.isEmpty() && isHttp2Enabled() && Http2Connection.isUpgradeRequest(httpRequest)) {
+                http2UpgradeRequest = httpRequest; // Answered over HTTP/2 once the connection is switched
+                break;
+            }
+
+            servedRequests++;
+            boolean lastAllowedRequest = servedRequests >= config.getMaxRequestsPerConnection();
+            pipeline.add(new ResponseTask(httpRequest,
+                    () -> httpRequestHandler.handleRequest(httpRequest, lastAllowedRequest)));
+            if (lastAllowedRequest) {
+                break;
+            }
+        }
+        return pipeline;
+    }
+
+    // Returns null if the stream ends cleanly between requests.
+    private HttpRequest readRequest(InputStream in) throws IOException {
+        HttpRequest httpRequest;
+        while ((httpRequest = parser.parse()) == null) {
+            if (read(in) == -1) {
+                if (parser.hasBufferedBytes()) {
+                    throw new EOFException("Connection closed in the middle of a request.");
+                }
+                return null;
+            }
+            lastReadAt = System.nanoTime();
+        }
+        return httpRequest;
+    }
+
+    // Reads more of the connection into the parser, returns -1 at the end of
+    // the stream. A connection waiting for its next request holds a pool
+    // thread, so while nothing of a request has arrived yet the wait is cut
+    // short as soon as other connections are queued for a thread: it ends as
+    // for any idle connection, with a SocketTimeoutException. A request that
+    // is under way gets the whole connectionIdleTimeout.
+    private int read(InputStream in) throws IOException {
+        if (parser.hasBufferedBytes() || !(threadPool instanceof ThreadPoolExecutor pool)) {
+            return parser.readFrom(in);
+        }
+
+        int idleTimeout = config.getConnectionIdleTimeout();
+        long idleSince = System.nanoTime();
+        socket.setSoTimeout(IDLE_POLL_INTERVAL);
+        try {
+            while (true) {
+                try {
+                    return parser.readFrom(in);
+                } catch (SocketTimeoutException e) {
+                    long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - idleSince);
+                    if (!pool.getQueue().isEmpty() || idle >= idleTimeout) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            socket.setSoTimeout(idleTimeout);
+        }
+    }
+
+    // Processes all but the first request on the thread pool and writes the
+    // responses in request order. A task that no pool thread has picked up
+    // yet is run here instead of waiting for it, so a saturated pool cannot
+    // deadlock the connection. Returns whether the connection should be kept
+    // open for further requests.
+    private boolean writeResponses(List<ResponseTask> pipeline, WritableByteChannel out)
+            throws IOException {
+        for (int i = 1; i < pipeline.size(); i++) {
+            try {
+                threadPool.execute(metrics.timeQueued(pipeline.get(i)));
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+
+        int next = 0;
+        try {
+            while (next < pipeline.size()) {
+                ResponseTask responseTask = pipeline.get(next++);
+                responseTask.run();
+                HttpResponse httpResponse = getResponse(responseTask);
+                if (headBuffer == null) {
+                    headBuffer = httpRequestHandler.getBufferPool().acquire(ResponseHeadEncoder.HEAD_BUFFER_SIZE);
+                }
+                try (HttpResponseWriter httpResponseWriter = new HttpResponseWriter(httpResponse, headBuffer)) {
+                    httpResponseWriter.writeFully(out);
+                    // Pipelined requests of the batch all arrived with the last read
+                    long durationNanos = System.nanoTime() - lastReadAt;
+                    metrics.recordResponse(httpResponse.getStatusCode(), httpResponseWriter.getBytesWritten(),
+                            durationNanos);
+                    accessLog.logAccess(remoteAddress, responseTask.httpRequest, httpResponse.getStatusCode(),
+                            httpResponseWriter.getBytesWritten(), durationNanos);
+                }
+
+                if (!HttpRequestHandler.isKeepAlive(httpResponse)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            discardResponses(pipeline.subList(next, pipeline.size()));
+        }
+    }
+
+    private HttpResponse getResponse(FutureTask<HttpResponse> responseTask) {
+        try {
+            return responseTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ErrorResponseHandler.build500ErrorResponse("Internal Server Error.");
+        } catch (ExecutionException e) {
+            accessLog.logException("Failed to process a request", e.getCause());
+            return ErrorResponseHandler.build500ErrorResponse("Internal Server Error.");
+        }
+    }
+
+    // Releases the file handles of responses that will never be sent. A task
+    // may already be running on the pool, so each one is completed rather
+    // than cancelled.
+    private void discardResponses(List<ResponseTask> responseTasks) {
+        for (ResponseTask responseTask : responseTasks) {
+            responseTask.run();
+            try {
+                getResponse(responseTask).getBody().close();
+            } catch (IOException e) {
+                accessLog.logError("Failed to release a response", e);
+            }
+        }
+    }
+
+    // Sockets accepted through a ServerSocketChannel expose their channel, which
+    // lets file bodies be sent with sendfile(2). Plain sockets fall back to a
+    // channel over their output stream.
+    private static WritableByteChannel getOutputChannel(Socket socket) throws IOException {
+        if (socket.getChannel() != null) {
+            return socket.getChannel();
+        }
+        return Channels.newChannel(socket.getOutputStream());
+    }
+
+    // Response of a pipelined request, which is null if the request could not
+    // be parsed.
+    private static class ResponseTask extends FutureTask<HttpResponse> {
+        private final HttpRequest httpRequest;
+
+        ResponseTask(HttpRequest httpRequest, Callable<HttpResponse> callable) {
+            super(callable);
+            this.httpRequest = httpRequest;
         }
     }
 }
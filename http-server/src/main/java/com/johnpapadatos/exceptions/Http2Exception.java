@@ -0,0 +1,41 @@
+package com.johnpapadatos.exceptions;
+
+import java.io.IOException;
+
+// An HTTP/2 protocol violation. Errors of stream 0 close the whole connection
+// with GOAWAY, errors of another stream only reset that stream. A peer can
+// trigger them at will, so they are created without a stack trace, which
+// would only ever point into the frame handling.
+public class Http2Exception extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int errorCode;
+    private final int streamId;
+
+    public Http2Exception(int errorCode, String message) {
+        this(errorCode, 0, message);
+    }
+
+    public Http2Exception(int errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public boolean isConnectionError() {
+        return streamId == 0;
+    }
+}
@@ -1,7 +0,0 @@
-package com.johnpapadatos.exceptions;
-
-public class MethodNotSupportedException extends Exception {
-    public MethodNotSupportedException(String message) {
-        super(message);
-    }
-}
@@ -0,0 +1,150 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccessLogTest {
+    private static final int RECORDS_PER_THREAD = 50_000;
+    private static final int THREADS = 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLogAccess() throws IOException {
+        Path file = tempDir.resolve("logs/access.log");
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.setMethod("GET");
+        httpRequest.setPath("/test.txt");
+        httpRequest.setVersion("HTTP/1.1");
+
+        try (AccessLog accessLog = new AccessLog(buildConfig(file, "drop"))) {
+            accessLog.logAccess("127.0.0.1", httpRequest, "200", 15, 1_234_000);
+            accessLog.logAccess("127.0.0.1", null, "400", 120, 5_000);
+            accessLog.logError("Invalid request", new IllegalArgumentException("Invalid request line."));
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).matches(
+                "127\\.0\\.0\\.1 - - \\[\\d{2}/\\w{3}/\\d{4}:\\d{2}:\\d{2}:\\d{2} [+-]\\d{4}] "
+                        + "\"GET /test\\.txt HTTP/1\\.1\" 200 15 1234"), lines.get(0));
+        assertTrue(lines.get(1).endsWith("] \"-\" 400 120 5"), lines.get(1));
+        assertTrue(lines.get(2).endsWith("] [error] Invalid request: "
+                + "java.lang.IllegalArgumentException: Invalid request line."), lines.get(2));
+    }
+
+    /*
+     * A path sent by the client cannot end the quoted request line or start
+     * a line of its own.
+     */
+    @Test
+    void testLogAccess_escaped() throws IOException {
+        Path file = tempDir.resolve("access.log");
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.setMethod("GET");
+        httpRequest.setPath("/a\" 200 0 0\n127.0.0.1 - - [\\x]\u007f");
+        httpRequest.setVersion("HTTP/1.1");
+
+        try (AccessLog accessLog = new AccessLog(buildConfig(file, "drop"))) {
+            accessLog.logAccess("127.0.0.1", httpRequest, "404", 15, 0);
+            accessLog.logError("Failed to process " + httpRequest.getPath(), null);
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(
+                "\"GET /a\\\" 200 0 0\\x0a127.0.0.1 - - [\\\\x]\\x7f HTTP/1.1\" 404 15 0"), lines.get(0));
+        assertTrue(lines.get(1).endsWith(
+                "[error] Failed to process /a\\\" 200 0 0\\x0a127.0.0.1 - - [\\\\x]\\x7f"), lines.get(1));
+    }
+
+    /*
+     * The stack trace follows the error line, without repeating it.
+     */
+    @Test
+    void testLogException() throws IOException {
+        Path file = tempDir.resolve("access.log");
+
+        try (AccessLog accessLog = new AccessLog(buildConfig(file, "drop"))) {
+            accessLog.logException("Failed to process /test.txt", new IOException("Disk failure."));
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).endsWith("[error] Failed to process /test.txt: java.io.IOException: Disk failure."));
+        assertTrue(lines.get(1).startsWith("\tat com.johnpapadatos.AccessLogTest.testLogException"), lines.get(1));
+    }
+
+    /*
+     * A batch that would take the file past its maximum size is written to a
+     * new file, the previous one is kept as access.log.1.
+     */
+    @Test
+    void testRotate() throws IOException {
+        Path file = tempDir.resolve("access.log");
+        Config config = buildConfig(file, "drop");
+        config.setAccessLogMaxFileSize(50); // A single line
+
+        for (int i = 0; i < 3; i++) {
+            try (AccessLog accessLog = new AccessLog(config)) {
+                accessLog.logError("Batch " + i, null);
+            }
+        }
+
+        assertTrue(Files.readString(file).contains("Batch 2"));
+        assertTrue(Files.readString(tempDir.resolve("access.log.1")).contains("Batch 1"));
+        assertTrue(Files.readString(tempDir.resolve("access.log.2")).contains("Batch 0"));
+    }
+
+    /*
+     * Producers that outrun the writer either drop records, which are
+     * counted, or wait for a free slot.
+     */
+    @Test
+    void testOverflow() throws IOException {
+        for (String overflow : new String[] { "drop", "block" }) {
+            Path file = tempDir.resolve(overflow + ".log");
+            long dropped;
+            try (AccessLog accessLog = new AccessLog(buildConfig(file, overflow))) {
+                try (ExecutorService producers = Executors.newFixedThreadPool(THREADS)) {
+                    for (int t = 0; t < THREADS; t++) {
+                        producers.execute(() -> {
+                            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                                accessLog.logAccess("127.0.0.1", null, "200", i, 0);
+                            }
+                        });
+                    }
+                }
+                dropped = accessLog.getDropped();
+            }
+
+            long written;
+            try (Stream<String> lines = Files.lines(file)) {
+                written = lines.count();
+            }
+            assertEquals(THREADS * RECORDS_PER_THREAD, written + dropped);
+            if (overflow.equals("block")) {
+                assertEquals(0, dropped);
+            }
+        }
+    }
+
+    private static Config buildConfig(Path file, String overflow) {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setAccessLog(file.toString());
+        config.setAccessLogFlushInterval(10);
+        config.setAccessLogOverflow(overflow);
+        return config;
+    }
+}
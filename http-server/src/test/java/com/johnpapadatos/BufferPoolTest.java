@@ -0,0 +1,93 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+
+    @Test
+    void testAcquire_sizeClasses() {
+        BufferPool bufferPool = new BufferPool();
+        ByteBuffer small = bufferPool.acquire(100);
+        ByteBuffer exact = bufferPool.acquire(16 * 1024);
+        ByteBuffer rounded = bufferPool.acquire(16 * 1024 + 1);
+        assertTrue(small.isDirect());
+        assertEquals(2048, small.capacity());
+        assertEquals(16 * 1024, exact.capacity());
+        assertEquals(32 * 1024, rounded.capacity());
+        assertEquals(3, bufferPool.getOutstanding());
+    }
+
+    /*
+     * A released buffer comes back cleared to the next acquire of its size
+     * class, without allocating.
+     */
+    @Test
+    void testRelease_reused() {
+        BufferPool bufferPool = new BufferPool();
+        ByteBuffer buffer = bufferPool.acquire(4096);
+        buffer.put((byte) 1).flip();
+        bufferPool.release(buffer);
+
+        ByteBuffer reused = bufferPool.acquire(3000);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertEquals(1, bufferPool.getAllocated());
+        assertEquals(2, bufferPool.getAcquired());
+    }
+
+    @Test
+    void testRelease_oversizedNotPooled() {
+        BufferPool bufferPool = new BufferPool();
+        ByteBuffer buffer = bufferPool.acquire(1024 * 1024);
+        assertEquals(1024 * 1024, buffer.capacity());
+        bufferPool.release(buffer);
+        assertNotSame(buffer, bufferPool.acquire(1024 * 1024));
+        assertEquals(0, bufferPool.getSharedBytes());
+    }
+
+    /*
+     * Buffers released by one thread are found by another through the shared
+     * pool once the releasing thread's own cache is full.
+     */
+    @Test
+    void testRelease_sharedAcrossThreads() throws InterruptedException {
+        BufferPool bufferPool = new BufferPool();
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = bufferPool.acquire(2048);
+        }
+        for (ByteBuffer buffer : buffers) {
+            bufferPool.release(buffer);
+        }
+        assertEquals(2048, bufferPool.getSharedBytes());
+
+        AtomicReference<ByteBuffer> acquired = new AtomicReference<>();
+        Thread thread = new Thread(() -> acquired.set(bufferPool.acquire(2048)));
+        thread.start();
+        thread.join();
+        assertSame(buffers[2], acquired.get());
+        assertEquals(0, bufferPool.getSharedBytes());
+    }
+
+    @Test
+    void testLeakTracking() {
+        BufferPool bufferPool = new BufferPool(true);
+        ByteBuffer released = bufferPool.acquire(2048);
+        bufferPool.acquire(8192);
+        bufferPool.release(released);
+
+        assertEquals(1, bufferPool.getLeaks().size());
+        assertEquals("Buffer of 8192 bytes acquired here", bufferPool.getLeaks().get(0).getMessage());
+        assertThrows(IllegalStateException.class, () -> bufferPool.release(released));
+    }
+}
@@ -0,0 +1,206 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompressedChunkedBodyTest {
+    private Path file;
+    private BufferPool bufferPool;
+    private Compression compression;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("compressed-chunked-body", ".bin");
+        bufferPool = new BufferPool(true);
+        compression = new Compression(ConfigProcessor.processConfigFile(null), new Metrics());
+    }
+
+    // Every body gives its pooled buffers back once closed
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        assertEquals(List.of(), bufferPool.getLeaks());
+        assertEquals(0, bufferPool.getOutstanding());
+    }
+
+    @Test
+    void testWriteTo_multipleChunks() throws IOException {
+        byte[] contents = new byte[200_000];
+        new Random(7).nextBytes(contents);
+        Files.write(file, contents);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), Compression.GZIP, compression,
+                bufferPool)) {
+            assertTrue(body.writeTo(Channels.newChannel(out)));
+        }
+
+        assertArrayEquals(contents, gunzip(dechunk(out.toByteArray())));
+    }
+
+    // Over HTTP/2 the gzip stream is sent without chunk framing
+    @Test
+    void testWriteTo_unchunked() throws IOException {
+        byte[] contents = new byte[200_000];
+        new Random(7).nextBytes(contents);
+        Files.write(file, contents);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), false, Compression.GZIP,
+                compression, bufferPool)) {
+            assertTrue(body.writeTo(Channels.newChannel(out)));
+        }
+
+        assertArrayEquals(contents, gunzip(out.toByteArray()));
+    }
+
+    // deflate is the zlib stream, without gzip header and trailer
+    @Test
+    void testWriteTo_deflate() throws IOException {
+        byte[] contents = "compressible ".repeat(20_000).getBytes(StandardCharsets.US_ASCII);
+        Files.write(file, contents);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), Compression.DEFLATE,
+                compression, bufferPool)) {
+            assertTrue(body.writeTo(Channels.newChannel(out)));
+        }
+
+        try (InflaterInputStream inflaterInputStream = new InflaterInputStream(
+                new ByteArrayInputStream(dechunk(out.toByteArray())))) {
+            assertArrayEquals(contents, inflaterInputStream.readAllBytes());
+        }
+    }
+
+    // The deflater goes back to the pool and is reused by the next body
+    @Test
+    void testClose_releasesDeflater() throws IOException {
+        Files.write(file, "compressible".getBytes(StandardCharsets.US_ASCII));
+        DeflaterPool deflaters = compression.getDeflaters(Compression.GZIP);
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), Compression.GZIP,
+                    compression, bufferPool)) {
+                assertTrue(body.writeTo(Channels.newChannel(out)));
+            }
+            assertEquals("compressible", new String(gunzip(dechunk(out.toByteArray())), StandardCharsets.US_ASCII));
+        }
+
+        assertEquals(1, deflaters.getCreated());
+        assertEquals(1, deflaters.getIdle());
+    }
+
+    @Test
+    void testClose_twice() throws IOException {
+        CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), Compression.GZIP, compression,
+                bufferPool);
+        body.close();
+        body.close();
+    }
+
+    @Test
+    void testWriteTo_emptyFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), Compression.GZIP, compression,
+                bufferPool)) {
+            assertTrue(body.writeTo(Channels.newChannel(out)));
+        }
+
+        assertArrayEquals(new byte[0], gunzip(dechunk(out.toByteArray())));
+    }
+
+    /*
+     * A channel that accepts only a few bytes per call, like a non-blocking
+     * socket with a full send buffer, must be resumable.
+     */
+    @Test
+    void testWriteTo_partialWrites() throws IOException {
+        byte[] contents = "compressible ".repeat(10_000).getBytes(StandardCharsets.US_ASCII);
+        Files.write(file, contents);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel slowChannel = new WritableByteChannel() {
+            private final WritableByteChannel delegate = Channels.newChannel(out);
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                ByteBuffer slice = src.slice(src.position(), Math.min(src.remaining(), 7));
+                int written = delegate.write(slice);
+                src.position(src.position() + written);
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (CompressedChunkedBody body = new CompressedChunkedBody(FileChannel.open(file), Compression.GZIP, compression,
+                bufferPool)) {
+            int calls = 1;
+            while (!body.writeTo(slowChannel)) {
+                calls++;
+            }
+            assertTrue(calls > 1);
+        }
+
+        assertArrayEquals(contents, gunzip(dechunk(out.toByteArray())));
+    }
+
+    private static byte[] dechunk(byte[] chunked) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int position = 0;
+        while (true) {
+            int lineEnd = indexOfCrlf(chunked, position);
+            int size = Integer.parseInt(new String(chunked, position, lineEnd - position, StandardCharsets.US_ASCII), 16);
+            position = lineEnd + 2;
+            if (size == 0) {
+                assertEquals(position + 2, chunked.length); // Empty trailer section
+                return data.toByteArray();
+            }
+            data.write(chunked, position, size);
+            position += size + 2;
+        }
+    }
+
+    private static int indexOfCrlf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new AssertionError("Missing CRLF");
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzipInputStream.readAllBytes();
+        }
+    }
+}
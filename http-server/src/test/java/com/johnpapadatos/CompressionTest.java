@@ -0,0 +1,139 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompressionTest {
+    private static final long SIZE = 4096;
+
+    private Metrics metrics;
+    private Compression compression;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new Metrics();
+        compression = new Compression(ConfigProcessor.processConfigFile(null), metrics);
+    }
+
+    @Test
+    void testSelectCoding() {
+        assertNull(compression.selectCoding(null, "text/html", SIZE));
+        assertEquals("gzip", compression.selectCoding("gzip", "text/html", SIZE));
+        assertEquals("gzip", compression.selectCoding("x-gzip", "text/html", SIZE));
+        assertEquals("gzip", compression.selectCoding("deflate, gzip", "text/html", SIZE));
+        assertEquals("gzip", compression.selectCoding("*", "text/html", SIZE));
+        assertEquals("deflate", compression.selectCoding("gzip;q=0.5, deflate;q=0.8", "text/html", SIZE));
+        assertEquals("deflate", compression.selectCoding("deflate, gzip;q=0", "text/html", SIZE));
+        assertEquals("deflate", compression.selectCoding("deflate;q=0.9, gzip;q=0.5, deflate;q=0", "text/html", SIZE));
+        assertEquals("deflate", compression.selectCoding("*, gzip;q=0", "text/html", SIZE));
+        assertNull(compression.selectCoding("br, zstd", "text/html", SIZE));
+        assertNull(compression.selectCoding("gzip;q=0", "text/html", SIZE));
+        assertNull(compression.selectCoding("gzip;q=0.5, identity", "text/html", SIZE));
+    }
+
+    /*
+     * Quality values that cannot be parsed or are out of range make the
+     * coding unacceptable.
+     */
+    @Test
+    void testSelectCoding_invalidQuality() {
+        assertNull(compression.selectCoding("gzip;q=high", "text/html", SIZE));
+        assertNull(compression.selectCoding("gzip;q=2", "text/html", SIZE));
+        assertEquals("gzip", compression.selectCoding("gzip ; Q=0.1", "text/html", SIZE));
+    }
+
+    @Test
+    void testSelectCoding_policy() {
+        assertEquals("gzip", compression.selectCoding("gzip", "application/json", SIZE));
+        assertEquals("gzip", compression.selectCoding("gzip", "text/css; charset=utf-8", SIZE));
+        assertNull(compression.selectCoding("gzip", "image/jpeg", SIZE));
+        assertNull(compression.selectCoding("gzip", "application/zip", SIZE));
+        assertNull(compression.selectCoding("gzip", "text/html", 100));
+    }
+
+    /*
+     * A client that refuses the unencoded file gets it compressed whatever its
+     * type and size.
+     */
+    @Test
+    void testSelectCoding_identityRefused() {
+        assertEquals("gzip", compression.selectCoding("gzip, identity;q=0", "image/jpeg", 100));
+        assertEquals("deflate", compression.selectCoding("deflate, *;q=0", "image/jpeg", 100));
+        assertNull(compression.selectCoding("gzip, *;q=0, identity", "image/jpeg", 100));
+    }
+
+    @Test
+    void testIsCompressible() {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setCompressibleTypes("text/*,image/svg+xml");
+        config.setCompressionMinSize(10);
+        Compression compression = new Compression(config, metrics);
+
+        assertTrue(compression.isCompressible("text/plain", 10));
+        assertTrue(compression.isCompressible("IMAGE/SVG+XML", 10));
+        assertFalse(compression.isCompressible("text/plain", 9));
+        assertFalse(compression.isCompressible("application/json", 10));
+        assertFalse(compression.isCompressible("textual/plain", 10));
+    }
+
+    @Test
+    void testCompress() throws IOException {
+        byte[] body = "compressible ".repeat(1000).getBytes(StandardCharsets.US_ASCII);
+
+        byte[] gzip = compression.compress(body, Compression.GZIP);
+        byte[] deflate = compression.compress(body, Compression.DEFLATE);
+
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(body, gzipInputStream.readAllBytes());
+        }
+        try (InflaterInputStream inflaterInputStream = new InflaterInputStream(new ByteArrayInputStream(deflate))) {
+            assertArrayEquals(body, inflaterInputStream.readAllBytes());
+        }
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("http_gzip_input_bytes_total " + 2 * body.length + "\n"), scrape);
+    }
+
+    /*
+     * Sequential compressions reuse a single deflater per coding, reset
+     * between bodies.
+     */
+    @Test
+    void testCompress_reusesDeflater() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            byte[] body = ("body " + i).getBytes(StandardCharsets.US_ASCII);
+            try (GZIPInputStream gzipInputStream = new GZIPInputStream(
+                    new ByteArrayInputStream(compression.compress(body, Compression.GZIP)))) {
+                assertArrayEquals(body, gzipInputStream.readAllBytes());
+            }
+        }
+
+        assertEquals(1, compression.getDeflaters(Compression.GZIP).getCreated());
+        assertEquals(0, compression.getDeflaters(Compression.DEFLATE).getCreated());
+    }
+
+    @Test
+    void testDeflaterPool_maxIdle() {
+        DeflaterPool deflaters = new DeflaterPool(6, true, 1);
+        Deflater first = deflaters.acquire();
+        Deflater second = deflaters.acquire();
+
+        deflaters.release(first);
+        deflaters.release(second); // Ended, the pool is full
+
+        assertEquals(2, deflaters.getCreated());
+        assertEquals(1, deflaters.getIdle());
+    }
+}
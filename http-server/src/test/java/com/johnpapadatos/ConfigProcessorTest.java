@@ -2,6 +2,8 @@ package com.johnpapadatos;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 class ConfigProcessorTest {
@@ -11,6 +13,34 @@ class ConfigProcessorTest {
     private static final int DEFAULT_CORE_POOL_SIZE = Runtime.getRuntime().availableProcessors() / 2;
     private static final int DEFAULT_MAX_POOL_SIZE = Runtime.getRuntime().availableProcessors();
     private static final int DEFAULT_KEEP_ALIVE = 3000; // Milliseconds
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_QUEUE_TIMEOUT = 0; // Milliseconds
+    private static final int DEFAULT_CONNECTION_IDLE_TIMEOUT = 5000; // Milliseconds
+    private static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 100;
+    private static final int DEFAULT_MAX_PIPELINED_REQUESTS = 1;
+    private static final String DEFAULT_ENGINE = "blocking";
+    private static final int DEFAULT_EVENT_LOOP_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final String DEFAULT_EXECUTOR = "platform";
+    private static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_CACHE_MAX_ENTRY_SIZE = 1024L * 1024;
+    private static final long DEFAULT_GZIP_STREAMING_THRESHOLD = 1024L * 1024;
+    private static final String DEFAULT_ETAG = "weak";
+    private static final long DEFAULT_MMAP_MAX_BYTES = 0;
+    private static final long DEFAULT_MMAP_MIN_FILE_SIZE = 1024L * 1024;
+    private static final String DEFAULT_HTTP2 = "none";
+    private static final int DEFAULT_LISTENERS = 1;
+    private static final int DEFAULT_ACCEPTOR_THREADS = 1;
+    private static final String DEFAULT_ACCESS_LOG = "none";
+    private static final long DEFAULT_ACCESS_LOG_FLUSH_INTERVAL = 1000;
+    private static final long DEFAULT_ACCESS_LOG_MAX_FILE_SIZE = 100L * 1024 * 1024;
+    private static final String DEFAULT_ACCESS_LOG_OVERFLOW = "drop";
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final long DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    private static final String DEFAULT_COMPRESSIBLE_TYPES = "text/*,application/json,application/javascript,"
+            + "application/xml,image/svg+xml,application/wasm";
+    private static final String DEFAULT_PRECOMPRESSED = "gzip";
+    private static final int DEFAULT_STAT_CACHE_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_STAT_CACHE_NEGATIVE_TTL = 1000;
 
     @Test
     void testProcessConfigFile_resourceFileMissing() {
@@ -68,6 +98,34 @@ class ConfigProcessorTest {
         config.setCorePoolSize(DEFAULT_CORE_POOL_SIZE);
         config.setMaximumPoolSize(DEFAULT_MAX_POOL_SIZE);
         config.setKeepAliveTime(DEFAULT_KEEP_ALIVE);
+        config.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+        config.setQueueTimeout(DEFAULT_QUEUE_TIMEOUT);
+        config.setConnectionIdleTimeout(DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        config.setMaxRequestsPerConnection(DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+        config.setMaxPipelinedRequests(DEFAULT_MAX_PIPELINED_REQUESTS);
+        config.setEngine(DEFAULT_ENGINE);
+        config.setEventLoopThreads(DEFAULT_EVENT_LOOP_THREADS);
+        config.setExecutor(DEFAULT_EXECUTOR);
+        config.setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES);
+        config.setCacheMaxEntrySize(DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        config.setGzipStreamingThreshold(DEFAULT_GZIP_STREAMING_THRESHOLD);
+        config.setEtag(DEFAULT_ETAG);
+        config.setMmapMaxBytes(DEFAULT_MMAP_MAX_BYTES);
+        config.setMmapMinFileSize(DEFAULT_MMAP_MIN_FILE_SIZE);
+        config.setHttp2(DEFAULT_HTTP2);
+        config.setListeners(DEFAULT_LISTENERS);
+        config.setAcceptorThreads(DEFAULT_ACCEPTOR_THREADS);
+        config.setAccessLog(DEFAULT_ACCESS_LOG);
+        config.setAccessLogFlushInterval(DEFAULT_ACCESS_LOG_FLUSH_INTERVAL);
+        config.setAccessLogMaxFileSize(DEFAULT_ACCESS_LOG_MAX_FILE_SIZE);
+        config.setAccessLogOverflow(DEFAULT_ACCESS_LOG_OVERFLOW);
+        config.setCompressionLevel(DEFAULT_COMPRESSION_LEVEL);
+        config.setCompressionMinSize(DEFAULT_COMPRESSION_MIN_SIZE);
+        config.setCompressibleTypes(DEFAULT_COMPRESSIBLE_TYPES);
+        config.setPrecompressed(DEFAULT_PRECOMPRESSED);
+        config.setStatCacheMaxEntries(DEFAULT_STAT_CACHE_MAX_ENTRIES);
+        config.setStatCacheNegativeTtl(DEFAULT_STAT_CACHE_NEGATIVE_TTL);
+        config.setMimeTypeOverrides(Map.of());
         return config;
     }
 
@@ -79,6 +137,34 @@ class ConfigProcessorTest {
         config.setCorePoolSize(4);
         config.setMaximumPoolSize(8);
         config.setKeepAliveTime(1250);
+        config.setQueueCapacity(500);
+        config.setQueueTimeout(2000);
+        config.setConnectionIdleTimeout(10000);
+        config.setMaxRequestsPerConnection(50);
+        config.setMaxPipelinedRequests(8);
+        config.setEngine("nio");
+        config.setEventLoopThreads(2);
+        config.setExecutor("virtual");
+        config.setCacheMaxBytes(1048576);
+        config.setCacheMaxEntrySize(0);
+        config.setGzipStreamingThreshold(2097152);
+        config.setEtag("strong");
+        config.setMmapMaxBytes(1073741824);
+        config.setMmapMinFileSize(4194304);
+        config.setHttp2("h2c");
+        config.setListeners(4);
+        config.setAcceptorThreads(2);
+        config.setAccessLog("logs/access.log");
+        config.setAccessLogFlushInterval(200);
+        config.setAccessLogMaxFileSize(10485760);
+        config.setAccessLogOverflow("block");
+        config.setCompressionLevel(9);
+        config.setCompressionMinSize(256);
+        config.setCompressibleTypes("text/*,application/json");
+        config.setPrecompressed("none");
+        config.setStatCacheMaxEntries(500);
+        config.setStatCacheNegativeTtl(250);
+        config.setMimeTypeOverrides(Map.of("webp", "image/webp", "log", "text/plain"));
         return config;
     }
 
@@ -90,6 +176,34 @@ class ConfigProcessorTest {
         config.setCorePoolSize(DEFAULT_CORE_POOL_SIZE);
         config.setMaximumPoolSize(DEFAULT_MAX_POOL_SIZE);
         config.setKeepAliveTime(DEFAULT_KEEP_ALIVE);
+        config.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+        config.setQueueTimeout(DEFAULT_QUEUE_TIMEOUT);
+        config.setConnectionIdleTimeout(DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        config.setMaxRequestsPerConnection(DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+        config.setMaxPipelinedRequests(DEFAULT_MAX_PIPELINED_REQUESTS);
+        config.setEngine(DEFAULT_ENGINE);
+        config.setEventLoopThreads(DEFAULT_EVENT_LOOP_THREADS);
+        config.setExecutor(DEFAULT_EXECUTOR);
+        config.setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES);
+        config.setCacheMaxEntrySize(DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        config.setGzipStreamingThreshold(DEFAULT_GZIP_STREAMING_THRESHOLD);
+        config.setEtag(DEFAULT_ETAG);
+        config.setMmapMaxBytes(DEFAULT_MMAP_MAX_BYTES);
+        config.setMmapMinFileSize(DEFAULT_MMAP_MIN_FILE_SIZE);
+        config.setHttp2(DEFAULT_HTTP2);
+        config.setListeners(DEFAULT_LISTENERS);
+        config.setAcceptorThreads(DEFAULT_ACCEPTOR_THREADS);
+        config.setAccessLog(DEFAULT_ACCESS_LOG);
+        config.setAccessLogFlushInterval(DEFAULT_ACCESS_LOG_FLUSH_INTERVAL);
+        config.setAccessLogMaxFileSize(DEFAULT_ACCESS_LOG_MAX_FILE_SIZE);
+        config.setAccessLogOverflow(DEFAULT_ACCESS_LOG_OVERFLOW);
+        config.setCompressionLevel(DEFAULT_COMPRESSION_LEVEL);
+        config.setCompressionMinSize(DEFAULT_COMPRESSION_MIN_SIZE);
+        config.setCompressibleTypes(DEFAULT_COMPRESSIBLE_TYPES);
+        config.setPrecompressed(DEFAULT_PRECOMPRESSED);
+        config.setStatCacheMaxEntries(DEFAULT_STAT_CACHE_MAX_ENTRIES);
+        config.setStatCacheNegativeTtl(DEFAULT_STAT_CACHE_NEGATIVE_TTL);
+        config.setMimeTypeOverrides(Map.of());
         return config;
     }
 
@@ -101,6 +215,34 @@ class ConfigProcessorTest {
         config.setCorePoolSize(4);
         config.setMaximumPoolSize(8);
         config.setKeepAliveTime(DEFAULT_KEEP_ALIVE);
+        config.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+        config.setQueueTimeout(DEFAULT_QUEUE_TIMEOUT);
+        config.setConnectionIdleTimeout(DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        config.setMaxRequestsPerConnection(DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+        config.setMaxPipelinedRequests(DEFAULT_MAX_PIPELINED_REQUESTS);
+        config.setEngine(DEFAULT_ENGINE);
+        config.setEventLoopThreads(DEFAULT_EVENT_LOOP_THREADS);
+        config.setExecutor(DEFAULT_EXECUTOR);
+        config.setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES);
+        config.setCacheMaxEntrySize(DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        config.setGzipStreamingThreshold(DEFAULT_GZIP_STREAMING_THRESHOLD);
+        config.setEtag(DEFAULT_ETAG);
+        config.setMmapMaxBytes(DEFAULT_MMAP_MAX_BYTES);
+        config.setMmapMinFileSize(DEFAULT_MMAP_MIN_FILE_SIZE);
+        config.setHttp2(DEFAULT_HTTP2);
+        config.setListeners(DEFAULT_LISTENERS);
+        config.setAcceptorThreads(DEFAULT_ACCEPTOR_THREADS);
+        config.setAccessLog(DEFAULT_ACCESS_LOG);
+        config.setAccessLogFlushInterval(DEFAULT_ACCESS_LOG_FLUSH_INTERVAL);
+        config.setAccessLogMaxFileSize(DEFAULT_ACCESS_LOG_MAX_FILE_SIZE);
+        config.setAccessLogOverflow(DEFAULT_ACCESS_LOG_OVERFLOW);
+        config.setCompressionLevel(DEFAULT_COMPRESSION_LEVEL);
+        config.setCompressionMinSize(DEFAULT_COMPRESSION_MIN_SIZE);
+        config.setCompressibleTypes(DEFAULT_COMPRESSIBLE_TYPES);
+        config.setPrecompressed(DEFAULT_PRECOMPRESSED);
+        config.setStatCacheMaxEntries(DEFAULT_STAT_CACHE_MAX_ENTRIES);
+        config.setStatCacheNegativeTtl(DEFAULT_STAT_CACHE_NEGATIVE_TTL);
+        config.setMimeTypeOverrides(Map.of());
         return config;
     }
 
@@ -112,6 +254,34 @@ class ConfigProcessorTest {
         config.setCorePoolSize(4);
         config.setMaximumPoolSize(8);
         config.setKeepAliveTime(1250);
+        config.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+        config.setQueueTimeout(DEFAULT_QUEUE_TIMEOUT);
+        config.setConnectionIdleTimeout(DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        config.setMaxRequestsPerConnection(DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+        config.setMaxPipelinedRequests(DEFAULT_MAX_PIPELINED_REQUESTS);
+        config.setEngine(DEFAULT_ENGINE);
+        config.setEventLoopThreads(DEFAULT_EVENT_LOOP_THREADS);
+        config.setExecutor(DEFAULT_EXECUTOR);
+        config.setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES);
+        config.setCacheMaxEntrySize(DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        config.setGzipStreamingThreshold(DEFAULT_GZIP_STREAMING_THRESHOLD);
+        config.setEtag(DEFAULT_ETAG);
+        config.setMmapMaxBytes(DEFAULT_MMAP_MAX_BYTES);
+        config.setMmapMinFileSize(DEFAULT_MMAP_MIN_FILE_SIZE);
+        config.setHttp2(DEFAULT_HTTP2);
+        config.setListeners(DEFAULT_LISTENERS);
+        config.setAcceptorThreads(DEFAULT_ACCEPTOR_THREADS);
+        config.setAccessLog(DEFAULT_ACCESS_LOG);
+        config.setAccessLogFlushInterval(DEFAULT_ACCESS_LOG_FLUSH_INTERVAL);
+        config.setAccessLogMaxFileSize(DEFAULT_ACCESS_LOG_MAX_FILE_SIZE);
+        config.setAccessLogOverflow(DEFAULT_ACCESS_LOG_OVERFLOW);
+        config.setCompressionLevel(DEFAULT_COMPRESSION_LEVEL);
+        config.setCompressionMinSize(DEFAULT_COMPRESSION_MIN_SIZE);
+        config.setCompressibleTypes(DEFAULT_COMPRESSIBLE_TYPES);
+        config.setPrecompressed(DEFAULT_PRECOMPRESSED);
+        config.setStatCacheMaxEntries(DEFAULT_STAT_CACHE_MAX_ENTRIES);
+        config.setStatCacheNegativeTtl(DEFAULT_STAT_CACHE_NEGATIVE_TTL);
+        config.setMimeTypeOverrides(Map.of());
         return config;
     }
 
@@ -123,6 +293,34 @@ class ConfigProcessorTest {
         config.setCorePoolSize(DEFAULT_CORE_POOL_SIZE);
         config.setMaximumPoolSize(DEFAULT_MAX_POOL_SIZE);
         config.setKeepAliveTime(DEFAULT_KEEP_ALIVE);
+        config.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
+        config.setQueueTimeout(DEFAULT_QUEUE_TIMEOUT);
+        config.setConnectionIdleTimeout(DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        config.setMaxRequestsPerConnection(DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+        config.setMaxPipelinedRequests(DEFAULT_MAX_PIPELINED_REQUESTS);
+        config.setEngine(DEFAULT_ENGINE);
+        config.setEventLoopThreads(DEFAULT_EVENT_LOOP_THREADS);
+        config.setExecutor(DEFAULT_EXECUTOR);
+        config.setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES);
+        config.setCacheMaxEntrySize(DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        config.setGzipStreamingThreshold(DEFAULT_GZIP_STREAMING_THRESHOLD);
+        config.setEtag(DEFAULT_ETAG);
+        config.setMmapMaxBytes(DEFAULT_MMAP_MAX_BYTES);
+        config.setMmapMinFileSize(DEFAULT_MMAP_MIN_FILE_SIZE);
+        config.setHttp2(DEFAULT_HTTP2);
+        config.setListeners(DEFAULT_LISTENERS);
+        config.setAcceptorThreads(DEFAULT_ACCEPTOR_THREADS);
+        config.setAccessLog(DEFAULT_ACCESS_LOG);
+        config.setAccessLogFlushInterval(DEFAULT_ACCESS_LOG_FLUSH_INTERVAL);
+        config.setAccessLogMaxFileSize(DEFAULT_ACCESS_LOG_MAX_FILE_SIZE);
+        config.setAccessLogOverflow(DEFAULT_ACCESS_LOG_OVERFLOW);
+        config.setCompressionLevel(DEFAULT_COMPRESSION_LEVEL);
+        config.setCompressionMinSize(DEFAULT_COMPRESSION_MIN_SIZE);
+        config.setCompressibleTypes(DEFAULT_COMPRESSIBLE_TYPES);
+        config.setPrecompressed(DEFAULT_PRECOMPRESSED);
+        config.setStatCacheMaxEntries(DEFAULT_STAT_CACHE_MAX_ENTRIES);
+        config.setStatCacheNegativeTtl(DEFAULT_STAT_CACHE_NEGATIVE_TTL);
+        config.setMimeTypeOverrides(Map.of());
         return config;
     }
 }
@@ -0,0 +1,94 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EntityTagsTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("entity-tags", ".txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testGetEntityTag_weak() throws IOException {
+        EntityTags entityTags = new EntityTags("weak", new BufferPool());
+        assertEquals("W/\"ff-3e8\"", entityTags.getEntityTag(file.toFile(), 1000, 255));
+    }
+
+    @Test
+    void testGetEntityTag_none() throws IOException {
+        assertNull(new EntityTags("none", new BufferPool()).getEntityTag(file.toFile(), 1000, 255));
+    }
+
+    /*
+     * The hash is only recomputed once the size or the modification time
+     * changes, a rewrite that keeps both keeps the cached tag.
+     */
+    @Test
+    void testGetEntityTag_strong_cachedPerFileVersion() throws IOException {
+        EntityTags entityTags = new EntityTags("strong", new BufferPool());
+        File resource = file.toFile();
+        Files.writeString(file, "First version");
+        String firstTag = entityTags.getEntityTag(resource, 1000, 13);
+        assertTrue(firstTag.startsWith("\""));
+
+        Files.writeString(file, "Other version");
+        assertEquals(firstTag, entityTags.getEntityTag(resource, 1000, 13));
+        assertNotEquals(firstTag, entityTags.getEntityTag(resource, 2000, 13));
+        assertEquals(entityTags.getEntityTag(resource, 2000, 13),
+                new EntityTags("strong", new BufferPool()).getEntityTag(resource, 2000, 13));
+    }
+
+    /*
+     * A file too large to hash on the request thread gets a strong tag from
+     * its size and modification time instead.
+     */
+    @Test
+    void testGetEntityTag_strong_largeFileNotHashed() throws IOException {
+        EntityTags entityTags = new EntityTags("strong", new BufferPool());
+        assertEquals("\"200000-3e8\"", entityTags.getEntityTag(file.toFile(), 1000, 2 * 1024 * 1024));
+    }
+
+    @Test
+    void testForContentCoding() {
+        assertEquals("W/\"ff-3e8-gzip\"", EntityTags.forContentCoding("W/\"ff-3e8\"", "gzip"));
+        assertEquals("\"abc-gzip\"", EntityTags.forContentCoding("\"abc\"", "gzip"));
+        assertNull(EntityTags.forContentCoding(null, "gzip"));
+    }
+
+    @Test
+    void testMatchesAny() {
+        assertTrue(EntityTags.matchesAny("\"abc\"", "W/\"abc\""));
+        assertTrue(EntityTags.matchesAny("W/\"xyz\", W/\"abc\"", "\"abc\""));
+        assertTrue(EntityTags.matchesAny("*", null));
+        assertFalse(EntityTags.matchesAny("\"abc-gzip\"", "\"abc\""));
+        assertFalse(EntityTags.matchesAny("\"abc\"", null));
+    }
+
+    @Test
+    void testMatchesStrongly() {
+        assertTrue(EntityTags.matchesStrongly("\"abc\"", "\"abc\""));
+        assertFalse(EntityTags.matchesStrongly("W/\"abc\"", "W/\"abc\""));
+        assertFalse(EntityTags.matchesStrongly("\"abc\"", "W/\"abc\""));
+        assertFalse(EntityTags.matchesStrongly("\"abc\"", null));
+    }
+}
@@ -0,0 +1,71 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class ErrorResponseHandlerTest {
+
+    /*
+     * The head encoded ahead of time is the one the fields of the response
+     * would be encoded to, which is what HTTP/2 sends.
+     */
+    @Test
+    void testBuildErrorResponse_encodedHead() {
+        for (RequestError error : RequestError.values()) {
+            for (boolean keepAlive : new boolean[] { false, true }) {
+                HttpResponse httpResponse = ErrorResponseHandler.buildErrorResponse(error, keepAlive);
+                ByteBuffer head = ResponseHeadEncoder.encode(httpResponse,
+                        ByteBuffer.allocate(ResponseHeadEncoder.HEAD_BUFFER_SIZE));
+                byte[] expectedHead = new byte[head.remaining()];
+                head.get(expectedHead);
+
+                assertArrayEquals(expectedHead, httpResponse.getEncodedHead(), error.name());
+                assertEquals(error.getStatusCode(), httpResponse.getStatusCode());
+                assertEquals(keepAlive, HttpRequestHandler.isKeepAlive(httpResponse));
+            }
+        }
+    }
+
+    @Test
+    void testBuildErrorResponse_written() throws IOException {
+        assertEquals("HTTP/1.1 405 Method Not Allowed\r\n"
+                + "Allow: GET\r\n"
+                + "Connection: close\r\n"
+                + "Content-Length: 19\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + "Method not allowed.", write(ErrorResponseHandler.buildErrorResponse(RequestError.METHOD_NOT_ALLOWED)));
+
+        // Every response reads the shared bytes from its own position
+        HttpResponse first = ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND);
+        HttpResponse second = ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND);
+        assertEquals(write(first), write(second));
+    }
+
+    /*
+     * The headers are shared by every response to the same error.
+     */
+    @Test
+    void testBuildErrorResponse_modified() {
+        HttpResponse httpResponse = ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND);
+        assertThrows(UnsupportedOperationException.class, () -> httpResponse.setHeader("Connection", "keep-alive"));
+        assertEquals("close", ErrorResponseHandler.buildErrorResponse(RequestError.NOT_FOUND).getHeader("Connection"));
+    }
+
+    private static String write(HttpResponse httpResponse) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (HttpResponseWriter httpResponseWriter = new HttpResponseWriter(httpResponse)) {
+            httpResponseWriter.writeFully(Channels.newChannel(out));
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,142 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.johnpapadatos.exceptions.Http2Exception;
+
+class HpackTest {
+
+    /*
+     * Example of RFC 7541, appendix C.4.1.
+     */
+    @Test
+    void testHuffman() throws Http2Exception {
+        byte[] encoded = HexFormat.of().parseHex("f1e3c2e5f23a6ba0ab90f4ff");
+        byte[] decoded = "www.example.com".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals("www.example.com", HpackHuffman.decode(encoded, 0, encoded.length));
+        assertEquals(encoded.length, HpackHuffman.encodedLength(decoded));
+        byte[] out = new byte[encoded.length];
+        assertEquals(encoded.length, HpackHuffman.encode(decoded, out, 0));
+        assertArrayEquals(encoded, out);
+    }
+
+    /*
+     * Padding must be a prefix of EOS, all ones, and shorter than a byte.
+     */
+    @Test
+    void testHuffman_invalidPadding() {
+        byte[] zeroPadding = HexFormat.of().parseHex("f1e3c2e5f23a6ba0ab90f400");
+        byte[] fullBytePadding = HexFormat.of().parseHex("f1e3c2e5f23a6ba0ab90f4ffff");
+
+        assertThrows(Http2Exception.class, () -> HpackHuffman.decode(zeroPadding, 0, zeroPadding.length));
+        assertThrows(Http2Exception.class, () -> HpackHuffman.decode(fullBytePadding, 0, fullBytePadding.length));
+    }
+
+    /*
+     * Requests of RFC 7541, appendix C.3, decoded one after the other with a
+     * shared dynamic table.
+     */
+    @Test
+    void testDecode_dynamicTable() throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(HpackTable.DEFAULT_MAX_SIZE, 64 * 1024);
+
+        assertFields(decoder, "828684410f7777772e6578616d706c652e636f6d",
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com");
+        assertEquals(57, decoder.getTableSize());
+
+        assertFields(decoder, "828684be58086e6f2d6361636865",
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                "cache-control", "no-cache");
+        assertEquals(110, decoder.getTableSize());
+
+        assertFields(decoder, "828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565",
+                ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                "custom-key", "custom-value");
+        assertEquals(164, decoder.getTableSize());
+    }
+
+    @Test
+    void testDecode_invalid() {
+        HpackDecoder decoder = new HpackDecoder(HpackTable.DEFAULT_MAX_SIZE, 64 * 1024);
+
+        assertThrows(Http2Exception.class, () -> decode(decoder, "be")); // Index 62, the dynamic table is empty
+        assertThrows(Http2Exception.class, () -> decode(decoder, "410f7777")); // Truncated string
+        assertThrows(Http2Exception.class, () -> decode(decoder, "3fe21f")); // Table size 4097
+        assertThrows(Http2Exception.class, () -> decode(decoder, "8220")); // Table size update after a field
+    }
+
+    /*
+     * Headers repeated by the second response are sent as indexes into the
+     * dynamic table, connection-specific ones are left out.
+     */
+    @Test
+    void testEncode_roundTrip() throws Http2Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(HpackTable.DEFAULT_MAX_SIZE, 64 * 1024);
+
+        ByteBuffer firstBlock = encoder.encode(buildResponse(15));
+        int firstBlockLength = firstBlock.remaining();
+        List<String[]> firstFields = decoder.decode(firstBlock.array(), 0, firstBlockLength);
+        ByteBuffer secondBlock = encoder.encode(buildResponse(125));
+        List<String[]> secondFields = decoder.decode(secondBlock.array(), 0, secondBlock.remaining());
+
+        assertEquals(List.of(":status=200", "content-disposition=inline", "content-type=text/plain",
+                "content-length=15"), toStrings(firstFields));
+        assertEquals(List.of(":status=200", "content-disposition=inline", "content-type=text/plain",
+                "content-length=125"), toStrings(secondFields));
+        assertTrue(secondBlock.remaining() < firstBlockLength / 2);
+    }
+
+    @Test
+    void testEncode_tableSizeUpdate() throws Http2Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(HpackTable.DEFAULT_MAX_SIZE, 64 * 1024);
+        encoder.setMaxTableSize(0);
+
+        ByteBuffer block = encoder.encode(buildResponse(15));
+        assertEquals(0x20, block.get(0)); // Size update to 0 first
+        decoder.decode(block.array(), 0, block.remaining());
+        assertEquals(0, decoder.getTableSize());
+    }
+
+    private static HttpResponse buildResponse(long contentLength) {
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode("200");
+        httpResponse.setReasonPhrase("OK");
+        httpResponse.setHeader("Content-Type", "text/plain");
+        httpResponse.setHeader("Content-Disposition", "inline");
+        httpResponse.setHeader("Connection", "keep-alive");
+        httpResponse.setContentLength(contentLength);
+        return httpResponse;
+    }
+
+    private static List<String[]> decode(HpackDecoder decoder, String hex) throws Http2Exception {
+        byte[] block = HexFormat.of().parseHex(hex);
+        return decoder.decode(block, 0, block.length);
+    }
+
+    private static void assertFields(HpackDecoder decoder, String hex, String... expectedFields)
+            throws Http2Exception {
+        List<String[]> fields = decode(decoder, hex);
+        assertEquals(expectedFields.length / 2, fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            assertArrayEquals(new String[] { expectedFields[2 * i], expectedFields[2 * i + 1] }, fields.get(i));
+        }
+    }
+
+    private static List<String> toStrings(List<String[]> fields) {
+        return fields.stream().map(field -> field[0] + "=" + field[1]).toList();
+    }
+}
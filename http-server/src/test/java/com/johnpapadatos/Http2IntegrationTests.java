@@ -0,0 +1,232 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+class Http2IntegrationTests {
+    private static final String TEST_BASE_DIRECTORY = "src/test/resources/media";
+    private static final String LARGE_FILE = "/h2-large-file.txt";
+    private static final int LARGE_FILE_SIZE = 3 * 1024 * 1024;
+
+    private int port;
+    private HttpClient httpClient;
+    private byte[] largeFileContents;
+
+    @BeforeAll
+    public void setUp() throws IOException {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(TEST_BASE_DIRECTORY);
+        config.setGzipStreamingThreshold(0);
+        config.setHttp2("h2c");
+        port = startServer(config);
+
+        largeFileContents = new byte[LARGE_FILE_SIZE];
+        new Random(42).nextBytes(largeFileContents);
+        Files.write(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE), largeFileContents);
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+    }
+
+    private static int startServer(Config config) throws IOException {
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress("localhost", 0));
+        HttpServer httpServer = new HttpServer(serverSocket, Executors.newCachedThreadPool(), config);
+        Thread serverThread = new Thread(() -> {
+            try {
+                httpServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        serverThread.start();
+        return serverSocket.getLocalPort();
+    }
+
+    /*
+     * The HTTP client starts with an HTTP/1.1 request carrying "Upgrade: h2c",
+     * which is answered over HTTP/2 on stream 1.
+     */
+    @Test
+    void testUpgrade() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(buildRequest("/test.txt").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertEquals(200, response.statusCode());
+        assertEquals("text/plain", response.headers().firstValue("content-type").orElseThrow());
+        assertEquals("15", response.headers().firstValue("content-length").orElseThrow());
+        assertFalse(response.headers().firstValue("connection").isPresent());
+        assertArrayEquals(Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.txt")), response.body());
+    }
+
+    /*
+     * Once upgraded, concurrent requests share the connection, a large file
+     * is paced by flow control and a streamed gzip body has no chunk framing.
+     */
+    @Test
+    void testMultiplexedRequests() throws IOException, InterruptedException {
+        httpClient.send(buildRequest("/test.html").build(), HttpResponse.BodyHandlers.discarding());
+
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(httpClient.sendAsync(buildRequest(LARGE_FILE).build(),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+            responses.add(httpClient.sendAsync(buildRequest(LARGE_FILE).header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+            responses.add(httpClient.sendAsync(buildRequest("/test.txt").header("Range", "bytes=0-3").build(),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+        }
+
+        for (int i = 0; i < responses.size(); i += 3) {
+            HttpResponse<byte[]> identity = responses.get(i).join();
+            assertEquals(HttpClient.Version.HTTP_2, identity.version());
+            assertArrayEquals(largeFileContents, identity.body());
+
+            HttpResponse<byte[]> gzip = responses.get(i + 1).join();
+            assertEquals("gzip", gzip.headers().firstValue("content-encoding").orElseThrow());
+            assertFalse(gzip.headers().firstValue("transfer-encoding").isPresent());
+            assertArrayEquals(largeFileContents, new GZIPInputStream(new ByteArrayInputStream(gzip.body()))
+                    .readAllBytes());
+
+            HttpResponse<byte[]> partial = responses.get(i + 2).join();
+            assertEquals(206, partial.statusCode());
+            assertEquals("test", new String(partial.body(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void testUpgrade_disabled() throws IOException, InterruptedException {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(TEST_BASE_DIRECTORY);
+        config.setHttp2("none");
+        int http1Port = startServer(config);
+
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + http1Port + "/test.txt")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(HttpClient.Version.HTTP_1_1, response.version());
+        assertEquals(200, response.statusCode());
+    }
+
+    /*
+     * A client with prior knowledge sends the connection preface right away.
+     * Both requests go out before either response, and the 10-byte stream
+     * window only lets the rest of each body through once it is opened.
+     */
+    @Test
+    void testPriorKnowledge_flowControl() throws IOException {
+        byte[] html = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.html"));
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write(Http2Connection.PREFACE);
+            writeFrame(out, Http2Frame.SETTINGS, 0, 0,
+                    ByteBuffer.allocate(6).putShort((short) Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE).putInt(10)
+                            .array());
+            writeFrame(out, Http2Frame.HEADERS, Http2Frame.FLAG_END_HEADERS | Http2Frame.FLAG_END_STREAM, 1,
+                    encodeRequest("/test.html"));
+            writeFrame(out, Http2Frame.HEADERS, Http2Frame.FLAG_END_HEADERS | Http2Frame.FLAG_END_STREAM, 3,
+                    encodeRequest("/missing.txt"));
+
+            HpackDecoder decoder = new HpackDecoder(HpackTable.DEFAULT_MAX_SIZE, 64 * 1024);
+            Map<Integer, String> statuses = new HashMap<>();
+            Map<Integer, Integer> receivedBytes = new HashMap<>();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int endedStreams = 0;
+            while (endedStreams < 2) {
+                Http2Frame frame = Http2Frame.read(in, Http2Frame.DEFAULT_MAX_FRAME_SIZE);
+                if (frame.getType() == Http2Frame.HEADERS) {
+                    statuses.put(frame.getStreamId(), decoder.decode(frame.getPayload(), 0,
+                            frame.getPayload().length).get(0)[1]);
+                } else if (frame.getType() == Http2Frame.DATA) {
+                    int received = receivedBytes.merge(frame.getStreamId(), frame.getPayload().length, Integer::sum);
+                    if (received == 10) {
+                        writeFrame(out, Http2Frame.WINDOW_UPDATE, 0, frame.getStreamId(),
+                                ByteBuffer.allocate(4).putInt(1000).array());
+                    }
+                    if (frame.getStreamId() == 1) {
+                        body.write(frame.getPayload());
+                    }
+                }
+                if ((frame.getType() == Http2Frame.HEADERS || frame.getType() == Http2Frame.DATA)
+                        && frame.hasFlag(Http2Frame.FLAG_END_STREAM)) {
+                    endedStreams++;
+                }
+                assertTrue(body.size() <= 10 || body.size() == html.length);
+            }
+
+            assertEquals(Map.of(1, "200", 3, "404"), statuses);
+            assertArrayEquals(html, body.toByteArray());
+        }
+    }
+
+    private HttpRequest.Builder buildRequest(String path) {
+        return HttpRequest.newBuilder().uri(URI.create("http://localhost:" + port + path));
+    }
+
+    // Literal fields without indexing, with literal names (RFC 7541, section 6.2.2).
+    private byte[] encodeRequest(String path) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        String[] fields = { ":method", "GET", ":scheme", "http", ":path", path, ":authority", "localhost:" + port };
+        for (String field : fields) {
+            if (field.startsWith(":")) {
+                block.write(0x00);
+            }
+            byte[] bytes = field.getBytes(StandardCharsets.US_ASCII);
+            block.write(bytes.length);
+            block.writeBytes(bytes);
+        }
+        return block.toByteArray();
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Http2Frame.HEADER_SIZE);
+        Http2Frame.writeHeader(header, payload.length, type, flags, streamId);
+        out.write(header.array());
+        out.write(payload);
+        out.flush();
+    }
+}
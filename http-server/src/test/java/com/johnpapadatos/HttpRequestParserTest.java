@@ -1,7 +1,7 @@
 package com.johnpapadatos;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -10,11 +10,9 @@ import java.io.InputStreamReader;
 
 import org.junit.jupiter.api.Test;
 
-import com.johnpapadatos.exceptions.MethodNotSupportedException;
-
 class HttpRequestParserTest {
     @Test
-    void testParseRequest_simpleHttpRequest() throws IOException, MethodNotSupportedException {
+    void testParseRequest_simpleHttpRequest() throws IOException {
         String httpRequest = "GET / HTTP/1.1\r\n\r\n";
         BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(httpRequest.getBytes())));
         HttpRequest expectedHttpRequest = getExpectedHttpRequest_simpleHttpRequest();
@@ -23,7 +21,7 @@ class HttpRequestParserTest {
     }
 
     @Test
-    void testParseRequest_simpleHttpRequest_withHeaders() throws IOException, MethodNotSupportedException {
+    void testParseRequest_simpleHttpRequest_withHeaders() throws IOException {
         String httpRequest = "GET / HTTP/1.1\r\n"
                 + "Host: localhost:4221\r\n"
                 + "User-Agent: curl/7.64.1\r\n"
@@ -36,7 +34,7 @@ class HttpRequestParserTest {
     }
 
     @Test
-    void testParseRequest_simpleHttpRequest_withHeadersAndBody() throws IOException, MethodNotSupportedException {
+    void testParseRequest_simpleHttpRequest_withHeadersAndBody() throws IOException {
         String httpRequest = "GET / HTTP/1.1\r\n"
                 + "Host: localhost:4221\r\n"
                 + "User-Agent: curl/7.64.1\r\n"
@@ -56,7 +54,7 @@ class HttpRequestParserTest {
      * request body.
      */
     @Test
-    void testParseRequest_simpleHttpRequest_withBodyAndNoContentLength() throws IOException, MethodNotSupportedException {
+    void testParseRequest_simpleHttpRequest_withBodyAndNoContentLength() throws IOException {
         String httpRequest = "GET / HTTP/1.1\r\n"
                 + "Host: localhost:4221\r\n"
                 + "User-Agent: curl/7.64.1\r\n"
@@ -70,25 +68,25 @@ class HttpRequestParserTest {
     }
 
     @Test
-    void testParseRequest_simpleHttpRequest_invalidRequestLine() {
+    void testParseRequest_simpleHttpRequest_invalidRequestLine() throws IOException {
         String httpRequestInvalidMethod = "POST / HTTP/1.1\r\n\r\n";
         BufferedReader brInvalidMethod = new BufferedReader(
                 new InputStreamReader(new ByteArrayInputStream(httpRequestInvalidMethod.getBytes())));
-        assertThrows(MethodNotSupportedException.class, () -> HttpRequestParser.parseRequest(brInvalidMethod));
+        assertEquals(RequestError.METHOD_NOT_ALLOWED, HttpRequestParser.parseRequest(brInvalidMethod).getError());
 
         String httpRequestInvalidPath = "GET path HTTP/1.1\r\n\r\n";
         BufferedReader brInvalidPath = new BufferedReader(
                 new InputStreamReader(new ByteArrayInputStream(httpRequestInvalidPath.getBytes())));
-        assertThrows(IllegalArgumentException.class, () -> HttpRequestParser.parseRequest(brInvalidPath));
+        assertEquals(RequestError.BAD_REQUEST, HttpRequestParser.parseRequest(brInvalidPath).getError());
 
         String httpRequestInvalidVersion = "GET path HTTP/2\r\n\r\n";
         BufferedReader brInvalidVersion = new BufferedReader(
                 new InputStreamReader(new ByteArrayInputStream(httpRequestInvalidVersion.getBytes())));
-        assertThrows(IllegalArgumentException.class, () -> HttpRequestParser.parseRequest(brInvalidVersion));
+        assertEquals(RequestError.BAD_REQUEST, HttpRequestParser.parseRequest(brInvalidVersion).getError());
     }
 
     @Test
-    void testParseRequest_simpleHttpRequest_invalidHeaders() {
+    void testParseRequest_simpleHttpRequest_invalidHeaders() throws IOException {
         String httpRequestInvalidHeader1 = "GET / HTTP/1.1\r\n"
                 + "Host:localhost:4221\r\n" // No space after colon
                 + "User-Agent: curl/7.64.1\r\n"
@@ -96,7 +94,7 @@ class HttpRequestParserTest {
                 + "\r\n";
         BufferedReader brInvalidHeader1 = new BufferedReader(
                 new InputStreamReader(new ByteArrayInputStream(httpRequestInvalidHeader1.getBytes())));
-        assertThrows(IllegalArgumentException.class, () -> HttpRequestParser.parseRequest(brInvalidHeader1));
+        assertEquals(RequestError.BAD_REQUEST, HttpRequestParser.parseRequest(brInvalidHeader1).getError());
 
         String httpRequestInvalidHeader2 = "GET / HTTP/1.1\r\n"
                 + "Header\r\n" // Invalid header
@@ -105,7 +103,7 @@ class HttpRequestParserTest {
                 + "\r\n";
         BufferedReader brInvalidHeader2 = new BufferedReader(
                 new InputStreamReader(new ByteArrayInputStream(httpRequestInvalidHeader2.getBytes())));
-        assertThrows(IllegalArgumentException.class, () -> HttpRequestParser.parseRequest(brInvalidHeader2));
+        assertEquals(RequestError.BAD_REQUEST, HttpRequestParser.parseRequest(brInvalidHeader2).getError());
 
         String httpRequestInvalidHeader3 = "GET / HTTP/1.1\r\n"
                 + "Host:localhost:4221\r\n"
@@ -114,7 +112,30 @@ class HttpRequestParserTest {
                 + "\r\n";
         BufferedReader brInvalidHeader3 = new BufferedReader(
                 new InputStreamReader(new ByteArrayInputStream(httpRequestInvalidHeader3.getBytes())));
-        assertThrows(IllegalArgumentException.class, () -> HttpRequestParser.parseRequest(brInvalidHeader3));
+        assertEquals(RequestError.BAD_REQUEST, HttpRequestParser.parseRequest(brInvalidHeader3).getError());
+    }
+
+    /*
+     * An exhausted stream means the client closed its persistent connection.
+     */
+    @Test
+    void testParseRequest_endOfStream() throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(new byte[0])));
+        assertNull(HttpRequestParser.parseRequest(br));
+    }
+
+    @Test
+    void testParseRequest_consecutiveHttpRequests() throws IOException {
+        String httpRequests = "GET / HTTP/1.1\r\n\r\n"
+                + "GET / HTTP/1.1\r\n"
+                + "Host: localhost:4221\r\n"
+                + "User-Agent: curl/7.64.1\r\n"
+                + "Accept: */*\r\n"
+                + "\r\n";
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(httpRequests.getBytes())));
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest(), HttpRequestParser.parseRequest(br));
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest_withHeaders(), HttpRequestParser.parseRequest(br));
+        assertNull(HttpRequestParser.parseRequest(br));
     }
 
     private HttpRequest getExpectedHttpRequest_simpleHttpRequest() {
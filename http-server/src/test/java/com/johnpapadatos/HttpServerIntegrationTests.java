@@ -5,15 +5,35 @@ import static io.restassured.RestAssured.when;
 import static io.restassured.config.DecoderConfig.decoderConfig;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -25,27 +45,50 @@ import io.restassured.response.Response;
 @TestInstance(Lifecycle.PER_CLASS)
 class HttpServerIntegrationTests {
     private static final String TEST_BASE_DIRECTORY = "src/test/resources/media";
+    private static final String LARGE_FILE = "/large-file.txt";
+    private static final int LARGE_FILE_SIZE = 4 * 1024 * 1024;
 
-    private HttpServer httpServer;
-    private ServerSocket serverSocket;
-    private Thread serverThread;
+    private Config config;
+    private int port;
 
     @BeforeAll
     public void setUp() throws IOException {
-        serverSocket = new ServerSocket(0);
-        httpServer = new HttpServer(serverSocket, Executors.newSingleThreadExecutor());
-        serverThread = new Thread(() -> {
+        config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(TEST_BASE_DIRECTORY);
+        config.setMaxRequestsPerConnection(3);
+        config.setMaxPipelinedRequests(4);
+        config.setMmapMaxBytes(16 * 1024 * 1024);
+        config.setCompressionMinSize(0);
+        port = startServer(config);
+
+        byte[] largeFileContents = new byte[LARGE_FILE_SIZE];
+        new Random(42).nextBytes(largeFileContents);
+        Files.write(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE), largeFileContents);
+
+        RestAssured.baseURI = "http://localhost:" + port;
+        RestAssured.config = RestAssured.config()
+                .decoderConfig(decoderConfig().noContentDecoders());
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+    }
+
+    // Starts the server engine under test and returns the port it listens on.
+    protected int startServer(Config config) throws IOException {
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress("localhost", 0));
+        HttpServer httpServer = new HttpServer(serverSocket, Executors.newCachedThreadPool(), config);
+        Thread serverThread = new Thread(() -> {
             try {
-                httpServer.start(TEST_BASE_DIRECTORY);
+                httpServer.start();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         });
         serverThread.start();
-
-        RestAssured.baseURI = "http://localhost:" + serverSocket.getLocalPort();
-        RestAssured.config = RestAssured.config()
-                .decoderConfig(decoderConfig().noContentDecoders());
+        return serverSocket.getLocalPort();
     }
 
     @Test
@@ -63,7 +106,7 @@ class HttpServerIntegrationTests {
         assertEquals("text/plain", successfulResponse.getHeader("Content-Type"));
         assertEquals("inline", successfulResponse.getHeader("Content-Disposition"));
         assertEquals(expectedContentLength, successfulResponse.getHeader("Content-Length"));
-        assertEquals("close", successfulResponse.getHeader("Connection"));
+        assertEquals("keep-alive", successfulResponse.getHeader("Connection"));
         assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
     }
 
@@ -82,7 +125,7 @@ class HttpServerIntegrationTests {
         assertEquals("text/html", successfulResponse.getHeader("Content-Type"));
         assertEquals("inline", successfulResponse.getHeader("Content-Disposition"));
         assertEquals(expectedContentLength, successfulResponse.getHeader("Content-Length"));
-        assertEquals("close", successfulResponse.getHeader("Connection"));
+        assertEquals("keep-alive", successfulResponse.getHeader("Connection"));
         assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
     }
 
@@ -104,7 +147,7 @@ class HttpServerIntegrationTests {
         assertEquals("text/plain", successfulResponse.getHeader("Content-Type"));
         assertEquals(expectedContentDisposition, successfulResponse.getHeader("Content-Disposition"));
         assertEquals(expectedContentLength, successfulResponse.getHeader("Content-Length"));
-        assertEquals("close", successfulResponse.getHeader("Connection"));
+        assertEquals("keep-alive", successfulResponse.getHeader("Connection"));
         assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
     }
 
@@ -126,7 +169,7 @@ class HttpServerIntegrationTests {
         assertEquals("text/plain", successfulResponse.getHeader("Content-Type"));
         assertEquals("inline", successfulResponse.getHeader("Content-Disposition"));
         assertEquals(expectedContentLength, successfulResponse.getHeader("Content-Length"));
-        assertEquals("close", successfulResponse.getHeader("Connection"));
+        assertEquals("keep-alive", successfulResponse.getHeader("Connection"));
         assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
     }
 
@@ -150,14 +193,432 @@ class HttpServerIntegrationTests {
         assertEquals("text/html", successfulResponse.getHeader("Content-Type"));
         assertEquals(expectedContentDisposition, successfulResponse.getHeader("Content-Disposition"));
         assertEquals(expectedContentLength, successfulResponse.getHeader("Content-Length"));
-        assertEquals("close", successfulResponse.getHeader("Connection"));
+        assertEquals("keep-alive", successfulResponse.getHeader("Connection"));
+        assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
+    }
+
+    @Test
+    void testSuccessfulResponseTXT_acceptEncodingDeflatePreferred() throws IOException {
+        String requestedResource = "/test.txt";
+        byte[] expectedResponseBody = getBodyAsBytesDeflateCompressed(
+                Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + requestedResource)));
+
+        Response successfulResponse = given()
+                .header("Accept-Encoding", "gzip;q=0.5, deflate")
+                .when()
+                .get(requestedResource)
+                .then()
+                .extract().response();
+
+        assertEquals(200, successfulResponse.statusCode());
+        assertEquals("deflate", successfulResponse.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", successfulResponse.getHeader("Vary"));
+        assertTrue(successfulResponse.getHeader("ETag").endsWith("-deflate\""));
         assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
     }
 
+    @Test
+    void testSuccessfulResponseTXT_acceptEncodingGzipRefused() throws IOException {
+        String requestedResource = "/test.txt";
+        byte[] expectedResponseBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + requestedResource));
+
+        Response successfulResponse = given()
+                .header("Accept-Encoding", "gzip;q=0, br")
+                .when()
+                .get(requestedResource)
+                .then()
+                .extract().response();
+
+        assertEquals(200, successfulResponse.statusCode());
+        assertNull(successfulResponse.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", successfulResponse.getHeader("Vary"));
+        assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
+    }
+
+    /*
+     * A .gz file that is not older than the file is sent as it is, a stale
+     * one is ignored and the file is compressed instead.
+     */
+    @Test
+    void testSuccessfulResponseTXT_acceptEncodingGzip_precompressed() throws IOException {
+        Path file = Paths.get(TEST_BASE_DIRECTORY + "/precompressed.txt");
+        Path sidecar = Paths.get(TEST_BASE_DIRECTORY + "/precompressed.txt.gz");
+        Path staleFile = Paths.get(TEST_BASE_DIRECTORY + "/stale.txt");
+        Path staleSidecar = Paths.get(TEST_BASE_DIRECTORY + "/stale.txt.gz");
+        byte[] contents = "precompressed ".repeat(100).getBytes();
+        // Distinguishable from what the server would produce
+        byte[] precompressed = getBodyAsBytesGzipCompressed("sidecar".getBytes());
+        try {
+            Files.write(file, contents);
+            Files.write(sidecar, precompressed);
+            Files.write(staleFile, contents);
+            Files.write(staleSidecar, precompressed);
+            Files.setLastModifiedTime(staleSidecar, FileTime.fromMillis(
+                    Files.getLastModifiedTime(staleFile).toMillis() - 60_000));
+
+            Response precompressedResponse = given()
+                    .header("Accept-Encoding", "gzip")
+                    .when()
+                    .get("/precompressed.txt")
+                    .then()
+                    .extract().response();
+            Response staleResponse = given()
+                    .header("Accept-Encoding", "gzip")
+                    .when()
+                    .get("/stale.txt")
+                    .then()
+                    .extract().response();
+
+            assertEquals(200, precompressedResponse.statusCode());
+            assertEquals("gzip", precompressedResponse.getHeader("Content-Encoding"));
+            assertEquals("text/plain", precompressedResponse.getHeader("Content-Type"));
+            assertEquals("Accept-Encoding", precompressedResponse.getHeader("Vary"));
+            assertArrayEquals(precompressed, precompressedResponse.getBody().asByteArray());
+            assertEquals("gzip", staleResponse.getHeader("Content-Encoding"));
+            assertArrayEquals(getBodyAsBytesGzipCompressed(contents), staleResponse.getBody().asByteArray());
+
+            String metrics = when().get("/metrics").then().extract().asString();
+            assertFalse(metrics.contains("http_precompressed_hits_total 0\n"));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+            Files.deleteIfExists(staleFile);
+            Files.deleteIfExists(staleSidecar);
+        }
+    }
+
+    /*
+     * A cached .gz file is replaced once it changes, and its entity tag is
+     * neither the one of the file compressed on the fly nor the previous one.
+     */
+    @Test
+    void testSuccessfulResponseTXT_acceptEncodingGzip_precompressedReplaced()
+            throws IOException, InterruptedException {
+        String requestedResource = "/replaced-" + getClass().getSimpleName() + ".txt";
+        Path file = Paths.get(TEST_BASE_DIRECTORY + requestedResource);
+        Path sidecar = Paths.get(TEST_BASE_DIRECTORY + requestedResource + ".gz");
+        byte[] firstVersion = getBodyAsBytesGzipCompressed("First version".getBytes());
+        byte[] secondVersion = getBodyAsBytesGzipCompressed("Second version, longer".getBytes());
+        try {
+            Files.write(file, "precompressed ".repeat(100).getBytes());
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            Files.write(sidecar, firstVersion);
+            Files.setLastModifiedTime(sidecar, FileTime.fromMillis(lastModified + 10_000));
+
+            String identityEntityTag = when().get(requestedResource).then().extract().header("ETag");
+            given().header("Accept-Encoding", "gzip").when().get(requestedResource); // Cached from here on
+            Response firstResponse = given().header("Accept-Encoding", "gzip").when().get(requestedResource);
+            assertArrayEquals(firstVersion, firstResponse.getBody().asByteArray());
+            assertNotEquals(identityEntityTag.substring(0, identityEntityTag.length() - 1) + "-gzip\"",
+                    firstResponse.getHeader("ETag"));
+
+            Files.write(sidecar, secondVersion);
+            Files.setLastModifiedTime(sidecar, FileTime.fromMillis(lastModified + 20_000));
+            // The stat cache learns about the change from a WatchService, asynchronously
+            Response secondResponse = given().header("Accept-Encoding", "gzip").when().get(requestedResource);
+            for (long deadline = System.nanoTime() + 5_000_000_000L;
+                    !Arrays.equals(secondVersion, secondResponse.getBody().asByteArray())
+                            && System.nanoTime() < deadline;) {
+                Thread.sleep(50);
+                secondResponse = given().header("Accept-Encoding", "gzip").when().get(requestedResource);
+            }
+            assertArrayEquals(secondVersion, secondResponse.getBody().asByteArray());
+            assertNotEquals(firstResponse.getHeader("ETag"), secondResponse.getHeader("ETag"));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+        }
+    }
+
+    @Test
+    void testSuccessfulResponse_largeFile() throws IOException {
+        byte[] expectedResponseBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+
+        Response successfulResponse = when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+
+        assertEquals(200, successfulResponse.statusCode());
+        assertEquals(Integer.toString(LARGE_FILE_SIZE), successfulResponse.getHeader("Content-Length"));
+        assertArrayEquals(expectedResponseBody, successfulResponse.getBody().asByteArray());
+    }
+
+    /*
+     * From the second request on, the large file is sent from its memory
+     * mapping, whole or sliced into ranges.
+     */
+    @Test
+    void testSuccessfulResponse_largeFile_memoryMapped() throws IOException {
+        byte[] expectedResponseBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(expectedResponseBody, when().get(LARGE_FILE).then().extract().asByteArray());
+        }
+
+        Response partialResponse = given()
+                .header("Range", "bytes=1000-1999")
+                .when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+        assertEquals(206, partialResponse.statusCode());
+        assertArrayEquals(Arrays.copyOfRange(expectedResponseBody, 1000, 2000),
+                partialResponse.getBody().asByteArray());
+
+        String metrics = when().get("/metrics").then().extract().asString();
+        assertFalse(metrics.contains("http_mmap_hits_total 0\n"));
+        assertFalse(metrics.contains("http_mmap_bytes 0\n"));
+    }
+
+    @Test
+    void testSuccessfulResponse_largeFile_acceptEncodingGzip_streamed() throws IOException {
+        byte[] expectedResponseBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+
+        Response successfulResponse = given()
+                .header("Accept-Encoding", "gzip")
+                .when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+
+        assertEquals(200, successfulResponse.statusCode());
+        assertEquals("gzip", successfulResponse.getHeader("Content-Encoding"));
+        assertEquals("chunked", successfulResponse.getHeader("Transfer-Encoding"));
+        assertNull(successfulResponse.getHeader("Content-Length"));
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(successfulResponse.getBody().asInputStream())) {
+            assertArrayEquals(expectedResponseBody, gzipInputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void testPartialContent_singleRange() throws IOException {
+        byte[] largeFileContents = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+
+        Response partialResponse = given()
+                .header("Range", "bytes=1000-1999")
+                .header("Accept-Encoding", "gzip")
+                .when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+
+        assertEquals(206, partialResponse.statusCode());
+        assertEquals("bytes 1000-1999/" + LARGE_FILE_SIZE, partialResponse.getHeader("Content-Range"));
+        assertEquals("1000", partialResponse.getHeader("Content-Length"));
+        assertNull(partialResponse.getHeader("Content-Encoding"));
+        assertArrayEquals(Arrays.copyOfRange(largeFileContents, 1000, 2000), partialResponse.getBody().asByteArray());
+    }
+
+    @Test
+    void testPartialContent_suffixRange() throws IOException {
+        byte[] largeFileContents = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + LARGE_FILE));
+
+        Response partialResponse = given()
+                .header("Range", "bytes=-100")
+                .when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+
+        assertEquals(206, partialResponse.statusCode());
+        assertEquals("bytes " + (LARGE_FILE_SIZE - 100) + "-" + (LARGE_FILE_SIZE - 1) + "/" + LARGE_FILE_SIZE,
+                partialResponse.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(largeFileContents, LARGE_FILE_SIZE - 100, LARGE_FILE_SIZE),
+                partialResponse.getBody().asByteArray());
+    }
+
+    @Test
+    void testPartialContent_multipleRanges() throws IOException {
+        String contents = Files.readString(Paths.get(TEST_BASE_DIRECTORY + "/test.txt"));
+
+        Response partialResponse = given()
+                .header("Range", "bytes=0-1, 4-")
+                .when()
+                .get("/test.txt")
+                .then()
+                .extract().response();
+
+        assertEquals(206, partialResponse.statusCode());
+        String contentType = partialResponse.getHeader("Content-Type");
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String expectedBody = "--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-1/" + contents.length() + "\r\n\r\n"
+                + contents.substring(0, 2) + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 4-" + (contents.length() - 1) + "/" + contents.length() + "\r\n\r\n"
+                + contents.substring(4) + "\r\n"
+                + "--" + boundary + "--\r\n";
+        assertEquals(expectedBody, partialResponse.getBody().asString());
+        assertEquals(Integer.toString(expectedBody.length()), partialResponse.getHeader("Content-Length"));
+    }
+
+    @Test
+    void testPartialContent_rangeNotSatisfiable() {
+        Response errorResponse = given()
+                .header("Range", "bytes=" + LARGE_FILE_SIZE + "-")
+                .when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+
+        assertEquals(416, errorResponse.statusCode());
+        assertEquals("bytes */" + LARGE_FILE_SIZE, errorResponse.getHeader("Content-Range"));
+        assertEquals("keep-alive", errorResponse.getHeader("Connection"));
+    }
+
+    @Test
+    void testPartialContent_ifRangeOutdated() {
+        Response fullResponse = given()
+                .header("Range", "bytes=0-9")
+                .header("If-Range", "Thu, 01 Jan 1970 00:00:00 GMT")
+                .when()
+                .get(LARGE_FILE)
+                .then()
+                .extract().response();
+
+        assertEquals(200, fullResponse.statusCode());
+        assertEquals("bytes", fullResponse.getHeader("Accept-Ranges"));
+        assertEquals(Integer.toString(LARGE_FILE_SIZE), fullResponse.getHeader("Content-Length"));
+        assertEquals(LARGE_FILE_SIZE, fullResponse.getBody().asByteArray().length);
+    }
+
+    @Test
+    void testConditionalGet_validators() throws IOException {
+        String requestedResource = "/test.txt";
+        Path file = Paths.get(TEST_BASE_DIRECTORY + requestedResource);
+        String expectedLastModified = DateTimeFormatter.RFC_1123_DATE_TIME
+                .format(Files.getLastModifiedTime(file).toInstant().atZone(ZoneOffset.UTC));
+
+        Response successfulResponse = when()
+                .get(requestedResource)
+                .then()
+                .extract().response();
+        Response gzipResponse = given()
+                .header("Accept-Encoding", "gzip")
+                .when()
+                .get(requestedResource)
+                .then()
+                .extract().response();
+
+        assertEquals(200, successfulResponse.statusCode());
+        assertTrue(successfulResponse.getHeader("ETag").startsWith("W/\""));
+        assertEquals(expectedLastModified, successfulResponse.getHeader("Last-Modified"));
+        assertTrue(gzipResponse.getHeader("ETag").endsWith("-gzip\""));
+        assertEquals(expectedLastModified, gzipResponse.getHeader("Last-Modified"));
+    }
+
+    @Test
+    void testConditionalGet_ifNoneMatch_notModified() {
+        String entityTag = when().get("/test.txt").then().extract().header("ETag");
+
+        Response notModifiedResponse = given()
+                .header("If-None-Match", "\"other\", " + entityTag)
+                .when()
+                .get("/test.txt")
+                .then()
+                .extract().response();
+
+        assertEquals(304, notModifiedResponse.statusCode());
+        assertEquals(entityTag, notModifiedResponse.getHeader("ETag"));
+        assertNull(notModifiedResponse.getHeader("Content-Length"));
+        assertEquals("keep-alive", notModifiedResponse.getHeader("Connection"));
+        assertEquals(0, notModifiedResponse.getBody().asByteArray().length);
+    }
+
+    @Test
+    void testConditionalGet_ifModifiedSince() {
+        String lastModified = when().get("/test.txt").then().extract().header("Last-Modified");
+
+        Response notModifiedResponse = given()
+                .header("If-Modified-Since", lastModified)
+                .when()
+                .get("/test.txt")
+                .then()
+                .extract().response();
+        Response modifiedResponse = given()
+                .header("If-Modified-Since", "Thu, 01 Jan 1970 00:00:00 GMT")
+                .when()
+                .get("/test.txt")
+                .then()
+                .extract().response();
+
+        assertEquals(304, notModifiedResponse.statusCode());
+        assertEquals(200, modifiedResponse.statusCode());
+    }
+
+    /*
+     * A client holding an outdated ETag gets the full body even though its
+     * If-Modified-Since date alone would have allowed a 304.
+     */
+    @Test
+    void testConditionalGet_ifNoneMatchTakesPrecedence() {
+        String lastModified = when().get("/test.txt").then().extract().header("Last-Modified");
+
+        Response successfulResponse = given()
+                .header("If-None-Match", "W/\"outdated\"")
+                .header("If-Modified-Since", lastModified)
+                .when()
+                .get("/test.txt")
+                .then()
+                .extract().response();
+
+        assertEquals(200, successfulResponse.statusCode());
+    }
+
+    /*
+     * No file named metrics exists in the base directory, the path is
+     * answered by the server itself.
+     */
+    @Test
+    void testMetrics() {
+        when().get("/test.txt").then().statusCode(200);
+
+        Response metricsResponse = when()
+                .get("/metrics")
+                .then()
+                .extract().response();
+
+        String metrics = metricsResponse.asString();
+        assertEquals(200, metricsResponse.statusCode());
+        assertEquals("text/plain; version=0.0.4; charset=utf-8", metricsResponse.getHeader("Content-Type"));
+        assertTrue(metrics.contains("http_responses_total{code=\"200\"} "));
+        assertTrue(metrics.contains("http_request_duration_seconds_bucket{le=\"+Inf\"} "));
+        assertTrue(metrics.contains("http_thread_pool_queue_duration_seconds_count "));
+        assertTrue(metrics.contains("http_open_connections "));
+        assertTrue(metrics.contains("http_cache_hits_total "));
+    }
+
+    @Test
+    void testSuccessfulResponse_fileModifiedAfterBeingCached() throws IOException, InterruptedException {
+        String requestedResource = "/modified-file-" + getClass().getSimpleName() + ".txt";
+        Path file = Paths.get(TEST_BASE_DIRECTORY + requestedResource);
+        try {
+            Files.writeString(file, "First version");
+            assertEquals("First version", when().get(requestedResource).then().extract().asString());
+            assertEquals("First version", when().get(requestedResource).then().extract().asString());
+
+            Files.writeString(file, "Second version");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            // The stat cache learns about the change from a WatchService, asynchronously
+            String body = when().get(requestedResource).then().extract().asString();
+            for (long deadline = System.nanoTime() + 5_000_000_000L; !body.equals("Second version")
+                    && System.nanoTime() < deadline;) {
+                Thread.sleep(50);
+                body = when().get(requestedResource).then().extract().asString();
+            }
+            assertEquals("Second version", body);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     @Test
     void testError400Response_unsupportedMethod_POST() {
         String requestedResource = "/test.txt";
-        String expectedResponseBody = "POST method not allowed.";
+        String expectedResponseBody = "Method not allowed.";
         String expectedContentLength = Integer.toString(expectedResponseBody.getBytes().length);
 
         Response error400Response = when()
@@ -168,14 +629,15 @@ class HttpServerIntegrationTests {
         assertEquals(405, error400Response.statusCode());
         assertEquals("text/plain", error400Response.getHeader("Content-Type"));
         assertEquals(expectedContentLength, error400Response.getHeader("Content-Length"));
-        assertEquals("close", error400Response.getHeader("Connection"));
+        assertEquals("keep-alive", error400Response.getHeader("Connection"));
+        assertEquals("GET", error400Response.getHeader("Allow"));
         assertEquals(expectedResponseBody, error400Response.getBody().asString());
     }
 
     @Test
     void testError400Response_unsupportedMethod_PUT() {
         String requestedResource = "/test.txt";
-        String expectedResponseBody = "PUT method not allowed.";
+        String expectedResponseBody = "Method not allowed.";
         String expectedContentLength = Integer.toString(expectedResponseBody.getBytes().length);
 
         Response error400Response = when()
@@ -186,14 +648,15 @@ class HttpServerIntegrationTests {
         assertEquals(405, error400Response.statusCode());
         assertEquals("text/plain", error400Response.getHeader("Content-Type"));
         assertEquals(expectedContentLength, error400Response.getHeader("Content-Length"));
-        assertEquals("close", error400Response.getHeader("Connection"));
+        assertEquals("keep-alive", error400Response.getHeader("Connection"));
+        assertEquals("GET", error400Response.getHeader("Allow"));
         assertEquals(expectedResponseBody, error400Response.getBody().asString());
     }
 
     @Test
     void testError400Response_unsupportedMethod_DELETE() {
         String requestedResource = "/test.txt";
-        String expectedResponseBody = "DELETE method not allowed.";
+        String expectedResponseBody = "Method not allowed.";
         String expectedContentLength = Integer.toString(expectedResponseBody.getBytes().length);
 
         Response error400Response = when()
@@ -204,14 +667,15 @@ class HttpServerIntegrationTests {
         assertEquals(405, error400Response.statusCode());
         assertEquals("text/plain", error400Response.getHeader("Content-Type"));
         assertEquals(expectedContentLength, error400Response.getHeader("Content-Length"));
-        assertEquals("close", error400Response.getHeader("Connection"));
+        assertEquals("keep-alive", error400Response.getHeader("Connection"));
+        assertEquals("GET", error400Response.getHeader("Allow"));
         assertEquals(expectedResponseBody, error400Response.getBody().asString());
     }
 
     @Test
     void testError404Response_fileNotFound() {
         String requestedResource = "/non-existing-file.txt";
-        String expectedResponseBody = "File " + requestedResource.substring(1) + " not found.";
+        String expectedResponseBody = "File not found.";
         String expectedContentLength = Integer.toString(expectedResponseBody.getBytes().length);
 
         Response successfulResponse = when()
@@ -222,10 +686,201 @@ class HttpServerIntegrationTests {
         assertEquals(404, successfulResponse.statusCode());
         assertEquals("text/plain", successfulResponse.getHeader("Content-Type"));
         assertEquals(expectedContentLength, successfulResponse.getHeader("Content-Length"));
-        assertEquals("close", successfulResponse.getHeader("Connection"));
+        assertEquals("keep-alive", successfulResponse.getHeader("Connection"));
         assertEquals(expectedResponseBody, successfulResponse.getBody().asString());
     }
 
+    /*
+     * Dot segments are resolved before the file is looked up, and a path that
+     * climbs above the base directory is not found, even though the file
+     * exists there. Sent over a raw socket, HTTP clients normalize the path.
+     */
+    @Test
+    void testRequestPath_dotSegments() throws IOException {
+        byte[] expectedTxtBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.txt"));
+
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /./missing//../test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            out.flush();
+            Map<String, String> response = readRawResponse(in);
+            assertEquals("HTTP/1.1 200 OK", response.get("Status-Line"));
+            assertEquals(new String(expectedTxtBody), response.get("Body"));
+
+            out.write("GET /../config.properties HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            out.flush();
+            response = readRawResponse(in);
+            assertEquals("HTTP/1.1 404 Not Found", response.get("Status-Line"));
+            assertEquals("File not found.", response.get("Body"));
+        }
+    }
+
+    @Test
+    void testPersistentConnection_multipleRequestsOnSameSocket() throws IOException {
+        byte[] expectedTxtBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.txt"));
+        byte[] expectedHtmlBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.html"));
+
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            out.flush();
+            Map<String, String> firstResponse = readRawResponse(in);
+            assertEquals("HTTP/1.1 200 OK", firstResponse.get("Status-Line"));
+            assertEquals("keep-alive", firstResponse.get("Connection"));
+            assertEquals(new String(expectedTxtBody), firstResponse.get("Body"));
+
+            out.write("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            out.flush();
+            Map<String, String> secondResponse = readRawResponse(in);
+            assertEquals("HTTP/1.1 200 OK", secondResponse.get("Status-Line"));
+            assertEquals("keep-alive", secondResponse.get("Connection"));
+            assertEquals(new String(expectedHtmlBody), secondResponse.get("Body"));
+        }
+    }
+
+    /*
+     * A request for a missing file or with a method other than GET, its body
+     * included, is read to its end, so the next one can follow it.
+     */
+    @Test
+    void testPersistentConnection_errorResponses() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("POST /test.txt HTTP/1.1\r\nHost: localhost\r\nContent-Length: 8\r\n\r\n{\"id\":1}"
+                    + "GET /non-existing-file.txt HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /test.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            out.flush();
+
+            Map<String, String> methodResponse = readRawResponse(in);
+            assertEquals("HTTP/1.1 405 Method Not Allowed", methodResponse.get("Status-Line"));
+            assertEquals("keep-alive", methodResponse.get("Connection"));
+            Map<String, String> notFoundResponse = readRawResponse(in);
+            assertEquals("HTTP/1.1 404 Not Found", notFoundResponse.get("Status-Line"));
+            assertEquals("keep-alive", notFoundResponse.get("Connection"));
+            Map<String, String> response = readRawResponse(in);
+            assertEquals("HTTP/1.1 200 OK", response.get("Status-Line"));
+            assertEquals("close", response.get("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testPersistentConnection_connectionCloseRequested() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /test.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+            out.flush();
+            Map<String, String> response = readRawResponse(in);
+            assertEquals("HTTP/1.1 200 OK", response.get("Status-Line"));
+            assertEquals("close", response.get("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testPersistentConnection_maxRequestsPerConnectionReached() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            for (int i = 1; i <= config.getMaxRequestsPerConnection(); i++) {
+                out.write("GET /test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                Map<String, String> response = readRawResponse(in);
+                String expectedConnection = i < config.getMaxRequestsPerConnection() ? "keep-alive" : "close";
+                assertEquals(expectedConnection, response.get("Connection"));
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /*
+     * The large file is requested first, so a response written as soon as it
+     * is ready would come out of order.
+     */
+    @Test
+    void testPipelining_responsesInRequestOrder() throws IOException {
+        byte[] expectedTxtBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.txt"));
+        byte[] expectedHtmlBody = Files.readAllBytes(Paths.get(TEST_BASE_DIRECTORY + "/test.html"));
+
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET " + LARGE_FILE + " HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+            out.flush();
+
+            Map<String, String> firstResponse = readRawResponse(in);
+            assertEquals(String.valueOf(LARGE_FILE_SIZE), firstResponse.get("Content-Length"));
+            assertEquals("keep-alive", firstResponse.get("Connection"));
+            Map<String, String> secondResponse = readRawResponse(in);
+            assertEquals(new String(expectedTxtBody), secondResponse.get("Body"));
+            assertEquals("keep-alive", secondResponse.get("Connection"));
+            Map<String, String> thirdResponse = readRawResponse(in);
+            assertEquals(new String(expectedHtmlBody), thirdResponse.get("Body"));
+            assertEquals("close", thirdResponse.get("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testPipelining_malformedRequestAfterValidOne() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET /test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+            out.flush();
+
+            assertEquals("HTTP/1.1 200 OK", readRawResponse(in).get("Status-Line"));
+            Map<String, String> errorResponse = readRawResponse(in);
+            assertEquals("HTTP/1.1 400 Bad Request", errorResponse.get("Status-Line"));
+            assertEquals("close", errorResponse.get("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    private static Map<String, String> readRawResponse(InputStream in) throws IOException {
+        Map<String, String> response = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        response.put("Status-Line", readRawLine(in));
+
+        String line;
+        while (!(line = readRawLine(in)).isEmpty()) {
+            String[] headerParts = line.split(": ", 2);
+            response.put(headerParts[0], headerParts[1]);
+        }
+
+        byte[] body = in.readNBytes(Integer.parseInt(response.get("Content-Length")));
+        response.put("Body", new String(body));
+        return response;
+    }
+
+    private static String readRawLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("Connection closed unexpectedly.");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
     private static byte[] getBodyAsBytesGzipCompressed(byte[] body) throws IOException {
         ByteArrayOutputStream os = new ByteArrayOutputStream();
         GZIPOutputStream gzipOutputStream = new GZIPOutputStream(os);
@@ -233,4 +888,12 @@ class HttpServerIntegrationTests {
         gzipOutputStream.close();
         return os.toByteArray();
     }
+
+    private static byte[] getBodyAsBytesDeflateCompressed(byte[] body) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(os);
+        deflaterOutputStream.write(body, 0, body.length);
+        deflaterOutputStream.close();
+        return os.toByteArray();
+    }
 }
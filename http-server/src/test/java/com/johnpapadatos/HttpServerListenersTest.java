@@ -0,0 +1,179 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.jupiter.api.Test;
+
+class HttpServerListenersTest {
+    private static final String TEST_BASE_DIRECTORY = "src/test/resources/media";
+    private static final int CONNECTIONS = 100;
+
+    @Test
+    void testStart_acceptorThreads() throws Exception {
+        Config config = buildConfig();
+        config.setAcceptorThreads(4);
+        ServerSocket serverSocket = Main.openServerSocket(config, false);
+        HttpServer httpServer = new HttpServer(serverSocket, Main.createThreadPool(config), config);
+        try {
+            startServer(httpServer);
+
+            assertEquals(List.of(200), requestAll(serverSocket.getLocalPort()));
+            assertEquals(CONNECTIONS, httpServer.getHttpRequestHandler().getMetrics().getResponses("200"));
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    /*
+     * Two listeners bound to the same port with SO_REUSEPORT dispatch to one
+     * thread pool of the configured size, and count their responses in shared
+     * metrics.
+     */
+    @Test
+    void testStart_reusePortListeners() throws Exception {
+        assumeTrue(Main.supportsReusePort());
+
+        Config config = buildConfig();
+        ServerSocket firstSocket = Main.openServerSocket(config, true);
+        config.setPort(firstSocket.getLocalPort());
+        ServerSocket secondSocket = Main.openServerSocket(config, true);
+        HttpRequestHandler httpRequestHandler = new HttpRequestHandler(config);
+        ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Main.createThreadPool(config);
+        try {
+            startServer(new HttpServer(firstSocket, threadPool, httpRequestHandler));
+            startServer(new HttpServer(secondSocket, threadPool, httpRequestHandler));
+
+            assertEquals(List.of(200), requestAll(config.getPort()));
+            assertEquals(CONNECTIONS, httpRequestHandler.getMetrics().getResponses("200"));
+            assertTrue(threadPool.getCompletedTaskCount() > 0);
+            assertEquals(config.getMaximumPoolSize(), threadPool.getMaximumPoolSize());
+        } finally {
+            firstSocket.close();
+            secondSocket.close();
+        }
+    }
+
+    /*
+     * A keep-alive connection waiting for its next request gives its thread
+     * up once another connection is queued, instead of holding it for the
+     * whole connectionIdleTimeout.
+     */
+    @Test
+    void testStart_moreKeepAliveClientsThanThreads() throws Exception {
+        Config config = buildConfig();
+        config.setCorePoolSize(2);
+        config.setMaximumPoolSize(2);
+        config.setConnectionIdleTimeout(10_000);
+        ServerSocket serverSocket = Main.openServerSocket(config, false);
+        List<Socket> clients = new ArrayList<>();
+        try {
+            startServer(new HttpServer(serverSocket, Main.createThreadPool(config), config));
+
+            for (int i = 0; i < 4; i++) {
+                Socket client = new Socket("localhost", serverSocket.getLocalPort());
+                client.setSoTimeout(config.getConnectionIdleTimeout() / 2);
+                clients.add(client);
+                try {
+                    assertEquals(200, requestKeepAlive(client));
+                } catch (SocketTimeoutException e) {
+                    fail("Client " + i + " is still waiting for a thread.");
+                }
+            }
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+            serverSocket.close();
+        }
+    }
+
+    private static Config buildConfig() {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(TEST_BASE_DIRECTORY);
+        config.setPort(0);
+        return config;
+    }
+
+    private static void startServer(HttpServer httpServer) {
+        new Thread(() -> {
+            try {
+                httpServer.start();
+            } catch (IOException e) {
+                // Closed at the end of the test
+            }
+        }).start();
+    }
+
+    // Opens every connection at once and returns the distinct status codes.
+    private static List<Integer> requestAll(int port) throws Exception {
+        List<Future<Integer>> statusCodes = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                statusCodes.add(clients.submit(() -> request(port)));
+            }
+        }
+
+        List<Integer> distinctStatusCodes = new ArrayList<>();
+        for (Future<Integer> statusCode : statusCodes) {
+            if (!distinctStatusCodes.contains(statusCode.get())) {
+                distinctStatusCodes.add(statusCode.get());
+            }
+        }
+        return distinctStatusCodes;
+    }
+
+    // Returns the status code once the whole response has been read, leaving
+    // the connection open.
+    private static int requestKeepAlive(Socket socket) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        InputStream in = socket.getInputStream();
+        out.write("GET /test.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        StringBuilder head = new StringBuilder();
+        while (head.indexOf("\r\n\r\n") == -1) {
+            int b = in.read();
+            if (b == -1) {
+                throw new IOException("Connection closed before the response.");
+            }
+            head.append((char) b);
+        }
+        int contentLength = 0;
+        for (String line : head.toString().split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        in.readNBytes(contentLength);
+        return Integer.parseInt(head.substring(9, 12));
+    }
+
+    private static int request(int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write("GET /test.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+            return Integer.parseInt(response.substring(9, 12));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class IncrementalHttpRequestParserTest {
+    @Test
+    void testParse_simpleHttpRequest() {
+        IncrementalHttpRequestParser parser = parserFor("GET / HTTP/1.1\r\n\r\n");
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest(), parser.parse());
+        assertFalse(parser.hasBufferedBytes());
+    }
+
+    @Test
+    void testParse_simpleHttpRequest_withHeaders() {
+        IncrementalHttpRequestParser parser = parserFor("GET / HTTP/1.1\r\n"
+                + "Host: localhost:4221\r\n"
+                + "User-Agent: curl/7.64.1\r\n"
+                + "Accept: */*\r\n"
+                + "\r\n");
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest_withHeaders(), parser.parse());
+    }
+
+    @Test
+    void testParse_simpleHttpRequest_withHeadersAndBody() {
+        IncrementalHttpRequestParser parser = parserFor("GET / HTTP/1.1\r\n"
+                + "Host: localhost:4221\r\n"
+                + "User-Agent: curl/7.64.1\r\n"
+                + "Accept: */*\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: 8\r\n"
+                + "\r\n"
+                + "{\"id\":1}");
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest_withHeadersAndBody(), parser.parse());
+    }
+
+    @Test
+    void testParse_simpleHttpRequest_invalidRequestLine() {
+        assertEquals(RequestError.METHOD_NOT_ALLOWED, parserFor("POST / HTTP/1.1\r\n\r\n").parse().getError());
+        assertEquals(RequestError.BAD_REQUEST, parserFor("GET path HTTP/1.1\r\n\r\n").parse().getError());
+        assertEquals(RequestError.BAD_REQUEST, parserFor("GET / HTTP/2\r\n\r\n").parse().getError());
+        assertEquals(RequestError.BAD_REQUEST, parserFor("GET /  HTTP/1.1\r\n\r\n").parse().getError());
+    }
+
+    @Test
+    void testParse_simpleHttpRequest_invalidHeaders() {
+        assertEquals(RequestError.BAD_REQUEST,
+                parserFor("GET / HTTP/1.1\r\nHost:localhost:4221\r\n\r\n").parse().getError()); // No space
+        assertEquals(RequestError.BAD_REQUEST,
+                parserFor("GET / HTTP/1.1\r\nHeader\r\n\r\n").parse().getError());
+        assertEquals(RequestError.BAD_REQUEST,
+                parserFor("GET / HTTP/1.1\r\nContent-Length: -1\r\n\r\n").parse().getError());
+        assertEquals(RequestError.BAD_REQUEST,
+                parserFor("GET / HTTP/1.1\r\nContent-Length: 1234567890\r\n\r\n").parse().getError());
+        assertEquals(RequestError.BAD_REQUEST,
+                parserFor("GET / HTTP/1.1\r\nContent-Length: 8a\r\n\r\n").parse().getError());
+    }
+
+    /*
+     * Feeding the request one byte at a time must yield nothing until the
+     * final byte arrives.
+     */
+    @Test
+    void testParse_requestSplitAcrossReads() {
+        byte[] httpRequest = ("GET / HTTP/1.1\r\n"
+                + "Host: localhost:4221\r\n"
+                + "User-Agent: curl/7.64.1\r\n"
+                + "Accept: */*\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: 8\r\n"
+                + "\r\n"
+                + "{\"id\":1}").getBytes(StandardCharsets.US_ASCII);
+        IncrementalHttpRequestParser parser = new IncrementalHttpRequestParser();
+        for (int i = 0; i < httpRequest.length - 1; i++) {
+            parser.feed(httpRequest, i, 1);
+            assertNull(parser.parse());
+        }
+        parser.feed(httpRequest, httpRequest.length - 1, 1);
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest_withHeadersAndBody(), parser.parse());
+    }
+
+    @Test
+    void testParse_consecutiveHttpRequests() {
+        IncrementalHttpRequestParser parser = parserFor("GET / HTTP/1.1\r\n\r\n"
+                + "GET / HTTP/1.1\r\n"
+                + "Host: localhost:4221\r\n"
+                + "User-Agent: curl/7.64.1\r\n"
+                + "Accept: */*\r\n"
+                + "\r\n"
+                + "GET / HTTP/1.1\r\n");
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest(), parser.parse());
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest_withHeaders(), parser.parse());
+        assertNull(parser.parse());
+
+        byte[] rest = "\r\n".getBytes(StandardCharsets.US_ASCII);
+        parser.feed(rest, 0, rest.length);
+        assertEquals(getExpectedHttpRequest_simpleHttpRequest(), parser.parse());
+    }
+
+    @Test
+    void testParse_knownHeaderNamesAreShared() {
+        HttpRequest httpRequest = parserFor("GET / HTTP/1.1\r\naccept-encoding: gzip\r\n\r\n").parse();
+        String headerName = httpRequest.getHeaders().keySet().iterator().next();
+        assertSame("Accept-Encoding", headerName);
+    }
+
+    /*
+     * A bare CR or another control character is rejected wherever it appears
+     * (RFC 9112, section 2.2), only a tab is allowed in a header value.
+     */
+    @Test
+    void testParse_controlCharacters() {
+        String[] httpRequests = {
+                "GET / HTTP/1.1\r\nAccept\rEncoding: gzip\r\n\r\n",
+                "GET / HTTP/1.1\r\nAccept-Encoding: gzip\rX-Forged: 1\r\n\r\n",
+                "GET / HTTP/1.1\r\nHost: local\0host\r\n\r\n",
+                "GET / HTTP/1.1\r\nHost: localhost\u007f\r\n\r\n",
+                "GET /index.html\r.txt HTTP/1.1\r\n\r\n" };
+        for (String httpRequest : httpRequests) {
+            assertEquals(RequestError.BAD_REQUEST, parserFor(httpRequest).parse().getError(), httpRequest);
+        }
+
+        HttpRequest httpRequest = parserFor("GET / HTTP/1.1\r\nX-Tabbed: a\tb\r\n\r\n").parse();
+        assertNull(httpRequest.getError());
+        assertEquals("a\tb", httpRequest.getHeaders().get("X-Tabbed"));
+    }
+
+    @Test
+    void testParse_headerSectionTooLarge() {
+        IncrementalHttpRequestParser parser = parserFor("GET / HTTP/1.1\r\nX-Padding: ");
+        byte[] padding = new byte[1024];
+        Arrays.fill(padding, (byte) 'a');
+        HttpRequest httpRequest = null;
+        for (int i = 0; i < 100 && httpRequest == null; i++) {
+            parser.feed(padding, 0, padding.length);
+            httpRequest = parser.parse();
+        }
+        assertEquals(RequestError.BAD_REQUEST, httpRequest.getError());
+        assertEquals("Request header section too large.", httpRequest.getErrorDetail());
+    }
+
+    private IncrementalHttpRequestParser parserFor(String httpRequest) {
+        IncrementalHttpRequestParser parser = new IncrementalHttpRequestParser();
+        byte[] bytes = httpRequest.getBytes(StandardCharsets.US_ASCII);
+        parser.feed(bytes, 0, bytes.length);
+        return parser;
+    }
+
+    private HttpRequest getExpectedHttpRequest_simpleHttpRequest() {
+        HttpRequest expectedHttpRequest = new HttpRequest();
+        expectedHttpRequest.setMethod("GET");
+        expectedHttpRequest.setPath("/index.html");
+        expectedHttpRequest.setVersion("HTTP/1.1");
+        expectedHttpRequest.setBody("");
+        return expectedHttpRequest;
+    }
+
+    private HttpRequest getExpectedHttpRequest_simpleHttpRequest_withHeaders() {
+        HttpRequest expectedHttpRequest = getExpectedHttpRequest_simpleHttpRequest();
+        expectedHttpRequest.setHeader("Host", "localhost:4221");
+        expectedHttpRequest.setHeader("User-Agent", "curl/7.64.1");
+        expectedHttpRequest.setHeader("Accept", "*/*");
+        return expectedHttpRequest;
+    }
+
+    private HttpRequest getExpectedHttpRequest_simpleHttpRequest_withHeadersAndBody() {
+        HttpRequest expectedHttpRequest = getExpectedHttpRequest_simpleHttpRequest_withHeaders();
+        expectedHttpRequest.setHeader("Content-Type", "application/json");
+        expectedHttpRequest.setHeader("Content-Length", "8");
+        expectedHttpRequest.setBody("{\"id\":1}");
+        return expectedHttpRequest;
+    }
+}
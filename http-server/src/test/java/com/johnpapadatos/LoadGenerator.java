@@ -0,0 +1,408 @@
+package com.johnpapadatos;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+
+/*
+ * Closed-loop load generator: starts the server on loopback over a generated
+ * corpus and keeps `concurrency` connections busy, each sending its next
+ * request once the previous response has been read.
+ *
+ * With rate > 0 every connection follows a fixed schedule and latency is
+ * also measured from the time each request was due, not when it was
+ * actually sent, which corrects for coordinated omission: a stalled server
+ * cannot hide the requests it kept the client from sending.
+ *
+ * mvn -B test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.johnpapadatos.LoadGenerator
+ *     -Dexec.args="concurrency=32 durationSeconds=30 rate=20000 output=load.json"
+ */
+public class LoadGenerator {
+    // Sizes in bytes and how often each is requested relative to the others,
+    // every size exists as compressible text and as incompressible bytes.
+    private static final int[] FILE_SIZES = { 1024, 32 * 1024, 512 * 1024, 4 * 1024 * 1024 };
+    private static final int[] FILE_WEIGHTS = { 8, 4, 2, 1 };
+    private static final String[] WORDS = { "http", "server", "request", "response", "header", "body", "cache",
+            "thread", "socket", "buffer", "gzip", "range", "<div>", "</div>", "\n" };
+
+    private static final String DEFAULT_ENGINE = "blocking";
+    private static final String DEFAULT_EXECUTOR = "platform";
+    private static final String DEFAULT_CONCURRENCY = "16";
+    private static final String DEFAULT_DURATION_SECONDS = "10";
+    private static final String DEFAULT_WARMUP_SECONDS = "2";
+    private static final String DEFAULT_KEEP_ALIVE = "true";
+    private static final String DEFAULT_GZIP_RATIO = "0.5";
+    private static final String DEFAULT_RATE = "0";
+
+    private final String engine;
+    private final String executor;
+    private final int concurrency;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final boolean keepAlive;
+    private final double gzipRatio; // Share of requests sent with Accept-Encoding: gzip
+    private final int rate; // Requests per second over all connections, 0 sends as fast as possible
+    private final String output;
+
+    public LoadGenerator(Map<String, String> options) {
+        engine = options.getOrDefault("engine", DEFAULT_ENGINE);
+        executor = options.getOrDefault("executor", DEFAULT_EXECUTOR);
+        concurrency = Integer.parseInt(options.getOrDefault("concurrency", DEFAULT_CONCURRENCY));
+        durationSeconds = Integer.parseInt(options.getOrDefault("durationSeconds", DEFAULT_DURATION_SECONDS));
+        warmupSeconds = Integer.parseInt(options.getOrDefault("warmupSeconds", DEFAULT_WARMUP_SECONDS));
+        keepAlive = Boolean.parseBoolean(options.getOrDefault("keepAlive", DEFAULT_KEEP_ALIVE));
+        gzipRatio = Double.parseDouble(options.getOrDefault("gzipRatio", DEFAULT_GZIP_RATIO));
+        rate = Integer.parseInt(options.getOrDefault("rate", DEFAULT_RATE));
+        output = options.get("output");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length == 2) {
+                options.put(option[0], option[1]);
+            }
+        }
+
+        String result = new LoadGenerator(options).run();
+        System.out.println(result);
+        System.exit(0); // The server threads never return
+    }
+
+    // Returns the result as JSON, also written to the output file if set.
+    public String run() throws Exception {
+        Path baseDir = Files.createTempDirectory("load-generator");
+        try {
+            List<String> paths = createCorpus(baseDir);
+            int port = startServer(baseDir);
+
+            long measureStart = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+            long measureEnd = measureStart + durationSeconds * 1_000_000_000L;
+            List<Worker> workers = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                Worker worker = new Worker(port, paths, measureStart, measureEnd);
+                workers.add(worker);
+                threads.add(Thread.ofPlatform().name("load-generator-" + i).start(worker));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            String result = toJson(workers, measureStart);
+            if (output != null) {
+                Files.writeString(Path.of(output), result);
+            }
+            return result;
+        } finally {
+            deleteCorpus(baseDir);
+        }
+    }
+
+    private int startServer(Path baseDir) throws IOException {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString());
+        config.setEngine(engine);
+        config.setExecutor(executor);
+        config.setMaxRequestsPerConnection(Integer.MAX_VALUE);
+        if (engine.equals("blocking")) {
+            // Each connection holds a pool thread, fewer would queue whole connections
+            config.setCorePoolSize(Math.max(concurrency, config.getMaximumPoolSize()));
+            config.setMaximumPoolSize(config.getCorePoolSize());
+        }
+        ExecutorService threadPool = Main.createThreadPool(config);
+
+        Thread serverThread;
+        int port;
+        if (engine.equals("nio")) {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress("localhost", 0), config.getBacklog());
+            port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+            NioHttpServer nioHttpServer = new NioHttpServer(serverChannel, threadPool, config);
+            serverThread = new Thread(() -> {
+                try {
+                    nioHttpServer.start();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        } else {
+            ServerSocket serverSocket = ServerSocketChannel.open().socket();
+            serverSocket.bind(new InetSocketAddress("localhost", 0), config.getBacklog());
+            port = serverSocket.getLocalPort();
+            HttpServer httpServer = new HttpServer(serverSocket, threadPool, config);
+            serverThread = new Thread(() -> {
+                try {
+                    httpServer.start();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+        serverThread.setDaemon(true);
+        serverThread.start();
+        return port;
+    }
+
+    // Returns the request paths, each repeated by the weight of its size.
+    private static List<String> createCorpus(Path baseDir) throws IOException {
+        Random random = new Random(42);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < FILE_SIZES.length; i++) {
+            String text = "text-" + FILE_SIZES[i] + ".html";
+            String binary = "binary-" + FILE_SIZES[i] + ".bin";
+            Files.writeString(baseDir.resolve(text), compressibleText(FILE_SIZES[i], random));
+            byte[] bytes = new byte[FILE_SIZES[i]];
+            random.nextBytes(bytes);
+            Files.write(baseDir.resolve(binary), bytes);
+
+            for (int j = 0; j < FILE_WEIGHTS[i]; j++) {
+                paths.add("/" + text);
+                paths.add("/" + binary);
+            }
+        }
+        return paths;
+    }
+
+    private static String compressibleText(int length, Random random) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.substring(0, length);
+    }
+
+    private static void deleteCorpus(Path baseDir) throws IOException {
+        try (Stream<Path> files = Files.list(baseDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(baseDir);
+    }
+
+    // Throughput is counted over the time the responses actually took, which
+    // exceeds durationSeconds when the server falls behind the rate.
+    private String toJson(List<Worker> workers, long measureStart) {
+        Histogram serviceTime = new Histogram(3);
+        Histogram responseTime = new Histogram(3);
+        long requests = 0;
+        long errors = 0;
+        long bytesReceived = 0;
+        long lastReceived = measureStart;
+        for (Worker worker : workers) {
+            lastReceived = Math.max(lastReceived, worker.lastReceived);
+            serviceTime.add(worker.serviceTime);
+            responseTime.add(worker.responseTime);
+            requests += worker.requests;
+            errors += worker.errors;
+            bytesReceived += worker.bytesReceived;
+        }
+
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"engine\": \"").append(engine).append("\",\n");
+        json.append("  \"executor\": \"").append(executor).append("\",\n");
+        json.append("  \"concurrency\": ").append(concurrency).append(",\n");
+        json.append("  \"durationSeconds\": ").append(durationSeconds).append(",\n");
+        json.append("  \"warmupSeconds\": ").append(warmupSeconds).append(",\n");
+        json.append("  \"keepAlive\": ").append(keepAlive).append(",\n");
+        json.append("  \"gzipRatio\": ").append(gzipRatio).append(",\n");
+        json.append("  \"rate\": ").append(rate).append(",\n");
+        json.append("  \"requests\": ").append(requests).append(",\n");
+        json.append("  \"errors\": ").append(errors).append(",\n");
+        double elapsedSeconds = Math.max(lastReceived - measureStart, 1) / 1e9;
+        json.append("  \"bytesReceived\": ").append(bytesReceived).append(",\n");
+        json.append("  \"elapsedSeconds\": ").append(String.format(Locale.ROOT, "%.3f", elapsedSeconds)).append(",\n");
+        json.append("  \"requestsPerSecond\": ")
+                .append(String.format(Locale.ROOT, "%.1f", requests / elapsedSeconds)).append(",\n");
+        json.append("  \"coordinatedOmissionCorrected\": ").append(rate > 0).append(",\n");
+        json.append("  \"serviceTimeMicros\": ").append(percentilesToJson(serviceTime)).append(",\n");
+        json.append("  \"responseTimeMicros\": ").append(percentilesToJson(responseTime)).append("\n");
+        return json.append("}").toString();
+    }
+
+    private static String percentilesToJson(Histogram histogram) {
+        return String.format(Locale.ROOT,
+                "{ \"p50\": %d, \"p90\": %d, \"p99\": %d, \"p99.9\": %d, \"max\": %d, \"mean\": %.1f }",
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue(), histogram.getMean());
+    }
+
+    // One connection and its histograms. Service time runs from sending the
+    // request, response time from the scheduled send time (the same unless
+    // rate is set).
+    private class Worker implements Runnable {
+        private final int port;
+        private final List<String> paths;
+        private final long measureStart;
+        private final long measureEnd;
+        private final Histogram serviceTime = new Histogram(3);
+        private final Histogram responseTime = new Histogram(3);
+        private final byte[] scratch = new byte[64 * 1024];
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        private long requests;
+        private long errors;
+        private long bytesReceived;
+        private long lastReceived;
+
+        Worker(int port, List<String> paths, long measureStart, long measureEnd) {
+            this.port = port;
+            this.paths = paths;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+        }
+
+        @Override
+        public void run() {
+            long interval = rate > 0 ? 1_000_000_000L * concurrency / rate : 0;
+            long due = System.nanoTime() + (interval > 0 ? ThreadLocalRandom.current().nextLong(interval) : 0);
+            try {
+                while (due < measureEnd) {
+                    long now;
+                    while (interval > 0 && (now = System.nanoTime()) < due) {
+                        LockSupport.parkNanos(due - now);
+                    }
+
+                    long sent = System.nanoTime();
+                    if (interval == 0) {
+                        due = sent;
+                    }
+                    boolean successful = exchange(nextPath(), ThreadLocalRandom.current().nextDouble() < gzipRatio);
+                    long received = System.nanoTime();
+
+                    if (due >= measureStart && successful) {
+                        requests++;
+                        lastReceived = received;
+                        serviceTime.recordValue((received - sent) / 1000);
+                        responseTime.recordValue((received - due) / 1000);
+                    } else if (due >= measureStart) {
+                        errors++;
+                    }
+                    due = interval > 0 ? due + interval : received;
+                }
+            } finally {
+                disconnect();
+            }
+        }
+
+        private String nextPath() {
+            return paths.get(ThreadLocalRandom.current().nextInt(paths.size()));
+        }
+
+        // Sends one request and reads its whole response. Returns false for
+        // I/O failures and unexpected statuses.
+        private boolean exchange(String path, boolean gzip) {
+            try {
+                if (socket == null) {
+                    socket = new Socket("localhost", port);
+                    socket.setTcpNoDelay(true);
+                    in = new BufferedInputStream(socket.getInputStream(), scratch.length);
+                    out = socket.getOutputStream();
+                }
+
+                String request = "GET " + path + " HTTP/1.1\r\n"
+                        + "Host: localhost\r\n"
+                        + (gzip ? "Accept-Encoding: gzip\r\n" : "")
+                        + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+                        + "\r\n";
+                out.write(request.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                String statusLine = readLine();
+                Map<String, String> headers = new HashMap<>();
+                String header;
+                while (!(header = readLine()).isEmpty()) {
+                    int colon = header.indexOf(':');
+                    headers.put(header.substring(0, colon).toLowerCase(Locale.ROOT),
+                            header.substring(colon + 1).strip());
+                }
+
+                if ("chunked".equals(headers.get("transfer-encoding"))) {
+                    skipChunkedBody();
+                } else {
+                    skip(Long.parseLong(headers.getOrDefault("content-length", "0")));
+                }
+                if (!"keep-alive".equals(headers.get("connection"))) {
+                    disconnect();
+                }
+                return statusLine.startsWith("HTTP/1.1 200");
+            } catch (IOException | RuntimeException e) {
+                disconnect();
+                return false;
+            }
+        }
+
+        private void skipChunkedBody() throws IOException {
+            long chunkSize;
+            while ((chunkSize = Long.parseLong(readLine().strip(), 16)) > 0) {
+                skip(chunkSize + 2); // Chunk data and its CRLF
+            }
+            readLine(); // Empty trailer section
+        }
+
+        private void skip(long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(scratch, 0, (int) Math.min(scratch.length, remaining));
+                if (read == -1) {
+                    throw new EOFException("Connection closed in the middle of a response.");
+                }
+                remaining -= read;
+            }
+            bytesReceived += length;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    throw new EOFException("Connection closed in the middle of a response.");
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+
+        private void disconnect() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Nothing left to read from it
+                }
+                socket = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Short runs that keep the load generator working, not performance checks.
+ */
+class LoadGeneratorTest {
+
+    @Test
+    void testRun_keepAlive_paced() throws Exception {
+        String result = new LoadGenerator(Map.of("concurrency", "2", "durationSeconds", "1", "warmupSeconds", "0",
+                "rate", "100")).run();
+
+        assertTrue(getLong(result, "requests") > 0);
+        assertEquals(0, getLong(result, "errors"));
+        assertTrue(result.contains("\"coordinatedOmissionCorrected\": true"));
+        assertTrue(result.contains("\"responseTimeMicros\": { \"p50\": "));
+    }
+
+    @Test
+    void testRun_connectionClose_allGzip_nio() throws Exception {
+        String result = new LoadGenerator(Map.of("engine", "nio", "concurrency", "2", "durationSeconds", "1",
+                "warmupSeconds", "0", "keepAlive", "false", "gzipRatio", "1")).run();
+
+        assertTrue(getLong(result, "requests") > 0);
+        assertEquals(0, getLong(result, "errors"));
+        assertTrue(result.contains("\"coordinatedOmissionCorrected\": false"));
+    }
+
+    private static long getLong(String json, String field) {
+        Matcher matcher = Pattern.compile("\"" + field + "\": (\\d+)").matcher(json);
+        assertTrue(matcher.find(), field + " missing from " + json);
+        return Long.parseLong(matcher.group(1));
+    }
+}
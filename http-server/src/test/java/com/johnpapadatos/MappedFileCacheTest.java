@@ -0,0 +1,111 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFileCacheTest {
+
+    @Test
+    void testGet_disabled(@TempDir Path baseDir) throws IOException {
+        File file = createFile(baseDir, "file.txt", 64);
+        MappedFileCache mappedFiles = new MappedFileCache(0, 1);
+        assertFalse(mappedFiles.isMappable(64));
+        assertNull(mappedFiles.get(file, 1000, 64));
+        assertNull(mappedFiles.get(file, 1000, 64));
+    }
+
+    @Test
+    void testGet_belowMinFileSize(@TempDir Path baseDir) throws IOException {
+        File file = createFile(baseDir, "file.txt", 64);
+        MappedFileCache mappedFiles = new MappedFileCache(1024, 128);
+        assertNull(mappedFiles.get(file, 1000, 64));
+        assertNull(mappedFiles.get(file, 1000, 64));
+    }
+
+    /*
+     * A file is only mapped once it is requested again, and every later
+     * request shares the same mapping until the file changes.
+     */
+    @Test
+    void testGet_mappedOnceHot(@TempDir Path baseDir) throws IOException {
+        File file = createFile(baseDir, "file.txt", 64);
+        MappedFileCache mappedFiles = new MappedFileCache(1024, 1);
+        assertNull(mappedFiles.get(file, 1000, 64));
+
+        ByteBuffer mapped = mappedFiles.get(file, 1000, 64);
+        assertNotNull(mapped);
+        assertEquals(64, mapped.capacity());
+        assertSame(mapped, mappedFiles.get(file, 1000, 64));
+        assertEquals(1, mappedFiles.getHits());
+        assertEquals(64, mappedFiles.getSize());
+
+        Files.write(file.toPath(), new byte[32]);
+        ByteBuffer remapped = mappedFiles.get(file, 2000, 32);
+        assertNotSame(mapped, remapped);
+        assertEquals(32, remapped.capacity());
+        assertEquals(32, mappedFiles.getSize());
+    }
+
+    @Test
+    void testGet_evictsLessPopularFile(@TempDir Path baseDir) throws IOException {
+        File cold = createFile(baseDir, "cold.txt", 64);
+        File hot = createFile(baseDir, "hot.txt", 64);
+        MappedFileCache mappedFiles = new MappedFileCache(100, 1);
+        mappedFiles.get(cold, 1000, 64);
+        assertNotNull(mappedFiles.get(cold, 1000, 64));
+
+        for (int i = 0; i < 4; i++) {
+            mappedFiles.get(hot, 1000, 64);
+        }
+        assertNotNull(mappedFiles.get(hot, 1000, 64));
+        assertEquals(1, mappedFiles.getEvictions());
+        assertEquals(64, mappedFiles.getSize());
+    }
+
+    /*
+     * Responses slice the shared mapping, so sending one does not move the
+     * position seen by the others.
+     */
+    @Test
+    void testMappedFileBody_slices(@TempDir Path baseDir) throws IOException {
+        Path path = baseDir.resolve("file.txt");
+        Files.writeString(path, "Hello, mapped world!");
+        MappedFileCache mappedFiles = new MappedFileCache(1024, 1);
+        mappedFiles.get(path.toFile(), 1000, 20);
+        ByteBuffer mapped = mappedFiles.get(path.toFile(), 1000, 20);
+
+        MappedFileBody first = new MappedFileBody(mapped, 7, 6);
+        MappedFileBody second = new MappedFileBody(mapped, 0, 20);
+        assertEquals(6, first.getLength());
+        assertEquals("mapped", write(first));
+        assertEquals("Hello, mapped world!", write(second));
+        assertEquals(0, mapped.position());
+    }
+
+    private static String write(MappedFileBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(body.writeTo(Channels.newChannel(out)));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static File createFile(Path baseDir, String name, int size) throws IOException {
+        return Files.write(baseDir.resolve(name), new byte[size]).toFile();
+    }
+}
@@ -0,0 +1,73 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+    @Test
+    void testScrape_responsesAndBytes() {
+        Metrics metrics = new Metrics();
+        metrics.recordResponse("200", 1000, 50_000);
+        metrics.recordResponse("200", 500, 50_000);
+        metrics.recordResponse("404", 100, 50_000);
+        metrics.recordCompression(4096, 1024);
+
+        String scrape = metrics.scrape();
+        assertEquals(2, metrics.getResponses("200"));
+        assertTrue(scrape.contains("# TYPE http_responses_total counter\n"));
+        assertTrue(scrape.contains("http_responses_total{code=\"200\"} 2\n"));
+        assertTrue(scrape.contains("http_responses_total{code=\"404\"} 1\n"));
+        assertTrue(scrape.contains("http_response_bytes_total 1600\n"));
+        assertTrue(scrape.contains("http_gzip_input_bytes_total 4096\n"));
+        assertTrue(scrape.contains("http_gzip_output_bytes_total 1024\n"));
+    }
+
+    /*
+     * Bucket counts are cumulative, each includes every faster observation.
+     */
+    @Test
+    void testScrape_requestDurationHistogram() {
+        Metrics metrics = new Metrics();
+        metrics.recordResponse("200", 0, 50_000); // 50 microseconds
+        metrics.recordResponse("200", 0, 2_000_000_000L);
+        metrics.recordResponse("200", 0, 60_000_000_000L);
+
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("http_request_duration_seconds_bucket{le=\"0.0001\"} 1\n"));
+        assertTrue(scrape.contains("http_request_duration_seconds_bucket{le=\"1\"} 1\n"));
+        assertTrue(scrape.contains("http_request_duration_seconds_bucket{le=\"2.5\"} 2\n"));
+        assertTrue(scrape.contains("http_request_duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(scrape.contains("http_request_duration_seconds_count 3\n"));
+        assertTrue(scrape.contains("http_request_duration_seconds_sum 62.00005\n"));
+    }
+
+    @Test
+    void testScrape_connectionsAndThreadPool() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        metrics.monitorThreadPool(threadPool);
+        metrics.connectionOpened();
+        metrics.connectionOpened();
+        metrics.connectionClosed();
+
+        threadPool.execute(metrics.timeQueued(() -> {
+        }));
+        threadPool.shutdown();
+        threadPool.awaitTermination(5, TimeUnit.SECONDS);
+
+        String scrape = metrics.scrape();
+        assertEquals(1, metrics.getOpenConnections());
+        assertTrue(scrape.contains("http_open_connections 1\n"));
+        assertTrue(scrape.contains("http_thread_pool_queue_duration_seconds_count 1\n"));
+        assertTrue(scrape.contains("http_thread_pool_threads "));
+        assertFalse(scrape.contains("http_cache_hits_total"));
+    }
+}
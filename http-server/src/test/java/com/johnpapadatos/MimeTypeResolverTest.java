@@ -0,0 +1,46 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MimeTypeResolverTest {
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testResolve_knownExtension() {
+        MimeTypeResolver mimeTypeResolver = new MimeTypeResolver(Map.of());
+        assertEquals("text/html", mimeTypeResolver.resolve(new File("src/test/resources/media/test.html")));
+        assertEquals("text/plain", mimeTypeResolver.resolve(new File("src/test/resources/media/test.txt")));
+        assertEquals("image/jpeg", mimeTypeResolver.resolve(new File("photo.JPG")));
+    }
+
+    @Test
+    void testResolve_overriddenExtension() {
+        MimeTypeResolver mimeTypeResolver = new MimeTypeResolver(Map.of("txt", "text/markdown", "LOG", "text/plain"));
+        assertEquals("text/markdown", mimeTypeResolver.resolve(new File("readme.txt")));
+        assertEquals("text/plain", mimeTypeResolver.resolve(new File("server.log")));
+    }
+
+    @Test
+    void testResolve_unknownExtension_contentSniffed() throws IOException {
+        Path file = tempDir.resolve("image-without-extension");
+        Files.write(file, PNG_SIGNATURE);
+        MimeTypeResolver mimeTypeResolver = new MimeTypeResolver(Map.of());
+        assertEquals("image/png", mimeTypeResolver.resolve(file.toFile()));
+
+        // Remembered per path, the file is not sniffed again
+        Files.writeString(file, "plain text");
+        assertEquals("image/png", mimeTypeResolver.resolve(file.toFile()));
+    }
+}
@@ -0,0 +1,31 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.Executors;
+
+/*
+ * Runs every HttpServerIntegrationTests case against the NIO engine.
+ */
+class NioHttpServerIntegrationTests extends HttpServerIntegrationTests {
+
+    @Override
+    protected int startServer(Config config) throws IOException {
+        config.setEngine("nio");
+        config.setEventLoopThreads(2);
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", 0));
+        NioHttpServer nioHttpServer = new NioHttpServer(serverChannel, Executors.newCachedThreadPool(), config);
+        Thread serverThread = new Thread(() -> {
+            try {
+                nioHttpServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        serverThread.start();
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+}
@@ -0,0 +1,203 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PathResolverTest {
+    @TempDir
+    Path baseDir;
+
+    private AccessLog accessLog;
+
+    @BeforeEach
+    void setUp() {
+        accessLog = new AccessLog(ConfigProcessor.processConfigFile(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        accessLog.close();
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("/index.html", PathResolver.normalize("/index.html"));
+        assertEquals("/", PathResolver.normalize("/"));
+        assertEquals("/css/style.css", PathResolver.normalize("//css/./style.css"));
+        assertEquals("/style.css", PathResolver.normalize("/css/../style.css"));
+        assertEquals("/", PathResolver.normalize("/css/.."));
+        assertEquals("/.well-known/file", PathResolver.normalize("/.well-known/file"));
+        assertEquals("/..file", PathResolver.normalize("/..file"));
+    }
+
+    @Test
+    void testNormalize_outsideBaseDir() {
+        assertNull(PathResolver.normalize("/.."));
+        assertNull(PathResolver.normalize("/../etc/passwd"));
+        assertNull(PathResolver.normalize("/css/../../etc/passwd"));
+        assertNull(PathResolver.normalize("/index.html\0.txt"));
+    }
+
+    @Test
+    void testStat() throws IOException {
+        Files.writeString(baseDir.resolve("index.html"), "index");
+        Files.createDirectory(baseDir.resolve("css"));
+
+        try (PathResolver pathResolver = new PathResolver(config(10, 1000), accessLog)) {
+            PathResolver.FileStat fileStat = pathResolver.stat("/index.html");
+            assertFalse(fileStat.isDirectory());
+            assertEquals(5, fileStat.getSize());
+            assertTrue(pathResolver.stat("/css").isDirectory());
+            assertNull(pathResolver.stat("/missing.html"));
+
+            assertNotNull(pathResolver.stat("/index.html"));
+            assertNull(pathResolver.stat("/missing.html"));
+            assertEquals(3, pathResolver.getMisses());
+            assertEquals(2, pathResolver.getHits());
+        }
+    }
+
+    /*
+     * A missing file is only remembered for the negative TTL, a file created
+     * meanwhile is found once it expires.
+     */
+    @Test
+    void testStat_negativeTtl() throws IOException, InterruptedException {
+        PathResolver pathResolver = new PathResolver(config(10, 100), accessLog);
+        pathResolver.close(); // Only the TTL can make the entry go away
+        assertNull(pathResolver.stat("/late.html"));
+        Files.writeString(baseDir.resolve("late.html"), "late");
+        assertNull(pathResolver.stat("/late.html"));
+
+        Thread.sleep(150);
+        assertNotNull(pathResolver.stat("/late.html"));
+    }
+
+    /*
+     * A change reported by the WatchService drops the entries of the file,
+     * whether it was missing or not.
+     */
+    @Test
+    void testStat_watched() throws IOException, InterruptedException {
+        Files.createDirectory(baseDir.resolve("css"));
+        Files.writeString(baseDir.resolve("css/style.css"), "first");
+
+        try (PathResolver pathResolver = new PathResolver(config(10, 60_000), accessLog)) {
+            assertTrue(pathResolver.isWatching());
+            assertEquals(5, pathResolver.stat("/css/style.css").getSize());
+            assertNull(pathResolver.stat("/css/new.css"));
+
+            Files.writeString(baseDir.resolve("css/style.css"), "second version");
+            Files.writeString(baseDir.resolve("css/new.css"), "new");
+
+            assertEquals(14, awaitSize(pathResolver, "/css/style.css", 14));
+            assertEquals(3, awaitSize(pathResolver, "/css/new.css", 3));
+        }
+    }
+
+    @Test
+    void testStat_watchedNewDirectory() throws IOException, InterruptedException {
+        try (PathResolver pathResolver = new PathResolver(config(10, 60_000), accessLog)) {
+            assertNull(pathResolver.stat("/js/app.js"));
+
+            Files.createDirectory(baseDir.resolve("js"));
+            Files.writeString(baseDir.resolve("js/app.js"), "app");
+
+            assertEquals(3, awaitSize(pathResolver, "/js/app.js", 3));
+        }
+    }
+
+    /*
+     * Missing files are held apart from existing ones, probing for unique
+     * paths only ever drops other missing files.
+     */
+    @Test
+    void testStat_missingEntriesBounded() throws IOException {
+        Files.writeString(baseDir.resolve("index.html"), "index");
+
+        try (PathResolver pathResolver = new PathResolver(config(8, 60_000), accessLog)) {
+            assertNotNull(pathResolver.stat("/index.html"));
+            for (int i = 0; i < 100; i++) {
+                assertNull(pathResolver.stat("/missing-" + i + ".html"));
+            }
+            assertTrue(pathResolver.getSize() <= 3, "Size: " + pathResolver.getSize());
+
+            long misses = pathResolver.getMisses();
+            assertNotNull(pathResolver.stat("/index.html"));
+            assertEquals(misses, pathResolver.getMisses());
+        }
+    }
+
+    /*
+     * A symbolic link is followed while it stays below baseDir. The file it
+     * leads to is the one to open, and is not cached under the path of the
+     * link, where no change to it would be reported.
+     */
+    @Test
+    void testStat_symbolicLinks(@TempDir Path outsideDir) throws IOException {
+        Files.writeString(baseDir.resolve("index.html"), "index");
+        Files.writeString(outsideDir.resolve("secret.txt"), "secret");
+        Files.createSymbolicLink(baseDir.resolve("inside.html"), baseDir.resolve("index.html"));
+        Files.createSymbolicLink(baseDir.resolve("secret.txt"), outsideDir.resolve("secret.txt"));
+        Files.createSymbolicLink(baseDir.resolve("outside"), outsideDir);
+
+        try (PathResolver pathResolver = new PathResolver(config(10, 1000), accessLog)) {
+            PathResolver.FileStat fileStat = pathResolver.stat("/inside.html");
+            assertEquals(5, fileStat.getSize());
+            assertEquals(baseDir.resolve("index.html").toRealPath().toFile(), fileStat.getFile());
+            Files.writeString(baseDir.resolve("index.html"), "new index");
+            assertEquals(9, pathResolver.stat("/inside.html").getSize());
+            assertNull(pathResolver.stat("/secret.txt"));
+            assertNull(pathResolver.stat("/outside"));
+            assertNull(pathResolver.stat("/outside/secret.txt"));
+        }
+    }
+
+    @Test
+    void testStat_disabled() throws IOException {
+        Files.writeString(baseDir.resolve("index.html"), "index");
+
+        try (PathResolver pathResolver = new PathResolver(config(0, 1000), accessLog)) {
+            assertFalse(pathResolver.isWatching());
+            pathResolver.stat("/index.html");
+            pathResolver.stat("/missing.html");
+
+            assertEquals(0, pathResolver.getSize());
+        }
+    }
+
+    private Config config(int statCacheMaxEntries, long statCacheNegativeTtl) {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString() + "/");
+        config.setStatCacheMaxEntries(statCacheMaxEntries);
+        config.setStatCacheNegativeTtl(statCacheNegativeTtl);
+        return config;
+    }
+
+    // Change notifications are asynchronous, returns the size of the file
+    // once it is the expected one or after 5 seconds
+    private static long awaitSize(PathResolver pathResolver, String normalizedPath, long expectedSize)
+            throws IOException, InterruptedException {
+        long size = -1;
+        for (int i = 0; i < 100 && size != expectedSize; i++) {
+            if (i > 0) {
+                Thread.sleep(50);
+            }
+            PathResolver.FileStat fileStat = pathResolver.stat(normalizedPath);
+            size = fileStat != null ? fileStat.getSize() : -1;
+        }
+        return size;
+    }
+}
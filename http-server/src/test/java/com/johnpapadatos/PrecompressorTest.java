@@ -0,0 +1,82 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PrecompressorTest {
+    private static final byte[] TEXT = "compressible text ".repeat(500).getBytes();
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void testRun() throws IOException {
+        Files.createDirectories(baseDir.resolve("css/nested"));
+        Files.write(baseDir.resolve("index.html"), TEXT);
+        Files.write(baseDir.resolve("css/nested/style.css"), TEXT);
+        Files.write(baseDir.resolve("photo.jpg"), TEXT); // Not a compressible type
+        Files.write(baseDir.resolve("small.txt"), "small".getBytes()); // Below compressionMinSize
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        Files.write(baseDir.resolve("random.txt"), random);
+
+        Precompressor precompressor = run();
+
+        assertEquals(2, precompressor.getWritten());
+        assertEquals(1, precompressor.getNotSmaller());
+        assertEquals(0, precompressor.getFailed());
+        assertArrayEquals(TEXT, gunzip(baseDir.resolve("index.html.gz")));
+        assertArrayEquals(TEXT, gunzip(baseDir.resolve("css/nested/style.css.gz")));
+        assertFalse(Files.exists(baseDir.resolve("photo.jpg.gz")));
+        assertFalse(Files.exists(baseDir.resolve("small.txt.gz")));
+        assertFalse(Files.exists(baseDir.resolve("random.txt.gz")));
+    }
+
+    /*
+     * A second run only compresses the files that changed since their
+     * sidecar was written, and never compresses a sidecar.
+     */
+    @Test
+    void testRun_upToDate() throws IOException {
+        Files.write(baseDir.resolve("index.html"), TEXT);
+        Files.write(baseDir.resolve("app.js"), TEXT);
+        run();
+
+        byte[] changed = "changed text ".repeat(500).getBytes();
+        Files.write(baseDir.resolve("app.js"), changed);
+        Files.setLastModifiedTime(baseDir.resolve("app.js"), FileTime.fromMillis(
+                Files.getLastModifiedTime(baseDir.resolve("app.js.gz")).toMillis() + 60_000));
+        Precompressor precompressor = run();
+
+        assertEquals(1, precompressor.getWritten());
+        assertEquals(1, precompressor.getUpToDate());
+        assertArrayEquals(changed, gunzip(baseDir.resolve("app.js.gz")));
+        assertFalse(Files.exists(baseDir.resolve("app.js.gz.gz")));
+    }
+
+    private Precompressor run() {
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString());
+        Precompressor precompressor = new Precompressor(config);
+        precompressor.run(ForkJoinPool.commonPool());
+        return precompressor;
+    }
+
+    private static byte[] gunzip(Path file) throws IOException {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(Files.newInputStream(file))) {
+            return gzipInputStream.readAllBytes();
+        }
+    }
+}
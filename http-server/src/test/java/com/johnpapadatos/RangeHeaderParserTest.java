@@ -0,0 +1,50 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RangeHeaderParserTest {
+    private static final long FILE_SIZE = 10_000;
+
+    @Test
+    void testParseRangeHeader_singleRanges() {
+        assertEquals(List.of(new ByteRange(0, 499)), RangeHeaderParser.parseRangeHeader("bytes=0-499", FILE_SIZE));
+        assertEquals(List.of(new ByteRange(9500, 9999)), RangeHeaderParser.parseRangeHeader("bytes=9500-", FILE_SIZE));
+        assertEquals(List.of(new ByteRange(9500, 9999)), RangeHeaderParser.parseRangeHeader("bytes=-500", FILE_SIZE));
+        assertEquals(List.of(new ByteRange(0, 9999)), RangeHeaderParser.parseRangeHeader("bytes=-20000", FILE_SIZE));
+        assertEquals(List.of(new ByteRange(9000, 9999)), RangeHeaderParser.parseRangeHeader("Bytes=9000-20000", FILE_SIZE));
+    }
+
+    @Test
+    void testParseRangeHeader_multipleRanges() {
+        assertEquals(List.of(new ByteRange(0, 0), new ByteRange(9999, 9999)),
+                RangeHeaderParser.parseRangeHeader("bytes=0-0, -1", FILE_SIZE));
+        assertEquals(List.of(new ByteRange(500, 600)),
+                RangeHeaderParser.parseRangeHeader("bytes=500-600,20000-", FILE_SIZE)); // Unsatisfiable range dropped
+    }
+
+    @Test
+    void testParseRangeHeader_unsatisfiable() {
+        assertEquals(List.of(), RangeHeaderParser.parseRangeHeader("bytes=10000-", FILE_SIZE));
+        assertEquals(List.of(), RangeHeaderParser.parseRangeHeader("bytes=-0", FILE_SIZE));
+        assertEquals(List.of(), RangeHeaderParser.parseRangeHeader("bytes=0-", 0));
+    }
+
+    /*
+     * Headers that cannot be parsed are ignored, the whole file is sent.
+     */
+    @Test
+    void testParseRangeHeader_ignored() {
+        assertNull(RangeHeaderParser.parseRangeHeader(null, FILE_SIZE));
+        assertNull(RangeHeaderParser.parseRangeHeader("items=0-5", FILE_SIZE));
+        assertNull(RangeHeaderParser.parseRangeHeader("bytes=500-100", FILE_SIZE));
+        assertNull(RangeHeaderParser.parseRangeHeader("bytes=-", FILE_SIZE));
+        assertNull(RangeHeaderParser.parseRangeHeader("bytes=a-b", FILE_SIZE));
+        assertNull(RangeHeaderParser.parseRangeHeader("bytes=0-1-2", FILE_SIZE));
+        assertNull(RangeHeaderParser.parseRangeHeader("bytes=" + "0-1,".repeat(17), FILE_SIZE));
+    }
+}
@@ -0,0 +1,90 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class ResponseHeadEncoderTest {
+
+    @Test
+    void testEncode_successfulResponse() {
+        HttpResponse httpResponse = buildResponse("200", "OK");
+        httpResponse.setHeader("Content-Type", "text/html");
+        httpResponse.setHeader("Connection", "keep-alive");
+        httpResponse.setHeader("ETag", "W/\"1400-18f2c3a1b20\"");
+        httpResponse.setContentLength(5120);
+
+        ByteBuffer buffer = ByteBuffer.allocate(ResponseHeadEncoder.HEAD_BUFFER_SIZE);
+        ByteBuffer head = ResponseHeadEncoder.encode(httpResponse, buffer);
+        assertSame(buffer, head);
+        assertEquals("HTTP/1.1 200 OK\r\n"
+                + "Connection: keep-alive\r\n"
+                + "Content-Length: 5120\r\n"
+                + "Content-Type: text/html\r\n"
+                + "ETag: W/\"1400-18f2c3a1b20\"\r\n"
+                + "\r\n", decode(head));
+    }
+
+    /*
+     * The buffer is cleared first, so a connection can reuse it for every
+     * response.
+     */
+    @Test
+    void testEncode_reusedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(ResponseHeadEncoder.HEAD_BUFFER_SIZE);
+        HttpResponse first = buildResponse("404", "Not Found");
+        first.setContentLength(0);
+        ResponseHeadEncoder.encode(first, buffer);
+
+        HttpResponse second = buildResponse("304", "Not Modified");
+        assertEquals("HTTP/1.1 304 Not Modified\r\n\r\n", decode(ResponseHeadEncoder.encode(second, buffer)));
+    }
+
+    @Test
+    void testEncode_customStatusAndHeader() {
+        HttpResponse httpResponse = buildResponse("200", "Fine");
+        httpResponse.setHeader("X-Custom", "value");
+        httpResponse.setHeader("Content-Length", "0");
+        assertEquals("HTTP/1.1 200 Fine\r\nContent-Length: 0\r\nX-Custom: value\r\n\r\n",
+                decode(ResponseHeadEncoder.encode(httpResponse, ByteBuffer.allocate(64))));
+    }
+
+    @Test
+    void testEncode_nonAsciiValue() {
+        HttpResponse httpResponse = buildResponse("200", "OK");
+        httpResponse.setHeader("Content-Disposition", "attachment; filename=\"café.txt\"");
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Disposition: attachment; filename=\"café.txt\"\r\n\r\n",
+                decode(ResponseHeadEncoder.encode(httpResponse, ByteBuffer.allocate(128))));
+    }
+
+    @Test
+    void testEncode_headLargerThanBuffer() {
+        HttpResponse httpResponse = buildResponse("200", "OK");
+        httpResponse.setHeader("Content-Disposition", "attachment; filename=\"" + "a".repeat(100) + ".txt\"");
+        httpResponse.setContentLength(1234567890123L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        ByteBuffer head = ResponseHeadEncoder.encode(httpResponse, buffer);
+        assertNotSame(buffer, head);
+        assertEquals(new String(httpResponse.getHeadAsBytes(), StandardCharsets.UTF_8), decode(head));
+        assertTrue(decode(head).contains("Content-Length: 1234567890123\r\n"));
+    }
+
+    private static HttpResponse buildResponse(String statusCode, String reasonPhrase) {
+        HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setVersion("HTTP/1.1");
+        httpResponse.setStatusCode(statusCode);
+        httpResponse.setReasonPhrase(reasonPhrase);
+        return httpResponse;
+    }
+
+    private static String decode(ByteBuffer head) {
+        return StandardCharsets.UTF_8.decode(head.duplicate()).toString();
+    }
+}
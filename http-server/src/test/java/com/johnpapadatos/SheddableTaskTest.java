@@ -0,0 +1,147 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SheddableTaskTest {
+
+    @Test
+    void testRun_withinQueueTimeout() {
+        Metrics metrics = new Metrics();
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicBoolean shed = new AtomicBoolean();
+
+        new SheddableTask(() -> ran.set(true), () -> shed.set(true), 10_000, metrics).run();
+        assertTrue(ran.get());
+        assertFalse(shed.get());
+        assertEquals(0, metrics.getShed("queue_timeout"));
+    }
+
+    @Test
+    void testRun_queueTimeoutExceeded() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicBoolean shed = new AtomicBoolean();
+
+        SheddableTask task = new SheddableTask(() -> ran.set(true), () -> shed.set(true), 1, metrics);
+        Thread.sleep(20);
+        task.run();
+        assertFalse(ran.get());
+        assertTrue(shed.get());
+        assertEquals(1, metrics.getShed("queue_timeout"));
+        assertTrue(metrics.scrape().contains("http_shed_total{reason=\"queue_timeout\"} 1\n"));
+    }
+
+    /*
+     * Once the only thread is busy and the queue is full, a sheddable task is
+     * shed on the submitting thread while any other task is rejected as usual.
+     */
+    @Test
+    void testRejectionPolicy_queueFull() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new SheddableTask.RejectionPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            threadPool.execute(() -> awaitQuietly(release));
+            threadPool.execute(() -> {
+            });
+
+            AtomicBoolean shed = new AtomicBoolean();
+            threadPool.execute(new SheddableTask(() -> {
+            }, () -> shed.set(true), 0, metrics));
+            assertTrue(shed.get());
+            assertEquals(1, metrics.getShed("queue_full"));
+            assertThrows(RejectedExecutionException.class, () -> threadPool.execute(() -> {
+            }));
+        } finally {
+            release.countDown();
+            threadPool.shutdown();
+        }
+    }
+
+    /*
+     * One connection keeps the only thread, a second one waits in the queue
+     * and a third one is answered with a 503 without being read.
+     */
+    @Test
+    void testHttpServer_queueFull_serviceUnavailable(@TempDir Path baseDir) throws IOException {
+        Files.writeString(baseDir.resolve("file.txt"), "Hello");
+        Config config = ConfigProcessor.processConfigFile(null);
+        config.setBaseDir(baseDir.toString());
+        config.setCorePoolSize(1);
+        config.setMaximumPoolSize(1);
+        config.setQueueCapacity(1);
+
+        ServerSocket serverSocket = new ServerSocket(0);
+        ExecutorService threadPool = Main.createThreadPool(config);
+        HttpServer httpServer = new HttpServer(serverSocket, threadPool, config);
+        new Thread(() -> {
+            try {
+                httpServer.start();
+            } catch (IOException e) {
+                // Closed at the end of the test
+            }
+        }).start();
+
+        try (Socket served = new Socket("localhost", serverSocket.getLocalPort())) {
+            served.getOutputStream().write("GET /file.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            assertTrue(readHead(served.getInputStream()).startsWith("HTTP/1.1 200 OK"));
+
+            try (Socket queued = new Socket("localhost", serverSocket.getLocalPort());
+                    Socket shed = new Socket("localhost", serverSocket.getLocalPort())) {
+                assertTrue(queued.isConnected()); // Takes the only slot of the queue
+                OutputStream out = shed.getOutputStream();
+                out.write("GET /file.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                String head = readHead(shed.getInputStream());
+                assertTrue(head.startsWith("HTTP/1.1 503 Service Unavailable"));
+                assertTrue(head.contains("Retry-After: 1\r\n"));
+                assertTrue(head.contains("Connection: close\r\n"));
+                assertEquals(1, httpServer.getHttpRequestHandler().getMetrics().getShed("queue_full"));
+            }
+        } finally {
+            serverSocket.close();
+            threadPool.shutdownNow();
+        }
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while (!head.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b == -1) {
+                break;
+            }
+            head.append((char) b);
+        }
+        return head.toString();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
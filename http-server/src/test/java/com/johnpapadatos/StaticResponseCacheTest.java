@@ -0,0 +1,102 @@
+package com.johnpapadatos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class StaticResponseCacheTest {
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @Test
+    void testGet_hitAndMissCounters() {
+        StaticResponseCache cache = new StaticResponseCache(1024, 256);
+        CachedResponse cachedResponse = createCachedResponse(100);
+
+        assertNull(cache.get("/a.txt|identity", LAST_MODIFIED, 100));
+        cache.put("/a.txt|identity", cachedResponse);
+        assertSame(cachedResponse, cache.get("/a.txt|identity", LAST_MODIFIED, 100));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(100, cache.getSize());
+    }
+
+    @Test
+    void testGet_fileChanged() {
+        StaticResponseCache cache = new StaticResponseCache(1024, 256);
+        cache.put("/a.txt|identity", createCachedResponse(100));
+
+        assertNull(cache.get("/a.txt|identity", LAST_MODIFIED + 1, 100));
+        assertNull(cache.get("/a.txt|identity", LAST_MODIFIED, 100));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testPut_entryLargerThanMaxEntrySize() {
+        StaticResponseCache cache = new StaticResponseCache(1024, 256);
+        cache.put("/large.bin|identity", createCachedResponse(257));
+
+        assertNull(cache.get("/large.bin|identity", LAST_MODIFIED, 257));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testPut_disabled() {
+        StaticResponseCache cache = new StaticResponseCache(0, 256);
+        cache.put("/a.txt|identity", createCachedResponse(100));
+
+        assertNull(cache.get("/a.txt|identity", LAST_MODIFIED, 100));
+    }
+
+    /*
+     * Once the cache is full, a key requested only once must not evict
+     * entries that are requested often.
+     */
+    @Test
+    void testPut_oneOffEntryNotAdmittedOverHotEntries() {
+        StaticResponseCache cache = new StaticResponseCache(300, 100);
+        for (String key : new String[] { "/hot-1", "/hot-2", "/hot-3" }) {
+            cache.get(key, LAST_MODIFIED, 100);
+            cache.put(key, createCachedResponse(100));
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(cache.get(key, LAST_MODIFIED, 100));
+            }
+        }
+
+        cache.get("/one-off", LAST_MODIFIED, 100);
+        cache.put("/one-off", createCachedResponse(100));
+
+        assertNull(cache.get("/one-off", LAST_MODIFIED, 100));
+        assertNotNull(cache.get("/hot-1", LAST_MODIFIED, 100));
+        assertNotNull(cache.get("/hot-2", LAST_MODIFIED, 100));
+        assertNotNull(cache.get("/hot-3", LAST_MODIFIED, 100));
+        assertEquals(1, cache.getRejections());
+    }
+
+    @Test
+    void testPut_popularEntryEvictsLeastRecentlyUsed() {
+        StaticResponseCache cache = new StaticResponseCache(200, 100);
+        cache.get("/cold-1", LAST_MODIFIED, 100);
+        cache.put("/cold-1", createCachedResponse(100));
+        cache.get("/cold-2", LAST_MODIFIED, 100);
+        cache.put("/cold-2", createCachedResponse(100));
+
+        for (int i = 0; i < 5; i++) {
+            cache.get("/popular", LAST_MODIFIED, 100);
+        }
+        cache.put("/popular", createCachedResponse(100));
+
+        assertNotNull(cache.get("/popular", LAST_MODIFIED, 100));
+        assertNull(cache.get("/cold-1", LAST_MODIFIED, 100));
+        assertNotNull(cache.get("/cold-2", LAST_MODIFIED, 100));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(200, cache.getSize());
+    }
+
+    private static CachedResponse createCachedResponse(int size) {
+        return new CachedResponse(new byte[size], "text/plain", null, LAST_MODIFIED, size);
+    }
+}
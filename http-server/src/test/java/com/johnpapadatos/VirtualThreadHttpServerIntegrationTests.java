@@ -0,0 +1,28 @@
+package com.johnpapadatos;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/*
+ * Runs every HttpServerIntegrationTests case with the worker tasks on
+ * virtual threads.
+ */
+class VirtualThreadHttpServerIntegrationTests extends HttpServerIntegrationTests {
+
+    @Override
+    protected int startServer(Config config) throws IOException {
+        config.setExecutor("virtual");
+
+        ServerSocket serverSocket = new ServerSocket(0);
+        HttpServer httpServer = new HttpServer(serverSocket, Main.createThreadPool(config), config);
+        Thread serverThread = new Thread(() -> {
+            try {
+                httpServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        serverThread.start();
+        return serverSocket.getLocalPort();
+    }
+}